@@ -23,6 +23,12 @@ dependencies {
     compileOnly("dev.folia:folia-api:${rootProject.properties["paper_version"]}-R0.1-SNAPSHOT")
     compileOnly("me.clip:placeholderapi:${rootProject.properties["placeholder_api_version"]}")
     compileOnly("com.github.Xiao-MoMi:Sparrow-Heart:${rootProject.properties["sparrow_heart_version"]}")
+    testImplementation(platform("org.junit:junit-bom:${rootProject.properties["junit_version"]}"))
+    testImplementation("org.junit.jupiter:junit-jupiter")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+    // the api is compiled against these, they are needed to load its classes outside a server
+    testImplementation("dev.folia:folia-api:${rootProject.properties["paper_version"]}-R0.1-SNAPSHOT")
+    testImplementation("net.kyori:adventure-api:${rootProject.properties["adventure_bundle_version"]}")
 }
 
 java {
@@ -40,6 +46,9 @@ tasks.withType<JavaCompile> {
 }
 
 tasks {
+    test {
+        useJUnitPlatform()
+    }
     shadowJar {
         archiveClassifier = ""
         archiveFileName = "CustomCrops-${rootProject.properties["project_version"]}.jar"
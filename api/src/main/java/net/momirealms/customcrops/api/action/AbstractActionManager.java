@@ -97,7 +97,7 @@ public abstract class AbstractActionManager<T> implements ActionManager<T> {
             plugin.getPluginLogger().warn("Action type: " + section.getString("type") + " doesn't exist.");
             return Action.empty();
         }
-        return factory.process(section.get("value"), section.contains("chance") ? MathValue.auto(section.get("chance")) : MathValue.plain(1d));
+        return new ProfiledAction<>(section.getString("type"), factory.process(section.get("value"), section.contains("chance") ? MathValue.auto(section.get("chance")) : MathValue.plain(1d)));
     }
 
     @NotNull
@@ -123,7 +123,7 @@ public abstract class AbstractActionManager<T> implements ActionManager<T> {
             plugin.getPluginLogger().warn("Action type: " + type + " doesn't exist.");
             return Action.empty();
         }
-        return factory.process(args, MathValue.plain(1));
+        return new ProfiledAction<>(type, factory.process(args, MathValue.plain(1)));
     }
 
     @SuppressWarnings({"ResultOfMethodCallIgnored", "unchecked"})
@@ -0,0 +1,54 @@
+/*
+ *  Copyright (C) <2024> <XiaoMoMi>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.momirealms.customcrops.api.action;
+
+import net.momirealms.customcrops.api.context.Context;
+import net.momirealms.customcrops.api.misc.profiler.SamplingProfiler;
+
+/**
+ * Wraps a parsed action to record its calls into the {@link SamplingProfiler} under its type.
+ */
+public class ProfiledAction<T> implements Action<T> {
+
+    private final String type;
+    private final Action<T> action;
+
+    public ProfiledAction(String type, Action<T> action) {
+        this.type = type;
+        this.action = action;
+    }
+
+    @Override
+    public void trigger(Context<T> context) {
+        long start = SamplingProfiler.begin();
+        if (start == SamplingProfiler.IDLE) {
+            action.trigger(context);
+            return;
+        }
+        try {
+            action.trigger(context);
+        } finally {
+            SamplingProfiler.endAction(type, start);
+        }
+    }
+
+    public Action<T> action() {
+        return action;
+    }
+}
@@ -19,8 +19,7 @@ package net.momirealms.customcrops.api.context;
 
 import org.jetbrains.annotations.Nullable;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
 public abstract class AbstractContext<T> implements Context<T> {
@@ -32,7 +31,7 @@ public abstract class AbstractContext<T> implements Context<T> {
     public AbstractContext(@Nullable T holder, boolean sync) {
         this.holder = holder;
         this.args = sync ? new ConcurrentHashMap<>() : new HashMap<>();
-        this.placeholderMap = sync ? new ConcurrentHashMap<>() : new HashMap<>();
+        this.placeholderMap = new PlaceholderView();
     }
 
     @Override
@@ -49,14 +48,12 @@ public abstract class AbstractContext<T> implements Context<T> {
     public <C> AbstractContext<T> arg(ContextKeys<C> key, C value) {
         if (key == null || value == null) return this;
         this.args.put(key, value);
-        this.placeholderMap.put("{" + key.key() + "}", value.toString());
         return this;
     }
 
     @Override
     public AbstractContext<T> combine(Context<T> other) {
         this.args.putAll(other.args());
-        this.placeholderMap.putAll(other.placeholderMap());
         return this;
     }
 
@@ -70,7 +67,6 @@ public abstract class AbstractContext<T> implements Context<T> {
     @SuppressWarnings("unchecked")
     @Override
     public <C> C remove(ContextKeys<C> key) {
-        placeholderMap.remove("{" + key.key() + "}");
         return (C) args.remove(key);
     }
 
@@ -78,4 +74,37 @@ public abstract class AbstractContext<T> implements Context<T> {
     public T holder() {
         return holder;
     }
+
+    /**
+     * A read-only view of the arguments as {key} placeholders, so that no second map is kept up to date with them.
+     */
+    private final class PlaceholderView extends AbstractMap<String, String> {
+
+        @Override
+        public String get(Object placeholder) {
+            if (!(placeholder instanceof String text)) {
+                return null;
+            }
+            ContextKeys<?> key = ContextKeys.byPlaceholder(text);
+            if (key == null) {
+                return null;
+            }
+            Object value = args.get(key);
+            return value == null ? null : value.toString();
+        }
+
+        @Override
+        public boolean containsKey(Object placeholder) {
+            return get(placeholder) != null;
+        }
+
+        @Override
+        public Set<Entry<String, String>> entrySet() {
+            Set<Entry<String, String>> entries = new HashSet<>();
+            for (Map.Entry<ContextKeys<?>, Object> entry : args.entrySet()) {
+                entries.add(new SimpleImmutableEntry<>("{" + entry.getKey().key() + "}", entry.getValue().toString()));
+            }
+            return entries;
+        }
+    }
 }
@@ -43,7 +43,7 @@ public interface Context<T> {
     Map<ContextKeys<?>, Object> args();
 
     /**
-     * Converts the context to a map of placeholders
+     * Gets the arguments as a read-only map of {key} placeholders
      *
      * @return a map of placeholders
      */
@@ -19,8 +19,11 @@ package net.momirealms.customcrops.api.context;
 
 import org.bukkit.Location;
 import org.bukkit.inventory.EquipmentSlot;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Represents keys for accessing context values with specific types.
@@ -29,6 +32,9 @@ import java.util.Objects;
  */
 public class ContextKeys<T> {
 
+    // declared before the keys so that it's initialized when they register themselves
+    private static final Map<String, ContextKeys<?>> BY_PLACEHOLDER = new ConcurrentHashMap<>();
+
     public static final ContextKeys<Location> LOCATION = of("location", Location.class);
     public static final ContextKeys<String> WATER_BAR = of("water_bar", String.class);
     public static final ContextKeys<Integer> CURRENT_WATER = of("current", Integer.class);
@@ -51,6 +57,18 @@ public class ContextKeys<T> {
     protected ContextKeys(String key, Class<T> type) {
         this.key = key;
         this.type = type;
+        BY_PLACEHOLDER.putIfAbsent("{" + key + "}", this);
+    }
+
+    /**
+     * Gets the context key whose argument a placeholder in the form of {key} stands for.
+     *
+     * @param placeholder the placeholder, including the braces.
+     * @return the context key, or null if no key matches the placeholder.
+     */
+    @Nullable
+    public static ContextKeys<?> byPlaceholder(String placeholder) {
+        return BY_PLACEHOLDER.get(placeholder);
     }
 
     /**
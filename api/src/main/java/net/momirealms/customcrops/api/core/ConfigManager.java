@@ -95,6 +95,19 @@ public abstract class ConfigManager implements ConfigLoader, Reloadable {
     protected boolean interveneAntiGrief = false;
 
     protected boolean asyncWorldSaving = true;
+    protected boolean packedSectionStorage = false;
+    protected int tickThreads = 1;
+    protected int tickBudget = 900;
+    protected int maxCatchUpSeconds = 10;
+    protected int modelUpdatesPerTick = 1000;
+    protected int nearbyWaterCacheSeconds = 0;
+    protected boolean nearbyWaterSnapshot = false;
+    protected boolean mappedRegionStorage = false;
+    protected long regionWriteBufferSize = 64L << 20;
+    protected int ioQueueSize = 256;
+    protected int regionPrefetchDistance = 2;
+    protected int zstdLevel = 3;
+    protected boolean zstdDictionary = false;
 
     public ConfigManager(BukkitCustomCropsPlugin plugin) {
         this.plugin = plugin;
@@ -173,6 +186,58 @@ public abstract class ConfigManager implements ConfigLoader, Reloadable {
         return instance.asyncWorldSaving;
     }
 
+    public static boolean packedSectionStorage() {
+        return instance.packedSectionStorage;
+    }
+
+    public static int tickThreads() {
+        return instance.tickThreads;
+    }
+
+    public static int tickBudget() {
+        return instance.tickBudget;
+    }
+
+    public static int maxCatchUpSeconds() {
+        return instance.maxCatchUpSeconds;
+    }
+
+    public static int modelUpdatesPerTick() {
+        return instance.modelUpdatesPerTick;
+    }
+
+    public static int nearbyWaterCacheSeconds() {
+        return instance.nearbyWaterCacheSeconds;
+    }
+
+    public static boolean nearbyWaterSnapshot() {
+        return instance.nearbyWaterSnapshot;
+    }
+
+    public static boolean mappedRegionStorage() {
+        return instance.mappedRegionStorage;
+    }
+
+    public static long regionWriteBufferSize() {
+        return instance.regionWriteBufferSize;
+    }
+
+    public static int ioQueueSize() {
+        return instance.ioQueueSize;
+    }
+
+    public static int regionPrefetchDistance() {
+        return instance.regionPrefetchDistance;
+    }
+
+    public static int zstdLevel() {
+        return instance.zstdLevel;
+    }
+
+    public static boolean zstdDictionary() {
+        return instance.zstdDictionary;
+    }
+
     public static Set<String> scarecrow() {
         return instance.scarecrow;
     }
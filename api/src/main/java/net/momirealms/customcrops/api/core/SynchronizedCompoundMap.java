@@ -35,9 +35,8 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 public class SynchronizedCompoundMap {
 
     private final CompoundMap compoundMap;
-    private final ReadWriteLock rwLock = new ReentrantReadWriteLock();
-    private final java.util.concurrent.locks.Lock readLock = rwLock.readLock();
-    private final java.util.concurrent.locks.Lock writeLock = rwLock.writeLock();
+    private final java.util.concurrent.locks.Lock readLock;
+    private final java.util.concurrent.locks.Lock writeLock;
 
     /**
      * Constructs a new SynchronizedCompoundMap with the specified CompoundMap.
@@ -45,7 +44,21 @@ public class SynchronizedCompoundMap {
      * @param compoundMap the underlying CompoundMap to wrap
      */
     public SynchronizedCompoundMap(CompoundMap compoundMap) {
+        ReadWriteLock rwLock = new ReentrantReadWriteLock();
         this.compoundMap = compoundMap;
+        this.readLock = rwLock.readLock();
+        this.writeLock = rwLock.writeLock();
+    }
+
+    /**
+     * Constructs a map without an underlying map or lock, for subclasses that override
+     * {@link #originalMap()}, {@link #get(String)}, {@link #put(String, Tag)} and {@link #remove(String)}
+     * and guard their data themselves.
+     */
+    protected SynchronizedCompoundMap() {
+        this.compoundMap = null;
+        this.readLock = null;
+        this.writeLock = null;
     }
 
     /**
@@ -129,7 +142,7 @@ public class SynchronizedCompoundMap {
      * @return a string representation of the CompoundMap
      */
     @SuppressWarnings("unchecked")
-    private String compoundMapToString(String key, CompoundMap compoundMap) {
+    protected String compoundMapToString(String key, CompoundMap compoundMap) {
         StringJoiner joiner = new StringJoiner(",");
         for (Map.Entry<String, Tag<?>> entry : compoundMap.entrySet()) {
             Tag<?> tag = entry.getValue();
@@ -18,9 +18,6 @@
 package net.momirealms.customcrops.api.core.block;
 
 import com.flowpowered.nbt.CompoundMap;
-import com.flowpowered.nbt.IntTag;
-import com.flowpowered.nbt.StringTag;
-import com.flowpowered.nbt.Tag;
 import net.momirealms.customcrops.api.core.world.CustomCropsBlockState;
 import net.momirealms.customcrops.api.core.world.CustomCropsWorld;
 import net.momirealms.customcrops.api.core.world.Pos3;
@@ -59,30 +56,42 @@ public abstract class AbstractCustomCropsBlock implements CustomCropsBlock {
     }
 
     public String id(CustomCropsBlockState state) {
-        return state.get("key").getAsStringTag()
-                .map(StringTag::getValue)
-                .orElse("");
+        return state.getString("key", "");
     }
 
     public void id(CustomCropsBlockState state, String id) {
-        state.set("key", new StringTag("key", id));
+        state.setString("key", id);
     }
 
     protected boolean canTick(CustomCropsBlockState state, int interval) {
         if (interval <= 0) return false;
         if (interval == 1) return true;
-        Tag<?> tag = state.get("tick");
-        int tick = 0;
-        if (tag != null) tick = tag.getAsIntTag().map(IntTag::getValue).orElse(0);
+        int tick = state.getInt("tick", 0);
         if (++tick >= interval) {
-            state.set("tick", new IntTag("tick", 0));
+            state.setInt("tick", 0);
             return true;
         } else {
-            state.set("tick", new IntTag("tick", tick));
+            state.setInt("tick", tick);
             return false;
         }
     }
 
+    /**
+     * Advances the tick counter by the given amount of ticks at once
+     *
+     * @param state    the block state
+     * @param interval the tick interval
+     * @param ticks    the amount of ticks
+     * @return how many of the ticks would have passed {@link #canTick(CustomCropsBlockState, int)}
+     */
+    protected int canTick(CustomCropsBlockState state, int interval, int ticks) {
+        if (interval <= 0 || ticks <= 0) return 0;
+        if (interval == 1) return ticks;
+        int tick = Math.min(state.getInt("tick", 0), interval - 1) + ticks;
+        state.setInt("tick", tick % interval);
+        return tick / interval;
+    }
+
     @Override
     public void scheduledTick(CustomCropsBlockState state, CustomCropsWorld<?> world, Pos3 location, boolean offlineTick) {
     }
@@ -17,7 +17,6 @@
 
 package net.momirealms.customcrops.api.core.block;
 
-import com.flowpowered.nbt.IntTag;
 import net.momirealms.customcrops.api.BukkitCustomCropsPlugin;
 import net.momirealms.customcrops.api.action.ActionManager;
 import net.momirealms.customcrops.api.context.Context;
@@ -30,6 +29,7 @@ import net.momirealms.customcrops.api.core.mechanic.pot.PotConfig;
 import net.momirealms.customcrops.api.core.world.CustomCropsBlockState;
 import net.momirealms.customcrops.api.core.world.CustomCropsWorld;
 import net.momirealms.customcrops.api.core.world.Pos3;
+import net.momirealms.customcrops.api.core.world.WorldSetting;
 import net.momirealms.customcrops.api.core.wrapper.WrappedBreakEvent;
 import net.momirealms.customcrops.api.core.wrapper.WrappedInteractEvent;
 import net.momirealms.customcrops.api.core.wrapper.WrappedPlaceEvent;
@@ -393,24 +393,7 @@ public class CropBlock extends AbstractCustomCropsBlock {
 
             int afterPoints = Math.min(previousPoint + pointToAdd, config.maxPoints());
             point(state, afterPoints);
-
-            CropStageConfig currentStage = config.stageWithModelByPoint(previousPoint);
-            CropStageConfig nextStage = config.stageWithModelByPoint(afterPoints);
-
-            plugin.getScheduler().sync().run(() -> {
-                if (currentStage == nextStage) return;
-                FurnitureRotation rotation = plugin.getItemManager().remove(bukkitLocation, ExistenceForm.ANY);
-                if (rotation == FurnitureRotation.NONE && config.rotation()) {
-                    rotation = FurnitureRotation.random();
-                }
-                plugin.getItemManager().place(bukkitLocation, nextStage.existenceForm(), Objects.requireNonNull(nextStage.stageID()), rotation);
-                for (int i = previousPoint + 1; i <= afterPoints; i++) {
-                    CropStageConfig stage = config.stageByPoint(i);
-                    if (stage != null) {
-                        ActionManager.trigger(context, stage.growActions());
-                    }
-                }
-            }, bukkitLocation);
+            updateStage(world, location, bukkitLocation, config, context, previousPoint, afterPoints);
         };
 
         if (ConfigManager.doubleCheck()) {
@@ -435,12 +418,64 @@ public class CropBlock extends AbstractCustomCropsBlock {
         }
     }
 
+    @Override
+    public boolean fastForward(CustomCropsBlockState state, CustomCropsWorld<?> world, Pos3 location, int scheduledTicks, int randomTicks) {
+        CropConfig config = config(state);
+        // the block check runs on the main thread, so it can't be aggregated
+        if (config == null || ConfigManager.doubleCheck()) return false;
+        // only the crops that gain one point per tick unconditionally grow deterministically
+        if (config.deathConditions().length != 0 || config.growConditions().length != 0) return false;
+        Optional<CustomCropsBlockState> optionalState = world.getBlockState(location.add(0,-1,0));
+        if (optionalState.isPresent()) {
+            CustomCropsBlockState belowState = optionalState.get();
+            if (belowState.type() instanceof PotBlock potBlock && potBlock.fertilizers(belowState).length != 0) {
+                return false;
+            }
+        }
+
+        WorldSetting setting = world.setting();
+        int scheduled = setting.tickCropMode() == 1 ? 0 : scheduledTicks;
+        int random = setting.tickCropMode() == 2 ? 0 : randomTicks;
+        int ticks = canTick(state, setting.tickCropInterval(), scheduled + random);
+        int previousPoint = point(state);
+        if (ticks == 0 || previousPoint >= config.maxPoints()) return true;
+
+        int afterPoints = Math.min(previousPoint + ticks, config.maxPoints());
+        point(state, afterPoints);
+        Location bukkitLocation = location.toLocation(world.bukkitWorld());
+        Context<CustomCropsBlockState> context = Context.block(state, bukkitLocation).arg(ContextKeys.OFFLINE, true);
+        updateStage(world, location, bukkitLocation, config, context, previousPoint, afterPoints);
+        return true;
+    }
+
+    private void updateStage(CustomCropsWorld<?> world, Pos3 location, Location bukkitLocation, CropConfig config, Context<CustomCropsBlockState> context, int previousPoint, int afterPoints) {
+        CropStageConfig currentStage = config.stageWithModelByPoint(previousPoint);
+        CropStageConfig nextStage = config.stageWithModelByPoint(afterPoints);
+
+        if (currentStage == nextStage) return;
+        BukkitCustomCropsPlugin plugin = BukkitCustomCropsPlugin.getInstance();
+        world.modelUpdateBuffer().submit(location, () -> {
+            FurnitureRotation rotation = plugin.getItemManager().remove(bukkitLocation, ExistenceForm.ANY);
+            if (rotation == FurnitureRotation.NONE && config.rotation()) {
+                rotation = FurnitureRotation.random();
+            }
+            plugin.getItemManager().place(bukkitLocation, nextStage.existenceForm(), Objects.requireNonNull(nextStage.stageID()), rotation);
+        }, () -> {
+            for (int i = previousPoint + 1; i <= afterPoints; i++) {
+                CropStageConfig stage = config.stageByPoint(i);
+                if (stage != null) {
+                    ActionManager.trigger(context, stage.growActions());
+                }
+            }
+        });
+    }
+
     public int point(CustomCropsBlockState state) {
-        return state.get("point").getAsIntTag().map(IntTag::getValue).orElse(0);
+        return state.getInt("point", 0);
     }
 
     public void point(CustomCropsBlockState state, int point) {
-        state.set("point", new IntTag("point", point));
+        state.setInt("point", point);
     }
 
     public CropConfig config(CustomCropsBlockState state) {
@@ -70,6 +70,21 @@ public interface CustomCropsBlock {
      */
     void randomTick(CustomCropsBlockState state, CustomCropsWorld<?> world, Pos3 location, boolean offlineTick);
 
+    /**
+     * Applies the offline ticks a block would have received while its chunk was unloaded in one step.
+     * Blocks that can't aggregate their ticks return false and have them replayed one by one instead.
+     *
+     * @param state          the block state
+     * @param world          the world
+     * @param location       the location of the block
+     * @param scheduledTicks the amount of scheduled ticks to apply
+     * @param randomTicks    the amount of random ticks to apply
+     * @return whether the ticks have been applied
+     */
+    default boolean fastForward(CustomCropsBlockState state, CustomCropsWorld<?> world, Pos3 location, int scheduledTicks, int randomTicks) {
+        return false;
+    }
+
     /**
      * Handles interactions
      */
@@ -107,4 +122,13 @@ public interface CustomCropsBlock {
      * @return the color
      */
     NamedTextColor insightColor();
+
+    /**
+     * Whether the positions of this block type should be indexed by chunks for proximity lookups
+     *
+     * @return indexed or not
+     */
+    default boolean isSpatiallyIndexed() {
+        return false;
+    }
 }
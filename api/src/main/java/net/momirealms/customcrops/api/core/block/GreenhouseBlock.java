@@ -42,6 +42,11 @@ public class GreenhouseBlock extends AbstractCustomCropsBlock {
         super(BuiltInBlockMechanics.GREENHOUSE.key());
     }
 
+    @Override
+    public boolean isSpatiallyIndexed() {
+        return true;
+    }
+
     @Override
     public void randomTick(CustomCropsBlockState state, CustomCropsWorld<?> world, Pos3 location, boolean offlineTick) {
         //tickGreenhouse(world, location);
@@ -34,6 +34,7 @@ import net.momirealms.customcrops.api.core.mechanic.pot.PotConfig;
 import net.momirealms.customcrops.api.core.world.CustomCropsBlockState;
 import net.momirealms.customcrops.api.core.world.CustomCropsWorld;
 import net.momirealms.customcrops.api.core.world.Pos3;
+import net.momirealms.customcrops.api.core.world.WorldSetting;
 import net.momirealms.customcrops.api.core.wrapper.WrappedBreakEvent;
 import net.momirealms.customcrops.api.core.wrapper.WrappedInteractEvent;
 import net.momirealms.customcrops.api.core.wrapper.WrappedPlaceEvent;
@@ -47,10 +48,7 @@ import net.momirealms.customcrops.api.util.PlayerUtils;
 import net.momirealms.sparrow.heart.SparrowHeart;
 import org.bukkit.GameMode;
 import org.bukkit.Location;
-import org.bukkit.Material;
 import org.bukkit.World;
-import org.bukkit.block.data.BlockData;
-import org.bukkit.block.data.Waterlogged;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.EquipmentSlot;
 import org.bukkit.inventory.ItemStack;
@@ -64,6 +62,11 @@ import java.util.Optional;
 
 public class PotBlock extends AbstractCustomCropsBlock {
 
+    /**
+     * The horizontal radius of the box in which pots look for water blocks
+     */
+    public static final int NEARBY_WATER_RANGE = 4;
+
     public PotBlock() {
         super(BuiltInBlockMechanics.POT.key());
     }
@@ -368,52 +371,20 @@ public class PotBlock extends AbstractCustomCropsBlock {
         if (!tickMode && config.ignoreScheduledTick()) return;
 
         World bukkitWorld = world.bukkitWorld();
-        if (ConfigManager.doubleCheck()) {
-            String blockID = plugin.getItemManager().blockID(location.toLocation(bukkitWorld));
-            if (!config.blocks().contains(blockID)) {
-                plugin.getPluginLogger().warn("Pot[" + config.id() + "] is removed at location[" + world.worldName() + "," + location + "] because the id of the block is [" + blockID + "]");
-                world.removeBlockState(location);
-                return;
-            }
-        }
+        if (!checkBlock(world, location, config)) return;
 
         // work as vanilla farmland
         if (config.disablePluginMechanism()) return;
 
-        boolean hasNaturalWater = false;
         boolean waterChanged = false;
 
         Location bukkitLocation = location.toLocation(bukkitWorld);
 
-        if (config.isRainDropAccepted()) {
-            if (SparrowHeart.getInstance().isRainingAt(bukkitLocation.clone().add(0,1,0))) {
-                if (addWater(state, 1)) {
-                    waterChanged = true;
-                }
-                hasNaturalWater = true;
+        if (hasNaturalWater(world, location, bukkitLocation, config)) {
+            if (addWater(state, 1)) {
+                waterChanged = true;
             }
-        }
-
-        if (!hasNaturalWater && config.isNearbyWaterAccepted()) {
-            outer: {
-                for (int i = -4; i <= 4; i++) {
-                    for (int j = -4; j <= 4; j++) {
-                        for (int k : new int[]{0, 1}) {
-                            BlockData block = bukkitWorld.getBlockData(location.x() + i, location.y() + k, location.z() + j);
-                            if (block.getMaterial() == Material.WATER || (block instanceof Waterlogged waterlogged && waterlogged.isWaterlogged())) {
-                                if (addWater(state, 1)) {
-                                    waterChanged = true;
-                                }
-                                hasNaturalWater = true;
-                                break outer;
-                            }
-                        }
-                    }
-                }
-            }
-        }
-
-        if (!hasNaturalWater) {
+        } else {
             int waterToLose = 1;
             Fertilizer[] fertilizers = fertilizers(state);
             for (Fertilizer fertilizer : fertilizers) {
@@ -432,34 +403,30 @@ public class PotBlock extends AbstractCustomCropsBlock {
         boolean fertilizerChanged = tickFertilizer(state);
 
         if (fertilizerChanged || waterChanged) {
-            plugin.getScheduler().sync().run(() -> updateBlockAppearance(bukkitLocation, config, water(state) != 0, fertilizers(state)), bukkitLocation);
+            world.modelUpdateBuffer().submit(location, () -> updateBlockAppearance(bukkitLocation, config, water(state) != 0, fertilizers(state)));
         }
 
         ActionManager.trigger(Context.block(state, bukkitLocation).arg(ContextKeys.OFFLINE, offline), config.tickActions());
     }
 
     public int water(CustomCropsBlockState state) {
-        Tag<?> tag = state.get("water");
-        if (tag == null) {
-            return 0;
-        }
-        return tag.getAsIntTag().map(IntTag::getValue).orElse(0);
+        return state.getInt("water", 0);
     }
 
     public boolean addWater(CustomCropsBlockState state, int water) {
-        return water(state, water + water(state));
+        return addWater(state, config(state), water);
     }
 
     public boolean addWater(CustomCropsBlockState state, PotConfig config, int water) {
-        return water(state, config, water + water(state));
+        return updateWater(state, config, water, true);
     }
 
     public boolean consumeWater(CustomCropsBlockState state, int water) {
-        return water(state, water(state) - water);
+        return addWater(state, config(state), -water);
     }
 
     public boolean consumeWater(CustomCropsBlockState state, PotConfig config, int water) {
-        return water(state, config, water(state) - water);
+        return addWater(state, config, -water);
     }
 
     public boolean water(CustomCropsBlockState state, int water) {
@@ -475,12 +442,71 @@ public class PotBlock extends AbstractCustomCropsBlock {
      * @return whether the moisture state has been changed
      */
     public boolean water(CustomCropsBlockState state, PotConfig config, int water) {
-        if (water < 0) water = 0;
-        int current = Math.min(water, config.storage());
-        int previous = water(state);
-        if (water == previous) return false;
-        state.set("water", new IntTag("water", current));
-        return previous == 0 ^ current == 0;
+        return updateWater(state, config, water, false);
+    }
+
+    @Override
+    public boolean fastForward(CustomCropsBlockState state, CustomCropsWorld<?> world, Pos3 location, int scheduledTicks, int randomTicks) {
+        PotConfig config = config(state);
+        // leave removed configs and vanilla farmland to the replay
+        if (config == null || config.disablePluginMechanism()) return false;
+        // actions and fertilizers have effects on every single tick
+        if (config.tickActions() != null && config.tickActions().length != 0) return false;
+        if (fertilizers(state).length != 0) return false;
+
+        WorldSetting setting = world.setting();
+        int scheduled = setting.tickPotMode() == 1 ? 0 : scheduledTicks;
+        int random = setting.tickPotMode() == 2 ? 0 : randomTicks;
+        // the tick counter is shared, so the order of the ticks matters if only one kind of them is accepted
+        if (scheduled != 0 && random != 0 && (config.ignoreRandomTick() || config.ignoreScheduledTick())) return false;
+        int ticks = canTick(state, setting.tickPotInterval(), scheduled + random);
+        if (ticks == 0) return true;
+        if (scheduled != 0 ? config.ignoreScheduledTick() : config.ignoreRandomTick()) return true;
+
+        if (!checkBlock(world, location, config)) return true;
+
+        // weather and nearby water don't change during the catch-up, so every tick has the same result
+        Location bukkitLocation = location.toLocation(world.bukkitWorld());
+        boolean hasNaturalWater = hasNaturalWater(world, location, bukkitLocation, config);
+        if (addWater(state, hasNaturalWater ? ticks : -ticks)) {
+            world.modelUpdateBuffer().submit(location, () -> updateBlockAppearance(bukkitLocation, config, water(state) != 0, fertilizers(state)));
+        }
+        return true;
+    }
+
+    private boolean checkBlock(CustomCropsWorld<?> world, Pos3 location, PotConfig config) {
+        if (!ConfigManager.doubleCheck()) return true;
+        BukkitCustomCropsPlugin plugin = BukkitCustomCropsPlugin.getInstance();
+        String blockID = plugin.getItemManager().blockID(location.toLocation(world.bukkitWorld()));
+        if (!config.blocks().contains(blockID)) {
+            plugin.getPluginLogger().warn("Pot[" + config.id() + "] is removed at location[" + world.worldName() + "," + location + "] because the id of the block is [" + blockID + "]");
+            world.removeBlockState(location);
+            return false;
+        }
+        return true;
+    }
+
+    private boolean hasNaturalWater(CustomCropsWorld<?> world, Pos3 location, Location bukkitLocation, PotConfig config) {
+        if (config.isRainDropAccepted()) {
+            if (SparrowHeart.getInstance().isRainingAt(bukkitLocation.clone().add(0,1,0))) {
+                return true;
+            }
+        }
+        return config.isNearbyWaterAccepted() && world.nearbyWaterCache().hasWaterNearby(location, NEARBY_WATER_RANGE, 0, 1);
+    }
+
+    // Pots can be watered by sprinklers in other chunks, which might be ticked on other threads
+    private boolean updateWater(CustomCropsBlockState state, PotConfig config, int amount, boolean relative) {
+        while (true) {
+            int previous = water(state);
+            int water = relative ? previous + amount : amount;
+            if (water < 0) water = 0;
+            if (water == previous) return false;
+            int current = Math.min(water, config.storage());
+            if (state.compareAndSetInt("water", previous, current)) {
+                return previous == 0 ^ current == 0;
+            }
+        }
     }
 
     public PotConfig config(CustomCropsBlockState state) {
@@ -496,7 +522,8 @@ public class PotBlock extends AbstractCustomCropsBlock {
     @SuppressWarnings("unchecked")
     @NotNull
     public Fertilizer[] fertilizers(CustomCropsBlockState state) {
-        Tag<?> fertilizerTag = state.get("fertilizers");
+        // read only, so that a state sharing its tags with its copies keeps sharing them until it's modified
+        Tag<?> fertilizerTag = state.peek("fertilizers");
         if (fertilizerTag == null) return new Fertilizer[0];
         List<CompoundTag> tags = ((List<CompoundTag>) fertilizerTag.getValue());
         Fertilizer[] fertilizers = new Fertilizer[tags.size()];
@@ -542,7 +569,6 @@ public class PotBlock extends AbstractCustomCropsBlock {
         Tag<?> fertilizerTag = state.get("fertilizers");
         if (fertilizerTag == null) {
             fertilizerTag = new ListTag<CompoundTag>("fertilizers", TagType.TAG_COMPOUND, new ArrayList<>());
-            state.set("fertilizers", fertilizerTag);
         }
         List<CompoundTag> tags = ((List<CompoundTag>) fertilizerTag.getValue());
         for (CompoundTag tag : tags) {
@@ -550,6 +576,8 @@ public class PotBlock extends AbstractCustomCropsBlock {
             Fertilizer applied = tagToFertilizer(map);
             if (fertilizer.id().equals(applied.id())) {
                 map.put(new IntTag("times", fertilizer.times()));
+                // the list is modified in place, so set it again to let the chunk know about the change
+                state.set("fertilizers", fertilizerTag);
                 return false;
             }
             if (fertilizer.type() == applied.type()) {
@@ -561,6 +589,7 @@ public class PotBlock extends AbstractCustomCropsBlock {
             return false;
         }
         tags.add(new CompoundTag("", fertilizerToTag(fertilizer)));
+        state.set("fertilizers", fertilizerTag);
         return true;
     }
 
@@ -587,6 +616,7 @@ public class PotBlock extends AbstractCustomCropsBlock {
         }
         // no fertilizer is used up
         if (fertilizerToRemove.isEmpty()) {
+            state.set("fertilizers", fertilizerTag);
             return false;
         }
         CompoundTag lastEntry = tags.get(tags.size() - 1);
@@ -594,6 +624,7 @@ public class PotBlock extends AbstractCustomCropsBlock {
         for (int i : fertilizerToRemove) {
             tags.remove(i);
         }
+        state.set("fertilizers", fertilizerTag);
         // all the fertilizers are used up
         if (tags.isEmpty()) {
             return true;
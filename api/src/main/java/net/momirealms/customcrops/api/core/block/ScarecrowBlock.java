@@ -42,6 +42,11 @@ public class ScarecrowBlock extends AbstractCustomCropsBlock {
         super(BuiltInBlockMechanics.SCARECROW.key());
     }
 
+    @Override
+    public boolean isSpatiallyIndexed() {
+        return true;
+    }
+
     @Override
     public void randomTick(CustomCropsBlockState state, CustomCropsWorld<?> world, Pos3 location, boolean offlineTick) {
         //tickScarecrow(world, location);
@@ -17,8 +17,6 @@
 
 package net.momirealms.customcrops.api.core.block;
 
-import com.flowpowered.nbt.IntTag;
-import com.flowpowered.nbt.Tag;
 import net.momirealms.customcrops.api.BukkitCustomCropsPlugin;
 import net.momirealms.customcrops.api.action.ActionManager;
 import net.momirealms.customcrops.api.context.Context;
@@ -289,7 +287,7 @@ public class SprinklerBlock extends AbstractCustomCropsBlock {
         Context<CustomCropsBlockState> context = Context.block(state, bukkitLocation).arg(ContextKeys.OFFLINE, offline);
 
         // place/remove entities on main thread
-        BukkitCustomCropsPlugin.getInstance().getScheduler().sync().run(() -> {
+        world.modelUpdateBuffer().submit(location, null, () -> {
 
             if (ConfigManager.doubleCheck()) {
                 String modelID = BukkitCustomCropsPlugin.getInstance().getItemManager().id(bukkitLocation, config.existenceForm());
@@ -302,7 +300,7 @@ public class SprinklerBlock extends AbstractCustomCropsBlock {
 
             ActionManager.trigger(context, config.workActions());
             if (updateState && !config.threeDItem().equals(config.threeDItemWithWater())) {
-                updateBlockAppearance(bukkitLocation, config, false);
+                world.modelUpdateBuffer().submit(location, () -> updateBlockAppearance(bukkitLocation, config, false));
             }
 
             int[][] range = config.range();
@@ -327,16 +325,12 @@ public class SprinklerBlock extends AbstractCustomCropsBlock {
                             if (!potConfig.disablePluginMechanism()) {
                                 if (config.potWhitelist().contains(potConfig.id())) {
                                     if (potBlock.addWater(anotherState, potConfig, config.wateringAmount())) {
-                                        BukkitCustomCropsPlugin.getInstance().getScheduler().sync().run(
-                                                () -> potBlock.updateBlockAppearance(
-                                                        pos3.toLocation(world.bukkitWorld()),
-                                                        potConfig,
-                                                        true,
-                                                        potBlock.fertilizers(anotherState)
-                                                ),
-                                                bukkitWorld,
-                                                pos3.chunkX(), pos3.chunkZ()
-                                        );
+                                        world.modelUpdateBuffer().submit(pos3, () -> potBlock.updateBlockAppearance(
+                                                pos3.toLocation(world.bukkitWorld()),
+                                                potConfig,
+                                                potBlock.water(anotherState) != 0,
+                                                potBlock.fertilizers(anotherState)
+                                        ));
                                     }
                                 }
                             }
@@ -344,7 +338,7 @@ public class SprinklerBlock extends AbstractCustomCropsBlock {
                     }
                 }
             }
-        }, bukkitLocation);
+        });
     }
 
     public boolean addWater(CustomCropsBlockState state, int water) {
@@ -356,11 +350,7 @@ public class SprinklerBlock extends AbstractCustomCropsBlock {
     }
 
     public int water(CustomCropsBlockState state) {
-        Tag<?> tag = state.get("water");
-        if (tag == null) {
-            return 0;
-        }
-        return tag.getAsIntTag().map(IntTag::getValue).orElse(0);
+        return state.getInt("water", 0);
     }
 
     public boolean water(CustomCropsBlockState state, int water) {
@@ -372,7 +362,7 @@ public class SprinklerBlock extends AbstractCustomCropsBlock {
         int current = Math.min(water, config.storage());
         int previous = water(state);
         if (water == previous) return false;
-        state.set("water", new IntTag("water", current));
+        state.setInt("water", current);
         return previous == 0 ^ current == 0;
     }
 
@@ -17,9 +17,9 @@
 
 package net.momirealms.customcrops.api.core.mechanic.crop;
 
-import net.momirealms.customcrops.api.BukkitCustomCropsPlugin;
+import net.momirealms.customcrops.api.misc.animation.Animation;
+import net.momirealms.customcrops.api.misc.animation.AnimationManager;
 import net.momirealms.customcrops.api.util.LocationUtils;
-import net.momirealms.customcrops.common.plugin.scheduler.SchedulerTask;
 import net.momirealms.customcrops.common.util.RandomUtils;
 import net.momirealms.sparrow.heart.SparrowHeart;
 import net.momirealms.sparrow.heart.feature.entity.armorstand.FakeArmorStand;
@@ -29,12 +29,8 @@ import org.bukkit.inventory.EquipmentSlot;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.util.Vector;
 
-import java.util.ArrayList;
-import java.util.concurrent.TimeUnit;
+public class CrowAttack implements Animation {
 
-public class CrowAttack {
-
-    private SchedulerTask task;
     private final Location dynamicLocation;
     private final Vector vectorDown;
     private final Vector vectorUp;
@@ -42,15 +38,10 @@ public class CrowAttack {
     private int timer;
     private final ItemStack flyModel;
     private final ItemStack standModel;
+    private FakeArmorStand fake;
 
     public CrowAttack(Location location, ItemStack flyModel, ItemStack standModel) {
-        ArrayList<Player> viewers = new ArrayList<>();
-        for (Player player : location.getWorld().getPlayers()) {
-            if (LocationUtils.getDistance(player.getLocation(), location) <= 48) {
-                viewers.add(player);
-            }
-        }
-        this.viewers = viewers.toArray(new Player[0]);
+        this.viewers = AnimationManager.getInstance().nearbyPlayers(location, 48).toArray(new Player[0]);
         Location landLocation = LocationUtils.toBlockCenterLocation(location).add(RandomUtils.generateRandomDouble(-0.25, 0.25), 0, RandomUtils.generateRandomDouble(-0.25, 0.25));
         float yaw = RandomUtils.generateRandomInt(-180, 180);
         landLocation.setYaw(yaw);
@@ -65,42 +56,47 @@ public class CrowAttack {
 
     public void start() {
         if (this.viewers.length == 0) return;
-        FakeArmorStand fake = SparrowHeart.getInstance().createFakeArmorStand(dynamicLocation);
-        fake.invisible(true);
-        fake.small(true);
-        fake.equipment(EquipmentSlot.HEAD, flyModel);
+        this.fake = SparrowHeart.getInstance().createFakeArmorStand(dynamicLocation);
+        this.fake.invisible(true);
+        this.fake.small(true);
+        this.fake.equipment(EquipmentSlot.HEAD, flyModel);
         for (Player player : this.viewers) {
-            fake.spawn(player);
+            this.fake.spawn(player);
+        }
+        AnimationManager.getInstance().play(this);
+    }
+
+    @Override
+    public Player[] viewers() {
+        return viewers;
+    }
+
+    @Override
+    public boolean tick() {
+        timer++;
+        if (timer < 100) {
+            dynamicLocation.add(vectorDown);
+        } else if (timer == 100) {
+            fake.equipment(EquipmentSlot.HEAD, standModel);
+        } else if (timer == 150) {
+            fake.equipment(EquipmentSlot.HEAD, flyModel);
+        } else if (timer > 150) {
+            dynamicLocation.add(vectorUp);
+        }
+        return timer <= 250;
+    }
+
+    @Override
+    public void render(Player viewer) {
+        if (timer == 100 || timer == 150) {
+            fake.updateEquipment(viewer);
+        } else if (timer < 100 || timer > 150) {
+            SparrowHeart.getInstance().sendClientSideTeleportEntity(viewer, dynamicLocation, false, fake.entityID());
         }
-        this.task = BukkitCustomCropsPlugin.getInstance().getScheduler().asyncRepeating(() -> {
-            timer++;
-            if (timer < 100) {
-                dynamicLocation.add(vectorDown);
-                for (Player player : this.viewers) {
-                    SparrowHeart.getInstance().sendClientSideTeleportEntity(player, dynamicLocation, false, fake.entityID());
-                }
-            } else if (timer == 100) {
-                fake.equipment(EquipmentSlot.HEAD, standModel);
-                for (Player player : this.viewers) {
-                    fake.updateEquipment(player);
-                }
-            } else if (timer == 150) {
-                fake.equipment(EquipmentSlot.HEAD, flyModel);
-                for (Player player : this.viewers) {
-                    fake.updateEquipment(player);
-                }
-            } else if (timer > 150) {
-                dynamicLocation.add(vectorUp);
-                for (Player player : this.viewers) {
-                    SparrowHeart.getInstance().sendClientSideTeleportEntity(player, dynamicLocation, false, fake.entityID());
-                }
-            }
-            if (timer > 250) {
-                for (Player player : this.viewers) {
-                    fake.destroy(player);
-                }
-                task.cancel();
-            }
-        }, 50, 50, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void remove(Player viewer) {
+        fake.destroy(viewer);
     }
 }
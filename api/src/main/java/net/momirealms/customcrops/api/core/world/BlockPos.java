@@ -43,7 +43,19 @@ public class BlockPos {
      * @param z The z-coordinate within the chunk (0-15).
      */
     public BlockPos(int x, int y, int z) {
-        this.position = ((x & 0xF) << 28) | ((z & 0xF) << 24) | (y & 0xFFFFFF);
+        this.position = encode(x, y, z);
+    }
+
+    /**
+     * Encodes x, y, and z coordinates within a chunk into a position, without creating a BlockPos.
+     *
+     * @param x The x-coordinate within the chunk (0-15).
+     * @param y The y-coordinate (world height).
+     * @param z The z-coordinate within the chunk (0-15).
+     * @return The encoded position.
+     */
+    public static int encode(int x, int y, int z) {
+        return ((x & 0xF) << 28) | ((z & 0xF) << 24) | (y & 0xFFFFFF);
     }
 
     /**
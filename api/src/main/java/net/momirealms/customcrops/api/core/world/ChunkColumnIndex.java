@@ -0,0 +1,143 @@
+/*
+ *  Copyright (C) <2024> <XiaoMoMi>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.momirealms.customcrops.api.core.world;
+
+import java.util.Arrays;
+
+/**
+ * An index of block positions inside a chunk, grouped by column.
+ * <p>
+ * Each of the 256 columns keeps the sorted heights of its blocks, and a bitmap records which columns are
+ * not empty, so checking whether a box contains any block only touches the columns it covers.
+ */
+public class ChunkColumnIndex {
+
+    private static final int[] EMPTY = new int[0];
+
+    private final int[][] columns = new int[256][];
+    private final int[] sizes = new int[256];
+    private final long[] occupied = new long[4];
+    private int size;
+
+    public ChunkColumnIndex() {
+        Arrays.fill(columns, EMPTY);
+    }
+
+    private static int column(int x, int z) {
+        return (z & 0xF) << 4 | (x & 0xF);
+    }
+
+    /**
+     * Adds a block to the index.
+     *
+     * @param x the x-coordinate within the chunk (0-15)
+     * @param y the y-coordinate (world height)
+     * @param z the z-coordinate within the chunk (0-15)
+     * @return true if the block was not in the index
+     */
+    public synchronized boolean add(int x, int y, int z) {
+        int column = column(x, z);
+        int[] ys = columns[column];
+        int length = sizes[column];
+        int slot = Arrays.binarySearch(ys, 0, length, y);
+        if (slot >= 0) {
+            return false;
+        }
+        int insertAt = -(slot + 1);
+        if (length == ys.length) {
+            ys = columns[column] = Arrays.copyOf(ys, Math.max(2, length << 1));
+        }
+        System.arraycopy(ys, insertAt, ys, insertAt + 1, length - insertAt);
+        ys[insertAt] = y;
+        sizes[column] = length + 1;
+        occupied[column >> 6] |= 1L << column;
+        size++;
+        return true;
+    }
+
+    /**
+     * Removes a block from the index.
+     *
+     * @param x the x-coordinate within the chunk (0-15)
+     * @param y the y-coordinate (world height)
+     * @param z the z-coordinate within the chunk (0-15)
+     * @return true if the block was in the index
+     */
+    public synchronized boolean remove(int x, int y, int z) {
+        int column = column(x, z);
+        int[] ys = columns[column];
+        int length = sizes[column];
+        int slot = Arrays.binarySearch(ys, 0, length, y);
+        if (slot < 0) {
+            return false;
+        }
+        System.arraycopy(ys, slot + 1, ys, slot, length - slot - 1);
+        if (--length == 0) {
+            columns[column] = EMPTY;
+            occupied[column >> 6] &= ~(1L << column);
+        }
+        sizes[column] = length;
+        size--;
+        return true;
+    }
+
+    /**
+     * Checks if there's any block inside the box. All the bounds are inclusive.
+     *
+     * @param minX the min x-coordinate within the chunk (0-15)
+     * @param minY the min y-coordinate (world height)
+     * @param minZ the min z-coordinate within the chunk (0-15)
+     * @param maxX the max x-coordinate within the chunk (0-15)
+     * @param maxY the max y-coordinate (world height)
+     * @param maxZ the max z-coordinate within the chunk (0-15)
+     * @return true if any block is inside the box
+     */
+    public synchronized boolean contains(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        if (size == 0 || minY > maxY) {
+            return false;
+        }
+        for (int z = minZ; z <= maxZ; z++) {
+            for (int x = minX; x <= maxX; x++) {
+                int column = column(x, z);
+                if ((occupied[column >> 6] & (1L << column)) == 0) {
+                    continue;
+                }
+                int length = sizes[column];
+                int slot = Arrays.binarySearch(columns[column], 0, length, minY);
+                if (slot >= 0) {
+                    return true;
+                }
+                int next = -(slot + 1);
+                if (next < length && columns[column][next] <= maxY) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the amount of blocks in the index.
+     *
+     * @return the amount of blocks
+     */
+    public synchronized int size() {
+        return size;
+    }
+}
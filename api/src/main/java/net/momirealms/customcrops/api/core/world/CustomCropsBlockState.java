@@ -19,6 +19,7 @@ package net.momirealms.customcrops.api.core.world;
 
 import com.flowpowered.nbt.CompoundMap;
 import com.flowpowered.nbt.CompoundTag;
+import com.flowpowered.nbt.Tag;
 import net.momirealms.customcrops.api.core.block.CustomCropsBlock;
 import net.momirealms.customcrops.api.util.TagUtils;
 import org.jetbrains.annotations.ApiStatus;
@@ -56,5 +57,48 @@ public interface CustomCropsBlockState extends DataBlock {
     @ApiStatus.Internal
     byte[] getNBTDataAsBytes();
 
+    /**
+     * Creates a copy of this block state holding the same data.
+     * Implementations may share the data between the copies until one of them is modified.
+     *
+     * @return the copy
+     */
+    @ApiStatus.Internal
+    default CustomCropsBlockState copy() {
+        return create(type(), TagUtils.deepClone(toCompoundMap()));
+    }
+
+    /**
+     * Exports all the data of this block state into a new {@link CompoundMap}.
+     * Unlike {@link #compoundMap()}, the returned map is a snapshot and is only intended for serialization.
+     *
+     * @return the exported compound map
+     */
+    @ApiStatus.Internal
+    CompoundMap toCompoundMap();
+
+    /**
+     * Gets the number of modifications made to this block state, used to detect unsaved changes.
+     * The value only grows, but it's not guaranteed to grow by exactly one per modification.
+     *
+     * @return the modification count
+     */
+    @ApiStatus.Internal
+    default int modCount() {
+        return 0;
+    }
+
+    /**
+     * Retrieves an NBT tag for reading only. Unlike {@link #get(String)}, the tag might be shared with copies of this state,
+     * so it must not be modified.
+     *
+     * @param key The key of the tag to retrieve.
+     * @return The NBT tag associated with the key, or null if no tag is found.
+     */
+    @ApiStatus.Internal
+    default Tag<?> peek(String key) {
+        return get(key);
+    }
+
     String asString();
 }
@@ -17,23 +17,191 @@
 
 package net.momirealms.customcrops.api.core.world;
 
-import com.flowpowered.nbt.CompoundMap;
-import com.flowpowered.nbt.CompoundTag;
-import com.flowpowered.nbt.Tag;
-import com.flowpowered.nbt.stream.NBTInputStream;
+import com.flowpowered.nbt.*;
 import net.momirealms.customcrops.api.core.SynchronizedCompoundMap;
 import net.momirealms.customcrops.api.core.block.CustomCropsBlock;
 import net.momirealms.customcrops.api.util.TagUtils;
+import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static net.momirealms.customcrops.api.util.VarIntUtils.readSignedVarInt;
+import static net.momirealms.customcrops.api.util.VarIntUtils.readVarInt;
+import static net.momirealms.customcrops.api.util.VarIntUtils.writeSignedVarInt;
+import static net.momirealms.customcrops.api.util.VarIntUtils.writeVarInt;
+
+/**
+ * Default implementation of {@link CustomCropsBlockState}.
+ * <p>
+ * The well known fields (key, point, water, tick and fertilizers) are stored in typed slots,
+ * so reading or updating them neither allocates tags nor takes a lock. Other tags are kept in
+ * a lazily created {@link CompoundMap} guarded by this object's monitor.
+ * A {@link CompoundMap} is only built when the state is serialized or when the original map of {@link #compoundMap()} is requested.
+ * <p>
+ * Copies made by {@link #copy()} share the fertilizers and the other tags with the original state
+ * until one of them is about to modify them, so identical blocks loaded from a chunk don't each hold a deep clone.
+ * Mutable tags returned by {@link #get(String)} count as about to be modified, while {@link #peek(String)} keeps them shared.
+ */
 public class CustomCropsBlockStateImpl implements CustomCropsBlockState {
 
-    private final SynchronizedCompoundMap compoundMap;
+    // marks an int slot as absent
+    private static final int ABSENT = Integer.MIN_VALUE;
+
+    // flags of the slots present in the compact binary format
+    private static final int HAS_KEY = 1;
+    private static final int HAS_POINT = 1 << 1;
+    private static final int HAS_WATER = 1 << 2;
+    private static final int HAS_TICK = 1 << 3;
+    private static final int HAS_FERTILIZERS = 1 << 4;
+    private static final int HAS_EXTRA = 1 << 5;
+
+    private static final VarHandle POINT;
+    private static final VarHandle WATER;
+    private static final VarHandle TICK;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            POINT = lookup.findVarHandle(CustomCropsBlockStateImpl.class, "point", int.class);
+            WATER = lookup.findVarHandle(CustomCropsBlockStateImpl.class, "water", int.class);
+            TICK = lookup.findVarHandle(CustomCropsBlockStateImpl.class, "tick", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     private final CustomCropsBlock owner;
+    private volatile String key;
+    private volatile int point = ABSENT;
+    private volatile int water = ABSENT;
+    private volatile int tick = ABSENT;
+    private volatile Tag<?> fertilizers;
+    // tags that are not in the schema, null if there's none
+    private volatile CompoundMap extra;
+    // whether fertilizers and extra might be shared with copies of this state, guarded by this object's monitor
+    private boolean shared;
+    // racing increments might be lost, which is fine as long as the value changes
+    private volatile int modCount;
+    // created on first use of compoundMap()
+    private volatile View view;
+    // write counter of the chunk holding this state, null if the state isn't in a chunk
+    private volatile AtomicLong chunkWrites;
 
     protected CustomCropsBlockStateImpl(CustomCropsBlock owner, CompoundMap compoundMap) {
-        this.compoundMap = new SynchronizedCompoundMap(compoundMap);
         this.owner = owner;
+        for (Map.Entry<String, Tag<?>> entry : compoundMap.entrySet()) {
+            set(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private CustomCropsBlockStateImpl(CustomCropsBlock owner) {
+        this.owner = owner;
+    }
+
+    /**
+     * Reads a block state written by {@link #writeData(DataOutput)} or {@link #writeData(CompoundMap, DataOutput)}.
+     *
+     * @param owner the block type
+     * @param in the input
+     * @return the block state
+     */
+    @ApiStatus.Internal
+    public static CustomCropsBlockStateImpl readData(CustomCropsBlock owner, DataInput in) throws IOException {
+        CustomCropsBlockStateImpl state = new CustomCropsBlockStateImpl(owner);
+        int flags = in.readUnsignedByte();
+        if ((flags & HAS_KEY) != 0) state.key = in.readUTF();
+        if ((flags & HAS_POINT) != 0) state.point = readSignedVarInt(in);
+        if ((flags & HAS_WATER) != 0) state.water = readSignedVarInt(in);
+        if ((flags & HAS_TICK) != 0) state.tick = readSignedVarInt(in);
+        if ((flags & HAS_FERTILIZERS) != 0) {
+            state.fertilizers = readCompoundTag(in).getValue().get("fertilizers");
+        }
+        if ((flags & HAS_EXTRA) != 0) {
+            for (Map.Entry<String, Tag<?>> entry : readCompoundTag(in).getValue().entrySet()) {
+                state.setTag(entry.getKey(), entry.getValue());
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Writes the data of this block state in the compact binary format used by chunk payloads.
+     * The well known fields are written as varints, only the other tags are written as NBT.
+     *
+     * @param out the output
+     */
+    @ApiStatus.Internal
+    public void writeData(DataOutput out) throws IOException {
+        String key = this.key;
+        int point = this.point;
+        int water = this.water;
+        int tick = this.tick;
+        Tag<?> fertilizers = this.fertilizers;
+        CompoundMap extra;
+        synchronized (this) {
+            extra = this.extra == null ? null : new CompoundMap(this.extra);
+        }
+        int flags = (key != null ? HAS_KEY : 0)
+                | (point != ABSENT ? HAS_POINT : 0)
+                | (water != ABSENT ? HAS_WATER : 0)
+                | (tick != ABSENT ? HAS_TICK : 0)
+                | (fertilizers != null ? HAS_FERTILIZERS : 0)
+                | (extra != null ? HAS_EXTRA : 0);
+        out.writeByte(flags);
+        if (key != null) out.writeUTF(key);
+        if (point != ABSENT) writeSignedVarInt(out, point);
+        if (water != ABSENT) writeSignedVarInt(out, water);
+        if (tick != ABSENT) writeSignedVarInt(out, tick);
+        if (fertilizers != null) {
+            CompoundMap map = new CompoundMap();
+            map.put("fertilizers", fertilizers);
+            writeTag(out, new CompoundTag("", map));
+        }
+        if (extra != null) writeTag(out, new CompoundTag("", extra));
+    }
+
+    /**
+     * Writes the data of any block state in the compact binary format, as NBT.
+     *
+     * @param data the data of the block state
+     * @param out the output
+     */
+    @ApiStatus.Internal
+    public static void writeData(CompoundMap data, DataOutput out) throws IOException {
+        out.writeByte(HAS_EXTRA);
+        writeTag(out, new CompoundTag("", data));
+    }
+
+    /**
+     * Creates a copy of this block state. The tags are shared with this state until either of them modifies them.
+     *
+     * @return the copy
+     */
+    @ApiStatus.Internal
+    @Override
+    public CustomCropsBlockStateImpl copy() {
+        CustomCropsBlockStateImpl copy = new CustomCropsBlockStateImpl(owner);
+        copy.key = this.key;
+        copy.point = this.point;
+        copy.water = this.water;
+        copy.tick = this.tick;
+        synchronized (this) {
+            if (this.fertilizers != null || this.extra != null) {
+                copy.fertilizers = this.fertilizers;
+                copy.extra = this.extra;
+                copy.shared = true;
+                this.shared = true;
+            }
+        }
+        return copy;
     }
 
     @NotNull
@@ -44,38 +212,316 @@ public class CustomCropsBlockStateImpl implements CustomCropsBlockState {
 
     @Override
     public byte[] getNBTDataAsBytes() {
-        return TagUtils.toBytes(new CompoundTag("data", compoundMap.originalMap()));
+        return TagUtils.toBytes(new CompoundTag("data", toCompoundMap()));
+    }
+
+    @Override
+    public CompoundMap toCompoundMap() {
+        CompoundMap map = new CompoundMap();
+        String key = this.key;
+        if (key != null) map.put(new StringTag("key", key));
+        int point = this.point;
+        if (point != ABSENT) map.put(new IntTag("point", point));
+        int water = this.water;
+        if (water != ABSENT) map.put(new IntTag("water", water));
+        int tick = this.tick;
+        if (tick != ABSENT) map.put(new IntTag("tick", tick));
+        Tag<?> fertilizers = this.fertilizers;
+        if (fertilizers != null) map.put("fertilizers", fertilizers);
+        synchronized (this) {
+            if (extra != null) map.putAll(extra);
+        }
+        return map;
+    }
+
+    @Override
+    public int modCount() {
+        return modCount;
+    }
+
+    /**
+     * Attaches this block state to the write counter of the chunk holding it. Every modification of the state increments it.
+     *
+     * @param chunkWrites the write counter of the chunk
+     */
+    @ApiStatus.Internal
+    public void attach(AtomicLong chunkWrites) {
+        this.chunkWrites = chunkWrites;
+    }
+
+    /**
+     * Detaches this block state from the write counter of a chunk, if it's still attached to it.
+     *
+     * @param chunkWrites the write counter of the chunk
+     */
+    @ApiStatus.Internal
+    public void detach(AtomicLong chunkWrites) {
+        if (this.chunkWrites == chunkWrites) {
+            this.chunkWrites = null;
+        }
+    }
+
+    private void modified() {
+        modCount++;
+        AtomicLong chunkWrites = this.chunkWrites;
+        if (chunkWrites != null) {
+            chunkWrites.incrementAndGet();
+        }
     }
 
     @Override
     public String asString() {
-        return owner.type().asString() + compoundMap.asString();
+        return owner.type().asString() + compoundMap().asString();
     }
 
     @Override
     public Tag<?> set(String key, Tag<?> tag) {
-        return compoundMap.put(key, tag);
+        Tag<?> previous = setTag(key, tag);
+        modified();
+        return previous;
+    }
+
+    private Tag<?> setTag(String key, Tag<?> tag) {
+        Tag<?> previous = get(key);
+        switch (key) {
+            case "key" -> {
+                if (tag instanceof StringTag stringTag) {
+                    this.key = stringTag.getValue();
+                    removeExtra(key);
+                    return previous;
+                }
+                this.key = null;
+            }
+            case "point", "water", "tick" -> {
+                if (tag instanceof IntTag intTag && intTag.getValue() != ABSENT) {
+                    intSlot(key).setVolatile(this, intTag.getValue());
+                    removeExtra(key);
+                    return previous;
+                }
+                intSlot(key).setVolatile(this, ABSENT);
+            }
+            case "fertilizers" -> {
+                synchronized (this) {
+                    this.fertilizers = tag;
+                }
+                removeExtra(key);
+                return previous;
+            }
+        }
+        synchronized (this) {
+            unshare();
+            if (extra == null) extra = new CompoundMap();
+            extra.put(key, tag);
+        }
+        return previous;
     }
 
     @Override
     public Tag<?> get(String key) {
-        return compoundMap.get(key);
+        return get(key, true);
+    }
+
+    @Override
+    public Tag<?> peek(String key) {
+        return get(key, false);
+    }
+
+    // the tags that might be modified in place by the caller are unshared first
+    private Tag<?> get(String key, boolean mutable) {
+        switch (key) {
+            case "key" -> {
+                String value = this.key;
+                if (value != null) return new StringTag(key, value);
+            }
+            case "point", "water", "tick" -> {
+                int value = (int) intSlot(key).getVolatile(this);
+                if (value != ABSENT) return new IntTag(key, value);
+            }
+            case "fertilizers" -> {
+                if (!mutable) return fertilizers;
+                synchronized (this) {
+                    if (fertilizers != null) unshare();
+                    return fertilizers;
+                }
+            }
+        }
+        synchronized (this) {
+            if (extra == null) return null;
+            Tag<?> tag = extra.get(key);
+            if (mutable && tag != null && shared && isMutable(tag)) {
+                unshare();
+                tag = extra.get(key);
+            }
+            return tag;
+        }
     }
 
     @Override
     public Tag<?> remove(String key) {
-        return compoundMap.remove(key);
+        Tag<?> previous = get(key);
+        switch (key) {
+            case "key" -> this.key = null;
+            case "point", "water", "tick" -> intSlot(key).setVolatile(this, ABSENT);
+            case "fertilizers" -> {
+                synchronized (this) {
+                    this.fertilizers = null;
+                }
+            }
+        }
+        removeExtra(key);
+        modified();
+        return previous;
     }
 
+    @Override
+    public int getInt(String key, int def) {
+        VarHandle slot = intSlot(key);
+        if (slot != null) {
+            int value = (int) slot.getVolatile(this);
+            if (value != ABSENT) return value;
+        }
+        return CustomCropsBlockState.super.getInt(key, def);
+    }
+
+    @Override
+    public void setInt(String key, int value) {
+        VarHandle slot = intSlot(key);
+        if (slot == null || value == ABSENT) {
+            CustomCropsBlockState.super.setInt(key, value);
+            return;
+        }
+        slot.setVolatile(this, value);
+        if (extra != null) removeExtra(key);
+        modified();
+    }
+
+    @Override
+    public boolean compareAndSetInt(String key, int expected, int value) {
+        VarHandle slot = intSlot(key);
+        if (slot == null || value == ABSENT) {
+            return CustomCropsBlockState.super.compareAndSetInt(key, expected, value);
+        }
+        while (true) {
+            int current = (int) slot.getVolatile(this);
+            if (current == ABSENT) {
+                // the value might be stored as a tag of another type
+                if (expected != 0 || CustomCropsBlockState.super.getInt(key, 0) != 0) return false;
+            } else if (current != expected) {
+                return false;
+            }
+            if (slot.compareAndSet(this, current, value)) {
+                if (extra != null) removeExtra(key);
+                modified();
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public String getString(String key, String def) {
+        if (key.equals("key")) {
+            String value = this.key;
+            if (value != null) return value;
+        }
+        return CustomCropsBlockState.super.getString(key, def);
+    }
+
+    @Override
+    public void setString(String key, String value) {
+        if (key.equals("key") && value != null) {
+            this.key = value;
+            if (extra != null) removeExtra(key);
+            modified();
+            return;
+        }
+        CustomCropsBlockState.super.setString(key, value);
+    }
+
+    /**
+     * Gets a view of this block state's data. The view is backed by this block state and created once per state.
+     * {@link SynchronizedCompoundMap#originalMap()} on it returns a copy of the current tags whose
+     * put and remove methods also write through to this block state.
+     *
+     * @return the compound map view
+     */
     @Override
     public SynchronizedCompoundMap compoundMap() {
-        return compoundMap;
+        View view = this.view;
+        if (view == null) {
+            synchronized (this) {
+                view = this.view;
+                if (view == null) {
+                    view = new View();
+                    this.view = view;
+                }
+            }
+        }
+        return view;
+    }
+
+    private static VarHandle intSlot(String key) {
+        return switch (key) {
+            case "point" -> POINT;
+            case "water" -> WATER;
+            case "tick" -> TICK;
+            default -> null;
+        };
+    }
+
+    private static void writeTag(DataOutput out, Tag<?> tag) throws IOException {
+        byte[] bytes = TagUtils.toBytes(tag);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static CompoundTag readCompoundTag(DataInput in) throws IOException {
+        int length = readVarInt(in);
+        if (length < 0 || (in instanceof InputStream stream && length > stream.available())) {
+            throw new IOException("Invalid tag length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        Tag<?> tag;
+        try {
+            tag = TagUtils.fromBytes(bytes);
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupted tag", e);
+        }
+        if (!(tag instanceof CompoundTag compoundTag)) {
+            throw new IOException("Expected a compound tag but found " + tag);
+        }
+        return compoundTag;
+    }
+
+    private void removeExtra(String key) {
+        synchronized (this) {
+            if (extra != null && extra.containsKey(key)) {
+                unshare();
+                extra.remove(key);
+                if (extra.isEmpty()) extra = null;
+            }
+        }
+    }
+
+    // Gives this state its own tags before they are modified, must hold this object's monitor
+    private void unshare() {
+        if (!shared) return;
+        if (fertilizers != null) fertilizers = fertilizers.clone();
+        if (extra != null) extra = TagUtils.deepClone(extra);
+        shared = false;
+    }
+
+    private static boolean isMutable(Tag<?> tag) {
+        return switch (tag.getType()) {
+            case TAG_END, TAG_BYTE, TAG_SHORT, TAG_INT, TAG_LONG, TAG_FLOAT, TAG_DOUBLE, TAG_STRING -> false;
+            default -> true;
+        };
     }
 
     @Override
     public String toString() {
         return "CustomCropsBlockState{" + owner.type().asString() +
-                compoundMap.asString() + "}";
+                compoundMap().asString() + "}";
     }
 
     @Override
@@ -83,16 +529,142 @@ public class CustomCropsBlockStateImpl implements CustomCropsBlockState {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         CustomCropsBlockStateImpl that = (CustomCropsBlockStateImpl) o;
-        return compoundMap.equals(that.compoundMap);
+        if (owner != that.owner
+                || point != that.point
+                || water != that.water
+                || tick != that.tick
+                || !Objects.equals(key, that.key)
+                || !Objects.equals(fertilizers, that.fertilizers)) {
+            return false;
+        }
+        CompoundMap extra;
+        synchronized (this) {
+            extra = this.extra == null ? null : new CompoundMap(this.extra);
+        }
+        synchronized (that) {
+            return Objects.equals(extra, that.extra);
+        }
     }
 
-    // Due to the defects of flownbt itself, hash efficiency is very low
     @Override
     public int hashCode() {
-        Tag<?> id = compoundMap.get("id");
-        if (id != null) {
-            return 7 * id.hashCode() + 13 * owner.type().hashCode();
+        return 7 * Objects.hashCode(key) + 13 * owner.type().hashCode();
+    }
+
+    private class View extends SynchronizedCompoundMap {
+
+        private View() {
+            // every access is redirected to the block state, so neither a wrapped map nor a lock is needed
+            super();
+        }
+
+        @Override
+        public CompoundMap originalMap() {
+            return new WriteThroughMap(toCompoundMap());
+        }
+
+        @Override
+        public Tag<?> get(String key) {
+            return CustomCropsBlockStateImpl.this.get(key);
+        }
+
+        @Override
+        public Tag<?> put(String key, Tag<?> tag) {
+            return CustomCropsBlockStateImpl.this.set(key, tag);
+        }
+
+        @Override
+        public Tag<?> remove(String key) {
+            return CustomCropsBlockStateImpl.this.remove(key);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof SynchronizedCompoundMap that)) return false;
+            return toCompoundMap().equals(that.originalMap());
+        }
+
+        @Override
+        public int hashCode() {
+            return CustomCropsBlockStateImpl.this.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return compoundMapToString("NBTData", toCompoundMap());
+        }
+
+        @Override
+        public String asString() {
+            return compoundMapToString("", toCompoundMap());
+        }
+    }
+
+    /**
+     * A copy of the tags that applies put and remove to the block state as well, so code written against
+     * the previous map based implementation doesn't silently lose its changes.
+     * The key, value and entry views and the iterator are unmodifiable, as their changes couldn't be written through.
+     */
+    private class WriteThroughMap extends CompoundMap {
+
+        // false while the super constructor copies the initial tags
+        private final boolean attached;
+
+        private WriteThroughMap(CompoundMap initial) {
+            super(initial);
+            this.attached = true;
+        }
+
+        @Override
+        public Tag<?> put(Tag<?> tag) {
+            return put(tag.getName(), tag);
+        }
+
+        @Override
+        public Tag<?> put(String key, Tag<?> tag) {
+            Tag<?> previous = super.put(key, tag);
+            return attached ? CustomCropsBlockStateImpl.this.set(key, tag) : previous;
+        }
+
+        @Override
+        public void putAll(Map<? extends String, ? extends Tag<?>> map) {
+            for (Map.Entry<? extends String, ? extends Tag<?>> entry : map.entrySet()) {
+                put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        @Override
+        public Tag<?> remove(Object key) {
+            Tag<?> previous = super.remove(key);
+            return attached && key instanceof String string ? CustomCropsBlockStateImpl.this.remove(string) : previous;
+        }
+
+        @Override
+        public void clear() {
+            for (String key : new ArrayList<>(keySet())) {
+                remove(key);
+            }
+        }
+
+        @Override
+        public Set<String> keySet() {
+            return Collections.unmodifiableSet(super.keySet());
+        }
+
+        @Override
+        public Collection<Tag<?>> values() {
+            return Collections.unmodifiableCollection(super.values());
+        }
+
+        @Override
+        public Set<Map.Entry<String, Tag<?>>> entrySet() {
+            return Collections.unmodifiableSet(super.entrySet());
+        }
+
+        @Override
+        public Iterator<Tag<?>> iterator() {
+            return Collections.unmodifiableCollection(super.values()).iterator();
         }
-        return owner.type().hashCode();
     }
 }
@@ -17,8 +17,10 @@
 
 package net.momirealms.customcrops.api.core.world;
 
+import net.momirealms.customcrops.api.core.block.CustomCropsBlock;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Map;
 import java.util.Optional;
 import java.util.PriorityQueue;
 import java.util.Set;
@@ -219,15 +221,25 @@ public interface CustomCropsChunk {
     boolean isOfflineTaskNotified();
 
     /**
-     * notify offline tasks
+     * Notifies offline tasks. The ticks missed while the chunk was unloaded are caught up
+     * by the next {@link #timer()} of this chunk, before its regular tick.
      */
     void notifyOfflineTask();
 
     /**
-     * Gets the queue of delayed tick tasks for this chunk.
+     * Gets the timing wheel of scheduled ticks for this chunk.
+     *
+     * @return The {@link TickTimingWheel} of this chunk.
+     */
+    TickTimingWheel tickTimingWheel();
+
+    /**
+     * Gets a snapshot of the delayed tick tasks for this chunk.
      *
      * @return A {@link PriorityQueue} of {@link DelayedTickTask}.
+     * @deprecated Scheduled ticks are stored in {@link #tickTimingWheel()}, modifying the returned queue has no effect.
      */
+    @Deprecated
     PriorityBlockingQueue<DelayedTickTask> tickTaskQueue();
 
     /**
@@ -236,4 +248,66 @@ public interface CustomCropsChunk {
      * @return A {@link Set} of {@link BlockPos} representing ticked blocks.
      */
     Set<BlockPos> tickedBlocks();
+
+    /**
+     * Gets the amount of blocks of the given type in this chunk.
+     * The amount is maintained incrementally, so this method does not iterate the blocks.
+     *
+     * @param type the block type
+     * @return the amount of blocks
+     */
+    int blockAmount(CustomCropsBlock type);
+
+    /**
+     * Gets the amount of blocks whose type is an instance of the given class in this chunk.
+     *
+     * @param clazz the class of the block type
+     * @return the amount of blocks
+     */
+    int blockAmount(Class<? extends CustomCropsBlock> clazz);
+
+    /**
+     * Gets a snapshot of the amount of blocks per block type in this chunk.
+     *
+     * @return A {@link Map} of {@link CustomCropsBlock} to the amount of blocks.
+     */
+    Map<CustomCropsBlock, Integer> blockAmounts();
+
+    /**
+     * Checks if there's any block whose type is an instance of the given class inside the box.
+     * The bounds are inclusive world coordinates, and only the part of the box inside this chunk is checked.
+     * Blocks whose type is {@link CustomCropsBlock#isSpatiallyIndexed() spatially indexed} are looked up without
+     * iterating the positions.
+     *
+     * @param clazz the class of the block type
+     * @param min the min corner of the box
+     * @param max the max corner of the box
+     * @return true if any block is found
+     */
+    boolean hasBlockInArea(Class<? extends CustomCropsBlock> clazz, Pos3 min, Pos3 max);
+
+    /**
+     * Gets a number that changes whenever this chunk or any of its block states is modified.
+     * Compare it with the stamp passed to {@link #markSaved(long)} to find out if the chunk has unsaved changes.
+     * The progress of the chunk timer alone doesn't change it, the saved progress is only used to spread the
+     * scheduled ticks after loading and doesn't have to be up to date.
+     *
+     * @return the modification stamp
+     */
+    long modificationStamp();
+
+    /**
+     * Checks if the chunk has been modified since it was last saved.
+     *
+     * @return true if the chunk has unsaved changes, false otherwise.
+     */
+    boolean isDirty();
+
+    /**
+     * Marks the chunk as saved. The stamp should be read with {@link #modificationStamp()} before serializing the chunk,
+     * so that changes made during the serialization are not lost.
+     *
+     * @param stamp the modification stamp read before saving
+     */
+    void markSaved(long stamp);
 }
@@ -17,6 +17,8 @@
 
 package net.momirealms.customcrops.api.core.world;
 
+import net.momirealms.customcrops.api.core.block.CustomCropsBlock;
+import net.momirealms.customcrops.api.misc.profiler.SamplingProfiler;
 import net.momirealms.customcrops.common.util.RandomUtils;
 import org.jetbrains.annotations.NotNull;
 
@@ -24,6 +26,8 @@ import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Stream;
 
 public class CustomCropsChunkImpl implements CustomCropsChunk {
@@ -31,8 +35,19 @@ public class CustomCropsChunkImpl implements CustomCropsChunk {
     private final CustomCropsWorld<?> world;
     private final ChunkPos chunkPos;
     private final ConcurrentHashMap<Integer, CustomCropsSection> loadedSections;
-    private final PriorityBlockingQueue<DelayedTickTask> queue;
+    private final TickTimingWheel wheel;
     private final Set<BlockPos> tickedBlocks;
+    // amount of blocks per block type, kept in sync with the sections
+    private final ConcurrentHashMap<CustomCropsBlock, AtomicInteger> blockCounts;
+    // positions of the spatially indexed blocks per block type
+    private final ConcurrentHashMap<CustomCropsBlock, ChunkColumnIndex> columnIndexes;
+    // bumped after every modification of the chunk itself or its block set
+    private final AtomicLong generation = new AtomicLong();
+    // incremented by every write to the block states of this chunk
+    private final AtomicLong stateWrites = new AtomicLong();
+    private volatile long savedStamp;
+    // offline seconds to catch up on the next timer, so that the catch-up runs where the chunk is ticked
+    private final AtomicInteger pendingCatchUp = new AtomicInteger();
     private long lastUnloadTime;
     private int loadedSeconds;
     private int lazySeconds;
@@ -45,12 +60,15 @@ public class CustomCropsChunkImpl implements CustomCropsChunk {
         this.world = world;
         this.chunkPos = chunkPos;
         this.loadedSections = new ConcurrentHashMap<>(16);
-        this.queue = new PriorityBlockingQueue<>();
+        this.wheel = new TickTimingWheel(world.setting().minTickUnit());
         this.lazySeconds = 0;
         this.tickedBlocks = Collections.synchronizedSet(new HashSet<>());
+        this.blockCounts = new ConcurrentHashMap<>(4);
+        this.columnIndexes = new ConcurrentHashMap<>(2);
         this.notified = true;
         this.isLoaded = false;
         this.updateLastUnloadTime();
+        this.savedStamp = modificationStamp();
     }
 
     protected CustomCropsChunkImpl(
@@ -59,7 +77,7 @@ public class CustomCropsChunkImpl implements CustomCropsChunk {
             int loadedSeconds,
             long lastUnloadTime,
             ConcurrentHashMap<Integer, CustomCropsSection> loadedSections,
-            PriorityBlockingQueue<DelayedTickTask> queue,
+            TickTimingWheel wheel,
             HashSet<BlockPos> tickedBlocks
     ) {
         this.world = world;
@@ -67,11 +85,20 @@ public class CustomCropsChunkImpl implements CustomCropsChunk {
         this.loadedSections = loadedSections;
         this.lastUnloadTime = lastUnloadTime;
         this.loadedSeconds = loadedSeconds;
-        this.queue = queue;
+        this.wheel = wheel;
         this.lazySeconds = 0;
         this.tickedBlocks = Collections.synchronizedSet(tickedBlocks);
+        this.blockCounts = new ConcurrentHashMap<>(4);
+        this.columnIndexes = new ConcurrentHashMap<>(2);
         this.notified = false;
         this.isLoaded = false;
+        for (CustomCropsSection section : loadedSections.values()) {
+            this.countBlocks(section, 1);
+            for (CustomCropsBlockState state : section.blocks()) {
+                this.attach(state);
+            }
+        }
+        this.savedStamp = modificationStamp();
     }
 
     @Override
@@ -137,6 +164,17 @@ public class CustomCropsChunkImpl implements CustomCropsChunk {
 
     @Override
     public void timer() {
+        int offlineSeconds = pendingCatchUp.getAndSet(0);
+        if (offlineSeconds > 0) {
+            long start = System.nanoTime();
+            catchUp(offlineSeconds);
+            world.metrics().offlineCatchUpTime().record(System.nanoTime() - start);
+            this.generation.incrementAndGet();
+        }
+        tick();
+    }
+
+    private void tick() {
         WorldSetting setting = world.setting();
         int interval = setting.minTickUnit();
         this.loadedSeconds++;
@@ -144,7 +182,7 @@ public class CustomCropsChunkImpl implements CustomCropsChunk {
         if (this.loadedSeconds >= interval) {
             this.loadedSeconds = 0;
             this.tickedBlocks.clear();
-            this.queue.clear();
+            this.wheel.clear(interval);
             this.arrangeTasks(interval);
         }
         scheduledTick(false);
@@ -154,31 +192,33 @@ public class CustomCropsChunkImpl implements CustomCropsChunk {
     private void arrangeTasks(int unit) {
         ThreadLocalRandom random = ThreadLocalRandom.current();
         for (CustomCropsSection section : loadedSections.values()) {
-            for (Map.Entry<BlockPos, CustomCropsBlockState> entry : section.blockMap().entrySet()) {
-                this.queue.add(new DelayedTickTask(
-                        random.nextInt(0, unit),
-                        entry.getKey()
-                ));
-                this.tickedBlocks.add(entry.getKey());
-            }
+            section.forEachBlock((position, state) -> {
+                this.wheel.schedule(random.nextInt(0, unit), position);
+                this.tickedBlocks.add(new BlockPos(position));
+            });
         }
     }
 
     private void scheduledTick(boolean offline) {
-        while (!queue.isEmpty() && queue.peek().getTime() <= loadedSeconds) {
-            DelayedTickTask task = queue.poll();
-            if (task != null) {
-                BlockPos pos = task.blockPos();
-                CustomCropsSection section = loadedSections.get(pos.sectionID());
-                if (section != null) {
-                    Optional<CustomCropsBlockState> block = section.getBlockState(pos);
-                    block.ifPresent(state -> state.type().scheduledTick(state, world, pos.toPos3(chunkPos), offline));
-                }
+        WorldMetrics metrics = world.metrics();
+        wheel.poll(loadedSeconds, position -> {
+            BlockPos pos = new BlockPos(position);
+            CustomCropsSection section = loadedSections.get(pos.sectionID());
+            if (section != null) {
+                Optional<CustomCropsBlockState> block = section.getBlockState(pos);
+                block.ifPresent(state -> {
+                    CustomCropsBlock type = state.type();
+                    metrics.recordScheduledTick(type);
+                    long start = SamplingProfiler.begin();
+                    type.scheduledTick(state, world, pos.toPos3(chunkPos), offline);
+                    if (start != SamplingProfiler.IDLE) SamplingProfiler.endBlock(type, state, start);
+                });
             }
-        }
+        });
     }
 
     private void randomTick(int randomTickSpeed, boolean offline) {
+        WorldMetrics metrics = world.metrics();
         ThreadLocalRandom random = ThreadLocalRandom.current();
         for (CustomCropsSection section : loadedSections.values()) {
             int sectionID = section.getSectionID();
@@ -189,7 +229,13 @@ public class CustomCropsChunkImpl implements CustomCropsChunk {
                 int z = random.nextInt(16);
                 BlockPos pos = new BlockPos(x,y,z);
                 Optional<CustomCropsBlockState> block = section.getBlockState(pos);
-                block.ifPresent(state -> state.type().randomTick(state, world, pos.toPos3(chunkPos), offline));
+                block.ifPresent(state -> {
+                    CustomCropsBlock type = state.type();
+                    metrics.recordRandomTick(type);
+                    long start = SamplingProfiler.begin();
+                    type.randomTick(state, world, pos.toPos3(chunkPos), offline);
+                    if (start != SamplingProfiler.IDLE) SamplingProfiler.endBlock(type, state, start);
+                });
             }
         }
     }
@@ -212,6 +258,7 @@ public class CustomCropsChunkImpl implements CustomCropsChunk {
     @Override
     public void updateLastUnloadTime() {
         this.lastUnloadTime = System.currentTimeMillis();
+        this.generation.incrementAndGet();
     }
 
     @Override
@@ -230,7 +277,13 @@ public class CustomCropsChunkImpl implements CustomCropsChunk {
     @Override
     public Optional<CustomCropsBlockState> removeBlockState(Pos3 location) {
         BlockPos pos = BlockPos.fromPos3(location);
-        return getLoadedSection(pos.sectionID()).flatMap(section -> section.removeBlockState(pos));
+        Optional<CustomCropsBlockState> previous = getLoadedSection(pos.sectionID()).flatMap(section -> section.removeBlockState(pos));
+        previous.ifPresent(state -> {
+            this.countBlock(state.type(), pos, -1);
+            this.detach(state);
+            this.generation.incrementAndGet();
+        });
+        return previous;
     }
 
     @NotNull
@@ -239,7 +292,15 @@ public class CustomCropsChunkImpl implements CustomCropsChunk {
         BlockPos pos = BlockPos.fromPos3(location);
         CustomCropsSection section = getSection(pos.sectionID());
         this.arrangeScheduledTickTaskForNewBlock(pos);
-        return section.addBlockState(pos, block);
+        Optional<CustomCropsBlockState> previous = section.addBlockState(pos, block);
+        previous.ifPresent(state -> {
+            this.countBlock(state.type(), pos, -1);
+            this.detach(state);
+        });
+        this.countBlock(block.type(), pos, 1);
+        this.attach(block);
+        this.generation.incrementAndGet();
+        return previous;
     }
 
     @NotNull
@@ -257,7 +318,7 @@ public class CustomCropsChunkImpl implements CustomCropsChunk {
     @Override
     public CustomCropsSection getSection(int sectionID) {
         return getLoadedSection(sectionID).orElseGet(() -> {
-           CustomCropsSection section = new CustomCropsSectionImpl(sectionID);
+           CustomCropsSection section = world.createSection(sectionID);
            this.loadedSections.put(sectionID, section);
            return section;
         });
@@ -270,7 +331,15 @@ public class CustomCropsChunkImpl implements CustomCropsChunk {
 
     @Override
     public Optional<CustomCropsSection> removeSection(int sectionID) {
-        return Optional.ofNullable(loadedSections.remove(sectionID));
+        Optional<CustomCropsSection> removed = Optional.ofNullable(loadedSections.remove(sectionID));
+        removed.ifPresent(section -> {
+            this.countBlocks(section, -1);
+            for (CustomCropsBlockState state : section.blocks()) {
+                this.detach(state);
+            }
+            this.generation.incrementAndGet();
+        });
+        return removed;
     }
 
     @Override
@@ -288,33 +357,129 @@ public class CustomCropsChunkImpl implements CustomCropsChunk {
         if (isOfflineTaskNotified()) return;
         this.notified = true;
         long current = System.currentTimeMillis();
-        int offlineTimeInSeconds = (int) (current - lastLoadedTime()) / 1000;
+        int offlineTimeInSeconds = (int) ((current - lastLoadedTime()) / 1000);
+        int seconds = Math.min(offlineTimeInSeconds, world.setting().maxOfflineTime());
+        if (seconds <= 0) return;
+        // the blocks might affect the neighbour chunks, so leave it to the timer, which is run by the area owning this chunk
+        pendingCatchUp.set(seconds);
+    }
+
+    /*
+     * Instead of replaying the offline time second by second, the time is split into slices at the
+     * boundaries of the scheduled tick cycles. In a whole cycle, every block receives exactly one
+     * scheduled tick, while the partial cycles at both ends are served by the timing wheel as usual.
+     * Random ticks are distributed by their expected amount per block. Each block then gets the ticks of
+     * a slice in aggregate if its mechanic supports fast-forwarding, or has them replayed otherwise.
+     * The whole catch-up is still bounded by the max loading time.
+     */
+    private void catchUp(int seconds) {
         WorldSetting setting = world.setting();
-        offlineTimeInSeconds = Math.min(offlineTimeInSeconds, setting.maxOfflineTime());
-        int minTickUnit = setting.minTickUnit();
+        int unit = setting.minTickUnit();
         int randomTickSpeed = setting.randomTickSpeed();
-        int threshold = setting.maxLoadingTime();
-        int i = 0;
-        long time1 = System.currentTimeMillis();
-        while (i < offlineTimeInSeconds) {
-            this.loadedSeconds++;
-            if (this.loadedSeconds >= minTickUnit) {
-                this.loadedSeconds = 0;
-                this.tickedBlocks.clear();
-                this.queue.clear();
-                this.arrangeTasks(minTickUnit);
+        long deadline = System.nanoTime() + setting.maxLoadingTime() * 1_000_000L;
+
+        // the rest of the current cycle
+        int head = Math.min(seconds, unit - 1 - this.loadedSeconds);
+        if (head > 0) {
+            HashMap<Integer, Integer> polled = new HashMap<>();
+            for (int i = 0; i < head; i++) {
+                wheel.poll(++this.loadedSeconds, position -> polled.merge(position, 1, Integer::sum));
+            }
+            seconds -= head;
+            if (!catchUpSlice(head, polled, randomTickSpeed, deadline)) return;
+        }
+
+        // whole cycles
+        if (seconds >= unit) {
+            this.tickedBlocks.clear();
+            this.wheel.clear(unit);
+            for (CustomCropsSection section : loadedSections.values()) {
+                section.forEachBlock((position, state) -> this.tickedBlocks.add(new BlockPos(position)));
+            }
+            this.loadedSeconds = unit - 1;
+            while (seconds >= unit) {
+                seconds -= unit;
+                if (!catchUpSlice(unit, null, randomTickSpeed, deadline)) return;
+            }
+        }
+
+        // the beginning of a new cycle
+        if (seconds > 0) {
+            this.tickedBlocks.clear();
+            this.wheel.clear(unit);
+            this.arrangeTasks(unit);
+            HashMap<Integer, Integer> polled = new HashMap<>();
+            for (int i = 0; i < seconds; i++) {
+                wheel.poll(i, position -> polled.merge(position, 1, Integer::sum));
             }
-            scheduledTick(true);
-            randomTick(randomTickSpeed, true);
-            i++;
-            if (System.currentTimeMillis() - time1 > threshold) {
-                break;
+            this.loadedSeconds = seconds - 1;
+            catchUpSlice(seconds, polled, randomTickSpeed, deadline);
+        }
+    }
+
+    /**
+     * Applies the offline ticks of a slice of time to all the blocks
+     *
+     * @param seconds         the length of the slice
+     * @param polled          the scheduled ticks per position, or null if every block is scheduled once
+     * @param randomTickSpeed the random tick speed
+     * @param deadline        the time in nanos to give up the catch-up
+     * @return false if the deadline is reached
+     */
+    private boolean catchUpSlice(int seconds, HashMap<Integer, Integer> polled, int randomTickSpeed, long deadline) {
+        WorldMetrics metrics = world.metrics();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        // expected random ticks per block, as each of the 4096 blocks in a section is equally likely to be picked
+        double expectedRandomTicks = (double) seconds * randomTickSpeed / 4096;
+        for (CustomCropsSection section : loadedSections.values()) {
+            if (System.nanoTime() - deadline > 0) {
+                return false;
             }
+            section.forEachBlock((position, state) -> {
+                int scheduledTicks = polled == null ? 1 : polled.getOrDefault(position, 0);
+                // unbiased rounding of the expected amount
+                int randomTicks = (int) expectedRandomTicks;
+                if (random.nextDouble() < expectedRandomTicks - randomTicks) {
+                    randomTicks++;
+                }
+                if (scheduledTicks == 0 && randomTicks == 0) return;
+
+                CustomCropsBlock type = state.type();
+                Pos3 location = new BlockPos(position).toPos3(chunkPos);
+                long start = SamplingProfiler.begin();
+                if (!type.fastForward(state, world, location, scheduledTicks, randomTicks)) {
+                    // interleave both kinds of ticks randomly as the timer would
+                    while (scheduledTicks > 0 || randomTicks > 0) {
+                        if (randomTicks == 0 || (scheduledTicks > 0 && random.nextInt(scheduledTicks + randomTicks) < scheduledTicks)) {
+                            scheduledTicks--;
+                            metrics.recordScheduledTick(type);
+                            type.scheduledTick(state, world, location, true);
+                        } else {
+                            randomTicks--;
+                            metrics.recordRandomTick(type);
+                            type.randomTick(state, world, location, true);
+                        }
+                    }
+                }
+                if (start != SamplingProfiler.IDLE) SamplingProfiler.endBlock(type, state, start);
+            });
         }
+        return true;
     }
 
     @Override
+    public TickTimingWheel tickTimingWheel() {
+        return wheel;
+    }
+
+    @Override
+    @Deprecated
     public PriorityBlockingQueue<DelayedTickTask> tickTaskQueue() {
+        int[] tasks = wheel.toArray();
+        PriorityBlockingQueue<DelayedTickTask> queue = new PriorityBlockingQueue<>(Math.max(11, tasks.length / 2));
+        for (int i = 0, size = tasks.length / 2; i < size; i++) {
+            queue.add(new DelayedTickTask(tasks[2 * i], new BlockPos(tasks[2 * i + 1])));
+        }
         return queue;
     }
 
@@ -323,13 +488,135 @@ public class CustomCropsChunkImpl implements CustomCropsChunk {
         return tickedBlocks;
     }
 
+    @Override
+    public int blockAmount(CustomCropsBlock type) {
+        AtomicInteger count = blockCounts.get(type);
+        return count == null ? 0 : count.get();
+    }
+
+    @Override
+    public int blockAmount(Class<? extends CustomCropsBlock> clazz) {
+        int amount = 0;
+        for (Map.Entry<CustomCropsBlock, AtomicInteger> entry : blockCounts.entrySet()) {
+            if (clazz.isAssignableFrom(entry.getKey().getClass())) {
+                amount += entry.getValue().get();
+            }
+        }
+        return amount;
+    }
+
+    @Override
+    public Map<CustomCropsBlock, Integer> blockAmounts() {
+        HashMap<CustomCropsBlock, Integer> amounts = new HashMap<>(blockCounts.size());
+        for (Map.Entry<CustomCropsBlock, AtomicInteger> entry : blockCounts.entrySet()) {
+            int amount = entry.getValue().get();
+            if (amount > 0) {
+                amounts.put(entry.getKey(), amount);
+            }
+        }
+        return amounts;
+    }
+
+    @Override
+    public long modificationStamp() {
+        return generation.get() + stateWrites.get();
+    }
+
+    private void attach(CustomCropsBlockState state) {
+        if (state instanceof CustomCropsBlockStateImpl impl) {
+            impl.attach(stateWrites);
+        }
+    }
+
+    private void detach(CustomCropsBlockState state) {
+        if (state instanceof CustomCropsBlockStateImpl impl) {
+            impl.detach(stateWrites);
+        }
+    }
+
+    @Override
+    public boolean isDirty() {
+        return modificationStamp() != savedStamp;
+    }
+
+    @Override
+    public void markSaved(long stamp) {
+        this.savedStamp = stamp;
+    }
+
+    @Override
+    public boolean hasBlockInArea(Class<? extends CustomCropsBlock> clazz, Pos3 min, Pos3 max) {
+        int baseX = chunkPos.x() * 16;
+        int baseZ = chunkPos.z() * 16;
+        int minX = Math.max(min.x() - baseX, 0);
+        int minZ = Math.max(min.z() - baseZ, 0);
+        int maxX = Math.min(max.x() - baseX, 15);
+        int maxZ = Math.min(max.z() - baseZ, 15);
+        if (minX > maxX || minZ > maxZ || min.y() > max.y()) {
+            return false;
+        }
+        for (Map.Entry<CustomCropsBlock, AtomicInteger> entry : blockCounts.entrySet()) {
+            CustomCropsBlock type = entry.getKey();
+            if (entry.getValue().get() <= 0 || !clazz.isAssignableFrom(type.getClass())) {
+                continue;
+            }
+            if (type.isSpatiallyIndexed()) {
+                ChunkColumnIndex index = columnIndexes.get(type);
+                if (index != null && index.contains(minX, min.y(), minZ, maxX, max.y(), maxZ)) {
+                    return true;
+                }
+                continue;
+            }
+            // not indexed, look up the positions one by one
+            for (int x = minX; x <= maxX; x++) {
+                for (int z = minZ; z <= maxZ; z++) {
+                    for (int y = min.y(); y <= max.y(); y++) {
+                        Optional<CustomCropsBlockState> state = getBlockState(new Pos3(baseX + x, y, baseZ + z));
+                        if (state.isPresent() && clazz.isAssignableFrom(state.get().type().getClass())) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private void countBlocks(CustomCropsSection section, int sign) {
+        section.forEachBlock((position, state) -> {
+            CustomCropsBlock type = state.type();
+            // only the indexed blocks need the position
+            this.countBlock(type, type.isSpatiallyIndexed() ? new BlockPos(position) : null, sign);
+        });
+    }
+
+    private void countBlock(CustomCropsBlock type, BlockPos pos, int delta) {
+        // entries are never removed as the amount of block types is tiny
+        blockCounts.computeIfAbsent(type, k -> new AtomicInteger()).addAndGet(delta);
+        if (pos != null) {
+            this.indexBlock(type, pos, delta);
+        }
+    }
+
+    private void indexBlock(CustomCropsBlock type, BlockPos pos, int delta) {
+        if (!type.isSpatiallyIndexed()) {
+            return;
+        }
+        ChunkColumnIndex index = columnIndexes.computeIfAbsent(type, k -> new ChunkColumnIndex());
+        if (delta > 0) {
+            index.add(pos.x(), pos.y(), pos.z());
+        } else {
+            index.remove(pos.x(), pos.y(), pos.z());
+        }
+    }
+
     private void arrangeScheduledTickTaskForNewBlock(BlockPos pos) {
         WorldSetting setting = world.setting();
         if (!tickedBlocks.contains(pos)) {
             tickedBlocks.add(pos);
             int random = RandomUtils.generateRandomInt(0, setting.minTickUnit() - 1);
             if (random > loadedSeconds) {
-                queue.add(new DelayedTickTask(random, pos));
+                wheel.schedule(random, pos.position());
             }
         }
     }
@@ -20,6 +20,7 @@ package net.momirealms.customcrops.api.core.world;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Interface representing a region in the CustomCrops plugin
@@ -59,6 +60,36 @@ public interface CustomCropsRegion {
      */
     byte[] getCachedChunkBytes(ChunkPos pos);
 
+    /**
+     * Gets a bitmap of the chunks that have cached data within this region.
+     * The bit at {@code (z & 31) << 5 | (x & 31)} is set if the chunk at x, z has data.
+     *
+     * @return the bitmap as an array of 16 longs, which is not backed by this region
+     */
+    long[] chunkBitmap();
+
+    /**
+     * Gets the index of a chunk in the bitmap of its region.
+     *
+     * @param pos The {@link ChunkPos} of the chunk.
+     * @return the index (0-1023)
+     */
+    static int chunkIndex(ChunkPos pos) {
+        return (pos.z() & 31) << 5 | (pos.x() & 31);
+    }
+
+    /**
+     * Checks if a chunk is set in a bitmap returned by {@link #chunkBitmap()}.
+     *
+     * @param bitmap the bitmap
+     * @param pos    The {@link ChunkPos} of the chunk.
+     * @return true if the chunk is set
+     */
+    static boolean hasChunk(long[] bitmap, ChunkPos pos) {
+        int index = chunkIndex(pos);
+        return (bitmap[index >> 6] & (1L << index)) != 0;
+    }
+
     /**
      * Gets the position of this region.
      *
@@ -96,4 +127,32 @@ public interface CustomCropsRegion {
      * @return true if the region can be pruned, false otherwise.
      */
     boolean canPrune();
+
+    /**
+     * Gets and clears the positions of the chunks whose cached data has been changed or removed since the last call.
+     *
+     * @return A {@link Set} of {@link ChunkPos} of the changed chunks.
+     */
+    Set<ChunkPos> drainChangedChunks();
+
+    /**
+     * Gets a number that changes whenever the cached chunk data of this region changes.
+     *
+     * @return the modification stamp
+     */
+    long modificationStamp();
+
+    /**
+     * Checks if the cached chunk data has changed since the region was last saved.
+     *
+     * @return true if the region has unsaved changes, false otherwise.
+     */
+    boolean isDirty();
+
+    /**
+     * Marks the region as saved.
+     *
+     * @param stamp the modification stamp read with {@link #modificationStamp()} before saving
+     */
+    void markSaved(long stamp);
 }
@@ -19,9 +19,9 @@ package net.momirealms.customcrops.api.core.world;
 
 import org.jetbrains.annotations.NotNull;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class CustomCropsRegionImpl implements CustomCropsRegion {
 
@@ -29,6 +29,11 @@ public class CustomCropsRegionImpl implements CustomCropsRegion {
     private final RegionPos regionPos;
     private final ConcurrentHashMap<ChunkPos, byte[]> cachedChunks;
     private boolean isLoaded = false;
+    // bumped after every change of the cached chunks
+    private final AtomicLong generation = new AtomicLong();
+    // chunks changed since the last save
+    private final Set<ChunkPos> changedChunks = ConcurrentHashMap.newKeySet();
+    private volatile long savedStamp;
 
     protected CustomCropsRegionImpl(CustomCropsWorld<?> world, RegionPos regionPos) {
         this.world = world;
@@ -76,6 +81,16 @@ public class CustomCropsRegionImpl implements CustomCropsRegion {
         return this.cachedChunks.get(pos);
     }
 
+    @Override
+    public long[] chunkBitmap() {
+        long[] bitmap = new long[16];
+        for (ChunkPos pos : this.cachedChunks.keySet()) {
+            int index = CustomCropsRegion.chunkIndex(pos);
+            bitmap[index >> 6] |= 1L << index;
+        }
+        return bitmap;
+    }
+
     @NotNull
     @Override
     public RegionPos regionPos() {
@@ -84,12 +99,21 @@ public class CustomCropsRegionImpl implements CustomCropsRegion {
 
     @Override
     public boolean removeCachedChunk(ChunkPos pos) {
-        return cachedChunks.remove(pos) != null;
+        if (cachedChunks.remove(pos) != null) {
+            this.changedChunks.add(pos);
+            this.generation.incrementAndGet();
+            return true;
+        }
+        return false;
     }
 
     @Override
     public void setCachedChunk(ChunkPos pos, byte[] data) {
-        this.cachedChunks.put(pos, data);
+        byte[] previous = this.cachedChunks.put(pos, data);
+        if (!Arrays.equals(previous, data)) {
+            this.changedChunks.add(pos);
+            this.generation.incrementAndGet();
+        }
     }
 
     @Override
@@ -101,4 +125,29 @@ public class CustomCropsRegionImpl implements CustomCropsRegion {
     public boolean canPrune() {
         return cachedChunks.isEmpty();
     }
+
+    @Override
+    public Set<ChunkPos> drainChangedChunks() {
+        HashSet<ChunkPos> drained = new HashSet<>();
+        for (Iterator<ChunkPos> iterator = changedChunks.iterator(); iterator.hasNext();) {
+            drained.add(iterator.next());
+            iterator.remove();
+        }
+        return drained;
+    }
+
+    @Override
+    public long modificationStamp() {
+        return generation.get();
+    }
+
+    @Override
+    public boolean isDirty() {
+        return generation.get() != savedStamp;
+    }
+
+    @Override
+    public void markSaved(long stamp) {
+        this.savedStamp = stamp;
+    }
 }
@@ -38,6 +38,17 @@ public interface CustomCropsSection {
         return new CustomCropsSectionImpl(sectionID);
     }
 
+    /**
+     * Creates a new instance of a memory efficient CustomCropsSection with the specified section ID.
+     * Blocks are stored in packed primitive arrays instead of a hash map.
+     *
+     * @param sectionID The ID of the section to create.
+     * @return A new {@link PackedCustomCropsSection} instance.
+     */
+    static CustomCropsSection createPacked(int sectionID) {
+        return new PackedCustomCropsSection(sectionID);
+    }
+
     /**
      * Restores an existing CustomCropsSection from the provided section ID and block states.
      *
@@ -100,8 +111,36 @@ public interface CustomCropsSection {
 
     /**
      * Gets a map of all block positions to their respective block states within this section.
+     * Prefer {@link #forEachBlock(BlockConsumer)} for iterating the blocks, as implementations might build the map on every call.
      *
      * @return A {@link Map} of {@link BlockPos} to {@link CustomCropsBlockState}.
      */
     Map<BlockPos, CustomCropsBlockState> blockMap();
+
+    /**
+     * Performs the action for each block within this section without building a map.
+     * The action may modify this section, in which case it might or might not receive the added blocks.
+     *
+     * @param action the action
+     */
+    default void forEachBlock(BlockConsumer action) {
+        for (Map.Entry<BlockPos, CustomCropsBlockState> entry : blockMap().entrySet()) {
+            action.accept(entry.getKey().position(), entry.getValue());
+        }
+    }
+
+    /**
+     * An action performed for each block of a section.
+     */
+    @FunctionalInterface
+    interface BlockConsumer {
+
+        /**
+         * Performs the action on a block.
+         *
+         * @param position the position of the block in the chunk, encoded like {@link BlockPos#position()}
+         * @param state    the block state
+         */
+        void accept(int position, CustomCropsBlockState state);
+    }
 }
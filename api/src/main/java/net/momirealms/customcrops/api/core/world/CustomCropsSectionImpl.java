@@ -75,4 +75,9 @@ public class CustomCropsSectionImpl implements CustomCropsSection {
     public Map<BlockPos, CustomCropsBlockState> blockMap() {
         return blocks;
     }
+
+    @Override
+    public void forEachBlock(BlockConsumer action) {
+        blocks.forEach((pos, state) -> action.accept(pos.position(), state));
+    }
 }
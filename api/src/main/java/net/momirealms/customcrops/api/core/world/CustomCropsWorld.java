@@ -17,13 +17,17 @@
 
 package net.momirealms.customcrops.api.core.world;
 
+import net.momirealms.customcrops.api.core.ConfigManager;
 import net.momirealms.customcrops.api.core.block.CustomCropsBlock;
 import net.momirealms.customcrops.api.core.world.adaptor.WorldAdaptor;
 import org.bukkit.World;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.HashSet;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.PriorityBlockingQueue;
 
@@ -56,6 +60,17 @@ public interface CustomCropsWorld<W> {
         return new CustomCropsChunkImpl(this, pos);
     }
 
+    /**
+     * Creates a new empty CustomCropsSection for chunks in this world.
+     * The implementation depends on the section storage type in the config.
+     *
+     * @param sectionID The ID of the section.
+     * @return The created {@link CustomCropsSection}.
+     */
+    default CustomCropsSection createSection(int sectionID) {
+        return ConfigManager.packedSectionStorage() ? CustomCropsSection.createPacked(sectionID) : CustomCropsSection.create(sectionID);
+    }
+
     /**
      * Restores a CustomCropsChunk with the specified parameters.
      *
@@ -66,7 +81,9 @@ public interface CustomCropsWorld<W> {
      * @param queue            The queue of delayed tick tasks.
      * @param tickedBlocks     The set of blocks that have been ticked.
      * @return The restored {@link CustomCropsChunk}.
+     * @deprecated Use {@link #restoreChunk(ChunkPos, int, long, ConcurrentHashMap, TickTimingWheel, HashSet)} instead.
      */
+    @Deprecated
     default CustomCropsChunk restoreChunk(
             ChunkPos pos,
             int loadedSeconds,
@@ -75,7 +92,33 @@ public interface CustomCropsWorld<W> {
             PriorityBlockingQueue<DelayedTickTask> queue,
             HashSet<BlockPos> tickedBlocks
     ) {
-        return new CustomCropsChunkImpl(this, pos, loadedSeconds, lastLoadedTime, loadedSections, queue, tickedBlocks);
+        TickTimingWheel wheel = new TickTimingWheel(setting().minTickUnit());
+        for (DelayedTickTask task : queue) {
+            wheel.schedule(task.getTime(), task.blockPos().position());
+        }
+        return restoreChunk(pos, loadedSeconds, lastLoadedTime, loadedSections, wheel, tickedBlocks);
+    }
+
+    /**
+     * Restores a CustomCropsChunk with the specified parameters.
+     *
+     * @param pos              The position of the chunk.
+     * @param loadedSeconds    The number of seconds the chunk has been loaded.
+     * @param lastLoadedTime   The last time the chunk was loaded.
+     * @param loadedSections   The sections loaded in this chunk.
+     * @param wheel            The timing wheel of scheduled ticks.
+     * @param tickedBlocks     The set of blocks that have been ticked.
+     * @return The restored {@link CustomCropsChunk}.
+     */
+    default CustomCropsChunk restoreChunk(
+            ChunkPos pos,
+            int loadedSeconds,
+            long lastLoadedTime,
+            ConcurrentHashMap<Integer, CustomCropsSection> loadedSections,
+            TickTimingWheel wheel,
+            HashSet<BlockPos> tickedBlocks
+    ) {
+        return new CustomCropsChunkImpl(this, pos, loadedSeconds, lastLoadedTime, loadedSections, wheel, tickedBlocks);
     }
 
     /**
@@ -99,6 +142,18 @@ public interface CustomCropsWorld<W> {
         return new CustomCropsRegionImpl(this, pos, cachedChunks);
     }
 
+    /**
+     * Restores a CustomCropsRegion that reads its chunks from a memory mapped region file.
+     *
+     * @param pos  The position of the region.
+     * @param file The region file, which might not exist yet.
+     * @return The restored {@link CustomCropsRegion}.
+     * @throws IOException If the region file can't be read.
+     */
+    default CustomCropsRegion restoreRegion(RegionPos pos, Path file) throws IOException {
+        return new MappedCustomCropsRegion(this, pos, file);
+    }
+
     /**
      * Gets the world adaptor associated with this world.
      *
@@ -125,7 +180,7 @@ public interface CustomCropsWorld<W> {
     boolean testChunkLimitation(Pos3 pos3, Class<? extends CustomCropsBlock> clazz, int amount);
 
     /**
-     * Checks if a chunk contains any blocks of a specific type.
+     * Checks if a chunk contains any blocks of a specific type. Only loaded chunks are checked.
      *
      * @param pos3  The position to check.
      * @param clazz The class of the block type.
@@ -142,6 +197,27 @@ public interface CustomCropsWorld<W> {
      */
     int getChunkBlockAmount(Pos3 pos3, Class<? extends CustomCropsBlock> clazz);
 
+    /**
+     * Checks if there's any block of a specific type inside the box. Only loaded chunks are checked,
+     * so this method never loads chunks.
+     *
+     * @param min   The min corner of the box (inclusive).
+     * @param max   The max corner of the box (inclusive).
+     * @param clazz The class of the block type.
+     * @return true if any block is found, false otherwise.
+     */
+    boolean hasBlockInArea(Pos3 min, Pos3 max, Class<? extends CustomCropsBlock> clazz);
+
+    /**
+     * Gets a bitmap of the chunks within a region that might have data, including the chunks in memory
+     * that haven't been written to the region yet. The region is read from the disk if it's not loaded,
+     * and kept loaded if it has any chunk data.
+     *
+     * @param regionPos The position of the region.
+     * @return the bitmap in the layout of {@link CustomCropsRegion#chunkBitmap()}
+     */
+    long[] chunkBitmap(RegionPos regionPos);
+
     /**
      * Gets all the loaded chunks in this world.
      *
@@ -174,6 +250,8 @@ public interface CustomCropsWorld<W> {
 
     /**
      * Gets the block state at a specific location.
+     * If the chunk has not been read yet, this waits for its pending read, or runs the read on the calling thread
+     * if it hasn't been started, so an empty result always means that there's no block state.
      *
      * @param location The location of the block state.
      * @return An {@link Optional} containing the block state if present, otherwise empty.
@@ -183,6 +261,7 @@ public interface CustomCropsWorld<W> {
 
     /**
      * Removes the block state at a specific location.
+     * Like {@link #getBlockState(Pos3)}, this shares the pending read of the chunk if it has not been read yet.
      *
      * @param location The location of the block state to remove.
      * @return An {@link Optional} containing the removed block state if present, otherwise empty.
@@ -270,6 +349,8 @@ public interface CustomCropsWorld<W> {
 
     /**
      * Gets a chunk from the cache or loads it from file if not cached.
+     * A pending read of the chunk is joined instead of reading it again, otherwise the file is read on the calling thread,
+     * so prefer {@link #getChunkAsync(ChunkPos)} on the main thread.
      *
      * @param chunkPos The position of the chunk.
      * @return An {@link Optional} containing the chunk if present, otherwise empty.
@@ -279,6 +360,8 @@ public interface CustomCropsWorld<W> {
 
     /**
      * Gets a chunk from the cache or loads it from file, creating a new one if it does not exist.
+     * The chunk is read like {@link #getChunk(ChunkPos)} before a new one is created,
+     * so prefer {@link #getOrCreateChunkAsync(ChunkPos)} on the main thread.
      *
      * @param chunkPos The position of the chunk.
      * @return The {@link CustomCropsChunk}.
@@ -286,6 +369,25 @@ public interface CustomCropsWorld<W> {
     @NotNull
     CustomCropsChunk getOrCreateChunk(ChunkPos chunkPos);
 
+    /**
+     * Gets a chunk from the cache or loads it from file on the I/O thread if not cached.
+     * Concurrent requests for the same chunk share the same read.
+     *
+     * @param chunkPos The position of the chunk.
+     * @return A {@link CompletableFuture} of an {@link Optional} containing the chunk if present, otherwise empty.
+     */
+    @NotNull
+    CompletableFuture<Optional<CustomCropsChunk>> getChunkAsync(ChunkPos chunkPos);
+
+    /**
+     * Gets a chunk from the cache or loads it from file on the I/O thread, creating a new one if it does not exist.
+     *
+     * @param chunkPos The position of the chunk.
+     * @return A {@link CompletableFuture} of the {@link CustomCropsChunk}.
+     */
+    @NotNull
+    CompletableFuture<CustomCropsChunk> getOrCreateChunkAsync(ChunkPos chunkPos);
+
     /**
      * Checks if a region is loaded in this world.
      *
@@ -321,11 +423,54 @@ public interface CustomCropsWorld<W> {
     @NotNull
     CustomCropsRegion getOrCreateRegion(RegionPos regionPos);
 
+    /**
+     * Loads a region on the I/O thread if it's not loaded, so that the chunks in it can be read without disk access.
+     * The request is dropped if the I/O queue is full.
+     *
+     * @param regionPos The position of the region.
+     */
+    void prefetchRegion(RegionPos regionPos);
+
     /**
      * Get the scheduler for this world
      *
      * @return the scheduler
      */
     WorldScheduler scheduler();
+
+    /**
+     * Get the tick timings of this world
+     *
+     * @return the tick timings
+     */
+    WorldTickTimings tickTimings();
+
+    /**
+     * Get the save statistics of this world
+     *
+     * @return the save statistics
+     */
+    WorldSaveStats saveStats();
+
+    /**
+     * Get the performance metrics of this world
+     *
+     * @return the metrics
+     */
+    WorldMetrics metrics();
+
+    /**
+     * Get the buffer of the model updates to apply on the main thread
+     *
+     * @return the model update buffer
+     */
+    ModelUpdateBuffer modelUpdateBuffer();
+
+    /**
+     * Get the cache of where water is in this world
+     *
+     * @return the nearby water cache
+     */
+    NearbyWaterCache nearbyWaterCache();
 }
 
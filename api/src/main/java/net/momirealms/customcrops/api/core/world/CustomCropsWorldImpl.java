@@ -18,7 +18,11 @@
 package net.momirealms.customcrops.api.core.world;
 
 import net.momirealms.customcrops.api.BukkitCustomCropsPlugin;
+import net.momirealms.customcrops.api.core.ConfigManager;
+import net.momirealms.customcrops.api.core.Registries;
 import net.momirealms.customcrops.api.core.block.CustomCropsBlock;
+import net.momirealms.customcrops.api.core.block.PotBlock;
+import net.momirealms.customcrops.api.core.mechanic.sprinkler.SprinklerConfig;
 import net.momirealms.customcrops.api.core.world.adaptor.WorldAdaptor;
 import net.momirealms.customcrops.common.helper.VersionHelper;
 import net.momirealms.customcrops.common.plugin.scheduler.SchedulerAdapter;
@@ -31,12 +35,11 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.lang.ref.WeakReference;
-import java.util.ArrayList;
-import java.util.Map;
-import java.util.Objects;
-import java.util.Optional;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class CustomCropsWorldImpl<W> implements CustomCropsWorld<W> {
 
@@ -53,6 +56,19 @@ public class CustomCropsWorldImpl<W> implements CustomCropsWorld<W> {
     private final WorldAdaptor<W> adaptor;
     private final WorldExtraData extraData;
     private final WorldScheduler scheduler;
+    private final WorldTickTimings tickTimings = new WorldTickTimings();
+    private final WorldSaveStats saveStats = new WorldSaveStats();
+    private final WorldMetrics metrics = new WorldMetrics();
+    private final WorldTickEngine tickEngine;
+    private final ModelUpdateBuffer modelUpdateBuffer;
+    private final NearbyWaterCache nearbyWaterCache;
+    // chunks that ran out of the tick budget, and the seconds they still need to catch up
+    private final ConcurrentHashMap<ChunkPos, Integer> carriedChunks = new ConcurrentHashMap<>();
+    // guards loading chunks and regions from the adaptor, so that no duplicated instances would be created by different threads
+    private final Object loadLock = new Object();
+    // chunks being read, shared by all the lookups of the same chunk
+    private final ConcurrentHashMap<ChunkPos, ChunkRead> pendingChunks = new ConcurrentHashMap<>();
+    private final Set<RegionPos> pendingRegions = ConcurrentHashMap.newKeySet();
 
     public CustomCropsWorldImpl(W world, WorldAdaptor<W> adaptor) {
         this.world = new WeakReference<>(world);
@@ -62,7 +78,10 @@ public class CustomCropsWorldImpl<W> implements CustomCropsWorld<W> {
         this.adaptor = adaptor;
         this.extraData = adaptor.loadExtraData(world);
         this.currentMinecraftDay = (int) (bukkitWorld().getFullTime() / 24_000);
-        this.scheduler = new WorldScheduler(BukkitCustomCropsPlugin.getInstance());
+        this.scheduler = new WorldScheduler(BukkitCustomCropsPlugin.getInstance(), ConfigManager.tickThreads(), ConfigManager.ioQueueSize());
+        this.tickEngine = new WorldTickEngine(this.scheduler, this.tickTimings, this::tick);
+        this.modelUpdateBuffer = new ModelUpdateBuffer(this);
+        this.nearbyWaterCache = new NearbyWaterCache(this);
     }
 
     @NotNull
@@ -79,34 +98,29 @@ public class CustomCropsWorldImpl<W> implements CustomCropsWorld<W> {
 
     @Override
     public boolean testChunkLimitation(Pos3 pos3, Class<? extends CustomCropsBlock> clazz, int amount) {
-        Optional<CustomCropsChunk> optional = getChunk(pos3.toChunkPos());
-        if (optional.isPresent()) {
-            int i = 0;
-            CustomCropsChunk chunk = optional.get();
-            for (CustomCropsSection section : chunk.sections()) {
-                for (CustomCropsBlockState state : section.blockMap().values()) {
-                    if (clazz.isAssignableFrom(state.type().getClass())) {
-                        i++;
-                        if (i >= amount) {
-                            return true;
-                        }
-                    }
-                }
-            }
-        }
-        return false;
+        int current = getChunkBlockAmount(pos3, clazz);
+        return current > 0 && current >= amount;
     }
 
     @Override
     public boolean doesChunkHaveBlock(Pos3 pos3, Class<? extends CustomCropsBlock> clazz) {
-        Optional<CustomCropsChunk> optional = getChunk(pos3.toChunkPos());
-        if (optional.isPresent()) {
-            CustomCropsChunk chunk = optional.get();
-            for (CustomCropsSection section : chunk.sections()) {
-                for (CustomCropsBlockState state : section.blockMap().values()) {
-                    if (clazz.isAssignableFrom(state.type().getClass())) {
-                        return true;
-                    }
+        // checked by the ticking blocks, so only the loaded chunks are looked up, without any lock
+        CustomCropsChunk chunk = this.loadedChunks.get(pos3.toChunkPos());
+        return chunk != null && chunk.blockAmount(clazz) > 0;
+    }
+
+    @Override
+    public int getChunkBlockAmount(Pos3 pos3, Class<? extends CustomCropsBlock> clazz) {
+        return getChunk(pos3.toChunkPos()).map(chunk -> chunk.blockAmount(clazz)).orElse(0);
+    }
+
+    @Override
+    public boolean hasBlockInArea(Pos3 min, Pos3 max, Class<? extends CustomCropsBlock> clazz) {
+        for (int x = min.x() >> 4, maxX = max.x() >> 4; x <= maxX; x++) {
+            for (int z = min.z() >> 4, maxZ = max.z() >> 4; z <= maxZ; z++) {
+                CustomCropsChunk chunk = this.loadedChunks.get(ChunkPos.of(x, z));
+                if (chunk != null && chunk.hasBlockInArea(clazz, min, max)) {
+                    return true;
                 }
             }
         }
@@ -114,22 +128,28 @@ public class CustomCropsWorldImpl<W> implements CustomCropsWorld<W> {
     }
 
     @Override
-    public int getChunkBlockAmount(Pos3 pos3, Class<? extends CustomCropsBlock> clazz) {
-        Optional<CustomCropsChunk> optional = getChunk(pos3.toChunkPos());
-        if (optional.isPresent()) {
-            int i = 0;
-            CustomCropsChunk chunk = optional.get();
-            for (CustomCropsSection section : chunk.sections()) {
-                for (CustomCropsBlockState state : section.blockMap().values()) {
-                    if (clazz.isAssignableFrom(state.type().getClass())) {
-                        i++;
-                    }
-                }
+    public long[] chunkBitmap(RegionPos regionPos) {
+        long[] bitmap = getLoadedRegion(regionPos)
+                .or(() -> getRegion(regionPos).map(region -> {
+                    // the chunks are likely to be read next, so don't read the region from the disk again
+                    if (!region.canPrune()) region.load();
+                    return region;
+                }))
+                .map(CustomCropsRegion::chunkBitmap)
+                .orElseGet(() -> new long[16]);
+        for (ChunkPos pos : this.loadedChunks.keySet()) {
+            if (RegionPos.getByChunkPos(pos).equals(regionPos)) {
+                int index = CustomCropsRegion.chunkIndex(pos);
+                bitmap[index >> 6] |= 1L << index;
             }
-            return i;
-        } else {
-            return 0;
         }
+        for (ChunkPos pos : this.lazyChunks.keySet()) {
+            if (RegionPos.getByChunkPos(pos).equals(regionPos)) {
+                int index = CustomCropsRegion.chunkIndex(pos);
+                bitmap[index >> 6] |= 1L << index;
+            }
+        }
+        return bitmap;
     }
 
     @Override
@@ -162,30 +182,56 @@ public class CustomCropsWorldImpl<W> implements CustomCropsWorld<W> {
     @NotNull
     @Override
     public Optional<CustomCropsBlockState> getBlockState(Pos3 location) {
-        ChunkPos pos = location.toChunkPos();
-        Optional<CustomCropsChunk> chunk = getChunk(pos);
-        if (chunk.isEmpty()) {
-            return Optional.empty();
-        } else {
-            CustomCropsChunk customChunk = chunk.get();
-            // to let the bukkit system trigger the ChunkUnloadEvent later
-            customChunk.load(true);
-            return customChunk.getBlockState(location);
-        }
+        return getAndLoadChunk(location.toChunkPos()).flatMap(chunk -> chunk.getBlockState(location));
     }
 
     @NotNull
     @Override
     public Optional<CustomCropsBlockState> removeBlockState(Pos3 location) {
-        ChunkPos pos = location.toChunkPos();
-        Optional<CustomCropsChunk> chunk = getChunk(pos);
-        if (chunk.isEmpty()) {
-            return Optional.empty();
+        return getAndLoadChunk(location.toChunkPos()).flatMap(chunk -> chunk.removeBlockState(location));
+    }
+
+    private Optional<CustomCropsChunk> getAndLoadChunk(ChunkPos pos) {
+        CustomCropsChunk chunk = this.loadedChunks.get(pos);
+        if (chunk != null) {
+            return Optional.of(chunk);
+        }
+        // an absent chunk must really be absent, since the callers create default states for missing blocks
+        return getChunk(pos).flatMap(candidate -> getAndLoadChunk(pos, candidate));
+    }
+
+    private Optional<CustomCropsChunk> getAndLoadChunk(ChunkPos pos, CustomCropsChunk candidate) {
+        synchronized (this.loadLock) {
+            CustomCropsChunk chunk = this.loadedChunks.get(pos);
+            if (chunk != null) {
+                return Optional.of(chunk);
+            }
+            candidate.load(false);
+        }
+        keepBukkitChunkLoaded(pos);
+        return Optional.of(candidate);
+    }
+
+    private boolean isOwnedByCurrentThread(ChunkPos pos) {
+        return VersionHelper.isFolia() ? Bukkit.isOwnedByCurrentRegion(bukkitWorld(), pos.x(), pos.z()) : Bukkit.isPrimaryThread();
+    }
+
+    /**
+     * Loads the bukkit chunk to let the bukkit system trigger the ChunkUnloadEvent later.
+     * Other threads hand it over to the thread owning the chunk instead of waiting for it,
+     * because that thread might be waiting for the I/O thread in turn.
+     */
+    private void keepBukkitChunkLoaded(ChunkPos pos) {
+        World bukkitWorld = bukkitWorld();
+        Runnable load = () -> {
+            if (!bukkitWorld.isChunkLoaded(pos.x(), pos.z())) {
+                bukkitWorld.getChunkAt(pos.x(), pos.z());
+            }
+        };
+        if (isOwnedByCurrentThread(pos)) {
+            load.run();
         } else {
-            CustomCropsChunk customChunk = chunk.get();
-            // to let the bukkit system trigger the ChunkUnloadEvent later
-            customChunk.load(true);
-            return customChunk.removeBlockState(location);
+            BukkitCustomCropsPlugin.getInstance().getScheduler().sync().run(load, bukkitWorld, pos.x(), pos.z());
         }
     }
 
@@ -200,7 +246,7 @@ public class CustomCropsWorldImpl<W> implements CustomCropsWorld<W> {
     @Override
     public void save(boolean async, boolean disabling) {
         if (async && !disabling) {
-            this.scheduler.async().execute(this::save);
+            this.scheduler.io().execute(this::save);
         } else {
             if (disabling) {
                 save();
@@ -211,54 +257,172 @@ public class CustomCropsWorldImpl<W> implements CustomCropsWorld<W> {
     }
 
     private void save() {
-        long time1 = System.currentTimeMillis();
+        long time1 = System.nanoTime();
         this.adaptor.saveExtraData(this);
+        int savedChunks = 0;
+        int skippedChunks = 0;
         for (CustomCropsChunk chunk : loadedChunks.values()) {
-            this.adaptor.saveChunk(this, chunk);
+            if (saveChunk(chunk)) savedChunks++;
+            else skippedChunks++;
         }
         for (CustomCropsChunk chunk : lazyChunks.values()) {
-            this.adaptor.saveChunk(this, chunk);
+            if (saveChunk(chunk)) savedChunks++;
+            else skippedChunks++;
         }
+        int savedRegions = 0;
+        int skippedRegions = 0;
         for (CustomCropsRegion region : loadedRegions.values()) {
-            this.adaptor.saveRegion(this, region);
+            if (saveRegion(region)) savedRegions++;
+            else skippedRegions++;
         }
-        long time2 = System.currentTimeMillis();
-        BukkitCustomCropsPlugin.getInstance().debug(() -> "Took " + (time2-time1) + "ms to save world " + worldName + ". Saved " + (lazyChunks.size() + loadedChunks.size()) + " chunks.");
+        long nanos = System.nanoTime() - time1;
+        this.saveStats.record(savedChunks, skippedChunks, savedRegions, skippedRegions, nanos);
+        int saved = savedChunks, skipped = skippedChunks;
+        BukkitCustomCropsPlugin.getInstance().debug(() -> "Took " + (nanos / 1_000_000) + "ms to save world " + worldName + ". Saved " + saved + " chunks, skipped " + skipped + " unchanged chunks.");
+    }
+
+    // serializes the chunk only if it has unsaved changes
+    private boolean saveChunk(CustomCropsChunk chunk) {
+        if (!chunk.isDirty()) {
+            return false;
+        }
+        long stamp = chunk.modificationStamp();
+        this.adaptor.saveChunk(this, chunk);
+        chunk.markSaved(stamp);
+        return true;
+    }
+
+    // writes the region only if its cached chunks have changed
+    private boolean saveRegion(CustomCropsRegion region) {
+        if (!region.isDirty()) {
+            return false;
+        }
+        long stamp = region.modificationStamp();
+        this.adaptor.saveRegion(this, region);
+        region.markSaved(stamp);
+        return true;
     }
 
     @Override
     public void setTicking(boolean tick) {
         if (tick) {
             if (this.tickTask == null || this.tickTask.isCancelled())
-                this.tickTask = this.scheduler.asyncRepeating(this::timer, 1, 1, TimeUnit.SECONDS);
+                this.tickTask = this.scheduler.schedulerRepeating(this.tickEngine::trigger, 1, 1, TimeUnit.SECONDS);
+            this.modelUpdateBuffer.start();
         } else {
             if (this.tickTask != null && !this.tickTask.isCancelled())
                 this.tickTask.cancel();
+            this.modelUpdateBuffer.stop();
         }
     }
 
-    private void timer() {
-        saveLazyChunks();
-        saveLazyRegions();
+    private void tick(int seconds) {
+        this.metrics.roll(loadedChunks.size(), lazyChunks.size());
+        saveLazyChunks(seconds);
+        saveLazyRegions(seconds);
         if (isANewDay()) {
             if (setting().autoSeasonChange()) {
                 updateSeasonAndDate();
             }
         }
         if (setting().enableScheduler()) {
-            tickChunks();
+            long time1 = System.nanoTime();
+            int threads = tickChunks(seconds);
+            long nanos = System.nanoTime() - time1;
+            this.tickTimings.record(nanos, loadedChunks.size(), threads);
+            this.metrics.tickTime().record(nanos);
+        } else {
+            this.carriedChunks.clear();
         }
     }
 
-    private void tickChunks() {
+    private int tickChunks(int seconds) {
         if (VersionHelper.isFolia()) {
             SchedulerAdapter<Location, World> scheduler = BukkitCustomCropsPlugin.getInstance().getScheduler();
             for (CustomCropsChunk chunk : loadedChunks.values()) {
-                scheduler.sync().run(chunk::timer, bukkitWorld(), chunk.chunkPos().x(), chunk.chunkPos().z());
+                scheduler.sync().run(() -> {
+                    for (int i = 0; i < seconds; i++) {
+                        chunk.timer();
+                    }
+                    this.metrics.chunksTicked().add(seconds);
+                }, bukkitWorld(), chunk.chunkPos().x(), chunk.chunkPos().z());
             }
-        } else {
-            for (CustomCropsChunk chunk : loadedChunks.values()) {
-                chunk.timer();
+            return 0;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ConfigManager.tickBudget());
+        // the chunks carried over from the last tick go first
+        this.carriedChunks.keySet().removeIf(pos -> !loadedChunks.containsKey(pos));
+        ArrayList<CustomCropsChunk> chunks = new ArrayList<>(loadedChunks.size());
+        for (ChunkPos pos : this.carriedChunks.keySet()) {
+            CustomCropsChunk chunk = loadedChunks.get(pos);
+            if (chunk != null) chunks.add(chunk);
+        }
+        for (CustomCropsChunk chunk : loadedChunks.values()) {
+            if (!this.carriedChunks.containsKey(chunk.chunkPos())) chunks.add(chunk);
+        }
+        if (this.scheduler.parallelism() <= 1) {
+            tickChunks(chunks, seconds, deadline);
+            this.tickTimings.recordCarried(this.carriedChunks.size());
+            return 1;
+        }
+        // Group the chunks by 8x8 areas and tick the areas in parallel. Blocks can read and modify the chunks around them,
+        // for instance sprinklers watering pots, pots looking for water and crops looking for scarecrows, so the chunks
+        // that might reach into another area are left out and ticked on this thread once all the areas are done.
+        int reach = crossChunkReach();
+        HashMap<Long, List<CustomCropsChunk>> areas = new HashMap<>();
+        ArrayList<CustomCropsChunk> borders = new ArrayList<>();
+        for (CustomCropsChunk chunk : chunks) {
+            ChunkPos pos = chunk.chunkPos();
+            int localX = pos.x() & 7;
+            int localZ = pos.z() & 7;
+            if (localX < reach || localX > 7 - reach || localZ < reach || localZ > 7 - reach) {
+                borders.add(chunk);
+                continue;
+            }
+            long key = ((long) (pos.x() >> 3) << 32) | ((pos.z() >> 3) & 0xFFFFFFFFL);
+            areas.computeIfAbsent(key, k -> new ArrayList<>()).add(chunk);
+        }
+        if (!areas.isEmpty()) {
+            this.scheduler.forEachParallel(areas.values(), area -> tickChunks(area, seconds, deadline));
+        }
+        tickChunks(borders, seconds, deadline);
+        this.tickTimings.recordCarried(this.carriedChunks.size());
+        return Math.max(1, Math.min(this.scheduler.parallelism(), areas.size()));
+    }
+
+    // How many chunks away a ticking block can read or modify other blocks, at least one for the blocks next to it.
+    // Crops only read the pots and greenhouse glass in their own column, which never reach another chunk.
+    private static int crossChunkReach() {
+        int blocks = Math.max(1, PotBlock.NEARBY_WATER_RANGE);
+        for (SprinklerConfig config : Registries.SPRINKLER) {
+            for (int[] offset : config.range()) {
+                blocks = Math.max(blocks, Math.max(Math.abs(offset[0]), Math.abs(offset[1])));
+            }
+        }
+        if (!ConfigManager.scarecrowProtectChunk()) {
+            blocks = Math.max(blocks, ConfigManager.scarecrowRange());
+        }
+        return (blocks + 15) >> 4;
+    }
+
+    private void tickChunks(List<CustomCropsChunk> chunks, int seconds, long deadline) {
+        int maxSeconds = ConfigManager.maxCatchUpSeconds();
+        for (CustomCropsChunk chunk : chunks) {
+            ChunkPos pos = chunk.chunkPos();
+            Integer carried = this.carriedChunks.remove(pos);
+            int total = carried == null ? seconds : Math.min(carried + seconds, maxSeconds);
+            // out of the budget, carry the chunk over to the next tick
+            if (System.nanoTime() - deadline > 0) {
+                this.carriedChunks.put(pos, total);
+                continue;
+            }
+            try {
+                for (int i = 0; i < total; i++) {
+                    chunk.timer();
+                }
+                this.metrics.chunksTicked().add(total);
+            } catch (Exception e) {
+                BukkitCustomCropsPlugin.getInstance().getPluginLogger().warn("[" + worldName + "] Failed to tick chunk " + pos, e);
             }
         }
     }
@@ -284,8 +448,8 @@ public class CustomCropsWorldImpl<W> implements CustomCropsWorld<W> {
         return false;
     }
 
-    private void saveLazyRegions() {
-        this.regionTimer++;
+    private void saveLazyRegions(int seconds) {
+        this.regionTimer += seconds;
         // To avoid the same timing as saving
         if (this.regionTimer >= 666) {
             this.regionTimer = 0;
@@ -301,11 +465,11 @@ public class CustomCropsWorldImpl<W> implements CustomCropsWorld<W> {
         }
     }
 
-    private void saveLazyChunks() {
+    private void saveLazyChunks(int seconds) {
         ArrayList<CustomCropsChunk> chunksToSave = new ArrayList<>();
         for (Map.Entry<ChunkPos, CustomCropsChunk> lazyEntry : this.lazyChunks.entrySet()) {
             CustomCropsChunk chunk = lazyEntry.getValue();
-            int sec = chunk.lazySeconds() + 1;
+            int sec = chunk.lazySeconds() + seconds;
             if (sec >= 30) {
                 chunksToSave.add(chunk);
             } else {
@@ -395,7 +559,7 @@ public class CustomCropsWorldImpl<W> implements CustomCropsWorld<W> {
         if (lazy) {
             this.lazyChunks.put(pos, chunk);
         } else {
-            this.adaptor.saveChunk(this, chunk);
+            saveChunk(chunk);
         }
         return true;
     }
@@ -408,7 +572,7 @@ public class CustomCropsWorldImpl<W> implements CustomCropsWorld<W> {
             if (lazy) {
                 this.lazyChunks.put(pos, removed);
             } else {
-                this.adaptor.saveChunk(this, removed);
+                saveChunk(removed);
             }
             return true;
         }
@@ -419,7 +583,7 @@ public class CustomCropsWorldImpl<W> implements CustomCropsWorld<W> {
     public boolean unloadLazyChunk(ChunkPos pos) {
         CustomCropsChunk removed = this.lazyChunks.remove(pos);
         if (removed != null) {
-            this.adaptor.saveChunk(this, removed);
+            saveChunk(removed);
             return true;
         }
         return false;
@@ -434,28 +598,133 @@ public class CustomCropsWorldImpl<W> implements CustomCropsWorld<W> {
     @NotNull
     @Override
     public Optional<CustomCropsChunk> getChunk(ChunkPos chunkPos) {
-        return Optional.ofNullable(getLoadedChunk(chunkPos).orElseGet(() -> {
-            CustomCropsChunk chunk = getLazyChunk(chunkPos);
-            if (chunk != null) {
-                return chunk;
-            }
-            return this.adaptor.loadChunk(this, chunkPos, false);
-        }));
+        CustomCropsChunk chunk = this.loadedChunks.get(chunkPos);
+        if (chunk == null) {
+            chunk = getLazyChunk(chunkPos);
+        }
+        if (chunk != null) {
+            return Optional.of(chunk);
+        }
+        // join the read of the chunk if there's one, or run it here if it hasn't been started yet
+        ChunkRead read = pendingRead(chunkPos);
+        read.run();
+        return read.join();
     }
 
     @NotNull
     @Override
     public CustomCropsChunk getOrCreateChunk(ChunkPos chunkPos) {
-        return Objects.requireNonNull(getLoadedChunk(chunkPos).orElseGet(() -> {
-            CustomCropsChunk chunk = getLazyChunk(chunkPos);
+        CustomCropsChunk chunk = this.loadedChunks.get(chunkPos);
+        if (chunk != null) {
+            return chunk;
+        }
+        // the saved chunk must be read before a new one could be created, through the same read as the other lookups
+        Optional<CustomCropsChunk> read = getChunk(chunkPos);
+        synchronized (this.loadLock) {
+            chunk = this.loadedChunks.get(chunkPos);
             if (chunk != null) {
                 return chunk;
             }
-            chunk = this.adaptor.loadChunk(this, chunkPos, true);
-            // to let the bukkit system trigger the ChunkUnloadEvent later
-            chunk.load(true);
-            return chunk;
-        }));
+            // the region has been cached by the read, so this doesn't access the disk again
+            chunk = read.orElseGet(() -> Objects.requireNonNull(this.adaptor.loadChunk(this, chunkPos, true)));
+            chunk.load(false);
+        }
+        keepBukkitChunkLoaded(chunkPos);
+        return chunk;
+    }
+
+    private ChunkRead pendingRead(ChunkPos chunkPos) {
+        ChunkRead read = new ChunkRead(chunkPos);
+        ChunkRead previous = this.pendingChunks.putIfAbsent(chunkPos, read);
+        return previous != null ? previous : read;
+    }
+
+    /**
+     * A read of a chunk from the adaptor, which is run only once by either the I/O thread or the first thread needing it.
+     */
+    private final class ChunkRead extends CompletableFuture<Optional<CustomCropsChunk>> implements Runnable {
+
+        private final ChunkPos chunkPos;
+        private final AtomicBoolean started = new AtomicBoolean();
+
+        private ChunkRead(ChunkPos chunkPos) {
+            this.chunkPos = chunkPos;
+        }
+
+        @Override
+        public void run() {
+            if (!this.started.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                CustomCropsChunk chunk;
+                synchronized (loadLock) {
+                    chunk = loadedChunks.get(this.chunkPos);
+                    if (chunk == null) {
+                        chunk = getLazyChunk(this.chunkPos);
+                    }
+                    if (chunk == null) {
+                        chunk = adaptor.loadChunk(CustomCropsWorldImpl.this, this.chunkPos, false);
+                    }
+                }
+                complete(Optional.ofNullable(chunk));
+            } catch (Throwable t) {
+                completeExceptionally(t);
+            } finally {
+                pendingChunks.remove(this.chunkPos, this);
+            }
+        }
+    }
+
+    @NotNull
+    @Override
+    public CompletableFuture<Optional<CustomCropsChunk>> getChunkAsync(ChunkPos chunkPos) {
+        CustomCropsChunk chunk = this.loadedChunks.get(chunkPos);
+        if (chunk == null) {
+            chunk = getLazyChunk(chunkPos);
+        }
+        if (chunk != null) {
+            return CompletableFuture.completedFuture(Optional.of(chunk));
+        }
+        ChunkRead read = new ChunkRead(chunkPos);
+        ChunkRead previous = this.pendingChunks.putIfAbsent(chunkPos, read);
+        if (previous != null) {
+            return previous;
+        }
+        // a full I/O queue must not put the read back on the calling thread, which is usually the main thread
+        if (!this.scheduler.tryIO(read)) {
+            this.scheduler.async().execute(read);
+        }
+        return read;
+    }
+
+    @NotNull
+    @Override
+    public CompletableFuture<CustomCropsChunk> getOrCreateChunkAsync(ChunkPos chunkPos) {
+        // the region has been read when the future completes, so no disk access happens in the callback,
+        // and the bukkit chunk is loaded on its own thread rather than on the I/O thread running the callback
+        return getChunkAsync(chunkPos).thenApply(chunk -> chunk
+                .flatMap(candidate -> getAndLoadChunk(chunkPos, candidate))
+                .orElseGet(() -> getOrCreateChunk(chunkPos)));
+    }
+
+    @Override
+    public void prefetchRegion(RegionPos regionPos) {
+        if (this.loadedRegions.containsKey(regionPos) || !this.pendingRegions.add(regionPos)) {
+            return;
+        }
+        boolean queued = this.scheduler.tryIO(() -> {
+            try {
+                getOrCreateRegion(regionPos);
+            } catch (Exception e) {
+                BukkitCustomCropsPlugin.getInstance().getPluginLogger().warn("[" + worldName + "] Failed to prefetch region " + regionPos, e);
+            } finally {
+                this.pendingRegions.remove(regionPos);
+            }
+        });
+        if (!queued) {
+            this.pendingRegions.remove(regionPos);
+        }
     }
 
     /*
@@ -490,13 +759,32 @@ public class CustomCropsWorldImpl<W> implements CustomCropsWorld<W> {
     @NotNull
     @Override
     public Optional<CustomCropsRegion> getRegion(RegionPos regionPos) {
-        return Optional.ofNullable(getLoadedRegion(regionPos).orElse(adaptor.loadRegion(this, regionPos, false)));
+        return Optional.ofNullable(getLoadedRegion(regionPos).orElseGet(() -> {
+            synchronized (this.loadLock) {
+                CustomCropsRegion region = this.loadedRegions.get(regionPos);
+                if (region != null) {
+                    return region;
+                }
+                return adaptor.loadRegion(this, regionPos, false);
+            }
+        }));
     }
 
     @NotNull
     @Override
     public CustomCropsRegion getOrCreateRegion(RegionPos regionPos) {
-        return Objects.requireNonNull(getLoadedRegion(regionPos).orElse(adaptor.loadRegion(this, regionPos, true)));
+        return Objects.requireNonNull(getLoadedRegion(regionPos).orElseGet(() -> {
+            synchronized (this.loadLock) {
+                CustomCropsRegion region = this.loadedRegions.get(regionPos);
+                if (region != null) {
+                    return region;
+                }
+                region = adaptor.loadRegion(this, regionPos, true);
+                // register the region before leaving the lock so that other threads would get the same instance
+                region.load();
+                return region;
+            }
+        }));
     }
 
     private boolean shouldUnloadRegion(RegionPos regionPos) {
@@ -532,7 +820,7 @@ public class CustomCropsWorldImpl<W> implements CustomCropsWorld<W> {
                 }
             }
         }
-        this.adaptor.saveRegion(this, region);
+        saveRegion(region);
         this.loadedRegions.remove(region.regionPos());
         BukkitCustomCropsPlugin.getInstance().debug(() -> "[" + worldName + "] " + "Region " + region.regionPos() + " unloaded.");
         return true;
@@ -542,4 +830,29 @@ public class CustomCropsWorldImpl<W> implements CustomCropsWorld<W> {
     public WorldScheduler scheduler() {
         return scheduler;
     }
+
+    @Override
+    public WorldTickTimings tickTimings() {
+        return tickTimings;
+    }
+
+    @Override
+    public WorldSaveStats saveStats() {
+        return saveStats;
+    }
+
+    @Override
+    public WorldMetrics metrics() {
+        return metrics;
+    }
+
+    @Override
+    public ModelUpdateBuffer modelUpdateBuffer() {
+        return modelUpdateBuffer;
+    }
+
+    @Override
+    public NearbyWaterCache nearbyWaterCache() {
+        return nearbyWaterCache;
+    }
 }
@@ -17,6 +17,8 @@
 
 package net.momirealms.customcrops.api.core.world;
 
+import com.flowpowered.nbt.IntTag;
+import com.flowpowered.nbt.StringTag;
 import com.flowpowered.nbt.Tag;
 import net.momirealms.customcrops.api.core.SynchronizedCompoundMap;
 
@@ -56,4 +58,73 @@ public interface DataBlock {
      * @return The {@link SynchronizedCompoundMap} containing the block's NBT data.
      */
     SynchronizedCompoundMap compoundMap();
+
+    /**
+     * Gets an int value from the data block.
+     *
+     * @param key The key of the value.
+     * @param def The default value if the key is absent or not an int tag.
+     * @return The int value.
+     */
+    default int getInt(String key, int def) {
+        Tag<?> tag = get(key);
+        if (tag instanceof IntTag intTag) {
+            return intTag.getValue();
+        }
+        return def;
+    }
+
+    /**
+     * Sets an int value in the data block.
+     *
+     * @param key   The key of the value.
+     * @param value The int value.
+     */
+    default void setInt(String key, int value) {
+        set(key, new IntTag(key, value));
+    }
+
+    /**
+     * Atomically sets an int value if the current value equals the expected one.
+     * An absent value is treated as 0.
+     *
+     * @param key      The key of the value.
+     * @param expected The expected current value.
+     * @param value    The new value.
+     * @return true if the value was updated
+     */
+    default boolean compareAndSetInt(String key, int expected, int value) {
+        synchronized (this) {
+            if (getInt(key, 0) != expected) {
+                return false;
+            }
+            setInt(key, value);
+            return true;
+        }
+    }
+
+    /**
+     * Gets a string value from the data block.
+     *
+     * @param key The key of the value.
+     * @param def The default value if the key is absent or not a string tag.
+     * @return The string value.
+     */
+    default String getString(String key, String def) {
+        Tag<?> tag = get(key);
+        if (tag instanceof StringTag stringTag) {
+            return stringTag.getValue();
+        }
+        return def;
+    }
+
+    /**
+     * Sets a string value in the data block.
+     *
+     * @param key   The key of the value.
+     * @param value The string value.
+     */
+    default void setString(String key, String value) {
+        set(key, new StringTag(key, value));
+    }
 }
@@ -19,9 +19,11 @@ package net.momirealms.customcrops.api.core.world;
 
 import org.jetbrains.annotations.NotNull;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class DelayedTickTask implements Comparable<DelayedTickTask> {
 
-    private static int taskID;
+    private static final AtomicInteger taskID = new AtomicInteger();
     private final int time;
     private final BlockPos blockPos;
     private final int id;
@@ -29,7 +31,7 @@ public class DelayedTickTask implements Comparable<DelayedTickTask> {
     public DelayedTickTask(int time, BlockPos blockPos) {
         this.time = time;
         this.blockPos = blockPos;
-        this.id = taskID++;
+        this.id = taskID.getAndIncrement();
     }
 
     public BlockPos blockPos() {
@@ -0,0 +1,287 @@
+/*
+ *  Copyright (C) <2024> <XiaoMoMi>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.momirealms.customcrops.api.core.world;
+
+import net.momirealms.customcrops.api.BukkitCustomCropsPlugin;
+import net.momirealms.customcrops.api.core.ConfigManager;
+import net.momirealms.customcrops.api.core.world.adaptor.RegionFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link CustomCropsRegion} backed by a memory mapped region file.
+ * <p>
+ * Instead of keeping the bytes of every chunk on heap, chunks are read from the mapped file when requested.
+ * Changed chunks are kept in a write-back buffer until the region is saved. If the buffers of all the mapped regions
+ * grow beyond {@link ConfigManager#regionWriteBufferSize()}, the region being changed is flushed early on the I/O thread.
+ * <p>
+ * Reads don't take any lock. A flush commits the changes copy-on-write, installs a new mapping and only then drops
+ * the flushed changes from the buffer. Readers still holding the previous mapping keep reading its old sectors, which
+ * {@link RegionFile} doesn't reuse or truncate while that mapping is reachable.
+ */
+public class MappedCustomCropsRegion implements CustomCropsRegion {
+
+    // placeholder of removed chunks in the write-back buffer
+    private static final byte[] REMOVED = new byte[0];
+    // bytes in the write-back buffers of all the mapped regions
+    private static final AtomicLong BUFFERED_BYTES = new AtomicLong();
+
+    private final CustomCropsWorld<?> world;
+    private final RegionPos regionPos;
+    private final Path file;
+    private final ConcurrentHashMap<ChunkPos, byte[]> buffer = new ConcurrentHashMap<>();
+    private final Set<ChunkPos> changedChunks = ConcurrentHashMap.newKeySet();
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    @Nullable
+    private volatile RegionFile.Mapping mapping;
+    private volatile long savedStamp;
+    private boolean isLoaded = false;
+
+    protected MappedCustomCropsRegion(CustomCropsWorld<?> world, RegionPos regionPos, Path file) throws IOException {
+        this.world = world;
+        this.regionPos = regionPos;
+        this.file = file;
+        this.mapping = map(file);
+    }
+
+    /**
+     * Gets the amount of bytes in the write-back buffers of all the mapped regions.
+     *
+     * @return the amount of bytes
+     */
+    public static long bufferedBytes() {
+        return BUFFERED_BYTES.get();
+    }
+
+    @Override
+    public boolean isLoaded() {
+        return isLoaded;
+    }
+
+    @Override
+    public void unload() {
+        if (this.isLoaded) {
+            if (((CustomCropsWorldImpl<?>) world).unloadRegion(this)) {
+                this.isLoaded = false;
+            }
+        }
+    }
+
+    @Override
+    public void load() {
+        if (!this.isLoaded) {
+            if (((CustomCropsWorldImpl<?>) world).loadRegion(this)) {
+                this.isLoaded = true;
+            }
+        }
+    }
+
+    @NotNull
+    @Override
+    public CustomCropsWorld<?> getWorld() {
+        return this.world;
+    }
+
+    @Override
+    public byte[] getCachedChunkBytes(ChunkPos pos) {
+        byte[] bytes = this.buffer.get(pos);
+        if (bytes != null) {
+            return bytes == REMOVED ? null : bytes;
+        }
+        RegionFile.Mapping mapping = this.mapping;
+        return mapping == null ? null : mapping.read(pos);
+    }
+
+    @Override
+    public long[] chunkBitmap() {
+        long[] bitmap = new long[16];
+        RegionFile.Mapping mapping = this.mapping;
+        if (mapping != null) {
+            for (ChunkPos pos : mapping.chunks()) {
+                int index = CustomCropsRegion.chunkIndex(pos);
+                bitmap[index >> 6] |= 1L << index;
+            }
+        }
+        for (Map.Entry<ChunkPos, byte[]> entry : this.buffer.entrySet()) {
+            ChunkPos pos = entry.getKey();
+            int index = CustomCropsRegion.chunkIndex(pos);
+            if (entry.getValue() == REMOVED) {
+                bitmap[index >> 6] &= ~(1L << index);
+            } else {
+                bitmap[index >> 6] |= 1L << index;
+            }
+        }
+        return bitmap;
+    }
+
+    @NotNull
+    @Override
+    public RegionPos regionPos() {
+        return this.regionPos;
+    }
+
+    @Override
+    public boolean removeCachedChunk(ChunkPos pos) {
+        if (getCachedChunkBytes(pos) == null) {
+            return false;
+        }
+        buffer(pos, REMOVED);
+        return true;
+    }
+
+    @Override
+    public void setCachedChunk(ChunkPos pos, byte[] data) {
+        if (!Arrays.equals(getCachedChunkBytes(pos), data)) {
+            buffer(pos, data);
+        }
+    }
+
+    @Override
+    public Map<ChunkPos, byte[]> dataToSave() {
+        HashMap<ChunkPos, byte[]> data = new HashMap<>();
+        RegionFile.Mapping mapping = this.mapping;
+        if (mapping != null) {
+            for (ChunkPos pos : mapping.chunks()) {
+                data.put(pos, mapping.read(pos));
+            }
+        }
+        for (Map.Entry<ChunkPos, byte[]> entry : this.buffer.entrySet()) {
+            if (entry.getValue() == REMOVED) {
+                data.remove(entry.getKey());
+            } else {
+                data.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return data;
+    }
+
+    @Override
+    public boolean canPrune() {
+        for (byte[] bytes : this.buffer.values()) {
+            if (bytes != REMOVED) {
+                return false;
+            }
+        }
+        RegionFile.Mapping mapping = this.mapping;
+        if (mapping != null) {
+            for (ChunkPos pos : mapping.chunks()) {
+                if (this.buffer.get(pos) != REMOVED) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Set<ChunkPos> drainChangedChunks() {
+        HashSet<ChunkPos> drained = new HashSet<>();
+        for (Iterator<ChunkPos> iterator = changedChunks.iterator(); iterator.hasNext();) {
+            drained.add(iterator.next());
+            iterator.remove();
+        }
+        return drained;
+    }
+
+    @Override
+    public long modificationStamp() {
+        return generation.get();
+    }
+
+    @Override
+    public boolean isDirty() {
+        return generation.get() != savedStamp;
+    }
+
+    @Override
+    public void markSaved(long stamp) {
+        this.savedStamp = stamp;
+    }
+
+    /**
+     * Writes the buffered changes to the region file and remaps it.
+     *
+     * @return the amount of bytes written
+     */
+    public synchronized long flush() throws IOException {
+        HashMap<ChunkPos, byte[]> changes = new HashMap<>(this.buffer);
+        if (changes.isEmpty()) {
+            return 0;
+        }
+        long written = 0;
+        if (canPrune()) {
+            this.mapping = null;
+            RegionFile.delete(this.file);
+        } else if (RegionFile.version(this.file) == RegionFile.VERSION) {
+            try (RegionFile regionFile = RegionFile.open(this.file)) {
+                HashMap<ChunkPos, byte[]> payloads = new HashMap<>();
+                changes.forEach((pos, bytes) -> payloads.put(pos, bytes == REMOVED ? null : bytes));
+                // the current mapping stays valid, the changes are written to other sectors
+                written = regionFile.commit(payloads);
+                this.mapping = regionFile.map();
+            }
+        } else {
+            written = RegionFile.write(this.file, this.regionPos, dataToSave());
+            this.mapping = map(this.file);
+        }
+        // drop the flushed changes only after the new mapping is visible, and keep the chunks changed while writing
+        for (Map.Entry<ChunkPos, byte[]> entry : changes.entrySet()) {
+            if (this.buffer.remove(entry.getKey(), entry.getValue())) {
+                BUFFERED_BYTES.addAndGet(-entry.getValue().length);
+            }
+        }
+        return written;
+    }
+
+    private void buffer(ChunkPos pos, byte[] data) {
+        byte[] previous = this.buffer.put(pos, data);
+        BUFFERED_BYTES.addAndGet(data.length - (previous == null ? 0 : previous.length));
+        this.changedChunks.add(pos);
+        this.generation.incrementAndGet();
+        if (BUFFERED_BYTES.get() > ConfigManager.regionWriteBufferSize() && this.flushScheduled.compareAndSet(false, true)) {
+            this.world.scheduler().io().execute(() -> {
+                this.flushScheduled.set(false);
+                try {
+                    flush();
+                } catch (IOException e) {
+                    BukkitCustomCropsPlugin.getInstance().getPluginLogger().warn("[" + world.worldName() + "] Failed to flush the write buffer of region " + regionPos, e);
+                }
+            });
+        }
+    }
+
+    @Nullable
+    private static RegionFile.Mapping map(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (RegionFile regionFile = RegionFile.open(file)) {
+            return regionFile.map();
+        }
+    }
+}
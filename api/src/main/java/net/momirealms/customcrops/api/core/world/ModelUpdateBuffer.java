@@ -0,0 +1,177 @@
+/*
+ *  Copyright (C) <2024> <XiaoMoMi>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.momirealms.customcrops.api.core.world;
+
+import net.momirealms.customcrops.api.BukkitCustomCropsPlugin;
+import net.momirealms.customcrops.api.core.ConfigManager;
+import net.momirealms.customcrops.common.helper.VersionHelper;
+import net.momirealms.customcrops.common.plugin.scheduler.SchedulerTask;
+import org.bukkit.Bukkit;
+import org.bukkit.World;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Collects the block/furniture model updates of a world produced by the ticking threads,
+ * and applies them on the main thread (or the region threads on Folia) in batches.
+ * <p>
+ * Updates are merged by position: if a position is updated several times before the buffer is flushed,
+ * only the latest model update is applied. Follow-up tasks, such as triggering actions, are never merged
+ * and run in order after the model update of the position.
+ */
+public class ModelUpdateBuffer {
+
+    private final CustomCropsWorld<?> world;
+    private final ConcurrentHashMap<Pos3, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Pos3> order = new ConcurrentLinkedQueue<>();
+    private SchedulerTask flushTask;
+
+    public ModelUpdateBuffer(CustomCropsWorld<?> world) {
+        this.world = world;
+    }
+
+    /**
+     * Submits a model update. A pending model update at the same position will be replaced.
+     *
+     * @param pos the position
+     * @param update the model update
+     */
+    public void submit(Pos3 pos, Runnable update) {
+        submit(pos, update, null);
+    }
+
+    /**
+     * Submits a model update and a follow-up task.
+     *
+     * @param pos the position
+     * @param update the model update, replacing the pending one at the same position. Null to keep the pending one.
+     * @param followUp the task to run after the model update
+     */
+    public void submit(Pos3 pos, @Nullable Runnable update, @Nullable Runnable followUp) {
+        boolean[] created = new boolean[1];
+        this.entries.compute(pos, (k, entry) -> {
+            if (entry == null) {
+                entry = new Entry();
+                created[0] = true;
+            }
+            if (update != null) {
+                entry.update = update;
+            }
+            if (followUp != null) {
+                if (entry.followUps == null) entry.followUps = new ArrayList<>(1);
+                entry.followUps.add(followUp);
+            }
+            return entry;
+        });
+        if (created[0]) {
+            this.order.add(pos);
+        }
+    }
+
+    /**
+     * Gets the amount of positions waiting to be updated.
+     *
+     * @return the amount
+     */
+    public int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Starts flushing the buffer every tick.
+     */
+    public synchronized void start() {
+        if (this.flushTask == null || this.flushTask.isCancelled()) {
+            this.flushTask = BukkitCustomCropsPlugin.getInstance().getScheduler().sync().runRepeating(() -> flush(ConfigManager.modelUpdatesPerTick()), 1, 1, null);
+        }
+    }
+
+    /**
+     * Stops flushing the buffer. The remaining updates are applied immediately on the main thread,
+     * otherwise they are scheduled to the main thread (or the region threads on Folia).
+     */
+    public synchronized void stop() {
+        if (this.flushTask != null && !this.flushTask.isCancelled()) {
+            this.flushTask.cancel();
+        }
+        if (VersionHelper.isFolia() || Bukkit.isPrimaryThread()) {
+            // Folia schedules one region task for each chunk
+            flush(Integer.MAX_VALUE);
+        } else {
+            BukkitCustomCropsPlugin.getInstance().getScheduler().sync().run(() -> flush(Integer.MAX_VALUE));
+        }
+    }
+
+    private void flush(int budget) {
+        if (VersionHelper.isFolia()) {
+            // run the updates on the region threads, with one task for each chunk
+            HashMap<ChunkPos, List<Entry>> batches = new HashMap<>();
+            Pos3 pos;
+            for (int i = 0; i < budget && (pos = this.order.poll()) != null; i++) {
+                Entry entry = this.entries.remove(pos);
+                if (entry != null) {
+                    batches.computeIfAbsent(pos.toChunkPos(), k -> new ArrayList<>()).add(entry);
+                }
+            }
+            World bukkitWorld = this.world.bukkitWorld();
+            for (var batch : batches.entrySet()) {
+                ChunkPos chunkPos = batch.getKey();
+                List<Entry> batchEntries = batch.getValue();
+                BukkitCustomCropsPlugin.getInstance().getScheduler().sync().run(() -> {
+                    for (Entry entry : batchEntries) {
+                        apply(entry);
+                    }
+                }, bukkitWorld, chunkPos.x(), chunkPos.z());
+            }
+        } else {
+            Pos3 pos;
+            for (int i = 0; i < budget && (pos = this.order.poll()) != null; i++) {
+                Entry entry = this.entries.remove(pos);
+                if (entry != null) {
+                    apply(entry);
+                }
+            }
+        }
+    }
+
+    private void apply(Entry entry) {
+        try {
+            if (entry.update != null) {
+                entry.update.run();
+            }
+            if (entry.followUps != null) {
+                for (Runnable followUp : entry.followUps) {
+                    followUp.run();
+                }
+            }
+        } catch (Exception e) {
+            BukkitCustomCropsPlugin.getInstance().getPluginLogger().warn("[" + world.worldName() + "] Failed to apply model update", e);
+        }
+    }
+
+    // only modified inside ConcurrentHashMap#compute and read after being removed from the map
+    private static final class Entry {
+        private Runnable update;
+        private List<Runnable> followUps;
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ *  Copyright (C) <2024> <XiaoMoMi>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.momirealms.customcrops.api.core.world;
+
+import net.momirealms.customcrops.api.BukkitCustomCropsPlugin;
+import net.momirealms.customcrops.api.core.ConfigManager;
+import net.momirealms.customcrops.common.helper.VersionHelper;
+import org.bukkit.Bukkit;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.block.data.Waterlogged;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Caches where water (water blocks and waterlogged blocks) is in the chunk sections of a world,
+ * so that checking if a pot has water nearby doesn't read the blocks around it on every tick.
+ * <p>
+ * Each cached section stores a 16-bit mask of the water heights per column, together with the heights already read,
+ * so only the blocks inside the queried boxes are ever read. Changing a block bumps the generation of its section,
+ * which makes the cached data of the section outdated, including the data being read at the same time.
+ * Sections also expire after {@link ConfigManager#nearbyWaterCacheSeconds()}, or the min tick unit of the world
+ * by default, to cover changes that fire no event. Unloaded chunks are considered to have no water, so lookups never load chunks.
+ * In the snapshot mode, sections that have never been cached are read directly until their first snapshot is taken.
+ */
+public class NearbyWaterCache {
+
+    private static final char ALL_HEIGHTS = 0xFFFF;
+
+    private final CustomCropsWorld<?> world;
+    private final ConcurrentHashMap<ChunkPos, Sections> chunks = new ConcurrentHashMap<>();
+
+    public NearbyWaterCache(CustomCropsWorld<?> world) {
+        this.world = world;
+    }
+
+    /**
+     * Checks if there's any water inside the box around the position.
+     *
+     * @param pos the center of the box
+     * @param horizontalRange the horizontal radius of the box
+     * @param minDY the min height offset (inclusive)
+     * @param maxDY the max height offset (inclusive)
+     * @return true if water is found
+     */
+    public boolean hasWaterNearby(Pos3 pos, int horizontalRange, int minDY, int maxDY) {
+        World bukkitWorld = world.bukkitWorld();
+        int minX = pos.x() - horizontalRange, maxX = pos.x() + horizontalRange;
+        int minZ = pos.z() - horizontalRange, maxZ = pos.z() + horizontalRange;
+        int minY = Math.max(pos.y() + minDY, bukkitWorld.getMinHeight());
+        int maxY = Math.min(pos.y() + maxDY, bukkitWorld.getMaxHeight() - 1);
+        for (int sy = minY >> 4; sy <= maxY >> 4; sy++) {
+            char yMask = heightMask(Math.max(minY, sy << 4) & 0xF, Math.min(maxY, (sy << 4) + 15) & 0xF);
+            for (int cx = minX >> 4; cx <= maxX >> 4; cx++) {
+                for (int cz = minZ >> 4; cz <= maxZ >> 4; cz++) {
+                    int fromX = Math.max(minX, cx << 4) & 0xF, toX = Math.min(maxX, (cx << 4) + 15) & 0xF;
+                    int fromZ = Math.max(minZ, cz << 4) & 0xF, toZ = Math.min(maxZ, (cz << 4) + 15) & 0xF;
+                    if (hasWater(bukkitWorld, cx, sy, cz, fromX, toX, fromZ, toZ, yMask)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Marks the cached section containing the block as outdated, called when the block changes.
+     * As some events are fired before the block actually changes, the section is marked again in the next tick.
+     *
+     * @param x the x-coordinate of the block
+     * @param y the y-coordinate of the block
+     * @param z the z-coordinate of the block
+     */
+    public void invalidate(int x, int y, int z) {
+        if (bump(x, y, z)) {
+            BukkitCustomCropsPlugin.getInstance().getScheduler().sync().runLater(() -> bump(x, y, z), 1, new Location(world.bukkitWorld(), x, y, z));
+        }
+    }
+
+    /**
+     * Drops all the cached sections of a chunk.
+     *
+     * @param pos the chunk position
+     */
+    public void invalidateChunk(ChunkPos pos) {
+        this.chunks.remove(pos);
+    }
+
+    /**
+     * Drops all the cached sections.
+     */
+    public void clear() {
+        this.chunks.clear();
+    }
+
+    private boolean bump(int x, int y, int z) {
+        Sections sections = this.chunks.get(ChunkPos.of(x >> 4, z >> 4));
+        if (sections == null) return false;
+        int index = (y >> 4) - (world.bukkitWorld().getMinHeight() >> 4);
+        if (index < 0 || index >= sections.slots.length()) return false;
+        sections.generations.incrementAndGet(index);
+        sections.slots.set(index, null);
+        return true;
+    }
+
+    private boolean hasWater(World bukkitWorld, int cx, int sy, int cz, int fromX, int toX, int fromZ, int toZ, char yMask) {
+        if (!bukkitWorld.isChunkLoaded(cx, cz)) {
+            return false;
+        }
+        int minSection = bukkitWorld.getMinHeight() >> 4;
+        Sections sections = this.chunks.computeIfAbsent(ChunkPos.of(cx, cz), k -> new Sections((bukkitWorld.getMaxHeight() >> 4) - minSection));
+        int index = sy - minSection;
+        int generation = sections.generations.get(index);
+        long now = System.currentTimeMillis();
+        Section section = sections.slots.get(index);
+        boolean valid = section != null && section.generation == generation && section.expireAt > now;
+
+        if (ConfigManager.nearbyWaterSnapshot()) {
+            if (!valid) {
+                requestSnapshot(bukkitWorld, cx, cz, index, sections);
+                // use the outdated data until the snapshot is taken
+                section = sections.slots.get(index);
+            }
+            // sections from snapshots have read all the heights, so only the sections read before have blocks to read
+            if (section != null) {
+                return section.scanAndCheck(bukkitWorld, cx << 4, sy << 4, cz << 4, fromX, toX, fromZ, toZ, yMask);
+            }
+            // nothing is known about the section until the first snapshot is taken, so read the blocks as usual
+        }
+
+        if (!valid) {
+            Section created = new Section(generation, now + expireMillis());
+            if (sections.slots.compareAndSet(index, section, created)) {
+                section = created;
+            } else {
+                // another thread replaced it, or the section has just been invalidated
+                section = sections.slots.get(index);
+                if (section == null || section.generation != generation) {
+                    section = created;
+                }
+            }
+        }
+        return section.scanAndCheck(bukkitWorld, cx << 4, sy << 4, cz << 4, fromX, toX, fromZ, toZ, yMask);
+    }
+
+    private long expireMillis() {
+        int seconds = ConfigManager.nearbyWaterCacheSeconds();
+        return (seconds > 0 ? seconds : Math.max(1, world.setting().minTickUnit())) * 1000L;
+    }
+
+    // Takes a snapshot of the chunk on its owning thread without waiting for it, then reads the requested sections asynchronously
+    private void requestSnapshot(World bukkitWorld, int cx, int cz, int index, Sections sections) {
+        synchronized (sections) {
+            sections.requested.set(index);
+            if (sections.snapshotPending) return;
+            sections.snapshotPending = true;
+        }
+        Runnable takeSnapshot = () -> {
+            ChunkSnapshot snapshot = null;
+            int[] generations = null;
+            try {
+                if (bukkitWorld.isChunkLoaded(cx, cz)) {
+                    // block changes happen on this thread, so the generations match the snapshot
+                    generations = new int[sections.generations.length()];
+                    for (int i = 0; i < generations.length; i++) {
+                        generations[i] = sections.generations.get(i);
+                    }
+                    snapshot = bukkitWorld.getChunkAt(cx, cz).getChunkSnapshot(false, false, false);
+                }
+            } catch (Exception e) {
+                BukkitCustomCropsPlugin.getInstance().getPluginLogger().warn("[" + world.worldName() + "] Failed to take snapshot of chunk " + cx + "," + cz, e);
+            }
+            BitSet requested;
+            synchronized (sections) {
+                requested = (BitSet) sections.requested.clone();
+                sections.requested.clear();
+                sections.snapshotPending = false;
+            }
+            if (snapshot == null) return;
+            ChunkSnapshot finalSnapshot = snapshot;
+            int[] finalGenerations = generations;
+            BukkitCustomCropsPlugin.getInstance().getScheduler().async().execute(() -> {
+                long expireAt = System.currentTimeMillis() + expireMillis();
+                int minSection = bukkitWorld.getMinHeight() >> 4;
+                for (int i = requested.nextSetBit(0); i >= 0; i = requested.nextSetBit(i + 1)) {
+                    Section section = new Section(finalGenerations[i], expireAt);
+                    section.scan(finalSnapshot, i, (i + minSection) << 4);
+                    // outdated sections are ignored by the lookups anyway
+                    if (sections.generations.get(i) == finalGenerations[i]) {
+                        sections.slots.set(i, section);
+                    }
+                }
+            });
+        };
+        if (VersionHelper.isFolia() ? Bukkit.isOwnedByCurrentRegion(bukkitWorld, cx, cz) : Bukkit.isPrimaryThread()) {
+            takeSnapshot.run();
+        } else {
+            BukkitCustomCropsPlugin.getInstance().getScheduler().sync().run(takeSnapshot, bukkitWorld, cx, cz);
+        }
+    }
+
+    private static boolean isWater(BlockData block) {
+        return block.getMaterial() == Material.WATER || (block instanceof Waterlogged waterlogged && waterlogged.isWaterlogged());
+    }
+
+    private static char heightMask(int from, int to) {
+        return (char) (((1 << (to + 1)) - 1) & ~((1 << from) - 1));
+    }
+
+    private static final class Sections {
+
+        private final AtomicReferenceArray<Section> slots;
+        private final AtomicIntegerArray generations;
+        // guarded by this object's monitor
+        private final BitSet requested = new BitSet();
+        private boolean snapshotPending;
+
+        private Sections(int size) {
+            this.slots = new AtomicReferenceArray<>(size);
+            this.generations = new AtomicIntegerArray(size);
+        }
+    }
+
+    private static final class Section {
+
+        private final int generation;
+        private final long expireAt;
+        // guarded by this object's monitor
+        private final char[] water = new char[256];
+        private final char[] scanned = new char[256];
+
+        private Section(int generation, long expireAt) {
+            this.generation = generation;
+            this.expireAt = expireAt;
+        }
+
+        // Reads the heights of the window that haven't been read yet
+        private synchronized boolean scanAndCheck(World bukkitWorld, int baseX, int baseY, int baseZ, int fromX, int toX, int fromZ, int toZ, char yMask) {
+            for (int z = fromZ; z <= toZ; z++) {
+                for (int x = fromX; x <= toX; x++) {
+                    int column = z << 4 | x;
+                    int missing = yMask & ~scanned[column];
+                    if (missing != 0) {
+                        for (int y = Integer.numberOfTrailingZeros(missing); y < 16; y++) {
+                            if ((missing & (1 << y)) != 0 && isWater(bukkitWorld.getBlockData(baseX + x, baseY + y, baseZ + z))) {
+                                water[column] |= (char) (1 << y);
+                            }
+                        }
+                        scanned[column] |= (char) missing;
+                    }
+                    if ((water[column] & yMask) != 0) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private synchronized void scan(ChunkSnapshot snapshot, int sectionIndex, int baseY) {
+            Arrays.fill(scanned, ALL_HEIGHTS);
+            if (snapshot.isSectionEmpty(sectionIndex)) return;
+            for (int y = 0; y < 16; y++) {
+                for (int z = 0; z < 16; z++) {
+                    for (int x = 0; x < 16; x++) {
+                        if (isWater(snapshot.getBlockData(x, baseY + y, z))) {
+                            water[z << 4 | x] |= (char) (1 << y);
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,338 @@
+/*
+ *  Copyright (C) <2024> <XiaoMoMi>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.momirealms.customcrops.api.core.world;
+
+import net.momirealms.customcrops.api.core.block.CustomCropsBlock;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A memory efficient implementation of {@link CustomCropsSection}.
+ * <p>
+ * Blocks are keyed by their 12-bit local index inside the section ((y & 15) << 8 | z << 4 | x)
+ * and stored in sorted primitive arrays, so no boxed {@link BlockPos} or hash map node is kept per block.
+ * Block types are stored in a small palette shared by all the blocks in this section.
+ */
+public class PackedCustomCropsSection implements CustomCropsSection {
+
+    private static final int INITIAL_CAPACITY = 4;
+    private static final int MAX_PALETTE_SIZE = 256;
+
+    private final int sectionID;
+    private final StampedLock lock = new StampedLock();
+
+    // sorted local indexes
+    private short[] keys;
+    // block states, sharing the same slot as keys
+    private CustomCropsBlockState[] states;
+    // index of the block type in the palette, sharing the same slot as keys
+    private byte[] types;
+    private int size;
+
+    private CustomCropsBlock[] palette;
+    private int[] paletteCounts;
+    private int paletteSize;
+
+    protected PackedCustomCropsSection(int sectionID) {
+        this.sectionID = sectionID;
+        this.keys = new short[INITIAL_CAPACITY];
+        this.states = new CustomCropsBlockState[INITIAL_CAPACITY];
+        this.types = new byte[INITIAL_CAPACITY];
+        this.palette = new CustomCropsBlock[2];
+        this.paletteCounts = new int[2];
+    }
+
+    /**
+     * Converts a block position to the local index in a section.
+     *
+     * @param pos the block position
+     * @return the local index (0-4095)
+     */
+    public static int localIndex(BlockPos pos) {
+        return ((pos.y() & 0xF) << 8) | (pos.z() << 4) | pos.x();
+    }
+
+    /**
+     * Converts a position encoded like {@link BlockPos#position()} to the local index in a section.
+     *
+     * @param position the encoded position
+     * @return the local index (0-4095)
+     */
+    public static int localIndex(int position) {
+        return ((position & 0xF) << 8) | (((position >> 24) & 0xF) << 4) | ((position >>> 28) & 0xF);
+    }
+
+    @Override
+    public int getSectionID() {
+        return sectionID;
+    }
+
+    @NotNull
+    @Override
+    public Optional<CustomCropsBlockState> getBlockState(BlockPos pos) {
+        int index = localIndex(pos);
+        long stamp = lock.tryOptimisticRead();
+        CustomCropsBlockState state = find(index);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                state = find(index);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return Optional.ofNullable(state);
+    }
+
+    @NotNull
+    @Override
+    public Optional<CustomCropsBlockState> removeBlockState(BlockPos pos) {
+        int index = localIndex(pos);
+        long stamp = lock.writeLock();
+        try {
+            int slot = search(keys, size, index);
+            if (slot < 0) {
+                return Optional.empty();
+            }
+            CustomCropsBlockState previous = states[slot];
+            releaseType(types[slot] & 0xFF);
+            int moved = size - slot - 1;
+            if (moved > 0) {
+                System.arraycopy(keys, slot + 1, keys, slot, moved);
+                System.arraycopy(states, slot + 1, states, slot, moved);
+                System.arraycopy(types, slot + 1, types, slot, moved);
+            }
+            size--;
+            states[size] = null;
+            return Optional.of(previous);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @NotNull
+    @Override
+    public Optional<CustomCropsBlockState> addBlockState(BlockPos pos, CustomCropsBlockState block) {
+        int index = localIndex(pos);
+        long stamp = lock.writeLock();
+        try {
+            int slot = search(keys, size, index);
+            if (slot >= 0) {
+                CustomCropsBlockState previous = states[slot];
+                if (previous.type() != block.type()) {
+                    releaseType(types[slot] & 0xFF);
+                    types[slot] = (byte) acquireType(block.type());
+                }
+                states[slot] = block;
+                return Optional.of(previous);
+            }
+            int insertAt = -(slot + 1);
+            if (size == keys.length) {
+                int capacity = Math.min(keys.length << 1, 4096);
+                keys = Arrays.copyOf(keys, capacity);
+                states = Arrays.copyOf(states, capacity);
+                types = Arrays.copyOf(types, capacity);
+            }
+            int moved = size - insertAt;
+            if (moved > 0) {
+                System.arraycopy(keys, insertAt, keys, insertAt + 1, moved);
+                System.arraycopy(states, insertAt, states, insertAt + 1, moved);
+                System.arraycopy(types, insertAt, types, insertAt + 1, moved);
+            }
+            keys[insertAt] = (short) index;
+            states[insertAt] = block;
+            types[insertAt] = (byte) acquireType(block.type());
+            size++;
+            return Optional.empty();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean canPrune() {
+        long stamp = lock.tryOptimisticRead();
+        int size = this.size;
+        if (lock.validate(stamp)) {
+            return size == 0;
+        }
+        stamp = lock.readLock();
+        try {
+            return this.size == 0;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public CustomCropsBlockState[] blocks() {
+        long stamp = lock.readLock();
+        try {
+            return Arrays.copyOf(states, size);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Gets a snapshot of all the blocks in this section. Modifying the returned map has no effect on the section.
+     * This is kept for compatibility, {@link #forEachBlock(BlockConsumer)} iterates the blocks without allocating.
+     *
+     * @return A {@link Map} of {@link BlockPos} to {@link CustomCropsBlockState}.
+     */
+    @Override
+    public Map<BlockPos, CustomCropsBlockState> blockMap() {
+        long stamp = lock.readLock();
+        try {
+            HashMap<BlockPos, CustomCropsBlockState> map = new HashMap<>(Math.max(16, (int) (size / 0.75f) + 1));
+            int baseY = sectionID * 16;
+            for (int i = 0; i < size; i++) {
+                int index = keys[i];
+                map.put(new BlockPos(index & 0xF, baseY + (index >> 8), (index >> 4) & 0xF), states[i]);
+            }
+            return map;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Performs the action for each block in the order of their local indexes, without allocating a snapshot.
+     * The lock is not held while the action runs, so the action may modify this section.
+     *
+     * @param action the action
+     */
+    @Override
+    public void forEachBlock(BlockConsumer action) {
+        int baseY = sectionID * 16;
+        int next = 0;
+        while (next < 4096) {
+            long stamp = lock.tryOptimisticRead();
+            short[] keys = this.keys;
+            CustomCropsBlockState[] states = this.states;
+            int size = Math.min(this.size, Math.min(keys.length, states.length));
+            int slot = ceiling(keys, size, next);
+            int index = slot < size ? keys[slot] : -1;
+            CustomCropsBlockState state = slot < size ? states[slot] : null;
+            if (!lock.validate(stamp)) {
+                stamp = lock.readLock();
+                try {
+                    slot = ceiling(this.keys, this.size, next);
+                    index = slot < this.size ? this.keys[slot] : -1;
+                    state = slot < this.size ? this.states[slot] : null;
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            if (state == null) {
+                return;
+            }
+            action.accept(BlockPos.encode(index & 0xF, baseY + (index >> 8), (index >> 4) & 0xF), state);
+            next = index + 1;
+        }
+    }
+
+    /**
+     * Counts the blocks of the given type in this section without iterating the block states.
+     *
+     * @param type the block type
+     * @return the amount of blocks
+     */
+    public int countBlocks(CustomCropsBlock type) {
+        long stamp = lock.readLock();
+        try {
+            for (int i = 0; i < paletteSize; i++) {
+                if (palette[i] == type) {
+                    return paletteCounts[i];
+                }
+            }
+            return 0;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    // Might read inconsistent data during an optimistic read, but never throws
+    private CustomCropsBlockState find(int index) {
+        short[] keys = this.keys;
+        CustomCropsBlockState[] states = this.states;
+        int size = Math.min(this.size, Math.min(keys.length, states.length));
+        int slot = search(keys, size, index);
+        return slot >= 0 ? states[slot] : null;
+    }
+
+    // The slot of the first block at or after the index, or the size if there is none
+    private static int ceiling(short[] keys, int size, int index) {
+        int slot = search(keys, size, index);
+        return slot >= 0 ? slot : -(slot + 1);
+    }
+
+    private static int search(short[] keys, int size, int index) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int key = keys[mid];
+            if (key < index) {
+                low = mid + 1;
+            } else if (key > index) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private int acquireType(CustomCropsBlock type) {
+        int free = -1;
+        for (int i = 0; i < paletteSize; i++) {
+            if (palette[i] == type) {
+                paletteCounts[i]++;
+                return i;
+            }
+            if (free == -1 && paletteCounts[i] == 0) {
+                free = i;
+            }
+        }
+        if (free == -1) {
+            if (paletteSize == MAX_PALETTE_SIZE) {
+                throw new IllegalStateException("Too many block types in section " + sectionID);
+            }
+            if (paletteSize == palette.length) {
+                palette = Arrays.copyOf(palette, paletteSize << 1);
+                paletteCounts = Arrays.copyOf(paletteCounts, paletteSize << 1);
+            }
+            free = paletteSize++;
+        }
+        palette[free] = type;
+        paletteCounts[free] = 1;
+        return free;
+    }
+
+    private void releaseType(int paletteIndex) {
+        if (--paletteCounts[paletteIndex] == 0) {
+            palette[paletteIndex] = null;
+        }
+    }
+}
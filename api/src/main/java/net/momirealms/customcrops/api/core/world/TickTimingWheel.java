@@ -0,0 +1,176 @@
+/*
+ *  Copyright (C) <2024> <XiaoMoMi>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.momirealms.customcrops.api.core.world;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A timing wheel holding the scheduled ticks of a chunk within one tick cycle.
+ * <p>
+ * Each bucket represents one second of the cycle and stores the encoded {@link BlockPos#position()}
+ * of the blocks to tick at that second, so scheduling a tick allocates nothing in most cases.
+ */
+public class TickTimingWheel {
+
+    private static final int INITIAL_BUCKET_CAPACITY = 4;
+    private static final int[] EMPTY = new int[0];
+
+    private int[][] buckets;
+    private int[] sizes;
+    // the next bucket to poll
+    private int cursor;
+    private int size;
+    // reused array for polling
+    private int[] spare = EMPTY;
+
+    /**
+     * Creates a timing wheel.
+     *
+     * @param seconds the length of the tick cycle in seconds
+     */
+    public TickTimingWheel(int seconds) {
+        seconds = Math.max(1, seconds);
+        this.buckets = new int[seconds][];
+        this.sizes = new int[seconds];
+        Arrays.fill(buckets, EMPTY);
+    }
+
+    /**
+     * Restores a timing wheel from the int array produced by {@link #toArray()}.
+     *
+     * @param seconds the length of the tick cycle in seconds
+     * @param queued the (time, position) pairs
+     * @return the timing wheel
+     */
+    public static TickTimingWheel fromArray(int seconds, int[] queued) {
+        TickTimingWheel wheel = new TickTimingWheel(seconds);
+        for (int i = 0, size = queued.length / 2; i < size; i++) {
+            wheel.schedule(queued[2 * i], queued[2 * i + 1]);
+        }
+        return wheel;
+    }
+
+    /**
+     * Schedules a tick. Ticks scheduled for a second that has already been polled will be polled next time.
+     *
+     * @param second the second in the tick cycle
+     * @param position the encoded block position
+     */
+    public synchronized void schedule(int second, int position) {
+        if (second < cursor) second = cursor;
+        if (second >= buckets.length) grow(second + 1);
+        int[] bucket = buckets[second];
+        int bucketSize = sizes[second];
+        if (bucketSize == bucket.length) {
+            bucket = Arrays.copyOf(bucket, Math.max(INITIAL_BUCKET_CAPACITY, bucketSize << 1));
+            buckets[second] = bucket;
+        }
+        bucket[bucketSize] = position;
+        sizes[second] = bucketSize + 1;
+        size++;
+    }
+
+    /**
+     * Polls all the ticks scheduled up to the given second (inclusive).
+     * The consumer is called outside the lock, so it's safe to schedule new ticks from it.
+     *
+     * @param second the current second in the tick cycle
+     * @param consumer the consumer of encoded block positions
+     */
+    public void poll(int second, IntConsumer consumer) {
+        while (true) {
+            int[] bucket;
+            int bucketSize;
+            synchronized (this) {
+                int index = cursor;
+                if (index > second || index >= buckets.length) {
+                    if (index <= second) cursor = second + 1;
+                    return;
+                }
+                cursor = index + 1;
+                bucket = buckets[index];
+                bucketSize = sizes[index];
+                if (bucketSize == 0) continue;
+                // swap the bucket with the spare one
+                buckets[index] = spare;
+                sizes[index] = 0;
+                spare = EMPTY;
+                size -= bucketSize;
+            }
+            for (int i = 0; i < bucketSize; i++) {
+                consumer.accept(bucket[i]);
+            }
+            synchronized (this) {
+                if (spare.length < bucket.length) spare = bucket;
+            }
+        }
+    }
+
+    /**
+     * Removes all the scheduled ticks and starts a new tick cycle.
+     *
+     * @param seconds the length of the new tick cycle in seconds
+     */
+    public synchronized void clear(int seconds) {
+        seconds = Math.max(1, seconds);
+        if (seconds != buckets.length) {
+            this.buckets = new int[seconds][];
+            this.sizes = new int[seconds];
+            Arrays.fill(buckets, EMPTY);
+        } else {
+            Arrays.fill(sizes, 0);
+        }
+        this.cursor = 0;
+        this.size = 0;
+    }
+
+    /**
+     * Gets the amount of scheduled ticks.
+     *
+     * @return the amount
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Converts the scheduled ticks to (time, position) pairs, which is the format used for persistence.
+     *
+     * @return the int array
+     */
+    public synchronized int[] toArray() {
+        int[] result = new int[size * 2];
+        int i = 0;
+        for (int second = 0; second < buckets.length; second++) {
+            int[] bucket = buckets[second];
+            for (int j = 0, bucketSize = sizes[second]; j < bucketSize; j++) {
+                result[i++] = second;
+                result[i++] = bucket[j];
+            }
+        }
+        return result;
+    }
+
+    private void grow(int seconds) {
+        int previous = buckets.length;
+        buckets = Arrays.copyOf(buckets, seconds);
+        sizes = Arrays.copyOf(sizes, seconds);
+        Arrays.fill(buckets, previous, seconds, EMPTY);
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ *  Copyright (C) <2024> <XiaoMoMi>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.momirealms.customcrops.api.core.world;
+
+import net.momirealms.customcrops.api.core.block.CustomCropsBlock;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Performance metrics of a world. Recording never takes a lock, so it's safe to call from the ticking threads,
+ * the I/O thread and the main thread at the same time.
+ * <p>
+ * The world calls {@link #roll(int, int)} once per second. Counters report the amount of the last full second
+ * and the total, histograms report the values recorded in the last one to two minutes.
+ */
+public class WorldMetrics {
+
+    // seconds covered by a half of a histogram
+    private static final int HISTOGRAM_WINDOW = 60;
+    private static final long SNAPSHOT_LIFETIME = TimeUnit.SECONDS.toNanos(1);
+
+    private final Histogram tickTime = new Histogram();
+    private final Histogram regionLoadTime = new Histogram();
+    private final Histogram regionSaveTime = new Histogram();
+    private final Histogram offlineCatchUpTime = new Histogram();
+    private final Counter chunksTicked = new Counter();
+    private final Counter syncTasks = new Counter();
+    private final Counter regionBytesRead = new Counter();
+    private final Counter regionBytesWritten = new Counter();
+    private final ConcurrentHashMap<CustomCropsBlock, Counter> scheduledTicks = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<CustomCropsBlock, Counter> randomTicks = new ConcurrentHashMap<>();
+    private volatile int loadedChunks;
+    private volatile int lazyChunks;
+    private volatile Snapshot snapshot;
+    private int seconds;
+
+    /**
+     * Closes the current second. Only called by the world's ticking thread.
+     *
+     * @param loadedChunks the amount of loaded chunks
+     * @param lazyChunks the amount of lazy chunks
+     */
+    public void roll(int loadedChunks, int lazyChunks) {
+        this.loadedChunks = loadedChunks;
+        this.lazyChunks = lazyChunks;
+        this.chunksTicked.roll();
+        this.syncTasks.roll();
+        this.regionBytesRead.roll();
+        this.regionBytesWritten.roll();
+        for (Counter counter : scheduledTicks.values()) counter.roll();
+        for (Counter counter : randomTicks.values()) counter.roll();
+        if (++seconds >= HISTOGRAM_WINDOW) {
+            this.seconds = 0;
+            this.tickTime.rotate();
+            this.regionLoadTime.rotate();
+            this.regionSaveTime.rotate();
+            this.offlineCatchUpTime.rotate();
+        }
+    }
+
+    public void recordScheduledTick(CustomCropsBlock type) {
+        counter(scheduledTicks, type).increment();
+    }
+
+    public void recordRandomTick(CustomCropsBlock type) {
+        counter(randomTicks, type).increment();
+    }
+
+    public void recordRegionLoad(long nanos, long bytes) {
+        this.regionLoadTime.record(nanos);
+        this.regionBytesRead.add(bytes);
+    }
+
+    public void recordRegionSave(long nanos, long bytes) {
+        this.regionSaveTime.record(nanos);
+        this.regionBytesWritten.add(bytes);
+    }
+
+    public Histogram tickTime() {
+        return tickTime;
+    }
+
+    public Histogram regionLoadTime() {
+        return regionLoadTime;
+    }
+
+    public Histogram regionSaveTime() {
+        return regionSaveTime;
+    }
+
+    public Histogram offlineCatchUpTime() {
+        return offlineCatchUpTime;
+    }
+
+    public Counter chunksTicked() {
+        return chunksTicked;
+    }
+
+    public Counter syncTasks() {
+        return syncTasks;
+    }
+
+    public Counter regionBytesRead() {
+        return regionBytesRead;
+    }
+
+    public Counter regionBytesWritten() {
+        return regionBytesWritten;
+    }
+
+    public Map<CustomCropsBlock, Counter> scheduledTicks() {
+        return Collections.unmodifiableMap(scheduledTicks);
+    }
+
+    public Map<CustomCropsBlock, Counter> randomTicks() {
+        return Collections.unmodifiableMap(randomTicks);
+    }
+
+    public int loadedChunks() {
+        return loadedChunks;
+    }
+
+    public int lazyChunks() {
+        return lazyChunks;
+    }
+
+    /**
+     * Gets the metrics as flat name-value pairs, for exporting them to external systems.
+     * The pairs are reused for a second, since counters only change once per second,
+     * so placeholders can request them on every refresh without rebuilding all the percentiles.
+     *
+     * @return the unmodifiable metrics
+     */
+    public Map<String, Number> snapshot() {
+        Snapshot cached = this.snapshot;
+        long now = System.nanoTime();
+        if (cached != null && now - cached.time() < SNAPSHOT_LIFETIME) {
+            return cached.metrics();
+        }
+        Map<String, Number> metrics = Collections.unmodifiableMap(createSnapshot());
+        this.snapshot = new Snapshot(now, metrics);
+        return metrics;
+    }
+
+    private Map<String, Number> createSnapshot() {
+        HashMap<String, Number> map = new HashMap<>();
+        map.put("loaded_chunks", loadedChunks);
+        map.put("lazy_chunks", lazyChunks);
+        map.put("chunks_ticked_per_second", chunksTicked.perSecond());
+        map.put("sync_tasks_per_second", syncTasks.perSecond());
+        map.put("region_bytes_read", regionBytesRead.total());
+        map.put("region_bytes_written", regionBytesWritten.total());
+        putHistogram(map, "tick_ms", tickTime);
+        putHistogram(map, "region_load_ms", regionLoadTime);
+        putHistogram(map, "region_save_ms", regionSaveTime);
+        putHistogram(map, "offline_catch_up_ms", offlineCatchUpTime);
+        for (Map.Entry<CustomCropsBlock, Counter> entry : scheduledTicks.entrySet()) {
+            map.put("scheduled_ticks_per_second_" + entry.getKey().type().value(), entry.getValue().perSecond());
+        }
+        for (Map.Entry<CustomCropsBlock, Counter> entry : randomTicks.entrySet()) {
+            map.put("random_ticks_per_second_" + entry.getKey().type().value(), entry.getValue().perSecond());
+        }
+        return map;
+    }
+
+    private record Snapshot(long time, Map<String, Number> metrics) {
+    }
+
+    private static void putHistogram(Map<String, Number> map, String name, Histogram histogram) {
+        map.put(name + "_p50", histogram.percentileMillis(0.5));
+        map.put(name + "_p95", histogram.percentileMillis(0.95));
+        map.put(name + "_p99", histogram.percentileMillis(0.99));
+        map.put(name + "_max", histogram.maxMillis());
+    }
+
+    private static Counter counter(ConcurrentHashMap<CustomCropsBlock, Counter> counters, CustomCropsBlock type) {
+        Counter counter = counters.get(type);
+        return counter != null ? counter : counters.computeIfAbsent(type, k -> new Counter());
+    }
+
+    /**
+     * A counter that reports the amount of the last full second and the total amount.
+     */
+    public static class Counter {
+
+        private final LongAdder current = new LongAdder();
+        private volatile long perSecond;
+        private volatile long total;
+
+        public void increment() {
+            current.increment();
+        }
+
+        public void add(long amount) {
+            current.add(amount);
+        }
+
+        private void roll() {
+            long amount = current.sumThenReset();
+            this.perSecond = amount;
+            this.total += amount;
+        }
+
+        public long perSecond() {
+            return perSecond;
+        }
+
+        public long total() {
+            return total + current.sum();
+        }
+    }
+
+    /**
+     * A histogram of durations with logarithmic buckets, each power of two split into 4 buckets,
+     * so percentiles are accurate to 25%. Values are recorded in microseconds.
+     * <p>
+     * Two halves are kept. {@link #rotate()} clears the older half and starts recording into it,
+     * so the percentiles cover the last one to two windows.
+     */
+    public static class Histogram {
+
+        private static final int BUCKETS = 248;
+
+        private final AtomicLongArray[] halves = {new AtomicLongArray(BUCKETS), new AtomicLongArray(BUCKETS)};
+        private volatile int active;
+
+        public void record(long nanos) {
+            halves[active].incrementAndGet(bucket(Math.max(0, nanos / 1000)));
+        }
+
+        private void rotate() {
+            int next = active ^ 1;
+            AtomicLongArray half = halves[next];
+            for (int i = 0; i < BUCKETS; i++) {
+                half.set(i, 0);
+            }
+            this.active = next;
+        }
+
+        public long count() {
+            long count = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                count += halves[0].get(i) + halves[1].get(i);
+            }
+            return count;
+        }
+
+        /**
+         * Gets the upper bound of the bucket holding the given percentile.
+         *
+         * @param percentile the percentile, from 0 to 1
+         * @return the value in milliseconds, or 0 if nothing has been recorded
+         */
+        public double percentileMillis(double percentile) {
+            long[] counts = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = halves[0].get(i) + halves[1].get(i);
+                total += counts[i];
+            }
+            if (total == 0) return 0;
+            long target = Math.max(1, (long) Math.ceil(percentile * total));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= target) {
+                    return upperBound(i) / 1000d;
+                }
+            }
+            return upperBound(BUCKETS - 1) / 1000d;
+        }
+
+        public double maxMillis() {
+            return percentileMillis(1);
+        }
+
+        private static int bucket(long micros) {
+            if (micros < 4) return (int) micros;
+            int exponent = 63 - Long.numberOfLeadingZeros(micros);
+            int sub = (int) (micros >> (exponent - 2)) & 3;
+            return (exponent - 1) * 4 + sub;
+        }
+
+        private static long upperBound(int bucket) {
+            if (bucket < 4) return bucket;
+            int exponent = bucket / 4 + 1;
+            int sub = bucket % 4;
+            return ((5L + sub) << (exponent - 2)) - 1;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ *  Copyright (C) <2024> <XiaoMoMi>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.momirealms.customcrops.api.core.world;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records how much work the saves of a world do.
+ * Chunks and regions without unsaved changes are skipped, and are counted as such.
+ */
+public class WorldSaveStats {
+
+    private volatile int savedChunks;
+    private volatile int skippedChunks;
+    private volatile int savedRegions;
+    private volatile int skippedRegions;
+    private volatile long lastNanos;
+    private final AtomicLong bytesWritten = new AtomicLong();
+
+    /**
+     * Records a finished save.
+     *
+     * @param savedChunks the amount of chunks serialized
+     * @param skippedChunks the amount of chunks skipped
+     * @param savedRegions the amount of regions written
+     * @param skippedRegions the amount of regions skipped
+     * @param nanos the time spent on saving
+     */
+    public void record(int savedChunks, int skippedChunks, int savedRegions, int skippedRegions, long nanos) {
+        this.savedChunks = savedChunks;
+        this.skippedChunks = skippedChunks;
+        this.savedRegions = savedRegions;
+        this.skippedRegions = skippedRegions;
+        this.lastNanos = nanos;
+    }
+
+    /**
+     * Records the bytes written to the storage, called by the world adaptors.
+     *
+     * @param bytes the amount of bytes
+     */
+    public void recordBytesWritten(long bytes) {
+        this.bytesWritten.addAndGet(bytes);
+    }
+
+    public int savedChunks() {
+        return savedChunks;
+    }
+
+    public int skippedChunks() {
+        return skippedChunks;
+    }
+
+    public int savedRegions() {
+        return savedRegions;
+    }
+
+    public int skippedRegions() {
+        return skippedRegions;
+    }
+
+    public double lastMillis() {
+        return lastNanos / 1_000_000d;
+    }
+
+    public long bytesWritten() {
+        return bytesWritten.get();
+    }
+}
@@ -29,22 +29,38 @@ import net.momirealms.customcrops.common.plugin.CustomCropsPlugin;
 import net.momirealms.customcrops.common.plugin.scheduler.SchedulerTask;
 
 import java.lang.Thread.UncaughtExceptionHandler;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 public class WorldScheduler {
-    private static final int PARALLELISM = 1;
+    private static final int DEFAULT_PARALLELISM = 1;
+    private static final int DEFAULT_IO_QUEUE_SIZE = 256;
 
     private final CustomCropsPlugin plugin;
+    private final int parallelism;
 
     private final ScheduledThreadPoolExecutor scheduler;
     private final ForkJoinPool worker;
+    private final ThreadPoolExecutor io;
 
     public WorldScheduler(CustomCropsPlugin plugin) {
+        this(plugin, DEFAULT_PARALLELISM);
+    }
+
+    public WorldScheduler(CustomCropsPlugin plugin, int parallelism) {
+        this(plugin, parallelism, DEFAULT_IO_QUEUE_SIZE);
+    }
+
+    public WorldScheduler(CustomCropsPlugin plugin, int parallelism, int ioQueueSize) {
         this.plugin = plugin;
+        this.parallelism = Math.max(1, parallelism);
 
         this.scheduler = new ScheduledThreadPoolExecutor(1, r -> {
             Thread thread = Executors.defaultThreadFactory().newThread(r);
@@ -54,13 +70,67 @@ public class WorldScheduler {
         this.scheduler.setMaximumPoolSize(1);
         this.scheduler.setRemoveOnCancelPolicy(true);
         this.scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
-        this.worker = new ForkJoinPool(PARALLELISM, new WorkerThreadFactory(), new ExceptionHandler(), false);
+        this.worker = new ForkJoinPool(this.parallelism, new WorkerThreadFactory(), new ExceptionHandler(), false);
+        this.io = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(Math.max(1, ioQueueSize)), new IOThreadFactory());
     }
 
     public Executor async() {
         return this.worker;
     }
 
+    /**
+     * Gets the executor for disk reads and writes, separate from the ticking threads.
+     * If its queue is full, the task runs on the calling thread instead.
+     */
+    public Executor io() {
+        return task -> {
+            try {
+                this.io.execute(task);
+            } catch (RejectedExecutionException e) {
+                task.run();
+            }
+        };
+    }
+
+    /**
+     * Tries to run an optional task, like prefetching, on the I/O thread.
+     *
+     * @param task the task
+     * @return false if the task was dropped because the queue is full
+     */
+    public boolean tryIO(Runnable task) {
+        try {
+            this.io.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    public int parallelism() {
+        return this.parallelism;
+    }
+
+    /**
+     * Performs the action for each element on the worker threads and waits for all of them to complete.
+     * If the action throws an exception, it is rethrown and the remaining elements might be skipped.
+     *
+     * @param elements the elements
+     * @param action the action
+     * @param <T> the type of the elements
+     */
+    public <T> void forEachParallel(Collection<T> elements, Consumer<T> action) {
+        List<ForkJoinTask<?>> tasks = new ArrayList<>(elements.size());
+        for (T element : elements) {
+            tasks.add(ForkJoinTask.adapt(() -> action.accept(element)));
+        }
+        if (ForkJoinTask.getPool() == this.worker) {
+            ForkJoinTask.invokeAll(tasks);
+        } else {
+            this.worker.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+        }
+    }
+
     public SchedulerTask asyncLater(Runnable task, long delay, TimeUnit unit) {
         ScheduledFuture<?> future = this.scheduler.schedule(() -> this.worker.execute(task), delay, unit);
         return new JavaCancellable(future);
@@ -71,6 +141,15 @@ public class WorldScheduler {
         return new JavaCancellable(future);
     }
 
+    /**
+     * Runs the task repeatedly on the scheduler thread instead of the worker threads.
+     * The task should be lightweight and must not block.
+     */
+    public SchedulerTask schedulerRepeating(Runnable task, long delay, long interval, TimeUnit unit) {
+        ScheduledFuture<?> future = this.scheduler.scheduleAtFixedRate(task, delay, interval, unit);
+        return new JavaCancellable(future);
+    }
+
     public void shutdownScheduler() {
         this.scheduler.shutdownNow();
     }
@@ -79,6 +158,13 @@ public class WorldScheduler {
         this.worker.shutdownNow();
     }
 
+    /**
+     * Stops accepting I/O tasks. The queued ones are still completed.
+     */
+    public void shutdownIO() {
+        this.io.shutdown();
+    }
+
     private void reportRunningTasks(Predicate<Thread> predicate) {
         Thread.getAllStackTraces().forEach((thread, stack) -> {
             if (predicate.test(thread)) {
@@ -101,6 +187,19 @@ public class WorldScheduler {
         }
     }
 
+    private final class IOThreadFactory implements ThreadFactory {
+        private static final AtomicInteger COUNT = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = Executors.defaultThreadFactory().newThread(r);
+            thread.setDaemon(true);
+            thread.setName("customcrops-world-io-" + COUNT.getAndIncrement());
+            thread.setUncaughtExceptionHandler(new ExceptionHandler());
+            return thread;
+        }
+    }
+
     private final class ExceptionHandler implements UncaughtExceptionHandler {
         @Override
         public void uncaughtException(Thread t, Throwable e) {
@@ -0,0 +1,91 @@
+/*
+ *  Copyright (C) <2024> <XiaoMoMi>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.momirealms.customcrops.api.core.world;
+
+import net.momirealms.customcrops.api.BukkitCustomCropsPlugin;
+import net.momirealms.customcrops.api.core.ConfigManager;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * Drives the ticking of a world.
+ * <p>
+ * {@link #trigger()} is called once per second on the scheduler thread. At most one tick pass runs at a time.
+ * If the previous pass hasn't finished yet, the seconds are accumulated and processed together in
+ * a single catch-up pass, instead of queuing a new pass for each second.
+ */
+public class WorldTickEngine {
+
+    private final WorldScheduler scheduler;
+    private final WorldTickTimings timings;
+    private final IntConsumer pass;
+    private final AtomicInteger pendingSeconds = new AtomicInteger();
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    /**
+     * Creates a tick engine.
+     *
+     * @param scheduler the scheduler of the world
+     * @param timings the timings to record counters to
+     * @param pass the tick pass, accepting the amount of seconds to process
+     */
+    public WorldTickEngine(WorldScheduler scheduler, WorldTickTimings timings, IntConsumer pass) {
+        this.scheduler = scheduler;
+        this.timings = timings;
+        this.pass = pass;
+    }
+
+    /**
+     * Notifies the engine that one second has passed.
+     */
+    public void trigger() {
+        this.pendingSeconds.incrementAndGet();
+        if (this.running.compareAndSet(false, true)) {
+            this.scheduler.async().execute(this::run);
+        } else {
+            this.timings.recordOverrun();
+        }
+    }
+
+    private void run() {
+        try {
+            int seconds;
+            while ((seconds = this.pendingSeconds.getAndSet(0)) > 0) {
+                int max = ConfigManager.maxCatchUpSeconds();
+                if (seconds > max) {
+                    this.timings.recordSkipped(seconds - max);
+                    seconds = max;
+                }
+                if (seconds > 1) {
+                    this.timings.recordCoalesced(seconds - 1);
+                }
+                this.pass.accept(seconds);
+            }
+        } catch (Throwable t) {
+            BukkitCustomCropsPlugin.getInstance().getPluginLogger().warn("Failed to tick the world", t);
+        } finally {
+            this.running.set(false);
+            // a second might have passed between the last check and releasing the flag
+            if (this.pendingSeconds.get() > 0 && this.running.compareAndSet(false, true)) {
+                this.scheduler.async().execute(this::run);
+            }
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ *  Copyright (C) <2024> <XiaoMoMi>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.momirealms.customcrops.api.core.world;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records how long it takes for a world to tick its loaded chunks.
+ * Recording never takes a lock and is safe from several threads at once, such as the ticking workers
+ * and the scheduler thread, and the values can be read from any thread.
+ */
+public class WorldTickTimings {
+
+    private volatile long lastNanos;
+    // -1 until the first tick is recorded
+    private final AtomicLong averageNanos = new AtomicLong(-1);
+    private final AtomicLong maxNanos = new AtomicLong();
+    private volatile int lastChunks;
+    private volatile int threads;
+    private final LongAdder ticks = new LongAdder();
+    private final LongAdder skippedTicks = new LongAdder();
+    private final LongAdder coalescedTicks = new LongAdder();
+    private final LongAdder overrunTicks = new LongAdder();
+    private volatile int carriedChunks;
+
+    /**
+     * Records a finished tick.
+     *
+     * @param nanos the time spent on ticking
+     * @param chunks the amount of chunks ticked
+     * @param threads the amount of threads used
+     */
+    public void record(long nanos, int chunks, int threads) {
+        this.lastNanos = nanos;
+        // exponential moving average over roughly the last 20 ticks
+        this.averageNanos.accumulateAndGet(nanos, (average, value) -> average < 0 ? value : average + (value - average) / 20);
+        this.maxNanos.accumulateAndGet(nanos, Math::max);
+        this.lastChunks = chunks;
+        this.threads = threads;
+        this.ticks.increment();
+    }
+
+    /**
+     * Records the seconds that are dropped because they exceed the max catch-up seconds.
+     *
+     * @param seconds the amount of seconds
+     */
+    public void recordSkipped(int seconds) {
+        this.skippedTicks.add(seconds);
+    }
+
+    /**
+     * Records the missed seconds that are merged into one catch-up pass.
+     *
+     * @param seconds the amount of seconds
+     */
+    public void recordCoalesced(int seconds) {
+        this.coalescedTicks.add(seconds);
+    }
+
+    /**
+     * Records a second that passed while the previous tick was still running.
+     */
+    public void recordOverrun() {
+        this.overrunTicks.increment();
+    }
+
+    /**
+     * Records the amount of chunks that ran out of the tick budget and are carried over to the next tick.
+     *
+     * @param chunks the amount of chunks
+     */
+    public void recordCarried(int chunks) {
+        this.carriedChunks = chunks;
+    }
+
+    /**
+     * Resets the max tick time.
+     */
+    public void resetMax() {
+        this.maxNanos.set(0);
+    }
+
+    public double lastMillis() {
+        return lastNanos / 1_000_000d;
+    }
+
+    public double averageMillis() {
+        return Math.max(0, averageNanos.get()) / 1_000_000d;
+    }
+
+    public double maxMillis() {
+        return maxNanos.get() / 1_000_000d;
+    }
+
+    public int lastChunks() {
+        return lastChunks;
+    }
+
+    public int threads() {
+        return threads;
+    }
+
+    public long ticks() {
+        return ticks.sum();
+    }
+
+    public long skippedTicks() {
+        return skippedTicks.sum();
+    }
+
+    public long coalescedTicks() {
+        return coalescedTicks.sum();
+    }
+
+    public long overrunTicks() {
+        return overrunTicks.sum();
+    }
+
+    public int carriedChunks() {
+        return carriedChunks;
+    }
+}
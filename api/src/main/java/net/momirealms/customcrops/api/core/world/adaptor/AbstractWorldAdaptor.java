@@ -26,47 +26,41 @@ import net.momirealms.customcrops.api.core.world.*;
 import net.momirealms.customcrops.common.dependency.Dependency;
 import org.jetbrains.annotations.NotNull;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
 import java.util.*;
-import java.util.concurrent.PriorityBlockingQueue;
 
 public abstract class AbstractWorldAdaptor<W> implements WorldAdaptor<W> {
 
-    public static final int CHUNK_VERSION = 2;
-    public static final int REGION_VERSION = 1;
+    public static final int CHUNK_VERSION = 3;
+    public static final int REGION_VERSION = RegionFile.VERSION;
 
-    private final Method decompressMethod;
-    private final Method compressMethod;
+    protected final ZstdCodec zstd;
 
     public AbstractWorldAdaptor() {
+        this.zstd = createZstdCodec();
+    }
+
+    /**
+     * Creates a zstd codec with its own context pools and compression level.
+     *
+     * @return the codec, which should be closed once it's no longer used
+     */
+    protected ZstdCodec createZstdCodec() {
         ClassLoader classLoader = BukkitCustomCropsPlugin.getInstance().getDependencyManager().obtainClassLoaderWith(EnumSet.of(Dependency.ZSTD));
-        try {
-            Class<?> zstd = classLoader.loadClass("com.github.luben.zstd.Zstd");
-            decompressMethod = zstd.getMethod("decompress", byte[].class, byte[].class);
-            compressMethod = zstd.getMethod("compress", byte[].class);
-        } catch (ReflectiveOperationException e) {
-            throw new RuntimeException(e);
-        }
+        return new ZstdCodec(classLoader);
     }
 
-    protected void zstdDecompress(byte[] decompressedData, byte[] compressedData) {
-        try {
-            decompressMethod.invoke(null, decompressedData, compressedData);
-        } catch (IllegalAccessException | InvocationTargetException e) {
-            throw new RuntimeException(e);
-        }
-        //Zstd.decompress(decompressedData, compressedData);
+    /**
+     * Sets the zstd level chunks are compressed with.
+     *
+     * @param level the zstd compression level
+     */
+    public void compressionLevel(int level) {
+        zstd.level(level);
     }
 
-    protected byte[] zstdCompress(byte[] data) {
-        try {
-            Object result = compressMethod.invoke(null, (Object) data);
-            return (byte[]) result;
-        } catch (IllegalAccessException | InvocationTargetException e) {
-            throw new RuntimeException(e);
-        }
-        //return Zstd.compress(data);
+    @Override
+    public void close() {
+        zstd.close();
     }
 
     @Override
@@ -82,24 +76,19 @@ public abstract class AbstractWorldAdaptor<W> implements WorldAdaptor<W> {
                 chunk.loadedMilliSeconds(),
                 chunk.lastLoadedTime(),
                 chunk.sectionsToSave().map(this::toSerializableSection).toList(),
-                queueToIntArray(chunk.tickTaskQueue()),
+                chunk.tickTimingWheel().toArray(),
                 tickedBlocksToArray(chunk.tickedBlocks())
         );
     }
 
     protected SerializableSection toSerializableSection(CustomCropsSection section) {
-        return new SerializableSection(section.getSectionID(), toCompoundTags(section.blockMap()));
+        return new SerializableSection(section.getSectionID(), toCompoundTags(section));
     }
 
-    private List<CompoundTag> toCompoundTags(Map<BlockPos, CustomCropsBlockState> blocks) {
-        ArrayList<CompoundTag> tags = new ArrayList<>(blocks.size());
+    private List<CompoundTag> toCompoundTags(CustomCropsSection section) {
         Map<CustomCropsBlockState, List<Integer>> blockToPosMap = new HashMap<>();
-        for (Map.Entry<BlockPos, CustomCropsBlockState> entry : blocks.entrySet()) {
-            BlockPos coordinate = entry.getKey();
-            CustomCropsBlockState block = entry.getValue();
-            List<Integer> coordinates = blockToPosMap.computeIfAbsent(block, k -> new ArrayList<>());
-            coordinates.add(coordinate.position());
-        }
+        section.forEachBlock((position, block) -> blockToPosMap.computeIfAbsent(block, k -> new ArrayList<>()).add(position));
+        ArrayList<CompoundTag> tags = new ArrayList<>(blockToPosMap.size());
         for (Map.Entry<CustomCropsBlockState, List<Integer>> entry : blockToPosMap.entrySet()) {
             tags.add(new CompoundTag("", toCompoundMap(entry.getKey(), entry.getValue())));
         }
@@ -114,29 +103,20 @@ public abstract class AbstractWorldAdaptor<W> implements WorldAdaptor<W> {
         }
         map.put(new StringTag("type", block.type().type().asString()));
         map.put(new IntArrayTag("pos", result));
-        map.put(new CompoundTag("data", block.compoundMap().originalMap()));
+        map.put(new CompoundTag("data", block.toCompoundMap()));
         return map;
     }
 
     private int[] tickedBlocksToArray(Set<BlockPos> set) {
-        int[] ticked = new int[set.size()];
-        int i = 0;
-        for (BlockPos pos : set) {
-            ticked[i] = pos.position();
-            i++;
-        }
-        return ticked;
-    }
-
-    private int[] queueToIntArray(PriorityBlockingQueue<DelayedTickTask> queue) {
-        int size = queue.size() * 2;
-        int[] tasks = new int[size];
-        int i = 0;
-        for (DelayedTickTask task : queue) {
-            tasks[i * 2] = task.getTime();
-            tasks[i * 2 + 1] = task.blockPos().position();
-            i++;
+        // the set might be modified by the ticking threads
+        synchronized (set) {
+            int[] ticked = new int[set.size()];
+            int i = 0;
+            for (BlockPos pos : set) {
+                ticked[i] = pos.position();
+                i++;
+            }
+            return ticked;
         }
-        return tasks;
     }
 }
@@ -0,0 +1,240 @@
+/*
+ *  Copyright (C) <2024> <XiaoMoMi>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.momirealms.customcrops.api.core.world.adaptor;
+
+import net.momirealms.customcrops.api.BukkitCustomCropsPlugin;
+import net.momirealms.customcrops.api.core.InternalRegistries;
+import net.momirealms.customcrops.api.core.block.CustomCropsBlock;
+import net.momirealms.customcrops.api.core.world.*;
+import net.momirealms.customcrops.common.util.Key;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static net.momirealms.customcrops.api.util.VarIntUtils.readSignedVarInt;
+import static net.momirealms.customcrops.api.util.VarIntUtils.readVarInt;
+import static net.momirealms.customcrops.api.util.VarIntUtils.writeSignedVarInt;
+import static net.momirealms.customcrops.api.util.VarIntUtils.writeVarInt;
+
+/**
+ * The compact binary format of chunk payloads since chunk version 3.
+ * <p>
+ * Distinct block states are written once in a palette shared by the whole chunk, each as the block type followed by
+ * the typed slots of the state. Sections then list their blocks as delta encoded local indexes
+ * ((y & 15) << 8 | z << 4 | x) and palette indexes, all as varints. Reading creates the block states straight from
+ * the palette, without building any intermediate NBT tag for the well known fields.
+ */
+public final class CompactChunkCodec {
+
+    // far above any tick unit, the scheduled ticks are always within one cycle
+    private static final int MAX_TICK_SECOND = 1 << 20;
+
+    private CompactChunkCodec() {
+    }
+
+    /**
+     * Encodes a chunk.
+     *
+     * @param chunk the chunk
+     * @param sections the sections to save
+     * @return the uncompressed payload
+     */
+    public static byte[] encode(CustomCropsChunk chunk, List<CustomCropsSection> sections) throws IOException {
+        ByteArrayOutputStream paletteBytes = new ByteArrayOutputStream(256);
+        DataOutputStream paletteOut = new DataOutputStream(paletteBytes);
+        ByteArrayOutputStream sectionBytes = new ByteArrayOutputStream(1024);
+        DataOutputStream sectionOut = new DataOutputStream(sectionBytes);
+        ByteArrayOutputStream entryBytes = new ByteArrayOutputStream(64);
+        DataOutputStream entryOut = new DataOutputStream(entryBytes);
+        HashMap<ByteBuffer, Integer> palette = new HashMap<>();
+        SectionBlocks blocks = new SectionBlocks();
+
+        writeVarInt(sectionOut, sections.size());
+        for (CustomCropsSection section : sections) {
+            blocks.size = 0;
+            section.forEachBlock(blocks);
+            long[] entries = new long[blocks.size];
+            for (int i = 0; i < blocks.size; i++) {
+                CustomCropsBlockState state = blocks.states[i];
+                entryBytes.reset();
+                entryOut.writeUTF(state.type().type().asString());
+                if (state instanceof CustomCropsBlockStateImpl impl) {
+                    impl.writeData(entryOut);
+                } else {
+                    CustomCropsBlockStateImpl.writeData(state.toCompoundMap(), entryOut);
+                }
+                byte[] encoded = entryBytes.toByteArray();
+                Integer index = palette.get(ByteBuffer.wrap(encoded));
+                if (index == null) {
+                    index = palette.size();
+                    palette.put(ByteBuffer.wrap(encoded), index);
+                    writeVarInt(paletteOut, encoded.length);
+                    paletteOut.write(encoded);
+                }
+                entries[i] = ((long) PackedCustomCropsSection.localIndex(blocks.positions[i]) << 32) | index;
+            }
+            Arrays.sort(entries);
+            writeSignedVarInt(sectionOut, section.getSectionID());
+            writeVarInt(sectionOut, entries.length);
+            int previous = 0;
+            for (long entry : entries) {
+                int localIndex = (int) (entry >>> 32);
+                writeVarInt(sectionOut, localIndex - previous);
+                writeVarInt(sectionOut, (int) entry);
+                previous = localIndex;
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(paletteBytes.size() + sectionBytes.size() + 64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        ChunkPos chunkPos = chunk.chunkPos();
+        out.writeInt(chunkPos.x());
+        out.writeInt(chunkPos.z());
+        writeVarInt(out, chunk.loadedMilliSeconds());
+        out.writeLong(chunk.lastLoadedTime());
+        // scheduled ticks, in pairs of (second, position)
+        int[] queue = chunk.tickTimingWheel().toArray();
+        writeVarInt(out, queue.length / 2);
+        for (int i = 0; i < queue.length; i += 2) {
+            writeVarInt(out, queue[i]);
+            out.writeInt(queue[i + 1]);
+        }
+        Set<BlockPos> tickedBlocks = chunk.tickedBlocks();
+        // the set might be modified by the ticking threads
+        synchronized (tickedBlocks) {
+            writeVarInt(out, tickedBlocks.size());
+            for (BlockPos pos : tickedBlocks) {
+                out.writeInt(pos.position());
+            }
+        }
+        writeVarInt(out, palette.size());
+        paletteBytes.writeTo(out);
+        sectionBytes.writeTo(out);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes a chunk.
+     *
+     * @param world the world
+     * @param bytes the uncompressed payload
+     * @return the chunk
+     * @throws IOException if the payload is truncated or corrupted
+     */
+    public static CustomCropsChunk decode(CustomCropsWorld<?> world, byte[] bytes) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        ChunkPos chunkPos = ChunkPos.of(in.readInt(), in.readInt());
+        int loadedSeconds = readVarInt(in);
+        long lastLoadedTime = in.readLong();
+        TickTimingWheel wheel = new TickTimingWheel(world.setting().minTickUnit());
+        int tasks = readLength(in);
+        for (int i = 0; i < tasks; i++) {
+            int second = readVarInt(in);
+            // the wheel grows to the second, so a corrupted one must not allocate a huge wheel
+            if (second < 0 || second > MAX_TICK_SECOND) {
+                throw new IOException("Invalid scheduled second " + second);
+            }
+            wheel.schedule(second, in.readInt());
+        }
+        int tickedSize = readLength(in);
+        HashSet<BlockPos> tickedBlocks = new HashSet<>(Math.max(11, tickedSize));
+        for (int i = 0; i < tickedSize; i++) {
+            tickedBlocks.add(new BlockPos(in.readInt()));
+        }
+
+        int paletteSize = readLength(in);
+        CustomCropsBlockStateImpl[] palette = new CustomCropsBlockStateImpl[paletteSize];
+        for (int i = 0; i < paletteSize; i++) {
+            byte[] entry = new byte[readLength(in)];
+            in.readFully(entry);
+            DataInputStream entryIn = new DataInputStream(new ByteArrayInputStream(entry));
+            Key key = Key.key(entryIn.readUTF());
+            CustomCropsBlock block = InternalRegistries.BLOCK.get(key);
+            if (block == null) {
+                BukkitCustomCropsPlugin.getInstance().getPluginLogger().warn("[" + world.worldName() + "] Unrecognized custom block " + key + " has been removed from chunk " + chunkPos);
+                continue;
+            }
+            palette[i] = CustomCropsBlockStateImpl.readData(block, entryIn);
+        }
+        // the first block using a palette entry takes the decoded state, the others take copies
+        boolean[] used = new boolean[paletteSize];
+
+        ConcurrentHashMap<Integer, CustomCropsSection> sections = new ConcurrentHashMap<>();
+        int sectionAmount = readLength(in);
+        for (int i = 0; i < sectionAmount; i++) {
+            int sectionID = readSignedVarInt(in);
+            CustomCropsSection section = world.createSection(sectionID);
+            int baseY = sectionID * 16;
+            int blocks = readLength(in);
+            int localIndex = 0;
+            for (int j = 0; j < blocks; j++) {
+                int delta = readVarInt(in);
+                // the local indexes are sorted, so only the first delta can be zero
+                if (delta < 0 || (j > 0 && delta == 0) || localIndex + delta > 4095) {
+                    throw new IOException("Invalid local index delta " + delta + " after " + localIndex + " in section " + sectionID);
+                }
+                localIndex += delta;
+                int index = readVarInt(in);
+                if (index < 0 || index >= paletteSize) {
+                    throw new IOException("Palette index " + index + " out of bounds for palette size " + paletteSize);
+                }
+                CustomCropsBlockStateImpl state = palette[index];
+                if (state == null) continue;
+                if (used[index]) {
+                    state = state.copy();
+                } else {
+                    used[index] = true;
+                }
+                section.addBlockState(new BlockPos(localIndex & 0xF, baseY + (localIndex >> 8), (localIndex >> 4) & 0xF), state);
+            }
+            sections.put(sectionID, section);
+        }
+        return world.restoreChunk(chunkPos, loadedSeconds, lastLoadedTime, sections, wheel, tickedBlocks);
+    }
+
+    // Reads the length of the following elements, which take at least one byte each
+    private static int readLength(DataInputStream in) throws IOException {
+        int length = readVarInt(in);
+        if (length < 0 || length > in.available()) {
+            throw new IOException("Invalid length " + length + " with " + in.available() + " bytes left");
+        }
+        return length;
+    }
+
+    // Collects the blocks of a section, reused across the sections of a chunk
+    private static final class SectionBlocks implements CustomCropsSection.BlockConsumer {
+
+        private int[] positions = new int[16];
+        private CustomCropsBlockState[] states = new CustomCropsBlockState[16];
+        private int size;
+
+        @Override
+        public void accept(int position, CustomCropsBlockState state) {
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size << 1);
+                states = Arrays.copyOf(states, size << 1);
+            }
+            positions[size] = position;
+            states[size] = state;
+            size++;
+        }
+    }
+}
@@ -0,0 +1,500 @@
+/*
+ *  Copyright (C) <2024> <XiaoMoMi>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.momirealms.customcrops.api.core.world.adaptor;
+
+import net.momirealms.customcrops.api.core.world.ChunkPos;
+import net.momirealms.customcrops.api.core.world.RegionPos;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * A region file of the version 2 format.
+ * <p>
+ * The file starts with a fixed header: the version byte, the region coordinates and a table of
+ * (sector offset, length) for each of the 1024 chunks. Chunk payloads are aligned to {@value #SECTOR_SIZE} byte
+ * sectors, so a single chunk can be updated in place without rewriting the rest of the region.
+ * <p>
+ * Updates are first written to a write-ahead log next to the region file and forced to disk, then applied
+ * to the region file. If the server stops in the middle of applying them, the log is replayed the next time the
+ * region file is opened. An incomplete log is discarded, leaving the region file untouched.
+ * Full rewrites go to a temporary file that atomically replaces the region file, and the directory is forced
+ * afterward so that the replacement survives a crash.
+ * <p>
+ * Changed chunks are always written to free sectors (copy on write), and their old sectors are only released after
+ * the new table is written. Sectors still referenced by a reachable {@link Mapping} of the file are never reused,
+ * and the file is never truncated while such a mapping exists, so mappings keep reading consistent bytes.
+ */
+public class RegionFile implements Closeable {
+
+    public static final int VERSION = 2;
+    public static final int SECTOR_SIZE = 4096;
+
+    private static final int CHUNKS = 1024;
+    private static final int TABLE_OFFSET = 9;
+    private static final int HEADER_SECTORS = (TABLE_OFFSET + CHUNKS * 8 + SECTOR_SIZE - 1) / SECTOR_SIZE;
+    private static final int WAL_MAGIC = 0x4343574C; // CCWL
+    // mappings that might still be read, by the absolute path of the region file, guarded by itself
+    private static final HashMap<Path, List<WeakReference<Mapping>>> MAPPINGS = new HashMap<>();
+
+    private final Path path;
+    private final Path key;
+    private final Path walPath;
+    private final FileChannel channel;
+    private final int regionX;
+    private final int regionZ;
+    // offsets in sectors, 0 if the chunk is absent
+    private final int[] offsets = new int[CHUNKS];
+    // payload lengths in bytes
+    private final int[] lengths = new int[CHUNKS];
+    private final BitSet usedSectors = new BitSet();
+
+    private RegionFile(Path path, FileChannel channel) throws IOException {
+        this.path = path;
+        this.key = path.toAbsolutePath().normalize();
+        this.walPath = walPath(path);
+        this.channel = channel;
+        ByteBuffer header = ByteBuffer.allocate(TABLE_OFFSET + CHUNKS * 8);
+        readFully(channel, header, 0);
+        header.flip();
+        int version = header.get();
+        if (version != VERSION) {
+            throw new IOException("Unsupported region file version " + version + " in " + path);
+        }
+        this.regionX = header.getInt();
+        this.regionZ = header.getInt();
+        this.usedSectors.set(0, HEADER_SECTORS);
+        long fileSectors = (channel.size() + SECTOR_SIZE - 1) / SECTOR_SIZE;
+        for (int i = 0; i < CHUNKS; i++) {
+            int offset = header.getInt();
+            int length = header.getInt();
+            if (offset == 0) continue;
+            int sectors = sectors(length);
+            if (offset < HEADER_SECTORS || length <= 0 || offset + sectors > fileSectors) {
+                throw new IOException("Invalid chunk entry " + i + " (" + offset + ", " + length + ") in " + path);
+            }
+            this.offsets[i] = offset;
+            this.lengths[i] = length;
+            this.usedSectors.set(offset, offset + sectors);
+        }
+    }
+
+    /**
+     * Reads the version of a region file.
+     *
+     * @param path the path of the region file
+     * @return the version, or -1 if the file doesn't exist or is empty
+     */
+    public static int version(Path path) throws IOException {
+        if (!Files.exists(path)) return -1;
+        try (InputStream in = Files.newInputStream(path)) {
+            return in.read();
+        }
+    }
+
+    /**
+     * Opens a version 2 region file, replaying the pending write-ahead log if there's one.
+     *
+     * @param path the path of the region file
+     * @return the region file
+     */
+    public static RegionFile open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            RegionFile file = new RegionFile(path, channel);
+            file.recover();
+            return file;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes a whole region into a new file that atomically replaces the region file.
+     * This is also how files of older versions are upgraded.
+     *
+     * @param path the path of the region file
+     * @param pos the position of the region
+     * @param chunks the serialized chunks
+     * @return the amount of bytes written
+     */
+    public static long write(Path path, RegionPos pos, Map<ChunkPos, byte[]> chunks) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SECTORS * SECTOR_SIZE);
+        header.put((byte) VERSION).putInt(pos.x()).putInt(pos.z());
+        long written;
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            int sector = HEADER_SECTORS;
+            for (Map.Entry<ChunkPos, byte[]> entry : chunks.entrySet()) {
+                byte[] payload = entry.getValue();
+                if (payload == null || payload.length == 0) continue;
+                header.putInt(TABLE_OFFSET + index(entry.getKey()) * 8, sector).putInt(TABLE_OFFSET + index(entry.getKey()) * 8 + 4, payload.length);
+                writeFully(channel, ByteBuffer.wrap(payload), (long) sector * SECTOR_SIZE);
+                sector += sectors(payload.length);
+            }
+            header.clear();
+            writeFully(channel, header, 0);
+            written = channel.size();
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        // the rename itself is only durable once the directory is forced
+        forceDirectory(parent);
+        Files.deleteIfExists(walPath(path));
+        return written;
+    }
+
+    /**
+     * Deletes a region file and its write-ahead log.
+     *
+     * @param path the path of the region file
+     */
+    public static void delete(Path path) throws IOException {
+        Files.deleteIfExists(walPath(path));
+        Files.deleteIfExists(path);
+    }
+
+    /**
+     * Reads the payload of a chunk.
+     *
+     * @param pos the position of the chunk
+     * @return the payload, or null if the chunk is absent
+     */
+    @Nullable
+    public synchronized byte[] read(ChunkPos pos) throws IOException {
+        int index = index(pos);
+        if (offsets[index] == 0) return null;
+        ByteBuffer buffer = ByteBuffer.allocate(lengths[index]);
+        readFully(channel, buffer, (long) offsets[index] * SECTOR_SIZE);
+        return buffer.array();
+    }
+
+    /**
+     * Reads the payloads of all the chunks.
+     *
+     * @return the payloads by chunk position
+     */
+    public synchronized Map<ChunkPos, byte[]> readAll() throws IOException {
+        HashMap<ChunkPos, byte[]> chunks = new HashMap<>();
+        for (int i = 0; i < CHUNKS; i++) {
+            if (offsets[i] == 0) continue;
+            ChunkPos pos = ChunkPos.of(regionX * 32 + (i & 31), regionZ * 32 + (i >> 5));
+            chunks.put(pos, read(pos));
+        }
+        return chunks;
+    }
+
+    /**
+     * Maps this region file into memory. The returned mapping stays readable after this file is closed.
+     * It keeps reading the chunks as they were when it was created: as long as it's reachable, the sectors it
+     * refers to are neither reused nor truncated by later commits to the same file.
+     *
+     * @return the mapping
+     */
+    public synchronized Mapping map() throws IOException {
+        synchronized (MAPPINGS) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            Mapping mapping = new Mapping(regionX, regionZ, buffer, offsets.clone(), lengths.clone());
+            MAPPINGS.computeIfAbsent(key, k -> new ArrayList<>()).add(new WeakReference<>(mapping));
+            return mapping;
+        }
+    }
+
+    /**
+     * Updates some chunks of the region atomically.
+     *
+     * @param changes the new payloads by chunk position, null or empty payloads remove the chunk
+     * @return the amount of bytes written, including the write-ahead log
+     */
+    public synchronized long commit(Map<ChunkPos, byte[]> changes) throws IOException {
+        if (changes.isEmpty()) return 0;
+        int[] indexes = new int[changes.size()];
+        byte[][] payloads = new byte[changes.size()][];
+        int i = 0;
+        for (Map.Entry<ChunkPos, byte[]> entry : changes.entrySet()) {
+            indexes[i] = index(entry.getKey());
+            byte[] payload = entry.getValue();
+            payloads[i++] = payload == null || payload.length == 0 ? null : payload;
+        }
+        long written = writeLog(indexes, payloads);
+        written += apply(indexes, payloads);
+        Files.deleteIfExists(walPath);
+        return written;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    private void recover() throws IOException {
+        if (!Files.exists(walPath)) return;
+        byte[] log = Files.readAllBytes(walPath);
+        ByteBuffer buffer = ByteBuffer.wrap(log);
+        if (log.length >= 16 && buffer.getInt() == WAL_MAGIC) {
+            CRC32 crc = new CRC32();
+            crc.update(log, 0, log.length - 8);
+            if (buffer.getLong(log.length - 8) == crc.getValue()) {
+                int count = buffer.getInt();
+                int[] indexes = new int[count];
+                byte[][] payloads = new byte[count][];
+                for (int i = 0; i < count; i++) {
+                    indexes[i] = buffer.getInt();
+                    int length = buffer.getInt();
+                    if (length > 0) {
+                        payloads[i] = new byte[length];
+                        buffer.get(payloads[i]);
+                    }
+                }
+                apply(indexes, payloads);
+            }
+        }
+        // an incomplete log means the region file was never touched
+        Files.deleteIfExists(walPath);
+    }
+
+    private long writeLog(int[] indexes, byte[][] payloads) throws IOException {
+        int size = 8;
+        for (byte[] payload : payloads) {
+            size += 8 + (payload == null ? 0 : payload.length);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size + 8);
+        buffer.putInt(WAL_MAGIC).putInt(indexes.length);
+        for (int i = 0; i < indexes.length; i++) {
+            buffer.putInt(indexes[i]);
+            if (payloads[i] == null) {
+                buffer.putInt(0);
+            } else {
+                buffer.putInt(payloads[i].length).put(payloads[i]);
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, size);
+        buffer.putLong(crc.getValue());
+        buffer.flip();
+        try (FileChannel log = FileChannel.open(walPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(log, buffer, 0);
+            log.force(true);
+        }
+        // a log created by this commit must survive a crash as well
+        forceDirectory(walPath.toAbsolutePath().getParent());
+        return size + 8;
+    }
+
+    private long apply(int[] indexes, byte[][] payloads) throws IOException {
+        long written = 0;
+        // the sectors that can't be written: the ones in use and the ones still read through mappings
+        BitSet occupied = (BitSet) usedSectors.clone();
+        BitSet pinned = pinnedSectors(key);
+        if (pinned != null) occupied.or(pinned);
+        ArrayList<int[]> released = new ArrayList<>();
+        for (int i = 0; i < indexes.length; i++) {
+            int index = indexes[i];
+            byte[] payload = payloads[i];
+            int oldOffset = offsets[index];
+            if (oldOffset != 0) {
+                released.add(new int[] {oldOffset, oldOffset + sectors(lengths[index])});
+            }
+            if (payload == null) {
+                offsets[index] = 0;
+                lengths[index] = 0;
+                continue;
+            }
+            // never overwrite the old sectors, they are released once the new table is written
+            int sectors = sectors(payload.length);
+            int offset = allocate(occupied, sectors);
+            occupied.set(offset, offset + sectors);
+            usedSectors.set(offset, offset + sectors);
+            writeFully(channel, ByteBuffer.wrap(payload), (long) offset * SECTOR_SIZE);
+            offsets[index] = offset;
+            lengths[index] = payload.length;
+            written += payload.length;
+        }
+        // the table is written after the payloads it points to
+        ByteBuffer table = ByteBuffer.allocate(CHUNKS * 8);
+        for (int i = 0; i < CHUNKS; i++) {
+            table.putInt(offsets[i]).putInt(lengths[i]);
+        }
+        table.flip();
+        writeFully(channel, table, TABLE_OFFSET);
+        for (int[] range : released) {
+            usedSectors.clear(range[0], range[1]);
+        }
+        truncate();
+        channel.force(true);
+        return written + CHUNKS * 8;
+    }
+
+    // Drops the free sectors at the end of the file, unless a mapping of the file might still read them
+    private void truncate() {
+        synchronized (MAPPINGS) {
+            if (pinnedSectors(key) != null) return;
+            try {
+                long end = (long) usedSectors.length() * SECTOR_SIZE;
+                if (end < channel.size()) {
+                    channel.truncate(end);
+                }
+            } catch (IOException ignored) {
+                // the free sectors would be reused later
+            }
+        }
+    }
+
+    // Gets the sectors referenced by the reachable mappings of a file, or null if there's none
+    @Nullable
+    private static BitSet pinnedSectors(Path key) {
+        synchronized (MAPPINGS) {
+            List<WeakReference<Mapping>> mappings = MAPPINGS.get(key);
+            if (mappings == null) return null;
+            BitSet pinned = null;
+            for (Iterator<WeakReference<Mapping>> iterator = mappings.iterator(); iterator.hasNext();) {
+                Mapping mapping = iterator.next().get();
+                if (mapping == null) {
+                    iterator.remove();
+                    continue;
+                }
+                if (pinned == null) pinned = new BitSet();
+                mapping.pin(pinned);
+            }
+            if (pinned == null) MAPPINGS.remove(key);
+            return pinned;
+        }
+    }
+
+    // first fit, or append at the end of the file
+    private static int allocate(BitSet occupied, int sectors) {
+        int start = occupied.nextClearBit(HEADER_SECTORS);
+        while (true) {
+            int next = occupied.nextSetBit(start);
+            if (next == -1 || next - start >= sectors) {
+                return start;
+            }
+            start = occupied.nextClearBit(next);
+        }
+    }
+
+    private static int index(ChunkPos pos) {
+        return (pos.x() & 31) | (pos.z() & 31) << 5;
+    }
+
+    private static int sectors(int length) {
+        return (length + SECTOR_SIZE - 1) / SECTOR_SIZE;
+    }
+
+    // Forces the entries of a directory to disk, which is not supported on every platform
+    private static void forceDirectory(@Nullable Path directory) {
+        if (directory == null) return;
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ignored) {
+            // directories can't be opened as files on some platforms, such as Windows
+        }
+    }
+
+    private static Path walPath(Path path) {
+        return path.resolveSibling(path.getFileName() + ".wal");
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) throw new EOFException("Unexpected end of region file");
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position());
+        }
+    }
+
+    /**
+     * A read-only memory mapped view of a region file.
+     */
+    public static final class Mapping {
+
+        private final int regionX;
+        private final int regionZ;
+        private final MappedByteBuffer buffer;
+        private final int[] offsets;
+        private final int[] lengths;
+
+        private Mapping(int regionX, int regionZ, MappedByteBuffer buffer, int[] offsets, int[] lengths) {
+            this.regionX = regionX;
+            this.regionZ = regionZ;
+            this.buffer = buffer;
+            this.offsets = offsets;
+            this.lengths = lengths;
+        }
+
+        /**
+         * Reads the payload of a chunk.
+         *
+         * @param pos the position of the chunk
+         * @return the payload, or null if the chunk is absent
+         */
+        @Nullable
+        public byte[] read(ChunkPos pos) {
+            int index = index(pos);
+            if (offsets[index] == 0) return null;
+            byte[] payload = new byte[lengths[index]];
+            try {
+                buffer.get(offsets[index] * SECTOR_SIZE, payload);
+            } finally {
+                // the sectors might be reused as soon as this mapping is unreachable
+                Reference.reachabilityFence(this);
+            }
+            return payload;
+        }
+
+        /**
+         * Gets the positions of the chunks in this region.
+         *
+         * @return the chunk positions
+         */
+        public Set<ChunkPos> chunks() {
+            HashSet<ChunkPos> chunks = new HashSet<>();
+            for (int i = 0; i < CHUNKS; i++) {
+                if (offsets[i] != 0) {
+                    chunks.add(ChunkPos.of(regionX * 32 + (i & 31), regionZ * 32 + (i >> 5)));
+                }
+            }
+            return chunks;
+        }
+
+        private void pin(BitSet pinned) {
+            for (int i = 0; i < CHUNKS; i++) {
+                if (offsets[i] != 0) {
+                    pinned.set(offsets[i], offsets[i] + sectors(lengths[i]));
+                }
+            }
+        }
+    }
+}
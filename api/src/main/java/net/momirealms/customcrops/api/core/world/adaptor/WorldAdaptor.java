@@ -115,4 +115,10 @@ public interface WorldAdaptor<W> extends Comparable<WorldAdaptor<W>> {
      * @return The priority value of this adaptor.
      */
     int priority();
+
+    /**
+     * Releases the resources held by this adaptor. Called when the plugin is disabled, after all the worlds have been unloaded.
+     */
+    default void close() {
+    }
 }
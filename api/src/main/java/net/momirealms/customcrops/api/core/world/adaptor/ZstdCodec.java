@@ -0,0 +1,333 @@
+/*
+ *  Copyright (C) <2024> <XiaoMoMi>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.momirealms.customcrops.api.core.world.adaptor;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * Zstd compression of chunk payloads.
+ * <p>
+ * zstd-jni is loaded at runtime by an isolated class loader, so it's accessed through method handles.
+ * Compression and decompression contexts are borrowed from bounded pools instead of allocating native contexts for every chunk,
+ * with separate pools per dictionary since a dictionary stays loaded in its context.
+ * The native memory of the contexts is freed when they are dropped from the pools, or by {@link #close()}.
+ */
+public class ZstdCodec {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+    // the amount of idle contexts kept for each dictionary, more are only needed if more threads compress at once
+    private static final int MAX_IDLE_CONTEXTS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    private final MethodHandle newCompressCtx;
+    private final MethodHandle setLevel;
+    private final MethodHandle loadCompressDict;
+    private final MethodHandle compress;
+    private final MethodHandle closeCompressCtx;
+    private final MethodHandle newDecompressCtx;
+    private final MethodHandle loadDecompressDict;
+    private final MethodHandle decompress;
+    private final MethodHandle closeDecompressCtx;
+    private final MethodHandle dictIdFromFrame;
+    private final MethodHandle dictIdFromDict;
+    private final MethodHandle newTrainer;
+    private final MethodHandle addSample;
+    private final MethodHandle trainSamples;
+
+    private final ContextPool compressContexts;
+    private final ContextPool decompressContexts;
+    private volatile int level = 3;
+    private volatile boolean closed;
+
+    public ZstdCodec(ClassLoader classLoader) {
+        try {
+            Class<?> zstd = classLoader.loadClass("com.github.luben.zstd.Zstd");
+            Class<?> compressCtx = classLoader.loadClass("com.github.luben.zstd.ZstdCompressCtx");
+            Class<?> decompressCtx = classLoader.loadClass("com.github.luben.zstd.ZstdDecompressCtx");
+            Class<?> trainer = classLoader.loadClass("com.github.luben.zstd.ZstdDictTrainer");
+            newCompressCtx = LOOKUP.findConstructor(compressCtx, MethodType.methodType(void.class)).asType(MethodType.methodType(Object.class));
+            setLevel = LOOKUP.findVirtual(compressCtx, "setLevel", MethodType.methodType(compressCtx, int.class)).asType(MethodType.methodType(Object.class, Object.class, int.class));
+            loadCompressDict = LOOKUP.findVirtual(compressCtx, "loadDict", MethodType.methodType(compressCtx, byte[].class)).asType(MethodType.methodType(Object.class, Object.class, byte[].class));
+            compress = LOOKUP.findVirtual(compressCtx, "compress", MethodType.methodType(byte[].class, byte[].class)).asType(MethodType.methodType(byte[].class, Object.class, byte[].class));
+            closeCompressCtx = LOOKUP.findVirtual(compressCtx, "close", MethodType.methodType(void.class)).asType(MethodType.methodType(void.class, Object.class));
+            newDecompressCtx = LOOKUP.findConstructor(decompressCtx, MethodType.methodType(void.class)).asType(MethodType.methodType(Object.class));
+            loadDecompressDict = LOOKUP.findVirtual(decompressCtx, "loadDict", MethodType.methodType(decompressCtx, byte[].class)).asType(MethodType.methodType(Object.class, Object.class, byte[].class));
+            decompress = LOOKUP.findVirtual(decompressCtx, "decompress", MethodType.methodType(byte[].class, byte[].class, int.class)).asType(MethodType.methodType(byte[].class, Object.class, byte[].class, int.class));
+            closeDecompressCtx = LOOKUP.findVirtual(decompressCtx, "close", MethodType.methodType(void.class)).asType(MethodType.methodType(void.class, Object.class));
+            dictIdFromFrame = LOOKUP.findStatic(zstd, "getDictIdFromFrame", MethodType.methodType(long.class, byte[].class));
+            dictIdFromDict = LOOKUP.findStatic(zstd, "getDictIdFromDict", MethodType.methodType(long.class, byte[].class));
+            newTrainer = LOOKUP.findConstructor(trainer, MethodType.methodType(void.class, int.class, int.class)).asType(MethodType.methodType(Object.class, int.class, int.class));
+            addSample = LOOKUP.findVirtual(trainer, "addSample", MethodType.methodType(boolean.class, byte[].class)).asType(MethodType.methodType(boolean.class, Object.class, byte[].class));
+            trainSamples = LOOKUP.findVirtual(trainer, "trainSamples", MethodType.methodType(byte[].class)).asType(MethodType.methodType(byte[].class, Object.class));
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException(e);
+        }
+        this.compressContexts = new ContextPool(closeCompressCtx);
+        this.decompressContexts = new ContextPool(closeDecompressCtx);
+    }
+
+    /**
+     * Sets the compression level used by the contexts created afterward.
+     *
+     * @param level the zstd compression level
+     */
+    public void level(int level) {
+        this.level = level;
+    }
+
+    /**
+     * Compresses the data.
+     *
+     * @param data the data
+     * @param dictionary the dictionary, or null to compress without a dictionary
+     * @return the compressed data
+     */
+    public byte[] compress(byte[] data, @Nullable ZstdDictionaries.Dictionary dictionary) {
+        Context context = null;
+        try {
+            context = borrowCompressContext(dictionary);
+            return (byte[]) compress.invokeExact(context.handle(), data);
+        } catch (Throwable e) {
+            throw new RuntimeException("Failed to compress data", e);
+        } finally {
+            if (context != null) {
+                this.compressContexts.release(context, context.level() == this.level);
+            }
+        }
+    }
+
+    /**
+     * Decompresses the data.
+     *
+     * @param data the compressed data
+     * @param originalSize the size of the decompressed data
+     * @param dictionary the dictionary the data was compressed with, or null if no dictionary was used
+     * @return the decompressed data
+     */
+    public byte[] decompress(byte[] data, int originalSize, @Nullable ZstdDictionaries.Dictionary dictionary) {
+        Context context = null;
+        try {
+            context = borrowDecompressContext(dictionary);
+            return (byte[]) decompress.invokeExact(context.handle(), data, originalSize);
+        } catch (Throwable e) {
+            throw new RuntimeException("Failed to decompress data", e);
+        } finally {
+            if (context != null) {
+                this.decompressContexts.release(context, true);
+            }
+        }
+    }
+
+    /**
+     * Frees the native memory of the idle contexts.
+     * Contexts in use are freed once they are released, and no context is pooled anymore afterward.
+     */
+    public void close() {
+        this.closed = true;
+        this.compressContexts.clear();
+        this.decompressContexts.clear();
+    }
+
+    /**
+     * Gets the id of the dictionary a frame was compressed with.
+     *
+     * @param frame the compressed data
+     * @return the dictionary id, or 0 if no dictionary was used
+     */
+    public long dictionaryId(byte[] frame) {
+        try {
+            return (long) dictIdFromFrame.invokeExact(frame);
+        } catch (Throwable e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Trains a dictionary from samples.
+     *
+     * @param samples the samples
+     * @param dictionarySize the max size of the dictionary
+     * @return the dictionary
+     */
+    public ZstdDictionaries.Dictionary train(List<byte[]> samples, int dictionarySize) {
+        try {
+            long total = 0;
+            for (byte[] sample : samples) {
+                total += sample.length;
+            }
+            Object trainer = (Object) newTrainer.invokeExact((int) Math.min(Integer.MAX_VALUE, total), dictionarySize);
+            for (byte[] sample : samples) {
+                boolean ignored = (boolean) addSample.invokeExact(trainer, sample);
+            }
+            byte[] bytes = (byte[]) trainSamples.invokeExact(trainer);
+            long id = (long) dictIdFromDict.invokeExact(bytes);
+            return new ZstdDictionaries.Dictionary(id, bytes);
+        } catch (Throwable e) {
+            throw new RuntimeException("Failed to train dictionary", e);
+        }
+    }
+
+    /**
+     * Measures the compression ratio and throughput on samples.
+     * Each sample is compressed and decompressed once to warm up before the measured pass.
+     *
+     * @param samples the uncompressed samples
+     * @param dictionary the dictionary, or null to compress without a dictionary
+     * @return the result
+     */
+    public Benchmark benchmark(List<byte[]> samples, @Nullable ZstdDictionaries.Dictionary dictionary) {
+        byte[][] compressed = new byte[samples.size()][];
+        for (int i = 0; i < samples.size(); i++) {
+            compressed[i] = compress(samples.get(i), dictionary);
+            decompress(compressed[i], samples.get(i).length, dictionary);
+        }
+        long rawBytes = 0;
+        long compressedBytes = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < samples.size(); i++) {
+            compressed[i] = compress(samples.get(i), dictionary);
+            rawBytes += samples.get(i).length;
+            compressedBytes += compressed[i].length;
+        }
+        long compressNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int i = 0; i < samples.size(); i++) {
+            decompress(compressed[i], samples.get(i).length, dictionary);
+        }
+        long decompressNanos = System.nanoTime() - start;
+        return new Benchmark(dictionary == null ? 0 : dictionary.id(), samples.size(), rawBytes, compressedBytes, compressNanos, decompressNanos);
+    }
+
+    private Context borrowCompressContext(@Nullable ZstdDictionaries.Dictionary dictionary) throws Throwable {
+        long id = dictionary == null ? 0 : dictionary.id();
+        int level = this.level;
+        Context context;
+        while ((context = this.compressContexts.poll(id)) != null) {
+            if (context.level() == level) {
+                return context;
+            }
+            // the level has been changed since the context was created
+            this.compressContexts.release(context, false);
+        }
+        Object handle = (Object) newCompressCtx.invokeExact();
+        Object ignored = (Object) setLevel.invokeExact(handle, level);
+        if (dictionary != null) {
+            ignored = (Object) loadCompressDict.invokeExact(handle, dictionary.bytes());
+        }
+        return new Context(handle, id, level);
+    }
+
+    private Context borrowDecompressContext(@Nullable ZstdDictionaries.Dictionary dictionary) throws Throwable {
+        long id = dictionary == null ? 0 : dictionary.id();
+        Context context = this.decompressContexts.poll(id);
+        if (context != null) {
+            return context;
+        }
+        Object handle = (Object) newDecompressCtx.invokeExact();
+        if (dictionary != null) {
+            Object ignored = (Object) loadDecompressDict.invokeExact(handle, dictionary.bytes());
+        }
+        return new Context(handle, id, 0);
+    }
+
+    private record Context(Object handle, long dictionaryId, int level) {
+    }
+
+    /**
+     * The idle contexts by dictionary id, 0 means no dictionary.
+     */
+    private final class ContextPool {
+
+        private final ConcurrentHashMap<Long, ConcurrentLinkedDeque<Context>> idle = new ConcurrentHashMap<>();
+        private final MethodHandle close;
+
+        private ContextPool(MethodHandle close) {
+            this.close = close;
+        }
+
+        @Nullable
+        private Context poll(long dictionaryId) {
+            ConcurrentLinkedDeque<Context> contexts = this.idle.get(dictionaryId);
+            return contexts == null ? null : contexts.pollFirst();
+        }
+
+        private void release(Context context, boolean reusable) {
+            if (reusable && !closed) {
+                ConcurrentLinkedDeque<Context> contexts = this.idle.computeIfAbsent(context.dictionaryId(), k -> new ConcurrentLinkedDeque<>());
+                if (contexts.size() < MAX_IDLE_CONTEXTS) {
+                    contexts.offerFirst(context);
+                    // the codec might have been closed while the context was being pooled
+                    if (closed) {
+                        clear();
+                    }
+                    return;
+                }
+            }
+            free(context);
+        }
+
+        private void clear() {
+            for (ConcurrentLinkedDeque<Context> contexts : this.idle.values()) {
+                Context context;
+                while ((context = contexts.pollFirst()) != null) {
+                    free(context);
+                }
+            }
+        }
+
+        private void free(Context context) {
+            try {
+                this.close.invokeExact(context.handle());
+            } catch (Throwable e) {
+                throw new RuntimeException("Failed to close context", e);
+            }
+        }
+    }
+
+    /**
+     * The result of {@link #benchmark(List, ZstdDictionaries.Dictionary)}.
+     *
+     * @param dictionaryId the id of the dictionary, 0 if no dictionary was used
+     * @param samples the amount of samples
+     * @param rawBytes the total size of the samples
+     * @param compressedBytes the total size of the compressed samples
+     * @param compressNanos the time spent on compression
+     * @param decompressNanos the time spent on decompression
+     */
+    public record Benchmark(long dictionaryId, int samples, long rawBytes, long compressedBytes, long compressNanos, long decompressNanos) {
+
+        public double ratio() {
+            return compressedBytes == 0 ? 0 : (double) rawBytes / compressedBytes;
+        }
+
+        public double compressMBps() {
+            return compressNanos == 0 ? 0 : rawBytes / 1_048_576d / (compressNanos / 1_000_000_000d);
+        }
+
+        public double decompressMBps() {
+            return decompressNanos == 0 ? 0 : rawBytes / 1_048_576d / (decompressNanos / 1_000_000_000d);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ *  Copyright (C) <2024> <XiaoMoMi>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.momirealms.customcrops.api.core.world.adaptor;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The zstd dictionaries of a world, stored as {@code <id>.zdict} files in a folder.
+ * <p>
+ * Dictionaries are never deleted, because chunks compressed with an older dictionary still need it to be read.
+ * New chunks are compressed with the active dictionary, whose id is stored in the {@code active} file.
+ */
+public class ZstdDictionaries {
+
+    private static final String EXTENSION = ".zdict";
+    private static final String ACTIVE_FILE = "active";
+
+    private final Path folder;
+    private final ConcurrentHashMap<Long, Dictionary> dictionaries = new ConcurrentHashMap<>();
+    @Nullable
+    private volatile Dictionary active;
+
+    private ZstdDictionaries(Path folder) {
+        this.folder = folder;
+    }
+
+    /**
+     * Loads the dictionaries in a folder.
+     *
+     * @param folder the folder, which might not exist
+     * @return the dictionaries
+     */
+    public static ZstdDictionaries load(Path folder) throws IOException {
+        ZstdDictionaries dictionaries = new ZstdDictionaries(folder);
+        if (!Files.isDirectory(folder)) {
+            return dictionaries;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder, "*" + EXTENSION)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                try {
+                    long id = Long.parseLong(name.substring(0, name.length() - EXTENSION.length()));
+                    dictionaries.dictionaries.put(id, new Dictionary(id, Files.readAllBytes(file)));
+                } catch (NumberFormatException ignored) {
+                }
+            }
+        }
+        Path activeFile = folder.resolve(ACTIVE_FILE);
+        if (Files.exists(activeFile)) {
+            try {
+                long id = Long.parseLong(Files.readString(activeFile, StandardCharsets.UTF_8).trim());
+                dictionaries.active = dictionaries.dictionaries.get(id);
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return dictionaries;
+    }
+
+    /**
+     * Gets a dictionary by its id.
+     *
+     * @param id the dictionary id
+     * @return the dictionary, or null if not found
+     */
+    @Nullable
+    public Dictionary get(long id) {
+        return this.dictionaries.get(id);
+    }
+
+    /**
+     * Gets the dictionary new chunks are compressed with.
+     *
+     * @return the active dictionary, or null if no dictionary has been trained
+     */
+    @Nullable
+    public Dictionary active() {
+        return this.active;
+    }
+
+    /**
+     * Saves a dictionary and makes it the active one.
+     *
+     * @param dictionary the dictionary
+     */
+    public synchronized void activate(Dictionary dictionary) throws IOException {
+        Files.createDirectories(this.folder);
+        Path file = this.folder.resolve(dictionary.id() + EXTENSION);
+        if (!Files.exists(file)) {
+            Path temp = this.folder.resolve(dictionary.id() + EXTENSION + ".tmp");
+            Files.write(temp, dictionary.bytes());
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        this.dictionaries.put(dictionary.id(), dictionary);
+        Files.writeString(this.folder.resolve(ACTIVE_FILE), String.valueOf(dictionary.id()), StandardCharsets.UTF_8);
+        this.active = dictionary;
+    }
+
+    /**
+     * A trained zstd dictionary.
+     *
+     * @param id the dictionary id embedded in the frames compressed with it
+     * @param bytes the dictionary content
+     */
+    public record Dictionary(long id, byte[] bytes) {
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ *  Copyright (C) <2024> <XiaoMoMi>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.momirealms.customcrops.api.misc.animation;
+
+import org.bukkit.entity.Player;
+
+/**
+ * Represents a client-side animation driven by the shared ticker of {@link AnimationManager}.
+ * <p>
+ * The methods are called from the ticker thread, one frame every 50 ms,
+ * except that {@link #viewers()} is also called by {@link AnimationManager#play(Animation)} on the calling thread.
+ */
+public interface Animation {
+
+    /**
+     * Gets the players who can see this animation.
+     * This might be called from a thread other than the ticker thread, so it should not depend on the state changed by {@link #tick()}.
+     *
+     * @return the viewers
+     */
+    Player[] viewers();
+
+    /**
+     * Advances the animation by one frame.
+     *
+     * @return true if the animation is still running, false if it has finished
+     */
+    boolean tick();
+
+    /**
+     * Sends the packets of the current frame to a viewer.
+     *
+     * @param viewer the viewer
+     */
+    void render(Player viewer);
+
+    /**
+     * Removes the animation from a viewer's client.
+     *
+     * @param viewer the viewer
+     */
+    void remove(Player viewer);
+}
@@ -0,0 +1,227 @@
+/*
+ *  Copyright (C) <2024> <XiaoMoMi>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.momirealms.customcrops.api.misc.animation;
+
+import net.momirealms.customcrops.api.BukkitCustomCropsPlugin;
+import net.momirealms.customcrops.common.plugin.feature.Reloadable;
+import net.momirealms.customcrops.common.plugin.scheduler.SchedulerTask;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.inventory.ItemStack;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives all the client-side animations with a single repeating task.
+ * <p>
+ * The ticker only runs while there are active animations. Each frame, the packets are sent viewer by viewer,
+ * so that a player watching many animations receives them in one burst instead of interleaved with other players.
+ * Viewers are looked up from a per-world spatial index of players that is rebuilt at most once per second.
+ */
+public class AnimationManager implements Reloadable {
+
+    private static final long FRAME_MILLIS = 50;
+    private static final long INDEX_REFRESH_MILLIS = 1000;
+    private static final int CELL_SHIFT = 4;
+
+    private final BukkitCustomCropsPlugin plugin;
+    private final ConcurrentLinkedQueue<Animation> incoming = new ConcurrentLinkedQueue<>();
+    // only accessed by the ticker, or while holding its lock
+    private final ArrayList<Animation> active = new ArrayList<>();
+    private final ConcurrentHashMap<UUID, PlayerIndex> playerIndexes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ItemStack> models = new ConcurrentHashMap<>();
+    private SchedulerTask tickTask;
+    private static AnimationManager manager;
+
+    public static AnimationManager getInstance() {
+        return manager;
+    }
+
+    public AnimationManager(BukkitCustomCropsPlugin plugin) {
+        this.plugin = plugin;
+        manager = this;
+    }
+
+    @Override
+    public void unload() {
+        synchronized (this) {
+            if (tickTask != null) {
+                tickTask.cancel();
+                tickTask = null;
+            }
+        }
+        synchronized (active) {
+            drainIncoming();
+            for (Animation animation : active) {
+                for (Player viewer : animation.viewers()) {
+                    if (viewer.isOnline()) {
+                        animation.remove(viewer);
+                    }
+                }
+            }
+            active.clear();
+        }
+        this.playerIndexes.clear();
+        this.models.clear();
+    }
+
+    /**
+     * Starts playing an animation. The viewers should have already spawned the entities of the animation.
+     *
+     * @param animation the animation
+     */
+    public void play(Animation animation) {
+        if (animation.viewers().length == 0) return;
+        incoming.offer(animation);
+        synchronized (this) {
+            if (tickTask == null) {
+                tickTask = plugin.getScheduler().asyncRepeating(this::tick, FRAME_MILLIS, FRAME_MILLIS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Gets the online players in the world of the location within the given range.
+     *
+     * @param location the center
+     * @param range    the range in blocks
+     * @return the players nearby
+     */
+    public List<Player> nearbyPlayers(Location location, double range) {
+        World world = location.getWorld();
+        long now = System.currentTimeMillis();
+        PlayerIndex index = playerIndexes.compute(world.getUID(), (k, previous) ->
+                previous == null || now - previous.createTime > INDEX_REFRESH_MILLIS ? new PlayerIndex(world, now) : previous);
+        return index.query(location.getX(), location.getY(), location.getZ(), range);
+    }
+
+    /**
+     * Gets the model item by its ID. The item is built once and shared until the next reload, so it must not be modified.
+     *
+     * @param id the item ID
+     * @return the model item, or null if the item can't be built
+     */
+    @Nullable
+    public ItemStack model(@NotNull String id) {
+        return models.computeIfAbsent(id, k -> plugin.getItemManager().build(null, k));
+    }
+
+    private void tick() {
+        synchronized (active) {
+            drainIncoming();
+            if (active.isEmpty()) {
+                synchronized (this) {
+                    if (incoming.isEmpty() && tickTask != null) {
+                        tickTask.cancel();
+                        tickTask = null;
+                        playerIndexes.clear();
+                    }
+                }
+                return;
+            }
+            Set<Animation> finished = Collections.newSetFromMap(new IdentityHashMap<>());
+            HashMap<Player, ArrayList<Animation>> frames = new HashMap<>();
+            for (Iterator<Animation> iterator = active.iterator(); iterator.hasNext();) {
+                Animation animation = iterator.next();
+                if (!animation.tick()) {
+                    finished.add(animation);
+                    iterator.remove();
+                }
+                for (Player viewer : animation.viewers()) {
+                    frames.computeIfAbsent(viewer, k -> new ArrayList<>()).add(animation);
+                }
+            }
+            for (Map.Entry<Player, ArrayList<Animation>> entry : frames.entrySet()) {
+                Player viewer = entry.getKey();
+                if (!viewer.isOnline()) continue;
+                for (Animation animation : entry.getValue()) {
+                    try {
+                        if (finished.contains(animation)) {
+                            animation.remove(viewer);
+                        } else {
+                            animation.render(viewer);
+                        }
+                    } catch (Exception e) {
+                        plugin.getPluginLogger().warn("Failed to render animation for " + viewer.getName(), e);
+                    }
+                }
+            }
+        }
+    }
+
+    private void drainIncoming() {
+        Animation animation;
+        while ((animation = incoming.poll()) != null) {
+            active.add(animation);
+        }
+    }
+
+    /**
+     * A snapshot of the players in a world, bucketed by chunk.
+     */
+    private static final class PlayerIndex {
+
+        private final long createTime;
+        private final HashMap<Long, ArrayList<Entry>> cells = new HashMap<>();
+
+        private PlayerIndex(World world, long createTime) {
+            this.createTime = createTime;
+            for (Player player : world.getPlayers()) {
+                Location location = player.getLocation();
+                Entry entry = new Entry(player, location.getX(), location.getY(), location.getZ());
+                cells.computeIfAbsent(key(location.getBlockX() >> CELL_SHIFT, location.getBlockZ() >> CELL_SHIFT), k -> new ArrayList<>()).add(entry);
+            }
+        }
+
+        private List<Player> query(double x, double y, double z, double range) {
+            if (cells.isEmpty()) return List.of();
+            ArrayList<Player> players = new ArrayList<>();
+            double rangeSquared = range * range;
+            int minX = (int) Math.floor(x - range) >> CELL_SHIFT;
+            int maxX = (int) Math.floor(x + range) >> CELL_SHIFT;
+            int minZ = (int) Math.floor(z - range) >> CELL_SHIFT;
+            int maxZ = (int) Math.floor(z + range) >> CELL_SHIFT;
+            for (int cx = minX; cx <= maxX; cx++) {
+                for (int cz = minZ; cz <= maxZ; cz++) {
+                    ArrayList<Entry> entries = cells.get(key(cx, cz));
+                    if (entries == null) continue;
+                    for (Entry entry : entries) {
+                        double dx = entry.x - x, dy = entry.y - y, dz = entry.z - z;
+                        if (dx * dx + dy * dy + dz * dz <= rangeSquared && entry.player.isOnline()) {
+                            players.add(entry.player);
+                        }
+                    }
+                }
+            }
+            return players;
+        }
+
+        private static long key(int x, int z) {
+            return ((long) x << 32) | (z & 0xFFFFFFFFL);
+        }
+
+        private record Entry(Player player, double x, double y, double z) {
+        }
+    }
+}
@@ -24,6 +24,7 @@ import org.bukkit.OfflinePlayer;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiFunction;
 import java.util.regex.Matcher;
 import java.util.stream.Collectors;
@@ -37,7 +38,10 @@ public class BukkitPlaceholderManager implements PlaceholderManager {
     private final BukkitCustomCropsPlugin plugin;
     private boolean hasPapi;
     private final HashMap<String, BiFunction<OfflinePlayer, Map<String, String>, String>> customPlaceholderMap;
+    // compiled templates of the texts parsed so far, which are mostly from the configs
+    private final ConcurrentHashMap<String, PlaceholderTemplate> templates = new ConcurrentHashMap<>();
     private static BukkitPlaceholderManager instance;
+    private static final int MAX_TEMPLATES = 4096;
 
     /**
      * Constructs a new BukkitPlaceholderManager instance.
@@ -66,6 +70,7 @@ public class BukkitPlaceholderManager implements PlaceholderManager {
     public void unload() {
         this.hasPapi = false;
         this.customPlaceholderMap.clear();
+        this.templates.clear();
     }
 
     /**
@@ -118,22 +123,42 @@ public class BukkitPlaceholderManager implements PlaceholderManager {
 
     @Override
     public String parse(@Nullable OfflinePlayer player, String text, Map<String, String> replacements) {
-        var list = resolvePlaceholders(text);
-        for (String papi : list) {
-            String replacer = null;
-            if (replacements != null) {
-                replacer = replacements.get(papi);
-            }
-            if (replacer == null) {
-                String custom = Optional.ofNullable(customPlaceholderMap.get(papi)).map(supplier -> supplier.apply(player, replacements)).orElse(null);
-                if (custom != null)
-                    replacer = setPlaceholders(player, parse(player, custom, replacements));
-            }
-            if (replacer != null) {
-                text = text.replace(papi, replacer);
+        return template(text).render(player, null, replacements);
+    }
+
+    /**
+     * Gets the compiled template of a text
+     *
+     * @param text the text
+     * @return the template
+     */
+    public PlaceholderTemplate template(String text) {
+        PlaceholderTemplate template = this.templates.get(text);
+        if (template == null) {
+            // texts built at runtime should not fill up the cache
+            if (this.templates.size() >= MAX_TEMPLATES) {
+                this.templates.clear();
             }
+            template = this.templates.computeIfAbsent(text, PlaceholderTemplate::compile);
         }
-        return text;
+        return template;
+    }
+
+    /**
+     * Parses a custom placeholder
+     *
+     * @param player       the player
+     * @param placeholder  the placeholder
+     * @param replacements the replacements
+     * @return the value, or null if the placeholder is not a custom placeholder
+     */
+    @Nullable
+    public String parseCustom(@Nullable OfflinePlayer player, String placeholder, Map<String, String> replacements) {
+        BiFunction<OfflinePlayer, Map<String, String>, String> supplier = this.customPlaceholderMap.get(placeholder);
+        if (supplier == null) return null;
+        String custom = supplier.apply(player, replacements);
+        if (custom == null) return null;
+        return setPlaceholders(player, parse(player, custom, replacements));
     }
 
     @Override
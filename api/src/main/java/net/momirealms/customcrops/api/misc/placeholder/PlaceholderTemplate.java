@@ -0,0 +1,130 @@
+/*
+ *  Copyright (C) <2024> <XiaoMoMi>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.momirealms.customcrops.api.misc.placeholder;
+
+import net.momirealms.customcrops.api.context.Context;
+import net.momirealms.customcrops.api.context.ContextKeys;
+import org.bukkit.OfflinePlayer;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+
+/**
+ * A text split into literal and {placeholder} segments once, so that rendering it needs neither
+ * a regex scan nor an intermediate string per placeholder.
+ */
+public final class PlaceholderTemplate {
+
+    private static final int MAX_RETAINED_CAPACITY = 8192;
+    // shared by the nested renders of custom placeholders, each of them works after the text of its caller
+    private static final ThreadLocal<StringBuilder> BUILDER = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+    private final String text;
+    private final Segment[] segments;
+
+    private PlaceholderTemplate(String text, Segment[] segments) {
+        this.text = text;
+        this.segments = segments;
+    }
+
+    /**
+     * Compiles a text into a template
+     *
+     * @param text the text
+     * @return the template
+     */
+    public static PlaceholderTemplate compile(String text) {
+        List<Segment> segments = new ArrayList<>();
+        Matcher matcher = PlaceholderManager.PATTERN.matcher(text);
+        int last = 0;
+        while (matcher.find()) {
+            if (matcher.start() > last) {
+                segments.add(new Segment(text.substring(last, matcher.start()), false, null));
+            }
+            String placeholder = matcher.group();
+            segments.add(new Segment(placeholder, true, ContextKeys.byPlaceholder(placeholder)));
+            last = matcher.end();
+        }
+        if (last < text.length()) {
+            segments.add(new Segment(text.substring(last), false, null));
+        }
+        return new PlaceholderTemplate(text, segments.toArray(new Segment[0]));
+    }
+
+    /**
+     * Checks if the template has any placeholder
+     *
+     * @return has placeholders or not
+     */
+    public boolean hasPlaceholders() {
+        return segments.length > 1 || (segments.length == 1 && segments[0].placeholder);
+    }
+
+    /**
+     * Renders the template. Each placeholder is resolved from the arguments of the context, then the replacements,
+     * then the custom placeholders, and is kept as it is if none of them provides a value.
+     *
+     * @param player       the player to parse the custom placeholders for
+     * @param context      the context, whose arguments are looked up by their keys
+     * @param replacements the replacements by placeholder
+     * @return the rendered text
+     */
+    public String render(@Nullable OfflinePlayer player, @Nullable Context<?> context, @Nullable Map<String, String> replacements) {
+        if (!hasPlaceholders()) {
+            return text;
+        }
+        StringBuilder builder = BUILDER.get();
+        int start = builder.length();
+        for (Segment segment : segments) {
+            if (!segment.placeholder) {
+                builder.append(segment.text);
+                continue;
+            }
+            String value = null;
+            if (context != null && segment.key != null) {
+                Object arg = context.arg(segment.key);
+                if (arg != null) value = arg.toString();
+            }
+            if (value == null && replacements != null) {
+                value = replacements.get(segment.text);
+            }
+            if (value == null) {
+                value = BukkitPlaceholderManager.getInstance().parseCustom(player, segment.text, context != null ? context.placeholderMap() : replacements);
+            }
+            builder.append(value != null ? value : segment.text);
+        }
+        String result = builder.substring(start);
+        builder.setLength(start);
+        if (start == 0 && builder.capacity() > MAX_RETAINED_CAPACITY) {
+            BUILDER.remove();
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    private record Segment(String text, boolean placeholder, @Nullable ContextKeys<?> key) {
+    }
+}
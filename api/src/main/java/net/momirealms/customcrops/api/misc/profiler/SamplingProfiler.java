@@ -0,0 +1,204 @@
+/*
+ *  Copyright (C) <2024> <XiaoMoMi>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.momirealms.customcrops.api.misc.profiler;
+
+import net.momirealms.customcrops.api.core.block.CustomCropsBlock;
+import net.momirealms.customcrops.api.core.world.CustomCropsBlockState;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An opt-in profiler of block ticks, actions and requirements.
+ * <p>
+ * Every call is counted, but only one in {@code sampleInterval} calls is timed, so the overhead stays low even
+ * when the profiler is running. When it's not running, {@link #begin()} is a single volatile read.
+ * The time of a key is estimated from the average of its timed calls. Times are inclusive, so the time of
+ * an action that runs inside a block tick is also part of that block's time.
+ */
+public final class SamplingProfiler {
+
+    /**
+     * Returned by {@link #begin()} when the profiler is not running, the call should not be recorded.
+     */
+    public static final long IDLE = Long.MIN_VALUE;
+    private static final long UNSAMPLED = Long.MIN_VALUE + 1;
+
+    private static final ConcurrentHashMap<CustomCropsBlock, ConcurrentHashMap<String, Entry>> BLOCKS = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, Entry> ACTIONS = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, Entry> REQUIREMENTS = new ConcurrentHashMap<>();
+
+    private static volatile boolean running;
+    private static volatile int sampleInterval = 16;
+    private static volatile long startedAt;
+    private static volatile long stoppedAt;
+
+    private SamplingProfiler() {
+    }
+
+    /**
+     * Clears the previous results and starts profiling.
+     *
+     * @param sampleInterval time one in this amount of calls
+     */
+    public static synchronized void start(int sampleInterval) {
+        BLOCKS.clear();
+        ACTIONS.clear();
+        REQUIREMENTS.clear();
+        SamplingProfiler.sampleInterval = Math.max(1, sampleInterval);
+        startedAt = System.nanoTime();
+        running = true;
+    }
+
+    public static synchronized void stop() {
+        if (!running) return;
+        running = false;
+        stoppedAt = System.nanoTime();
+    }
+
+    public static boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Called before a profiled call.
+     *
+     * @return the value to pass to the matching end method, or {@link #IDLE} if the call should not be recorded
+     */
+    public static long begin() {
+        if (!running) return IDLE;
+        int interval = sampleInterval;
+        return interval == 1 || ThreadLocalRandom.current().nextInt(interval) == 0 ? System.nanoTime() : UNSAMPLED;
+    }
+
+    public static void endBlock(CustomCropsBlock type, CustomCropsBlockState state, long start) {
+        ConcurrentHashMap<String, Entry> entries = BLOCKS.get(type);
+        if (entries == null) entries = BLOCKS.computeIfAbsent(type, k -> new ConcurrentHashMap<>());
+        end(entries, state.getString("key", ""), start);
+    }
+
+    public static void endAction(String type, long start) {
+        end(ACTIONS, type, start);
+    }
+
+    public static void endRequirement(String type, long start) {
+        end(REQUIREMENTS, type, start);
+    }
+
+    private static void end(ConcurrentHashMap<String, Entry> entries, String key, long start) {
+        Entry entry = entries.get(key);
+        if (entry == null) entry = entries.computeIfAbsent(key, k -> new Entry());
+        entry.calls.increment();
+        if (start != UNSAMPLED) {
+            entry.sampledNanos.add(System.nanoTime() - start);
+            entry.samples.increment();
+        }
+    }
+
+    /**
+     * Gets the results sorted by the estimated time, the most expensive first.
+     * The share of each result is relative to the time of all the block ticks.
+     *
+     * @return the results
+     */
+    public static List<Result> results() {
+        double seconds = Math.max(1, (running ? System.nanoTime() : stoppedAt) - startedAt) / 1_000_000_000d;
+        ArrayList<Result> results = new ArrayList<>();
+        for (Map.Entry<CustomCropsBlock, ConcurrentHashMap<String, Entry>> blockEntry : BLOCKS.entrySet()) {
+            String type = blockEntry.getKey().type().value();
+            for (Map.Entry<String, Entry> entry : blockEntry.getValue().entrySet()) {
+                results.add(entry.getValue().toResult(type, entry.getKey(), seconds));
+            }
+        }
+        long blockNanos = 0;
+        for (Result result : results) {
+            blockNanos += result.estimatedNanos();
+        }
+        for (Map.Entry<String, Entry> entry : ACTIONS.entrySet()) {
+            results.add(entry.getValue().toResult("action", entry.getKey(), seconds));
+        }
+        for (Map.Entry<String, Entry> entry : REQUIREMENTS.entrySet()) {
+            results.add(entry.getValue().toResult("requirement", entry.getKey(), seconds));
+        }
+        long total = blockNanos;
+        results.replaceAll(result -> result.withShare(total == 0 ? 0 : (double) result.estimatedNanos() / total));
+        results.sort(Comparator.comparingLong(Result::estimatedNanos).reversed());
+        return results;
+    }
+
+    /**
+     * Writes all the results into a CSV file in the given folder.
+     *
+     * @param folder the folder
+     * @return the written file
+     */
+    public static Path export(Path folder) throws IOException {
+        Files.createDirectories(folder);
+        Path file = folder.resolve("profile-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("category,name,calls,calls_per_second,samples,estimated_ms,average_us,share");
+            writer.newLine();
+            for (Result result : results()) {
+                writer.write(String.format(Locale.ROOT, "%s,%s,%d,%.1f,%d,%.3f,%.3f,%.4f",
+                        result.category(), result.name(), result.calls(), result.callsPerSecond(), result.samples(),
+                        result.estimatedNanos() / 1_000_000d, result.averageNanos() / 1_000d, result.share()));
+                writer.newLine();
+            }
+        }
+        return file;
+    }
+
+    public record Result(String category, String name, long calls, double callsPerSecond, long samples, long estimatedNanos, double share) {
+
+        public double averageNanos() {
+            return calls == 0 ? 0 : (double) estimatedNanos / calls;
+        }
+
+        private Result withShare(double share) {
+            return new Result(category, name, calls, callsPerSecond, samples, estimatedNanos, share);
+        }
+    }
+
+    private static class Entry {
+
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder samples = new LongAdder();
+        private final LongAdder sampledNanos = new LongAdder();
+
+        private Result toResult(String category, String name, double seconds) {
+            long calls = this.calls.sum();
+            long samples = this.samples.sum();
+            long estimated = samples == 0 ? 0 : (long) ((double) sampledNanos.sum() / samples * calls);
+            return new Result(category, name, calls, calls / seconds, samples, estimated, 0);
+        }
+    }
+}
@@ -19,23 +19,79 @@ package net.momirealms.customcrops.api.misc.value;
 
 
 import net.momirealms.customcrops.api.context.Context;
+import net.momirealms.customcrops.api.context.ContextKeys;
+import net.momirealms.customcrops.api.misc.placeholder.BukkitPlaceholderManager;
+import net.momirealms.customcrops.common.helper.CompiledExpression;
 import net.momirealms.customcrops.common.helper.ExpressionHelper;
+import org.bukkit.OfflinePlayer;
+
+import java.util.regex.Pattern;
 
 public class ExpressionMathValueImpl<T> implements MathValue<T> {
 
+    private static final Pattern RAW_PLACEHOLDER = Pattern.compile("%[^%]+%");
+
     private final TextValue<T> raw;
+    // null if the expression can only be evaluated after rendering its placeholders into the text
+    private final CompiledExpression compiled;
+    // the context keys of the placeholders, or null for the other placeholders
+    private final ContextKeys<?>[] keys;
+    private final boolean hasRawPlaceholders;
 
     public ExpressionMathValueImpl(String raw) {
         this.raw = TextValue.auto(raw);
+        CompiledExpression compiled;
+        try {
+            compiled = CompiledExpression.compile(raw);
+        } catch (RuntimeException e) {
+            compiled = null;
+        }
+        this.compiled = compiled;
+        this.keys = new ContextKeys<?>[compiled == null ? 0 : compiled.placeholders().length];
+        for (int i = 0; i < keys.length; i++) {
+            this.keys[i] = ContextKeys.byPlaceholder(compiled.placeholders()[i]);
+        }
+        this.hasRawPlaceholders = RAW_PLACEHOLDER.matcher(raw).find();
     }
 
     @Override
     public double evaluate(Context<T> context) {
-        return ExpressionHelper.evaluate(raw.render(context));
+        return evaluate(context, false);
     }
 
     @Override
     public double evaluate(Context<T> context, boolean parseRawPlaceholders) {
+        // raw placeholders are parsed in the rendered text, so they can't be bound as variables
+        if (compiled != null && !(parseRawPlaceholders && hasRawPlaceholders)) {
+            if (compiled.isConstant()) {
+                return compiled.evaluate();
+            }
+            double[] values = bind(context);
+            if (values != null) {
+                return compiled.evaluate(values);
+            }
+        }
         return ExpressionHelper.evaluate(raw.render(context, parseRawPlaceholders));
     }
+
+    // resolves the placeholders as numbers, or returns null if any of them is not a number
+    private double[] bind(Context<T> context) {
+        String[] placeholders = compiled.placeholders();
+        double[] values = new double[placeholders.length];
+        OfflinePlayer player = context.holder() instanceof OfflinePlayer offlinePlayer ? offlinePlayer : null;
+        for (int i = 0; i < placeholders.length; i++) {
+            Object arg = keys[i] == null ? null : context.arg(keys[i]);
+            if (arg instanceof Number number) {
+                values[i] = number.doubleValue();
+                continue;
+            }
+            String value = arg != null ? arg.toString() : BukkitPlaceholderManager.getInstance().parse(player, placeholders[i], context.placeholderMap());
+            try {
+                values[i] = Double.parseDouble(value);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return values;
+    }
 }
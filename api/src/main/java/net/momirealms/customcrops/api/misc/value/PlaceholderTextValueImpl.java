@@ -18,25 +18,20 @@
 package net.momirealms.customcrops.api.misc.value;
 
 import net.momirealms.customcrops.api.context.Context;
-import net.momirealms.customcrops.api.misc.placeholder.BukkitPlaceholderManager;
+import net.momirealms.customcrops.api.misc.placeholder.PlaceholderTemplate;
 import org.bukkit.OfflinePlayer;
 
-import java.util.Map;
-
 public class PlaceholderTextValueImpl<T> implements TextValue<T> {
 
-    private final String raw;
+    private final PlaceholderTemplate template;
 
     public PlaceholderTextValueImpl(String raw) {
-        this.raw = raw;
+        this.template = PlaceholderTemplate.compile(raw);
     }
 
     @Override
     public String render(Context<T> context) {
-        Map<String, String> replacements = context.placeholderMap();
-        String text;
-        if (context.holder() instanceof OfflinePlayer player) text = BukkitPlaceholderManager.getInstance().parse(player, raw, replacements);
-        else text = BukkitPlaceholderManager.getInstance().parse(null, raw, replacements);
-        return text;
+        OfflinePlayer player = context.holder() instanceof OfflinePlayer offlinePlayer ? offlinePlayer : null;
+        return template.render(player, context, null);
     }
 }
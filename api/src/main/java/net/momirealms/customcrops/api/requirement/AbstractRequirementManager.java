@@ -30,6 +30,7 @@ import net.momirealms.customcrops.api.core.mechanic.crop.CrowAttack;
 import net.momirealms.customcrops.api.core.mechanic.fertilizer.Fertilizer;
 import net.momirealms.customcrops.api.core.mechanic.fertilizer.FertilizerConfig;
 import net.momirealms.customcrops.api.core.world.*;
+import net.momirealms.customcrops.api.misc.animation.AnimationManager;
 import net.momirealms.customcrops.api.misc.value.MathValue;
 import net.momirealms.customcrops.api.misc.value.TextValue;
 import net.momirealms.customcrops.api.util.MoonPhase;
@@ -155,7 +156,7 @@ public abstract class AbstractRequirementManager<T> implements RequirementManage
             plugin.getPluginLogger().warn("Requirement type: " + type + " not exists");
             return Requirement.empty();
         }
-        return factory.process(section.get("value"), actionList, runActions);
+        return new ProfiledRequirement<>(type, factory.process(section.get("value"), actionList, runActions));
     }
 
     @NotNull
@@ -166,7 +167,7 @@ public abstract class AbstractRequirementManager<T> implements RequirementManage
             plugin.getPluginLogger().warn("Requirement type: " + type + " doesn't exist.");
             return Requirement.empty();
         }
-        return factory.process(value);
+        return new ProfiledRequirement<>(type, factory.process(value));
     }
 
     @SuppressWarnings({"ResultOfMethodCallIgnored", "unchecked"})
@@ -445,16 +446,8 @@ public abstract class AbstractRequirementManager<T> implements RequirementManage
                 if (ConfigManager.enableGreenhouse()) {
                     Pos3 pos3 = Pos3.from(location);
                     Optional<CustomCropsWorld<?>> world = plugin.getWorldManager().getWorld(location.getWorld());
-                    if (world.isPresent()) {
-                        CustomCropsWorld<?> cropsWorld = world.get();
-                        for (int i = 1, range = ConfigManager.greenhouseRange(); i <= range; i++) {
-                            Optional<CustomCropsBlockState> optionalState = cropsWorld.getBlockState(pos3.add(0,i,0));
-                            if (optionalState.isPresent()) {
-                                if (optionalState.get().type() instanceof GreenhouseBlock) {
-                                    return true;
-                                }
-                            }
-                        }
+                    if (world.isPresent() && isUnderGreenhouse(world.get(), pos3)) {
+                        return true;
                     }
                 }
                 if (runActions) ActionManager.trigger(context, actions);
@@ -470,17 +463,9 @@ public abstract class AbstractRequirementManager<T> implements RequirementManage
                     if (ConfigManager.enableGreenhouse()) {
                         Pos3 pos3 = Pos3.from(location);
                         Optional<CustomCropsWorld<?>> world = plugin.getWorldManager().getWorld(location.getWorld());
-                        if (world.isPresent()) {
-                            CustomCropsWorld<?> cropsWorld = world.get();
-                            for (int i = 1, range = ConfigManager.greenhouseRange(); i <= range; i++) {
-                                Optional<CustomCropsBlockState> optionalState = cropsWorld.getBlockState(pos3.add(0,i,0));
-                                if (optionalState.isPresent()) {
-                                    if (optionalState.get().type() instanceof GreenhouseBlock) {
-                                        if (runActions) ActionManager.trigger(context, actions);
-                                        return false;
-                                    }
-                                }
-                            }
+                        if (world.isPresent() && isUnderGreenhouse(world.get(), pos3)) {
+                            if (runActions) ActionManager.trigger(context, actions);
+                            return false;
                         }
                     }
                     return true;
@@ -491,6 +476,12 @@ public abstract class AbstractRequirementManager<T> implements RequirementManage
         }, "unsuitable-season", "unsuitable_season");
     }
 
+    private static boolean isUnderGreenhouse(CustomCropsWorld<?> world, Pos3 pos3) {
+        // the glass is always in the same column, so only the loaded chunk of the crop is looked up, like the scarecrows
+        int range = ConfigManager.greenhouseRange();
+        return world.hasBlockInArea(pos3.add(0, 1, 0), pos3.add(0, range, 0), GreenhouseBlock.class);
+    }
+
     protected void registerPAPIRequirement() {
         registerRequirement((args, actions, runActions) -> {
             if (args instanceof Section section) {
@@ -987,21 +978,9 @@ public abstract class AbstractRequirementManager<T> implements RequirementManage
                         CustomCropsWorld<?> customCropsWorld = world.get();
                         if (!ConfigManager.scarecrowProtectChunk()) {
                             int range = ConfigManager.scarecrowRange();
-                            for (int i = -range; i <= range; i++) {
-                                for (int j = -range; j <= range; j++) {
-                                    for (int k : new int[]{0,-1,1}) {
-                                        Pos3 tempPos3 = pos3.add(i, k, j);
-                                        Optional<CustomCropsChunk> optionalChunk = customCropsWorld.getLoadedChunk(tempPos3.toChunkPos());
-                                        if (optionalChunk.isPresent()) {
-                                            CustomCropsChunk chunk = optionalChunk.get();
-                                            Optional<CustomCropsBlockState> optionalState = chunk.getBlockState(tempPos3);
-                                            if (optionalState.isPresent() && optionalState.get().type() instanceof ScarecrowBlock) {
-                                                if (advanced) ActionManager.trigger(context, actions);
-                                                return false;
-                                            }
-                                        }
-                                    }
-                                }
+                            if (customCropsWorld.hasBlockInArea(pos3.add(-range, -1, -range), pos3.add(range, 1, range), ScarecrowBlock.class)) {
+                                if (advanced) ActionManager.trigger(context, actions);
+                                return false;
                             }
                         } else {
                             if (customCropsWorld.doesChunkHaveBlock(pos3, ScarecrowBlock.class)) {
@@ -1013,8 +992,8 @@ public abstract class AbstractRequirementManager<T> implements RequirementManage
                     if (!Optional.ofNullable(context.arg(ContextKeys.OFFLINE)).orElse(false))
                         new CrowAttack(
                                 location,
-                                plugin.getItemManager().build(null, flyModel),
-                                plugin.getItemManager().build(null, standModel)
+                                AnimationManager.getInstance().model(flyModel),
+                                AnimationManager.getInstance().model(standModel)
                         ).start();
                     return true;
                 };
@@ -0,0 +1,53 @@
+/*
+ *  Copyright (C) <2024> <XiaoMoMi>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.momirealms.customcrops.api.requirement;
+
+import net.momirealms.customcrops.api.context.Context;
+import net.momirealms.customcrops.api.misc.profiler.SamplingProfiler;
+
+/**
+ * Wraps a parsed requirement to record its checks into the {@link SamplingProfiler} under its type.
+ */
+public class ProfiledRequirement<T> implements Requirement<T> {
+
+    private final String type;
+    private final Requirement<T> requirement;
+
+    public ProfiledRequirement(String type, Requirement<T> requirement) {
+        this.type = type;
+        this.requirement = requirement;
+    }
+
+    @Override
+    public boolean isSatisfied(Context<T> context) {
+        long start = SamplingProfiler.begin();
+        if (start == SamplingProfiler.IDLE) {
+            return requirement.isSatisfied(context);
+        }
+        try {
+            return requirement.isSatisfied(context);
+        } finally {
+            SamplingProfiler.endRequirement(type, start);
+        }
+    }
+
+    public Requirement<T> requirement() {
+        return requirement;
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ *  Copyright (C) <2024> <XiaoMoMi>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.momirealms.customcrops.api.core.world.adaptor;
+
+import net.momirealms.customcrops.api.core.InternalRegistries;
+import net.momirealms.customcrops.api.core.block.AbstractCustomCropsBlock;
+import net.momirealms.customcrops.api.core.world.*;
+import net.momirealms.customcrops.common.util.Key;
+import org.bukkit.Location;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+
+import static net.momirealms.customcrops.api.util.VarIntUtils.writeSignedVarInt;
+import static net.momirealms.customcrops.api.util.VarIntUtils.writeVarInt;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactChunkCodecTest {
+
+    private static final WorldSetting SETTING = WorldSetting.of(
+            true, 300,
+            1, 1, 1, 1, 1, 1,
+            true, -1, -1,
+            false, false, 28,
+            -1, -1, -1,
+            20
+    );
+    private static final TestBlock CROP = register(new TestBlock(Key.key("test", "crop")));
+    private static final TestBlock POT = register(new TestBlock(Key.key("test", "pot")));
+
+    private final CustomCropsWorld<Object> world = world();
+
+    @Test
+    void blockStatesSurviveRoundTrip() throws IOException {
+        CustomCropsChunk chunk = world.createChunk(ChunkPos.of(3, -7));
+        chunk.addBlockState(new Pos3(48, 64, -112), pot(2));
+        chunk.addBlockState(new Pos3(49, 64, -112), pot(2));
+        chunk.addBlockState(new Pos3(48, 65, -112), crop("tomato", 3));
+        chunk.addBlockState(new Pos3(63, -60, -97), crop("wheat", 0));
+        CustomCropsBlockState custom = pot(0);
+        custom.setString("custom", "value");
+        chunk.addBlockState(new Pos3(50, 319, -100), custom);
+
+        CustomCropsChunk decoded = CompactChunkCodec.decode(world, CompactChunkCodec.encode(chunk, chunk.sectionsToSave().toList()));
+
+        assertEquals(chunk.chunkPos(), decoded.chunkPos());
+        assertEquals(chunk.lastLoadedTime(), decoded.lastLoadedTime());
+        assertState(decoded, new Pos3(48, 64, -112), POT, "default", "water", 2);
+        assertState(decoded, new Pos3(49, 64, -112), POT, "default", "water", 2);
+        assertState(decoded, new Pos3(48, 65, -112), CROP, "tomato", "point", 3);
+        assertState(decoded, new Pos3(63, -60, -97), CROP, "wheat", "point", 0);
+        assertState(decoded, new Pos3(50, 319, -100), POT, "default", "water", 0);
+        assertEquals("value", decoded.getBlockState(new Pos3(50, 319, -100)).orElseThrow().getString("custom", ""));
+        assertTrue(decoded.getBlockState(new Pos3(48, 63, -112)).isEmpty());
+
+        // equal states share a palette entry, but each block must get its own state
+        decoded.getBlockState(new Pos3(48, 64, -112)).orElseThrow().setInt("water", 5);
+        assertState(decoded, new Pos3(49, 64, -112), POT, "default", "water", 2);
+    }
+
+    @Test
+    void truncatedPayloadIsRejected() throws IOException {
+        CustomCropsChunk chunk = world.createChunk(ChunkPos.of(0, 0));
+        chunk.addBlockState(new Pos3(1, 64, 1), pot(1));
+        chunk.addBlockState(new Pos3(1, 65, 1), crop("tomato", 1));
+        byte[] payload = CompactChunkCodec.encode(chunk, chunk.sectionsToSave().toList());
+
+        for (int length = 0; length < payload.length; length++) {
+            byte[] truncated = Arrays.copyOf(payload, length);
+            assertThrows(IOException.class, () -> CompactChunkCodec.decode(world, truncated), "truncated to " + length);
+        }
+    }
+
+    @Test
+    void negativeLengthIsRejected() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = header(bytes);
+        // the amount of scheduled ticks
+        writeVarInt(out, -1);
+        assertThrows(IOException.class, () -> CompactChunkCodec.decode(world, bytes.toByteArray()));
+    }
+
+    @Test
+    void lengthBeyondPayloadIsRejected() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = header(bytes);
+        writeVarInt(out, 0);
+        writeVarInt(out, 0);
+        // the palette size
+        writeVarInt(out, Integer.MAX_VALUE);
+        assertThrows(IOException.class, () -> CompactChunkCodec.decode(world, bytes.toByteArray()));
+    }
+
+    @Test
+    void paletteIndexOutOfBoundsIsRejected() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = header(bytes);
+        writeVarInt(out, 0);
+        writeVarInt(out, 0);
+        writeVarInt(out, 0);
+        writeVarInt(out, 1);
+        writeSignedVarInt(out, 4);
+        writeVarInt(out, 1);
+        writeVarInt(out, 0);
+        // no palette entry to point at
+        writeVarInt(out, 0);
+        assertThrows(IOException.class, () -> CompactChunkCodec.decode(world, bytes.toByteArray()));
+    }
+
+    @Test
+    void localIndexOutOfSectionIsRejected() throws IOException {
+        CustomCropsChunk chunk = world.createChunk(ChunkPos.of(0, 0));
+        chunk.addBlockState(new Pos3(0, 0, 0), pot(1));
+        byte[] payload = CompactChunkCodec.encode(chunk, chunk.sectionsToSave().toList());
+        // the payload ends with the local index delta and the palette index of the only block, both 0
+        byte[] corrupted = Arrays.copyOf(payload, payload.length + 1);
+        // a delta of 4096 as a varint, past the last block of the section
+        corrupted[payload.length - 2] = (byte) 0x80;
+        corrupted[payload.length - 1] = 0x20;
+        corrupted[payload.length] = 0;
+        assertThrows(IOException.class, () -> CompactChunkCodec.decode(world, corrupted));
+    }
+
+    private static void assertState(CustomCropsChunk chunk, Pos3 pos, TestBlock type, String id, String key, int value) {
+        CustomCropsBlockState state = chunk.getBlockState(pos).orElseThrow(() -> new AssertionError("missing block at " + pos));
+        assertSame(type, state.type());
+        assertEquals(id, type.id(state));
+        assertEquals(value, state.getInt(key, -1));
+    }
+
+    private static DataOutputStream header(ByteArrayOutputStream bytes) throws IOException {
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0);
+        out.writeInt(0);
+        writeVarInt(out, 0);
+        out.writeLong(0);
+        return out;
+    }
+
+    private static CustomCropsBlockState crop(String id, int point) {
+        CustomCropsBlockState state = CROP.createBlockState();
+        CROP.id(state, id);
+        state.setInt("point", point);
+        return state;
+    }
+
+    private static CustomCropsBlockState pot(int water) {
+        CustomCropsBlockState state = POT.createBlockState();
+        POT.id(state, "default");
+        state.setInt("water", water);
+        return state;
+    }
+
+    private static TestBlock register(TestBlock block) {
+        InternalRegistries.BLOCK.register(block.type(), block);
+        return block;
+    }
+
+    // A world that only answers the methods used by chunks and the codec, without a running server
+    @SuppressWarnings("unchecked")
+    private static CustomCropsWorld<Object> world() {
+        WorldMetrics metrics = new WorldMetrics();
+        InvocationHandler handler = (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "setting" -> {
+                    return SETTING;
+                }
+                case "metrics" -> {
+                    return metrics;
+                }
+                case "worldName" -> {
+                    return "test";
+                }
+                case "createSection" -> {
+                    return CustomCropsSection.createPacked((int) args[0]);
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "toString" -> {
+                    return "TestWorld";
+                }
+            }
+            if (method.isDefault()) {
+                return InvocationHandler.invokeDefault(proxy, method, args);
+            }
+            throw new UnsupportedOperationException(method.getName());
+        };
+        return (CustomCropsWorld<Object>) Proxy.newProxyInstance(CompactChunkCodecTest.class.getClassLoader(), new Class[]{CustomCropsWorld.class}, handler);
+    }
+
+    private static final class TestBlock extends AbstractCustomCropsBlock {
+
+        private TestBlock(Key type) {
+            super(type);
+        }
+
+        @Override
+        public void scheduledTick(CustomCropsBlockState state, CustomCropsWorld<?> world, Pos3 location, boolean offlineTick) {
+        }
+
+        @Override
+        public void randomTick(CustomCropsBlockState state, CustomCropsWorld<?> world, Pos3 location, boolean offlineTick) {
+        }
+
+        @Override
+        public boolean isInstance(String id) {
+            return false;
+        }
+
+        @Override
+        public void restore(Location location, CustomCropsBlockState state) {
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ *  Copyright (C) <2024> <XiaoMoMi>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+package net.momirealms.customcrops.api.core.world.adaptor;
+
+import net.momirealms.customcrops.api.core.world.ChunkPos;
+import net.momirealms.customcrops.api.core.world.RegionPos;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RegionFileTest {
+
+    private static final RegionPos REGION = RegionPos.of(1, -1);
+    private static final ChunkPos FIRST = ChunkPos.of(32, -32);
+    private static final ChunkPos SECOND = ChunkPos.of(40, -20);
+    private static final ChunkPos THIRD = ChunkPos.of(63, -1);
+
+    @TempDir
+    Path folder;
+
+    @Test
+    void writtenChunksAreReadBack() throws IOException {
+        Path path = folder.resolve("r.1.-1.mcc");
+        assertEquals(-1, RegionFile.version(path));
+        Map<ChunkPos, byte[]> chunks = Map.of(FIRST, payload(1, 100), SECOND, payload(2, RegionFile.SECTOR_SIZE * 3 + 1), THIRD, payload(3, RegionFile.SECTOR_SIZE));
+        RegionFile.write(path, REGION, chunks);
+
+        assertEquals(RegionFile.VERSION, RegionFile.version(path));
+        assertFalse(Files.exists(folder.resolve("r.1.-1.mcc.tmp")));
+        try (RegionFile file = RegionFile.open(path)) {
+            for (Map.Entry<ChunkPos, byte[]> entry : chunks.entrySet()) {
+                assertArrayEquals(entry.getValue(), file.read(entry.getKey()));
+            }
+            assertNull(file.read(ChunkPos.of(33, -32)));
+            Map<ChunkPos, byte[]> all = file.readAll();
+            assertEquals(chunks.keySet(), all.keySet());
+            for (Map.Entry<ChunkPos, byte[]> entry : chunks.entrySet()) {
+                assertArrayEquals(entry.getValue(), all.get(entry.getKey()));
+            }
+        }
+    }
+
+    @Test
+    void committedChangesSurviveReopening() throws IOException {
+        Path path = folder.resolve("region.mcc");
+        RegionFile.write(path, REGION, Map.of(FIRST, payload(1, 5000), SECOND, payload(2, 10)));
+
+        HashMap<ChunkPos, byte[]> changes = new HashMap<>();
+        changes.put(FIRST, payload(4, 9000));
+        changes.put(SECOND, null);
+        changes.put(THIRD, payload(5, 20));
+        try (RegionFile file = RegionFile.open(path)) {
+            file.commit(changes);
+            assertArrayEquals(payload(4, 9000), file.read(FIRST));
+        }
+
+        assertFalse(Files.exists(walPath(path)));
+        try (RegionFile file = RegionFile.open(path)) {
+            assertArrayEquals(payload(4, 9000), file.read(FIRST));
+            assertNull(file.read(SECOND));
+            assertArrayEquals(payload(5, 20), file.read(THIRD));
+        }
+    }
+
+    @Test
+    void pendingLogIsReplayedOnOpen() throws IOException {
+        Path path = folder.resolve("region.mcc");
+        RegionFile.write(path, REGION, Map.of(FIRST, payload(1, 100), SECOND, payload(2, 100)));
+        // as if the server stopped after the log was forced but before the region file was updated
+        Files.write(walPath(path), log(new ChunkPos[] {FIRST, SECOND, THIRD}, new byte[][] {payload(3, 7000), null, payload(4, 1)}));
+
+        try (RegionFile file = RegionFile.open(path)) {
+            assertArrayEquals(payload(3, 7000), file.read(FIRST));
+            assertNull(file.read(SECOND));
+            assertArrayEquals(payload(4, 1), file.read(THIRD));
+        }
+        assertFalse(Files.exists(walPath(path)));
+    }
+
+    @Test
+    void incompleteLogIsDiscarded() throws IOException {
+        Path path = folder.resolve("region.mcc");
+        RegionFile.write(path, REGION, Map.of(FIRST, payload(1, 100)));
+        byte[] log = log(new ChunkPos[] {FIRST}, new byte[][] {payload(2, 100)});
+        Files.write(walPath(path), Arrays.copyOf(log, log.length - 5));
+
+        try (RegionFile file = RegionFile.open(path)) {
+            assertArrayEquals(payload(1, 100), file.read(FIRST));
+        }
+        assertFalse(Files.exists(walPath(path)));
+    }
+
+    @Test
+    void logWithWrongChecksumIsDiscarded() throws IOException {
+        Path path = folder.resolve("region.mcc");
+        RegionFile.write(path, REGION, Map.of(FIRST, payload(1, 100)));
+        byte[] log = log(new ChunkPos[] {FIRST}, new byte[][] {payload(2, 100)});
+        log[20] ^= 1;
+        Files.write(walPath(path), log);
+
+        try (RegionFile file = RegionFile.open(path)) {
+            assertArrayEquals(payload(1, 100), file.read(FIRST));
+        }
+    }
+
+    @Test
+    void mappingKeepsReadingTheChunksBeforeCommits() throws IOException {
+        Path path = folder.resolve("region.mcc");
+        RegionFile.write(path, REGION, Map.of(FIRST, payload(1, 6000), SECOND, payload(2, 100)));
+
+        try (RegionFile file = RegionFile.open(path)) {
+            RegionFile.Mapping mapping = file.map();
+            HashMap<ChunkPos, byte[]> changes = new HashMap<>();
+            changes.put(FIRST, payload(3, 6000));
+            changes.put(SECOND, null);
+            file.commit(changes);
+            // the new payload went to other sectors, so the mapping still sees the old ones
+            file.commit(Map.of(THIRD, payload(4, 6000)));
+
+            assertArrayEquals(payload(1, 6000), mapping.read(FIRST));
+            assertArrayEquals(payload(2, 100), mapping.read(SECOND));
+            assertNull(mapping.read(THIRD));
+            assertArrayEquals(payload(3, 6000), file.read(FIRST));
+            assertArrayEquals(payload(4, 6000), file.read(THIRD));
+        }
+    }
+
+    @Test
+    void corruptedTableIsRejected() throws IOException {
+        Path path = folder.resolve("region.mcc");
+        RegionFile.write(path, REGION, Map.of(FIRST, payload(1, 100)));
+        byte[] bytes = Files.readAllBytes(path);
+        // the entry of the first chunk of the region points past the end of the file
+        ByteBuffer.wrap(bytes).putInt(9, 100_000);
+        Files.write(path, bytes);
+
+        assertThrows(IOException.class, () -> RegionFile.open(path).close());
+    }
+
+    private static byte[] payload(int seed, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = (byte) (seed * 31 + i);
+        }
+        return bytes;
+    }
+
+    private static Path walPath(Path path) {
+        return path.resolveSibling(path.getFileName() + ".wal");
+    }
+
+    // Builds a write-ahead log in the layout written by RegionFile#commit
+    private static byte[] log(ChunkPos[] positions, byte[][] payloads) {
+        int size = 8;
+        for (byte[] payload : payloads) {
+            size += 8 + (payload == null ? 0 : payload.length);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size + 8);
+        buffer.putInt(0x4343574C).putInt(positions.length);
+        for (int i = 0; i < positions.length; i++) {
+            buffer.putInt((positions[i].x() & 31) | (positions[i].z() & 31) << 5);
+            if (payloads[i] == null) {
+                buffer.putInt(0);
+            } else {
+                buffer.putInt(payloads[i].length).put(payloads[i]);
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, size);
+        buffer.putLong(crc.getValue());
+        return buffer.array();
+    }
+}
@@ -0,0 +1,43 @@
+plugins {
+    id("me.champeau.jmh") version "0.7.2"
+}
+
+repositories {
+    mavenCentral()
+    maven("https://repo.papermc.io/repository/maven-public/")
+    maven("https://repo.rapture.pw/repository/maven-releases/") // flow nbt
+}
+
+dependencies {
+    jmh(project(":api"))
+    jmh(project(":common"))
+    jmh("com.flowpowered:flow-nbt:${rootProject.properties["flow_nbt_version"]}")
+    jmh("net.objecthunter:exp4j:${rootProject.properties["exp4j_version"]}")
+    // the api is compiled against these, they are needed to load its classes outside a server
+    jmh("dev.folia:folia-api:${rootProject.properties["paper_version"]}-R0.1-SNAPSHOT")
+    jmh("net.kyori:adventure-api:${rootProject.properties["adventure_bundle_version"]}")
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_17
+    targetCompatibility = JavaVersion.VERSION_17
+    toolchain {
+        languageVersion = JavaLanguageVersion.of(17)
+    }
+}
+
+tasks.withType<JavaCompile> {
+    options.encoding = "UTF-8"
+    options.release.set(17)
+}
+
+// ./gradlew :benchmarks:jmh [-Pjmh.includes=ChunkCodec]
+jmh {
+    jmhVersion = rootProject.properties["jmh_version"].toString()
+    fork = 1
+    warmupIterations = 3
+    iterations = 5
+    resultFormat = "JSON"
+    resultsFile = layout.buildDirectory.file("results/jmh/results.json")
+    project.findProperty("jmh.includes")?.let { includes = listOf(it.toString()) }
+}
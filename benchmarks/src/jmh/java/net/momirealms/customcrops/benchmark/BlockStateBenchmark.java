@@ -0,0 +1,104 @@
+/*
+ *  Copyright (C) <2024> <XiaoMoMi>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.momirealms.customcrops.benchmark;
+
+import net.momirealms.customcrops.api.core.world.BlockPos;
+import net.momirealms.customcrops.api.core.world.CustomCropsBlockState;
+import net.momirealms.customcrops.api.core.world.CustomCropsSection;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Optional;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Block state lookups and updates in a single section.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BlockStateBenchmark {
+
+    @Param({"false", "true"})
+    public boolean packed;
+
+    // amount of blocks in the section
+    @Param({"16", "256", "2048"})
+    public int blocks;
+
+    private CustomCropsSection section;
+    private BlockPos[] present;
+    private BlockPos[] absent;
+    private CustomCropsBlockState replacement;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SplittableRandom random = new SplittableRandom(42);
+        section = packed ? CustomCropsSection.createPacked(4) : CustomCropsSection.create(4);
+        boolean[] used = new boolean[4096];
+        present = new BlockPos[blocks];
+        for (int i = 0; i < blocks; i++) {
+            int index;
+            do {
+                index = random.nextInt(4096);
+            } while (used[index]);
+            used[index] = true;
+            present[i] = pos(index);
+            section.addBlockState(present[i], SyntheticWorlds.crop(random.nextInt(4)));
+        }
+        absent = new BlockPos[Math.min(blocks, 4096 - blocks)];
+        for (int i = 0, index = 0; i < absent.length; index++) {
+            if (!used[index]) absent[i++] = pos(index);
+        }
+        replacement = SyntheticWorlds.crop(0);
+    }
+
+    @Benchmark
+    public Optional<CustomCropsBlockState> getPresent() {
+        return section.getBlockState(present[next(present.length)]);
+    }
+
+    @Benchmark
+    public Optional<CustomCropsBlockState> getAbsent() {
+        return section.getBlockState(absent[next(absent.length)]);
+    }
+
+    @Benchmark
+    public Optional<CustomCropsBlockState> replace() {
+        return section.addBlockState(present[next(present.length)], replacement);
+    }
+
+    @Benchmark
+    public int updateData() {
+        CustomCropsBlockState state = section.getBlockState(present[next(present.length)]).orElseThrow();
+        int point = state.getInt("point", 0) + 1;
+        state.setInt("point", point);
+        return point;
+    }
+
+    private int next(int bound) {
+        if (++cursor >= bound) cursor = 0;
+        return cursor;
+    }
+
+    private static BlockPos pos(int index) {
+        return new BlockPos(index & 0xF, 4 * 16 + (index >> 8), (index >> 4) & 0xF);
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ *  Copyright (C) <2024> <XiaoMoMi>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.momirealms.customcrops.benchmark;
+
+import net.momirealms.customcrops.api.core.world.CustomCropsChunk;
+import net.momirealms.customcrops.api.core.world.CustomCropsWorld;
+import net.momirealms.customcrops.api.core.world.adaptor.CompactChunkCodec;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization round-trips of a single chunk with the chunk codec used by the region files.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ChunkCodecBenchmark {
+
+    @Param({"false", "true"})
+    public boolean packed;
+
+    @Param({"0.1", "0.5", "1.0"})
+    public double density;
+
+    private CustomCropsWorld<Object> world;
+    private CustomCropsChunk chunk;
+    private byte[] payload;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        world = SyntheticWorlds.world(packed);
+        chunk = SyntheticWorlds.farms(world, 1, density, 42).get(0);
+        payload = serialize();
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return CompactChunkCodec.encode(chunk, chunk.sectionsToSave().toList());
+    }
+
+    @Benchmark
+    public CustomCropsChunk deserialize() throws IOException {
+        return CompactChunkCodec.decode(world, payload);
+    }
+
+    @Benchmark
+    public CustomCropsChunk roundTrip() throws IOException {
+        return CompactChunkCodec.decode(world, serialize());
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ *  Copyright (C) <2024> <XiaoMoMi>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.momirealms.customcrops.benchmark;
+
+import net.momirealms.customcrops.api.core.world.CustomCropsChunk;
+import net.momirealms.customcrops.api.core.world.CustomCropsWorld;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One second of ticking for N loaded chunks, as done by the tick engine for each chunk.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ChunkTickBenchmark {
+
+    @Param({"false", "true"})
+    public boolean packed;
+
+    @Param({"64", "256"})
+    public int chunks;
+
+    @Param({"0.1", "0.5"})
+    public double density;
+
+    private List<CustomCropsChunk> loaded;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        CustomCropsWorld<Object> world = SyntheticWorlds.world(packed);
+        loaded = SyntheticWorlds.farms(world, chunks, density, 42);
+        // run one full cycle, so that every chunk has its scheduled ticks arranged
+        for (int i = 0; i < SyntheticWorlds.SETTING.minTickUnit(); i++) {
+            tick();
+        }
+    }
+
+    @Benchmark
+    public void tick() {
+        for (CustomCropsChunk chunk : loaded) {
+            chunk.timer();
+        }
+    }
+}
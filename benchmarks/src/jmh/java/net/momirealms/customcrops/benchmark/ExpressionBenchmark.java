@@ -0,0 +1,73 @@
+/*
+ *  Copyright (C) <2024> <XiaoMoMi>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.momirealms.customcrops.benchmark;
+
+import net.momirealms.customcrops.common.helper.CompiledExpression;
+import net.momirealms.customcrops.common.helper.ExpressionHelper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluating the expressions of actions and drops, by substituting the placeholders into the text and parsing it
+ * on every call as before, versus compiling the expression once and binding the placeholders as variables.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ExpressionBenchmark {
+
+    @Param({"0.5", "{level} * 0.05 + 0.1", "min({point} / {max_point}, 1) * 2 + {level} ^ 0.5"})
+    public String expression;
+
+    private CompiledExpression compiled;
+    private String[] placeholders;
+    private double[] values;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        compiled = CompiledExpression.compile(expression);
+        placeholders = compiled.placeholders();
+        values = new double[placeholders.length];
+    }
+
+    @Benchmark
+    public double substituteAndParse() {
+        int value = next();
+        String text = expression;
+        for (String placeholder : placeholders) {
+            text = text.replace(placeholder, String.valueOf(value));
+        }
+        return ExpressionHelper.evaluate(text);
+    }
+
+    @Benchmark
+    public double compiled() {
+        int value = next();
+        for (int i = 0; i < values.length; i++) {
+            values[i] = value;
+        }
+        return compiled.evaluate(values);
+    }
+
+    private int next() {
+        return (cursor = (cursor + 1) & 63) + 1;
+    }
+}
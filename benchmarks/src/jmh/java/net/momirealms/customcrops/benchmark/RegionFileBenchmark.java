@@ -0,0 +1,105 @@
+/*
+ *  Copyright (C) <2024> <XiaoMoMi>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.momirealms.customcrops.benchmark;
+
+import net.momirealms.customcrops.api.core.world.ChunkPos;
+import net.momirealms.customcrops.api.core.world.CustomCropsChunk;
+import net.momirealms.customcrops.api.core.world.CustomCropsWorld;
+import net.momirealms.customcrops.api.core.world.RegionPos;
+import net.momirealms.customcrops.api.core.world.adaptor.CompactChunkCodec;
+import net.momirealms.customcrops.api.core.world.adaptor.RegionFile;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saving and loading a region file holding the serialized chunks of a farmed area.
+ * The payloads are not compressed, so the results only cover the region format and the disk.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RegionFileBenchmark {
+
+    @Param({"64", "1024"})
+    public int chunks;
+
+    private Path directory;
+    private Path file;
+    private Map<ChunkPos, byte[]> payloads;
+    private Map<ChunkPos, byte[]> changes;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        CustomCropsWorld<Object> world = SyntheticWorlds.world(true);
+        List<CustomCropsChunk> farms = SyntheticWorlds.farms(world, chunks, 0.5, 42);
+        payloads = new HashMap<>();
+        for (CustomCropsChunk chunk : farms) {
+            payloads.put(chunk.chunkPos(), CompactChunkCodec.encode(chunk, chunk.sectionsToSave().toList()));
+        }
+        // a save usually only rewrites a few chunks
+        changes = new HashMap<>();
+        payloads.entrySet().stream().limit(Math.max(1, chunks / 16)).forEach(entry -> changes.put(entry.getKey(), entry.getValue()));
+        directory = Files.createTempDirectory("customcrops-benchmark");
+        file = directory.resolve("r.0.0.mcc");
+        RegionFile.write(file, RegionPos.of(0, 0), payloads);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        RegionFile.delete(file);
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public long save() throws IOException {
+        return RegionFile.write(file, RegionPos.of(0, 0), payloads);
+    }
+
+    @Benchmark
+    public long commit() throws IOException {
+        try (RegionFile region = RegionFile.open(file)) {
+            return region.commit(changes);
+        }
+    }
+
+    @Benchmark
+    public Map<ChunkPos, byte[]> load() throws IOException {
+        try (RegionFile region = RegionFile.open(file)) {
+            return region.readAll();
+        }
+    }
+
+    @Benchmark
+    public void loadMapped(Blackhole blackhole) throws IOException {
+        try (RegionFile region = RegionFile.open(file)) {
+            RegionFile.Mapping mapping = region.map();
+            for (ChunkPos pos : mapping.chunks()) {
+                blackhole.consume(mapping.read(pos));
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ *  Copyright (C) <2024> <XiaoMoMi>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.momirealms.customcrops.benchmark;
+
+import net.momirealms.customcrops.api.core.InternalRegistries;
+import net.momirealms.customcrops.api.core.block.AbstractCustomCropsBlock;
+import net.momirealms.customcrops.api.core.world.*;
+import net.momirealms.customcrops.common.util.Key;
+import org.bukkit.Location;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Builds synthetic worlds for the benchmarks, without a running server.
+ * <p>
+ * The world is a proxy of {@link CustomCropsWorld} that only answers the methods used by chunks and the chunk codec,
+ * such as setting(), metrics() and createSection().
+ * Its default methods run as usual, all the others throw {@link UnsupportedOperationException}.
+ */
+public final class SyntheticWorlds {
+
+    public static final WorldSetting SETTING = WorldSetting.of(
+            true, 300,
+            1, 1, 1, 1, 1, 1,
+            true, -1, -1,
+            false, false, 28,
+            -1, -1, -1,
+            20
+    );
+
+    public static final BenchmarkBlock CROP = register(new BenchmarkBlock(Key.key("benchmark", "crop")));
+    public static final BenchmarkBlock POT = register(new BenchmarkBlock(Key.key("benchmark", "pot")));
+
+    private SyntheticWorlds() {
+    }
+
+    /**
+     * Creates a world that stores blocks in sections of the given kind.
+     *
+     * @param packedSections whether to use {@link PackedCustomCropsSection}
+     * @return the world
+     */
+    @SuppressWarnings("unchecked")
+    public static CustomCropsWorld<Object> world(boolean packedSections) {
+        WorldMetrics metrics = new WorldMetrics();
+        InvocationHandler handler = (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "setting" -> {
+                    return SETTING;
+                }
+                case "metrics" -> {
+                    return metrics;
+                }
+                case "worldName" -> {
+                    return "benchmark";
+                }
+                case "createSection" -> {
+                    int sectionID = (int) args[0];
+                    return packedSections ? CustomCropsSection.createPacked(sectionID) : CustomCropsSection.create(sectionID);
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "toString" -> {
+                    return "SyntheticWorld";
+                }
+            }
+            if (method.isDefault()) {
+                return InvocationHandler.invokeDefault(proxy, method, args);
+            }
+            throw new UnsupportedOperationException(method.getName());
+        };
+        return (CustomCropsWorld<Object>) Proxy.newProxyInstance(SyntheticWorlds.class.getClassLoader(), new Class[]{CustomCropsWorld.class}, handler);
+    }
+
+    /**
+     * Creates chunks filled with farms. Every farmed column has a pot with a crop on top of it.
+     *
+     * @param world the world
+     * @param chunks the amount of chunks, laid out in a square
+     * @param density the chance for a column to be farmed
+     * @param seed the random seed
+     * @return the chunks
+     */
+    public static List<CustomCropsChunk> farms(CustomCropsWorld<?> world, int chunks, double density, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int side = (int) Math.ceil(Math.sqrt(chunks));
+        List<CustomCropsChunk> result = new ArrayList<>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            ChunkPos pos = ChunkPos.of(i % side, i / side);
+            CustomCropsChunk chunk = world.createChunk(pos);
+            for (int x = 0; x < 16; x++) {
+                for (int z = 0; z < 16; z++) {
+                    if (random.nextDouble() >= density) continue;
+                    int blockX = pos.x() * 16 + x;
+                    int blockZ = pos.z() * 16 + z;
+                    int y = 64 + random.nextInt(4);
+                    chunk.addBlockState(new Pos3(blockX, y, blockZ), pot(random.nextInt(3)));
+                    chunk.addBlockState(new Pos3(blockX, y + 1, blockZ), crop(random.nextInt(4)));
+                }
+            }
+            result.add(chunk);
+        }
+        return result;
+    }
+
+    public static CustomCropsBlockState crop(int point) {
+        CustomCropsBlockState state = CROP.createBlockState();
+        CROP.id(state, "tomato");
+        state.setInt("point", point);
+        return state;
+    }
+
+    public static CustomCropsBlockState pot(int water) {
+        CustomCropsBlockState state = POT.createBlockState();
+        POT.id(state, "default");
+        state.setInt("water", water);
+        return state;
+    }
+
+    private static BenchmarkBlock register(BenchmarkBlock block) {
+        InternalRegistries.BLOCK.register(block.type(), block);
+        return block;
+    }
+
+    /**
+     * A block that only updates its own data when ticked, so the benchmarks measure the world rather than the mechanics.
+     */
+    public static final class BenchmarkBlock extends AbstractCustomCropsBlock {
+
+        private BenchmarkBlock(Key type) {
+            super(type);
+        }
+
+        @Override
+        public void scheduledTick(CustomCropsBlockState state, CustomCropsWorld<?> world, Pos3 location, boolean offlineTick) {
+            if (canTick(state, 2)) {
+                state.setInt("point", state.getInt("point", 0) + 1);
+            }
+        }
+
+        @Override
+        public void randomTick(CustomCropsBlockState state, CustomCropsWorld<?> world, Pos3 location, boolean offlineTick) {
+            state.setInt("water", Math.max(0, state.getInt("water", 0) - 1));
+        }
+
+        @Override
+        public boolean isInstance(String id) {
+            return false;
+        }
+
+        @Override
+        public void restore(Location location, CustomCropsBlockState state) {
+        }
+    }
+}
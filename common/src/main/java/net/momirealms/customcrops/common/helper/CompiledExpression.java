@@ -0,0 +1,133 @@
+/*
+ *  Copyright (C) <2024> <XiaoMoMi>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.momirealms.customcrops.common.helper;
+
+import net.objecthunter.exp4j.Expression;
+import net.objecthunter.exp4j.ExpressionBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A mathematical expression that is parsed only once. The {placeholders} in it are bound as variables
+ * on evaluation instead of being substituted into the text. Expressions without placeholders are
+ * evaluated once when compiled.
+ * <p>
+ * Evaluation is thread-safe, as every thread evaluates its own copy of the parsed expression.
+ */
+public final class CompiledExpression {
+
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\{[^{}]+}");
+    private static final String VARIABLE_PREFIX = "ccvar";
+
+    private final String[] placeholders;
+    private final String[] variables;
+    private final double constant;
+    private final ThreadLocal<Expression> expressions;
+
+    private CompiledExpression(String[] placeholders, String[] variables, double constant, ThreadLocal<Expression> expressions) {
+        this.placeholders = placeholders;
+        this.variables = variables;
+        this.constant = constant;
+        this.expressions = expressions;
+    }
+
+    /**
+     * Compiles an expression.
+     *
+     * @param expression the expression that might contain {placeholders}
+     * @return the compiled expression
+     * @throws IllegalArgumentException if the expression can't be parsed, or a placeholder in it can't be
+     *                                  bound as a variable without changing the meaning of the expression
+     * @throws ArithmeticException      if the expression has no placeholders and can't be evaluated
+     */
+    public static CompiledExpression compile(String expression) {
+        List<String> placeholders = new ArrayList<>();
+        StringBuilder builder = new StringBuilder(expression.length());
+        Matcher matcher = PLACEHOLDER.matcher(expression);
+        int last = 0;
+        while (matcher.find()) {
+            // substituted text would be joined with the adjacent characters, like 2{level} -> 25
+            if (isJoined(expression, matcher.start() - 1) || isJoined(expression, matcher.end())) {
+                throw new IllegalArgumentException("Placeholder " + matcher.group() + " is not a separate operand in " + expression);
+            }
+            int index = placeholders.indexOf(matcher.group());
+            if (index == -1) {
+                index = placeholders.size();
+                placeholders.add(matcher.group());
+            }
+            builder.append(expression, last, matcher.start()).append(VARIABLE_PREFIX).append(index);
+            last = matcher.end();
+        }
+        builder.append(expression, last, expression.length());
+
+        String[] variables = new String[placeholders.size()];
+        for (int i = 0; i < variables.length; i++) {
+            variables[i] = VARIABLE_PREFIX + i;
+        }
+        Expression template = new ExpressionBuilder(builder.toString()).variables(variables).build();
+        if (variables.length == 0) {
+            return new CompiledExpression(variables, variables, template.evaluate(), null);
+        }
+        return new CompiledExpression(placeholders.toArray(new String[0]), variables, Double.NaN, ThreadLocal.withInitial(() -> new Expression(template)));
+    }
+
+    private static boolean isJoined(String expression, int index) {
+        if (index < 0 || index >= expression.length()) return false;
+        char c = expression.charAt(index);
+        return Character.isLetterOrDigit(c) || c == '.' || c == '_' || c == '{' || c == '}';
+    }
+
+    /**
+     * Gets the placeholders to bind, in the order of the values passed to {@link #evaluate(double...)}
+     *
+     * @return the placeholders, including the braces
+     */
+    public String[] placeholders() {
+        return placeholders;
+    }
+
+    /**
+     * Checks if the expression has no placeholders
+     *
+     * @return constant or not
+     */
+    public boolean isConstant() {
+        return placeholders.length == 0;
+    }
+
+    /**
+     * Evaluates the expression with the values of the placeholders
+     *
+     * @param values the values of the placeholders in the order of {@link #placeholders()}
+     * @return the result
+     */
+    public double evaluate(double... values) {
+        if (isConstant()) {
+            return constant;
+        }
+        Expression expression = expressions.get();
+        for (int i = 0; i < placeholders.length; i++) {
+            expression.setVariable(variables[i], values[i]);
+        }
+        return expression.evaluate();
+    }
+}
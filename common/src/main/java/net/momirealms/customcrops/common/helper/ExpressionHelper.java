@@ -26,6 +26,7 @@ public class ExpressionHelper {
 
     /**
      * Evaluates a mathematical expression provided as a string.
+     * The expression is parsed on every call, use {@link CompiledExpression} for expressions evaluated repeatedly.
      *
      * @param expression the mathematical expression to evaluate
      * @return the result of the evaluation as a double
@@ -51,6 +51,25 @@ public interface MessageConstants {
     TranslatableComponent.Builder COMMAND_DEBUG_DATA_SUCCESS_CUSTOM = Component.translatable().key("command.debug.data.success.custom");
     TranslatableComponent.Builder COMMAND_DEBUG_WORLDS_FAILURE = Component.translatable().key("command.debug.worlds.failure");
     TranslatableComponent.Builder COMMAND_DEBUG_WORLDS_SUCCESS = Component.translatable().key("command.debug.worlds.success");
+    TranslatableComponent.Builder COMMAND_DEBUG_WORLDS_TICK = Component.translatable().key("command.debug.worlds.tick");
+    TranslatableComponent.Builder COMMAND_DEBUG_WORLDS_SAVE = Component.translatable().key("command.debug.worlds.save");
+    TranslatableComponent.Builder COMMAND_DEBUG_COMPRESSION_FAILURE_WORLD = Component.translatable().key("command.debug.compression.failure.world");
+    TranslatableComponent.Builder COMMAND_DEBUG_COMPRESSION_FAILURE_EMPTY = Component.translatable().key("command.debug.compression.failure.empty");
+    TranslatableComponent.Builder COMMAND_DEBUG_COMPRESSION_FAILURE_ERROR = Component.translatable().key("command.debug.compression.failure.error");
+    TranslatableComponent.Builder COMMAND_DEBUG_COMPRESSION_TRAIN = Component.translatable().key("command.debug.compression.train");
+    TranslatableComponent.Builder COMMAND_DEBUG_COMPRESSION_BENCHMARK = Component.translatable().key("command.debug.compression.benchmark");
+    TranslatableComponent.Builder COMMAND_DEBUG_PERF_FAILURE_WORLD = Component.translatable().key("command.debug.perf.failure.world");
+    TranslatableComponent.Builder COMMAND_DEBUG_PERF_WORLD = Component.translatable().key("command.debug.perf.world");
+    TranslatableComponent.Builder COMMAND_DEBUG_PERF_TICK = Component.translatable().key("command.debug.perf.tick");
+    TranslatableComponent.Builder COMMAND_DEBUG_PERF_REGION = Component.translatable().key("command.debug.perf.region");
+    TranslatableComponent.Builder COMMAND_DEBUG_PERF_OFFLINE = Component.translatable().key("command.debug.perf.offline");
+    TranslatableComponent.Builder COMMAND_DEBUG_PERF_BLOCK = Component.translatable().key("command.debug.perf.block");
+    TranslatableComponent.Builder COMMAND_DEBUG_PROFILER_START = Component.translatable().key("command.debug.profiler.start");
+    TranslatableComponent.Builder COMMAND_DEBUG_PROFILER_STOP = Component.translatable().key("command.debug.profiler.stop");
+    TranslatableComponent.Builder COMMAND_DEBUG_PROFILER_EMPTY = Component.translatable().key("command.debug.profiler.empty");
+    TranslatableComponent.Builder COMMAND_DEBUG_PROFILER_ENTRY = Component.translatable().key("command.debug.profiler.entry");
+    TranslatableComponent.Builder COMMAND_DEBUG_PROFILER_EXPORT = Component.translatable().key("command.debug.profiler.export");
+    TranslatableComponent.Builder COMMAND_DEBUG_PROFILER_FAILURE = Component.translatable().key("command.debug.profiler.failure");
     TranslatableComponent.Builder COMMAND_DEBUG_INSIGHT_OFF = Component.translatable().key("command.debug.insight.off");
     TranslatableComponent.Builder COMMAND_DEBUG_INSIGHT_ON = Component.translatable().key("command.debug.insight.on");
     TranslatableComponent.Builder COMMAND_UNSAFE_DELETE_FAILURE_WORLD = Component.translatable().key("command.unsafe.delete.failure.world");
@@ -26,7 +26,6 @@ import net.momirealms.customcrops.api.core.block.CustomCropsBlock;
 import net.momirealms.customcrops.api.core.world.*;
 import net.momirealms.customcrops.api.core.world.adaptor.AbstractWorldAdaptor;
 import net.momirealms.customcrops.api.util.StringUtils;
-import net.momirealms.customcrops.api.util.TagUtils;
 import net.momirealms.customcrops.common.helper.GsonHelper;
 import net.momirealms.customcrops.common.util.Key;
 import org.bukkit.Bukkit;
@@ -41,7 +40,6 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.PriorityBlockingQueue;
 import java.util.function.Function;
 
 public class SlimeWorldAdaptorR1 extends AbstractWorldAdaptor<SlimeWorld> implements Listener {
@@ -215,11 +213,7 @@ public class SlimeWorldAdaptorR1 extends AbstractWorldAdaptor<SlimeWorld> implem
         int[] queued = (int[]) map.get("queued").getValue();
         int[] ticked = (int[]) map.get("ticked").getValue();
 
-        PriorityBlockingQueue<DelayedTickTask> queue = new PriorityBlockingQueue<>(Math.max(11, queued.length / 2));
-        for (int i = 0, size = queued.length / 2; i < size; i++) {
-            BlockPos pos = new BlockPos(queued[2*i+1]);
-            queue.add(new DelayedTickTask(queued[2*i], pos));
-        }
+        TickTimingWheel wheel = TickTimingWheel.fromArray(world.setting().minTickUnit(), queued);
 
         HashSet<BlockPos> tickedSet = new HashSet<>(Math.max(11, ticked.length));
         for (int tick : ticked) {
@@ -231,7 +225,7 @@ public class SlimeWorldAdaptorR1 extends AbstractWorldAdaptor<SlimeWorld> implem
         for (Map.Entry<String, Tag<?>> entry : sectionCompoundMap.entrySet()) {
             if (entry.getValue() instanceof ListTag<?> listTag) {
                 int id = Integer.parseInt(entry.getKey());
-                ConcurrentHashMap<BlockPos, CustomCropsBlockState> blockMap = new ConcurrentHashMap<>();
+                CustomCropsSection section = world.createSection(id);
                 ListTag<CompoundTag> blocks = (ListTag<CompoundTag>) listTag;
                 for (CompoundTag blockTag : blocks.getValue()) {
                     CompoundMap block = blockTag.getValue();
@@ -242,14 +236,18 @@ public class SlimeWorldAdaptorR1 extends AbstractWorldAdaptor<SlimeWorld> implem
                         BukkitCustomCropsPlugin.getInstance().getInstance().getPluginLogger().warn("[" + world.worldName() + "] Unrecognized custom block " + key + " has been removed from chunk " + ChunkPos.of(x, z));
                         continue;
                     }
+                    // blocks in the same group share their data until one of them is modified
+                    CustomCropsBlockState prototype = CustomCropsBlockState.create(customBlock, data);
+                    boolean first = true;
                     for (int pos : (int[]) block.get("pos").getValue()) {
                         BlockPos blockPos = new BlockPos(pos);
-                        blockMap.put(blockPos, CustomCropsBlockState.create(customBlock, TagUtils.deepClone(data)));
+                        section.addBlockState(blockPos, first ? prototype : prototype.copy());
+                        first = false;
                     }
                 }
-                sectionMap.put(id, CustomCropsSection.restore(id, blockMap));
+                sectionMap.put(id, section);
             }
         }
-        return world.restoreChunk(coordinate, loadedSeconds, lastLoadedTime, sectionMap, queue, tickedSet);
+        return world.restoreChunk(coordinate, loadedSeconds, lastLoadedTime, sectionMap, wheel, tickedSet);
     }
 }
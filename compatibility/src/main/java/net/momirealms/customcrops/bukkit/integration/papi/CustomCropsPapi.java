@@ -19,12 +19,19 @@ package net.momirealms.customcrops.bukkit.integration.papi;
 
 import me.clip.placeholderapi.expansion.PlaceholderExpansion;
 import net.momirealms.customcrops.api.BukkitCustomCropsPlugin;
+import net.momirealms.customcrops.api.core.block.*;
+import net.momirealms.customcrops.api.core.world.CustomCropsWorld;
+import net.momirealms.customcrops.api.core.world.Pos3;
 import org.bukkit.Bukkit;
 import org.bukkit.OfflinePlayer;
+import org.bukkit.World;
 import org.bukkit.entity.Player;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Map;
+import java.util.Optional;
+
 public class CustomCropsPapi extends PlaceholderExpansion {
 
     private final BukkitCustomCropsPlugin plugin;
@@ -97,7 +104,68 @@ public class CustomCropsPapi extends PlaceholderExpansion {
                     }
                 }
             }
+            case "chunk" -> {
+                Player player = offlinePlayer.getPlayer();
+                if (player == null || split.length == 1)
+                    return null;
+                Class<? extends CustomCropsBlock> type = switch (split[1]) {
+                    case "crop" -> CropBlock.class;
+                    case "pot" -> PotBlock.class;
+                    case "sprinkler" -> SprinklerBlock.class;
+                    case "greenhouse" -> GreenhouseBlock.class;
+                    case "scarecrow" -> ScarecrowBlock.class;
+                    case "all" -> CustomCropsBlock.class;
+                    default -> null;
+                };
+                if (type == null)
+                    return null;
+                Optional<CustomCropsWorld<?>> world = plugin.getWorldManager().getWorld(player.getWorld());
+                // only read the loaded chunk, placeholders are usually parsed on the main thread
+                return String.valueOf(world.flatMap(w -> w.getLoadedChunk(Pos3.from(player.getLocation()).toChunkPos()))
+                        .map(chunk -> chunk.blockAmount(type))
+                        .orElse(0));
+            }
+            case "perf" -> {
+                if (split.length == 1)
+                    return null;
+                return perf(offlinePlayer, split[1]);
+            }
         }
         return null;
     }
+
+    // %customcrops_perf_<metric>% for the player's world, or %customcrops_perf_<world>_<metric>%
+    private String perf(OfflinePlayer offlinePlayer, String params) {
+        String worldName = null;
+        String metric = params;
+        Map<String, Number> metrics = null;
+        Player player = offlinePlayer.getPlayer();
+        if (player != null) {
+            metrics = plugin.getWorldManager().getWorld(player.getWorld()).map(w -> w.metrics().snapshot()).orElse(null);
+        }
+        if (metrics == null || !metrics.containsKey(metric)) {
+            // the longest matching world name wins, as world names might contain underscores
+            CustomCropsWorld<?> target = null;
+            for (World world : Bukkit.getWorlds()) {
+                String prefix = world.getName() + "_";
+                if (!params.startsWith(prefix) || (worldName != null && world.getName().length() <= worldName.length()))
+                    continue;
+                Optional<CustomCropsWorld<?>> optional = plugin.getWorldManager().getWorld(world);
+                if (optional.isPresent()) {
+                    worldName = world.getName();
+                    target = optional.get();
+                    metric = params.substring(prefix.length());
+                }
+            }
+            if (target != null) {
+                metrics = target.metrics().snapshot();
+            }
+        }
+        if (metrics == null)
+            return null;
+        Number value = metrics.get(metric);
+        if (value == null)
+            return null;
+        return value instanceof Double d ? String.format("%.2f", d) : String.valueOf(value);
+    }
 }
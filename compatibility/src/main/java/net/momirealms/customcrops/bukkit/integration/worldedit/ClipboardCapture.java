@@ -0,0 +1,215 @@
+/*
+ *  Copyright (C) <2024> <XiaoMoMi>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.momirealms.customcrops.bukkit.integration.worldedit;
+
+import com.sk89q.jnbt.ByteArrayTag;
+import com.sk89q.jnbt.CompoundTag;
+import com.sk89q.jnbt.StringTag;
+import com.sk89q.jnbt.Tag;
+import com.sk89q.worldedit.WorldEditException;
+import com.sk89q.worldedit.extent.clipboard.Clipboard;
+import com.sk89q.worldedit.math.BlockVector3;
+import com.sk89q.worldedit.regions.Region;
+import com.sk89q.worldedit.world.block.BaseBlock;
+import net.momirealms.customcrops.api.BukkitCustomCropsPlugin;
+import net.momirealms.customcrops.api.core.world.*;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Constructor;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * The CustomCrops block states captured from a WorldEdit region, ready to be written into a clipboard.
+ * <p>
+ * Only the block states stored in the chunks and sections overlapping the region are visited,
+ * and the CustomCrops regions are scanned in parallel off the main thread. The chunks in memory are scanned directly,
+ * while the others are read through the asynchronous chunk reads of the world.
+ * Edits applied during the scan report the block states they replace, so the capture still reflects the blocks at the time of the copy.
+ */
+public final class ClipboardCapture {
+
+    // captures in progress per world, which the edits report the replaced block states to
+    private static final ConcurrentHashMap<String, Set<Pending>> PENDING = new ConcurrentHashMap<>();
+
+    private final Map<BlockVector3, Map<String, Tag>> tags;
+
+    private ClipboardCapture(Map<BlockVector3, Map<String, Tag>> tags) {
+        this.tags = tags;
+    }
+
+    /**
+     * Captures the block states inside the region asynchronously.
+     *
+     * @param world  the world
+     * @param region the WorldEdit region, which should not be modified until the capture is done
+     * @return the capture
+     */
+    public static CompletableFuture<ClipboardCapture> capture(CustomCropsWorld<?> world, Region region) {
+        BlockVector3 min = region.getMinimumPoint();
+        BlockVector3 max = region.getMaximumPoint();
+        HashMap<RegionPos, List<ChunkPos>> chunksByRegion = new HashMap<>();
+        for (int x = min.getBlockX() >> 4, maxX = max.getBlockX() >> 4; x <= maxX; x++) {
+            for (int z = min.getBlockZ() >> 4, maxZ = max.getBlockZ() >> 4; z <= maxZ; z++) {
+                ChunkPos chunkPos = ChunkPos.of(x, z);
+                chunksByRegion.computeIfAbsent(RegionPos.getByChunkPos(chunkPos), k -> new ArrayList<>()).add(chunkPos);
+            }
+        }
+
+        // registered before the scans start, so that no edit in between is missed
+        Pending pending = new Pending(region);
+        Set<Pending> captures = PENDING.computeIfAbsent(world.worldName(), k -> ConcurrentHashMap.newKeySet());
+        captures.add(pending);
+
+        Executor executor = BukkitCustomCropsPlugin.getInstance().getScheduler().async();
+        List<CompletableFuture<Map<BlockVector3, Map<String, Tag>>>> scans = new ArrayList<>(chunksByRegion.size());
+        for (Map.Entry<RegionPos, List<ChunkPos>> entry : chunksByRegion.entrySet()) {
+            scans.add(CompletableFuture.supplyAsync(() -> world.chunkBitmap(entry.getKey()), executor)
+                    .thenCompose(bitmap -> scan(world, region, bitmap, entry.getValue(), executor)));
+        }
+        CompletableFuture<ClipboardCapture> future = CompletableFuture.allOf(scans.toArray(new CompletableFuture[0])).thenApply(v -> {
+            HashMap<BlockVector3, Map<String, Tag>> tags = new HashMap<>();
+            for (CompletableFuture<Map<BlockVector3, Map<String, Tag>>> scan : scans) {
+                tags.putAll(scan.join());
+            }
+            pending.complete(tags);
+            return new ClipboardCapture(tags);
+        });
+        future.whenComplete((result, throwable) -> captures.remove(pending));
+        return future;
+    }
+
+    /**
+     * Reports a block state replaced by an edit to the captures in progress in the world.
+     * The captures keep the state from before the edit whether or not they have scanned the position yet.
+     *
+     * @param world    the world
+     * @param pos3     the position
+     * @param previous the block state before the edit, or null if there was none
+     */
+    public static void recordPrevious(CustomCropsWorld<?> world, Pos3 pos3, @Nullable CustomCropsBlockState previous) {
+        Set<Pending> captures = PENDING.get(world.worldName());
+        if (captures == null || captures.isEmpty()) return;
+        BlockVector3 vector3 = BlockVector3.at(pos3.x(), pos3.y(), pos3.z());
+        for (Pending pending : captures) {
+            pending.record(vector3, previous);
+        }
+    }
+
+    private static CompletableFuture<Map<BlockVector3, Map<String, Tag>>> scan(CustomCropsWorld<?> world, Region region, long[] bitmap, List<ChunkPos> chunks, Executor executor) {
+        List<CompletableFuture<Map<BlockVector3, Map<String, Tag>>>> scans = new ArrayList<>();
+        for (ChunkPos chunkPos : chunks) {
+            if (!CustomCropsRegion.hasChunk(bitmap, chunkPos)) continue;
+            // completed at once for the chunks in memory, and read off the calling thread for the others
+            scans.add(world.getChunkAsync(chunkPos).thenApplyAsync(optionalChunk -> optionalChunk
+                    .map(chunk -> scan(chunk, region))
+                    .orElse(Map.of()), executor));
+        }
+        return CompletableFuture.allOf(scans.toArray(new CompletableFuture[0])).thenApply(v -> {
+            HashMap<BlockVector3, Map<String, Tag>> tags = new HashMap<>();
+            for (CompletableFuture<Map<BlockVector3, Map<String, Tag>>> scan : scans) {
+                tags.putAll(scan.join());
+            }
+            return tags;
+        });
+    }
+
+    private static Map<BlockVector3, Map<String, Tag>> scan(CustomCropsChunk chunk, Region region) {
+        HashMap<BlockVector3, Map<String, Tag>> tags = new HashMap<>();
+        ChunkPos chunkPos = chunk.chunkPos();
+        int minY = region.getMinimumPoint().getBlockY();
+        int maxY = region.getMaximumPoint().getBlockY();
+        for (CustomCropsSection section : chunk.sections()) {
+            int baseY = section.getSectionID() * 16;
+            if (baseY > maxY || baseY + 15 < minY) continue;
+            section.forEachBlock((position, state) -> {
+                Pos3 pos3 = new BlockPos(position).toPos3(chunkPos);
+                BlockVector3 vector3 = BlockVector3.at(pos3.x(), pos3.y(), pos3.z());
+                if (region.contains(vector3)) {
+                    tags.put(vector3, toTags(state));
+                }
+            });
+        }
+        return tags;
+    }
+
+    private static Map<String, Tag> toTags(CustomCropsBlockState state) {
+        return Map.of(
+                "cc_type", new StringTag(state.type().type().asString()),
+                "cc_data", new ByteArrayTag(state.getNBTDataAsBytes())
+        );
+    }
+
+    private static final class Pending {
+
+        private final Region region;
+        // the first block state reported for each position, null if there was none
+        private final HashMap<BlockVector3, Map<String, Tag>> previous = new HashMap<>();
+        private boolean done;
+
+        private Pending(Region region) {
+            this.region = region;
+        }
+
+        private synchronized void record(BlockVector3 vector3, @Nullable CustomCropsBlockState state) {
+            // the scan has already seen every state before the edit once the capture is done
+            if (done || previous.containsKey(vector3) || !region.contains(vector3)) return;
+            previous.put(vector3, state == null ? null : toTags(state));
+        }
+
+        private synchronized void complete(Map<BlockVector3, Map<String, Tag>> tags) {
+            done = true;
+            for (Map.Entry<BlockVector3, Map<String, Tag>> entry : previous.entrySet()) {
+                if (entry.getValue() == null) {
+                    tags.remove(entry.getKey());
+                } else {
+                    tags.put(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the amount of captured block states
+     *
+     * @return the amount
+     */
+    public int size() {
+        return tags.size();
+    }
+
+    /**
+     * Writes the captured block states into the NBT of the clipboard blocks. This should be called on the main thread.
+     *
+     * @param clipboard            the clipboard
+     * @param baseBlockConstructor the constructor of {@link BaseBlock} with a block state and NBT
+     */
+    public void applyTo(Clipboard clipboard, Constructor<?> baseBlockConstructor) throws WorldEditException, ReflectiveOperationException {
+        for (Map.Entry<BlockVector3, Map<String, Tag>> entry : tags.entrySet()) {
+            BlockVector3 vector3 = entry.getKey();
+            BaseBlock baseBlock = clipboard.getFullBlock(vector3);
+            CompoundTag tag = baseBlock.getNbtData();
+            HashMap<String, Tag> map = tag == null ? new HashMap<>() : new HashMap<>(tag.getValue());
+            map.putAll(entry.getValue());
+            clipboard.setBlock(vector3, (BaseBlock) baseBlockConstructor.newInstance(baseBlock.toImmutableState(), new CompoundTag(map)));
+        }
+    }
+}
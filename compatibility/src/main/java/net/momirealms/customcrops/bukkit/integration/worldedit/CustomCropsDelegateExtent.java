@@ -21,6 +21,8 @@ import com.sk89q.jnbt.CompoundTag;
 import com.sk89q.worldedit.WorldEditException;
 import com.sk89q.worldedit.event.extent.EditSessionEvent;
 import com.sk89q.worldedit.extent.AbstractDelegateExtent;
+import com.sk89q.worldedit.function.operation.Operation;
+import com.sk89q.worldedit.function.operation.RunContext;
 import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.world.World;
 import com.sk89q.worldedit.world.block.BaseBlock;
@@ -28,16 +30,28 @@ import com.sk89q.worldedit.world.block.BlockStateHolder;
 import net.momirealms.customcrops.api.BukkitCustomCropsPlugin;
 import net.momirealms.customcrops.api.core.InternalRegistries;
 import net.momirealms.customcrops.api.core.block.CustomCropsBlock;
-import net.momirealms.customcrops.api.core.world.CustomCropsBlockState;
-import net.momirealms.customcrops.api.core.world.CustomCropsWorld;
-import net.momirealms.customcrops.api.core.world.Pos3;
+import net.momirealms.customcrops.api.core.world.*;
 import net.momirealms.customcrops.common.util.Key;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.Optional;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
+/**
+ * Collects the changes of an edit session by chunk and applies them in one batch when the session is committed.
+ * Chunks that have no CustomCrops data are skipped without being loaded. Chunks that are not in memory are read
+ * asynchronously, and their previous block states are only looked up when the batch is applied.
+ */
 public class CustomCropsDelegateExtent extends AbstractDelegateExtent {
 
+    private static final ChunkEdits NO_DATA = new ChunkEdits(Collections.emptySet(), null);
+
     private CustomCropsWorld<?> world = null;
+    private final HashMap<ChunkPos, ChunkEdits> edits = new HashMap<>();
+    private final HashMap<RegionPos, long[]> bitmaps = new HashMap<>();
+    // the chunk of the last edit, as WorldEdit usually visits the blocks chunk by chunk
+    private ChunkPos lastChunkPos;
+    private ChunkEdits lastChunkEdits;
 
     protected CustomCropsDelegateExtent(EditSessionEvent editSessionEvent) {
         super(editSessionEvent.getExtent());
@@ -50,25 +64,153 @@ public class CustomCropsDelegateExtent extends AbstractDelegateExtent {
     @Override
     public <T extends BlockStateHolder<T>> boolean setBlock(BlockVector3 location, T block) throws WorldEditException {
         if (world != null) {
-            BaseBlock baseBlock = block.toBaseBlock();
             Pos3 pos3 = new Pos3(location.getBlockX(), location.getBlockY(), location.getBlockZ());
-            world.removeBlockState(pos3);
-            CompoundTag tag = baseBlock.getNbtData();
-            if (tag != null) {
-                String type = tag.getString("cc_type");
-                if (type != null) {
-                    Key key = Key.key(type);
-                    CustomCropsBlock customCropsBlock = InternalRegistries.BLOCK.get(key);
-                    if (customCropsBlock != null) {
-                        byte[] bytes = tag.getByteArray("cc_data");
-                        if (bytes != null) {
-                            CustomCropsBlockState state = CustomCropsBlockState.create(customCropsBlock, bytes);
-                            world.addBlockState(pos3, state);
-                        }
-                    }
-                }
+            CustomCropsBlockState state = toBlockState(block.toBaseBlock());
+            ChunkEdits chunkEdits = chunkEdits(pos3.chunkX(), pos3.chunkZ(), state != null);
+            if (chunkEdits != NO_DATA) {
+                chunkEdits.set(pos3, state);
             }
         }
         return super.setBlock(location, block);
     }
+
+    @Override
+    protected Operation commitBefore() {
+        if (edits.isEmpty()) {
+            return null;
+        }
+        return new Operation() {
+            @Override
+            public Operation resume(RunContext run) {
+                apply();
+                return null;
+            }
+
+            @Override
+            public void cancel() {
+            }
+        };
+    }
+
+    private void apply() {
+        for (Map.Entry<ChunkPos, ChunkEdits> entry : edits.entrySet()) {
+            ChunkEdits chunkEdits = entry.getValue();
+            CustomCropsChunk chunk;
+            if (chunkEdits.read != null) {
+                chunk = chunkEdits.read.join();
+                chunkEdits.collectRemovals(chunk);
+            } else {
+                if (chunkEdits.removals.isEmpty() && chunkEdits.insertions.isEmpty()) continue;
+                chunk = world.getOrCreateChunk(entry.getKey());
+            }
+            // let the clipboard captures in progress keep the block states from before the edit
+            for (Pos3 pos3 : chunkEdits.removals) {
+                ClipboardCapture.recordPrevious(world, pos3, chunk.removeBlockState(pos3).orElse(null));
+            }
+            for (Map.Entry<Pos3, CustomCropsBlockState> insertion : chunkEdits.insertions.entrySet()) {
+                ClipboardCapture.recordPrevious(world, insertion.getKey(), chunk.addBlockState(insertion.getKey(), insertion.getValue()).orElse(null));
+            }
+        }
+        edits.clear();
+        lastChunkPos = null;
+        lastChunkEdits = null;
+    }
+
+    private ChunkEdits chunkEdits(int chunkX, int chunkZ, boolean insertion) {
+        ChunkPos last = this.lastChunkPos;
+        if (last != null && last.x() == chunkX && last.z() == chunkZ && (!insertion || lastChunkEdits != NO_DATA)) {
+            return lastChunkEdits;
+        }
+        ChunkPos chunkPos = ChunkPos.of(chunkX, chunkZ);
+        ChunkEdits chunkEdits = edits.get(chunkPos);
+        if (chunkEdits == null || (insertion && chunkEdits == NO_DATA)) {
+            chunkEdits = createChunkEdits(chunkPos, insertion);
+            edits.put(chunkPos, chunkEdits);
+        }
+        this.lastChunkPos = chunkPos;
+        this.lastChunkEdits = chunkEdits;
+        return chunkEdits;
+    }
+
+    private ChunkEdits createChunkEdits(ChunkPos chunkPos, boolean insertion) {
+        HashSet<Pos3> existing = new HashSet<>();
+        if (hasData(chunkPos)) {
+            // completed at once if the chunk is in memory
+            CompletableFuture<Optional<CustomCropsChunk>> future = world.getChunkAsync(chunkPos);
+            if (!future.isDone()) {
+                // the chunk is read off the calling thread, and the replaced block states are found when the edits are applied
+                return new ChunkEdits(null, world.getOrCreateChunkAsync(chunkPos));
+            }
+            future.join().ifPresent(chunk -> {
+                for (CustomCropsSection section : chunk.sections()) {
+                    section.forEachBlock((position, state) -> existing.add(new BlockPos(position).toPos3(chunkPos)));
+                }
+            });
+        }
+        if (existing.isEmpty() && !insertion) {
+            return NO_DATA;
+        }
+        return new ChunkEdits(existing, null);
+    }
+
+    private boolean hasData(ChunkPos chunkPos) {
+        long[] bitmap = bitmaps.computeIfAbsent(RegionPos.getByChunkPos(chunkPos), world::chunkBitmap);
+        return CustomCropsRegion.hasChunk(bitmap, chunkPos);
+    }
+
+    @Nullable
+    private static CustomCropsBlockState toBlockState(BaseBlock baseBlock) {
+        CompoundTag tag = baseBlock.getNbtData();
+        if (tag == null) return null;
+        String type = tag.getString("cc_type");
+        if (type == null || type.isEmpty()) return null;
+        CustomCropsBlock customCropsBlock = InternalRegistries.BLOCK.get(Key.key(type));
+        if (customCropsBlock == null) return null;
+        byte[] bytes = tag.getByteArray("cc_data");
+        if (bytes == null) return null;
+        return CustomCropsBlockState.create(customCropsBlock, bytes);
+    }
+
+    private static class ChunkEdits {
+
+        // positions with data before the edit that haven't been overwritten yet, or null if the chunk is being read
+        private final Set<Pos3> existing;
+        // the chunk being read, whose edited positions are tracked per section by local index until it's applied
+        private final CompletableFuture<CustomCropsChunk> read;
+        private final HashMap<Integer, BitSet> edited = new HashMap<>();
+        private final List<Pos3> removals = new ArrayList<>();
+        private final LinkedHashMap<Pos3, CustomCropsBlockState> insertions = new LinkedHashMap<>();
+
+        private ChunkEdits(@Nullable Set<Pos3> existing, @Nullable CompletableFuture<CustomCropsChunk> read) {
+            this.existing = existing;
+            this.read = read;
+        }
+
+        private void set(Pos3 pos3, @Nullable CustomCropsBlockState state) {
+            if (existing == null) {
+                edited.computeIfAbsent(pos3.y() >> 4, k -> new BitSet(4096))
+                        .set(((pos3.y() & 0xF) << 8) | ((pos3.z() & 0xF) << 4) | (pos3.x() & 0xF));
+            } else if (existing.remove(pos3)) {
+                removals.add(pos3);
+            }
+            if (state != null) {
+                insertions.put(pos3, state);
+            } else {
+                insertions.remove(pos3);
+            }
+        }
+
+        private void collectRemovals(CustomCropsChunk chunk) {
+            ChunkPos chunkPos = chunk.chunkPos();
+            for (CustomCropsSection section : chunk.sections()) {
+                BitSet bits = edited.get(section.getSectionID());
+                if (bits == null) continue;
+                section.forEachBlock((position, state) -> {
+                    if (bits.get(PackedCustomCropsSection.localIndex(position))) {
+                        removals.add(new BlockPos(position).toPos3(chunkPos));
+                    }
+                });
+            }
+        }
+    }
 }
@@ -17,15 +17,11 @@
 
 package net.momirealms.customcrops.bukkit.integration.worldedit;
 
-import com.sk89q.jnbt.ByteArrayTag;
 import com.sk89q.jnbt.CompoundTag;
-import com.sk89q.jnbt.StringTag;
-import com.sk89q.jnbt.Tag;
 import com.sk89q.worldedit.*;
 import com.sk89q.worldedit.bukkit.BukkitAdapter;
 import com.sk89q.worldedit.event.extent.EditSessionEvent;
 import com.sk89q.worldedit.extent.clipboard.Clipboard;
-import com.sk89q.worldedit.math.BlockVector3;
 import com.sk89q.worldedit.regions.Region;
 import com.sk89q.worldedit.session.ClipboardHolder;
 import com.sk89q.worldedit.session.SessionManager;
@@ -36,21 +32,18 @@ import com.sk89q.worldedit.world.block.BaseBlock;
 import com.sk89q.worldedit.world.block.BlockState;
 import net.momirealms.customcrops.api.BukkitCustomCropsPlugin;
 import net.momirealms.customcrops.api.core.ConfigManager;
-import net.momirealms.customcrops.api.core.world.CustomCropsBlockState;
 import net.momirealms.customcrops.api.core.world.CustomCropsWorld;
-import net.momirealms.customcrops.api.core.world.Pos3;
 import net.momirealms.customcrops.common.plugin.feature.Reloadable;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.event.HandlerList;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerCommandPreprocessEvent;
+import org.jetbrains.annotations.Nullable;
 
 import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 public class WorldEditListener implements Reloadable, Listener {
 
@@ -115,7 +108,7 @@ public class WorldEditListener implements Reloadable, Listener {
         World world = actor.getWorld();
         Region region;
         try {
-            region = localSession.getRegionSelector(world).getRegion();
+            region = localSession.getRegionSelector(world).getRegion().clone();
         } catch (IncompleteRegionException e) {
             return;
         }
@@ -123,77 +116,27 @@ public class WorldEditListener implements Reloadable, Listener {
         if (optionalWorld.isEmpty()) {
             return;
         }
-        CustomCropsWorld<?> customWorld = optionalWorld.get();
-
-        HashMap<BlockVector3, CustomCropsBlockState> tempMap = new HashMap<>();
-
-        BlockVector3 maxPoint = region.getMaximumPoint();
-        BlockVector3 minPoint = region.getMinimumPoint();
-        int minX = Math.min(minPoint.getBlockX(), maxPoint.getBlockX());
-        int minY = Math.min(minPoint.getBlockY(), maxPoint.getBlockY());
-        int minZ = Math.min(minPoint.getBlockZ(), maxPoint.getBlockZ());
-        int maxX = Math.max(maxPoint.getBlockX(), minPoint.getBlockX());
-        int maxY = Math.max(maxPoint.getBlockY(), minPoint.getBlockY());
-        int maxZ = Math.max(maxPoint.getBlockZ(), minPoint.getBlockZ());
-        for (int x = minX; x <= maxX; x++) {
-            for (int y = minY; y <= maxY; y++) {
-                for (int z = minZ; z <= maxZ; z++) {
-                    Pos3 pos3 = new Pos3(x, y, z);
-                    BlockVector3 vector3 = BlockVector3.at(x, y, z);
-                    Optional<CustomCropsBlockState> optionalState = customWorld.getBlockState(pos3);
-                    optionalState.ifPresent(customCropsBlockState -> tempMap.put(vector3, customCropsBlockState));
-                }
-            }
-        }
 
+        // the cut reports the block states it removes to the capture, and the clipboard is set after the command
+        ClipboardHolder previous = getClipboard(localSession);
+        CompletableFuture<ClipboardHolder> cutClipboard = new CompletableFuture<>();
         BukkitCustomCropsPlugin.getInstance().getScheduler().sync().runLater(() -> {
-            ClipboardHolder holder;
-            try {
-                holder = localSession.getClipboard();
-            } catch (EmptyClipboardException e) {
-                return;
-            }
-            Clipboard clipboard = holder.getClipboard();
-            for (Map.Entry<BlockVector3, CustomCropsBlockState> entry : tempMap.entrySet()) {
-                BaseBlock baseBlock = clipboard.getFullBlock(entry.getKey());
-                CustomCropsBlockState state = entry.getValue();
-                CompoundTag tag = baseBlock.getNbtData();
-                if (tag != null) {
-                    Map<String, Tag> map = tag.getValue();
-                    map.put("cc_type", new StringTag(state.type().type().asString()));
-                    map.put("cc_data", new ByteArrayTag(state.getNBTDataAsBytes()));
-                } else {
-                    try {
-                        clipboard.setBlock(entry.getKey(), (BaseBlock) baseBlockConstructor.newInstance(
-                                baseBlock.toImmutableState(),
-                                new CompoundTag(
-                                        new HashMap<>(
-                                                Map.of(
-                                                        "cc_type", new StringTag(state.type().type().asString()),
-                                                        "cc_data", new ByteArrayTag(state.getNBTDataAsBytes())
-                                                )
-                                        )
-                                )
-                        ));
-                    } catch (WorldEditException | InvocationTargetException |
-                             InstantiationException | IllegalAccessException e) {
-                        throw new RuntimeException(e);
-                    }
-                }
-            }
+            ClipboardHolder holder = getClipboard(localSession);
+            // the cut failed if the clipboard is still the one from before
+            cutClipboard.complete(holder == previous ? null : holder);
         }, 1, player.getLocation());
+        ClipboardCapture.capture(optionalWorld.get(), region).thenAcceptBoth(cutClipboard, (capture, holder) -> {
+            if (capture.size() == 0 || holder == null) return;
+            BukkitCustomCropsPlugin.getInstance().getScheduler().sync().run(() -> applyCapture(capture, localSession, holder), player.getLocation());
+        });
     }
 
     public void updateCopyClipBoard(Player player) {
         com.sk89q.worldedit.entity.Player actor = BukkitAdapter.adapt(player);
         SessionManager manager = WorldEdit.getInstance().getSessionManager();
         LocalSession localSession = manager.get(actor);
-        ClipboardHolder holder;
-        try {
-            holder = localSession.getClipboard();
-        } catch (EmptyClipboardException e) {
-            return;
-        }
+        ClipboardHolder holder = getClipboard(localSession);
+        if (holder == null) return;
         Clipboard clipboard = holder.getClipboard();
 
         Region region = clipboard.getRegion();
@@ -201,53 +144,29 @@ public class WorldEditListener implements Reloadable, Listener {
         if (world == null) return;
 
         BukkitCustomCropsPlugin.getInstance().getWorldManager().getWorld(world.getName())
-                .ifPresent(customWorld -> {
-                    BukkitCustomCropsPlugin.getInstance().getScheduler().async().execute(() -> {
-                        BlockVector3 maxPoint = region.getMaximumPoint();
-                        BlockVector3 minPoint = region.getMinimumPoint();
-                        int minX = Math.min(minPoint.getBlockX(), maxPoint.getBlockX());
-                        int minY = Math.min(minPoint.getBlockY(), maxPoint.getBlockY());
-                        int minZ = Math.min(minPoint.getBlockZ(), maxPoint.getBlockZ());
-                        int maxX = Math.max(maxPoint.getBlockX(), minPoint.getBlockX());
-                        int maxY = Math.max(maxPoint.getBlockY(), minPoint.getBlockY());
-                        int maxZ = Math.max(maxPoint.getBlockZ(), minPoint.getBlockZ());
-                        for (int x = minX; x <= maxX; x++) {
-                            for (int y = minY; y <= maxY; y++) {
-                                for (int z = minZ; z <= maxZ; z++) {
-                                    Pos3 pos3 = new Pos3(x, y, z);
-                                    BlockVector3 vector3 = BlockVector3.at(x, y, z);
-                                    Optional<CustomCropsBlockState> optionalState = customWorld.getBlockState(pos3);
-                                    if (optionalState.isPresent()) {
-                                        BaseBlock baseBlock = clipboard.getFullBlock(vector3);
-                                        CustomCropsBlockState state = optionalState.get();
-                                        CompoundTag tag = baseBlock.getNbtData();
-                                        if (tag != null) {
-                                            Map<String, Tag> map = tag.getValue();
-                                            map.put("cc_type", new StringTag(state.type().type().asString()));
-                                            map.put("cc_data", new ByteArrayTag(state.getNBTDataAsBytes()));
-                                        } else {
-                                            try {
-                                                clipboard.setBlock(vector3, (BaseBlock) baseBlockConstructor.newInstance(
-                                                        baseBlock.toImmutableState(),
-                                                        new CompoundTag(
-                                                                new HashMap<>(
-                                                                        Map.of(
-                                                                                "cc_type", new StringTag(state.type().type().asString()),
-                                                                                "cc_data", new ByteArrayTag(state.getNBTDataAsBytes())
-                                                                        )
-                                                                )
-                                                        )
-                                                ));
-                                            } catch (WorldEditException | InvocationTargetException |
-                                                     InstantiationException | IllegalAccessException e) {
-                                                throw new RuntimeException(e);
-                                            }
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                    });
-                });
+                .ifPresent(customWorld -> ClipboardCapture.capture(customWorld, region).thenAccept(capture -> {
+                    if (capture.size() == 0) return;
+                    BukkitCustomCropsPlugin.getInstance().getScheduler().sync().run(() -> applyCapture(capture, localSession, holder), player.getLocation());
+                }));
+    }
+
+    @Nullable
+    private static ClipboardHolder getClipboard(LocalSession localSession) {
+        try {
+            return localSession.getClipboard();
+        } catch (EmptyClipboardException e) {
+            return null;
+        }
+    }
+
+    private void applyCapture(ClipboardCapture capture, LocalSession localSession, ClipboardHolder holder) {
+        if (baseBlockConstructor == null) return;
+        // the player might have copied something else while the capture was running
+        if (getClipboard(localSession) != holder) return;
+        try {
+            capture.applyTo(holder.getClipboard(), baseBlockConstructor);
+        } catch (WorldEditException | ReflectiveOperationException e) {
+            BukkitCustomCropsPlugin.getInstance().getPluginLogger().warn("Failed to write CustomCrops data into the clipboard", e);
+        }
     }
 }
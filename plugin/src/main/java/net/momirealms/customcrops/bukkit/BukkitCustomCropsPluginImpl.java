@@ -30,6 +30,7 @@ import net.momirealms.customcrops.api.core.mechanic.fertilizer.FertilizerType;
 import net.momirealms.customcrops.api.core.world.CustomCropsBlockState;
 import net.momirealms.customcrops.api.event.CustomCropsReloadEvent;
 import net.momirealms.customcrops.api.misc.HologramManager;
+import net.momirealms.customcrops.api.misc.animation.AnimationManager;
 import net.momirealms.customcrops.api.misc.cooldown.CoolDownManager;
 import net.momirealms.customcrops.api.misc.placeholder.BukkitPlaceholderManager;
 import net.momirealms.customcrops.api.util.EventUtils;
@@ -74,6 +75,7 @@ public class BukkitCustomCropsPluginImpl extends BukkitCustomCropsPlugin {
     private final PluginLogger logger;
     private BukkitCommandManager commandManager;
     private HologramManager hologramManager;
+    private AnimationManager animationManager;
     private Consumer<Supplier<String>> debugger = (supplier -> {});
     private String buildByBit = "%%__BUILTBYBIT__%%";
     private String polymart = "%%__POLYMART__%%";
@@ -160,6 +162,7 @@ public class BukkitCustomCropsPluginImpl extends BukkitCustomCropsPlugin {
         this.placeholderManager = new BukkitPlaceholderManager(this);
         this.coolDownManager = new CoolDownManager(this);
         this.hologramManager = new HologramManager(this);
+        this.animationManager = new AnimationManager(this);
         this.commandManager = new BukkitCommandManager(this);
         this.commandManager.registerDefaultFeatures();
 
@@ -206,6 +209,7 @@ public class BukkitCustomCropsPluginImpl extends BukkitCustomCropsPlugin {
         this.worldManager.disable();
         this.placeholderManager.disable();
         this.hologramManager.disable();
+        this.animationManager.disable();
         this.integrationManager.disable();
         this.coolDownManager.disable();
         this.commandManager.unregisterFeatures();
@@ -224,6 +228,7 @@ public class BukkitCustomCropsPluginImpl extends BukkitCustomCropsPlugin {
         this.translationManager.reload();
         this.hologramManager.reload();
         this.itemManager.reload();
+        this.animationManager.reload();
 
         this.actionManagers.values().forEach(Reloadable::reload);
         this.requirementManagers.values().forEach(Reloadable::reload);
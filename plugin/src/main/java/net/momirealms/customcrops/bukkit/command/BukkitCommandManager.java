@@ -43,7 +43,10 @@ public class BukkitCommandManager extends AbstractCommandManager<CommandSender>
             new SetDateCommand(this),
             new ForceTickCommand(this),
             new DebugWorldsCommand(this),
+            new DebugPerfCommand(this),
+            new DebugProfilerCommand(this),
             new DebugInsightCommand(this),
+            new DebugCompressionCommand(this),
             new UnsafeRestoreCommand(this),
             new UnsafeDeleteCommand(this),
             new UnsafeFixCommand(this)
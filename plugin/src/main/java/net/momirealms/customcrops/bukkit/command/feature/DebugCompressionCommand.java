@@ -0,0 +1,101 @@
+/*
+ *  Copyright (C) <2024> <XiaoMoMi>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.momirealms.customcrops.bukkit.command.feature;
+
+import net.kyori.adventure.text.Component;
+import net.momirealms.customcrops.api.BukkitCustomCropsPlugin;
+import net.momirealms.customcrops.api.core.world.CustomCropsWorld;
+import net.momirealms.customcrops.api.core.world.adaptor.ZstdCodec;
+import net.momirealms.customcrops.api.core.world.adaptor.ZstdDictionaries;
+import net.momirealms.customcrops.bukkit.command.BukkitCommandFeature;
+import net.momirealms.customcrops.bukkit.integration.adaptor.BukkitWorldAdaptor;
+import net.momirealms.customcrops.common.command.CustomCropsCommandManager;
+import net.momirealms.customcrops.common.locale.MessageConstants;
+import org.bukkit.World;
+import org.bukkit.command.CommandSender;
+import org.incendo.cloud.Command;
+import org.incendo.cloud.CommandManager;
+import org.incendo.cloud.bukkit.parser.WorldParser;
+import org.incendo.cloud.parser.standard.EnumParser;
+
+import java.util.List;
+import java.util.Optional;
+
+public class DebugCompressionCommand extends BukkitCommandFeature<CommandSender> {
+
+    private static final int MAX_SAMPLES = 5000;
+
+    public DebugCompressionCommand(CustomCropsCommandManager<CommandSender> commandManager) {
+        super(commandManager);
+    }
+
+    @Override
+    public Command.Builder<? extends CommandSender> assembleCommand(CommandManager<CommandSender> manager, Command.Builder<CommandSender> builder) {
+        return builder
+                .required("world", WorldParser.worldParser())
+                .required("mode", EnumParser.enumParser(Mode.class))
+                .handler(context -> {
+                    World world = context.get("world");
+                    Mode mode = context.get("mode");
+                    Optional<CustomCropsWorld<?>> optionalWorld = BukkitCustomCropsPlugin.getInstance().getWorldManager().getWorld(world);
+                    if (optionalWorld.isEmpty() || !(optionalWorld.get().adaptor() instanceof BukkitWorldAdaptor adaptor)) {
+                        handleFeedback(context.sender(), MessageConstants.COMMAND_DEBUG_COMPRESSION_FAILURE_WORLD, Component.text(world.getName()));
+                        return;
+                    }
+                    // reading all the region files might take a while, so keep it off the I/O thread saving the world
+                    BukkitCustomCropsPlugin.getInstance().getScheduler().async().execute(() -> {
+                        try {
+                            if (mode == Mode.TRAIN) {
+                                ZstdDictionaries.Dictionary dictionary = adaptor.trainDictionary(world, MAX_SAMPLES);
+                                if (dictionary == null) {
+                                    handleFeedback(context.sender(), MessageConstants.COMMAND_DEBUG_COMPRESSION_FAILURE_EMPTY, Component.text(world.getName()));
+                                    return;
+                                }
+                                handleFeedback(context.sender(), MessageConstants.COMMAND_DEBUG_COMPRESSION_TRAIN, Component.text(dictionary.id()), Component.text(dictionary.bytes().length), Component.text(world.getName()));
+                            }
+                            List<ZstdCodec.Benchmark> results = adaptor.benchmarkCompression(world, MAX_SAMPLES);
+                            if (results.isEmpty()) {
+                                handleFeedback(context.sender(), MessageConstants.COMMAND_DEBUG_COMPRESSION_FAILURE_EMPTY, Component.text(world.getName()));
+                                return;
+                            }
+                            for (ZstdCodec.Benchmark result : results) {
+                                handleFeedback(context.sender(), MessageConstants.COMMAND_DEBUG_COMPRESSION_BENCHMARK,
+                                        Component.text(result.dictionaryId() == 0 ? "-" : String.valueOf(result.dictionaryId())), Component.text(result.samples()),
+                                        Component.text(result.rawBytes()), Component.text(result.compressedBytes()), Component.text(String.format("%.2f", result.ratio())),
+                                        Component.text(String.format("%.1f", result.compressMBps())), Component.text(String.format("%.1f", result.decompressMBps()))
+                                );
+                            }
+                        } catch (Exception e) {
+                            BukkitCustomCropsPlugin.getInstance().getPluginLogger().warn("[" + world.getName() + "] Failed to " + mode.name().toLowerCase() + " compression", e);
+                            handleFeedback(context.sender(), MessageConstants.COMMAND_DEBUG_COMPRESSION_FAILURE_ERROR, Component.text(String.valueOf(e.getMessage())));
+                        }
+                    });
+                });
+    }
+
+    @Override
+    public String getFeatureID() {
+        return "debug_compression";
+    }
+
+    public enum Mode {
+        BENCHMARK,
+        TRAIN
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ *  Copyright (C) <2024> <XiaoMoMi>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.momirealms.customcrops.bukkit.command.feature;
+
+import net.kyori.adventure.text.Component;
+import net.momirealms.customcrops.api.BukkitCustomCropsPlugin;
+import net.momirealms.customcrops.api.core.block.CustomCropsBlock;
+import net.momirealms.customcrops.api.core.world.CustomCropsWorld;
+import net.momirealms.customcrops.api.core.world.WorldMetrics;
+import net.momirealms.customcrops.bukkit.command.BukkitCommandFeature;
+import net.momirealms.customcrops.common.command.CustomCropsCommandManager;
+import net.momirealms.customcrops.common.locale.MessageConstants;
+import org.bukkit.World;
+import org.bukkit.command.CommandSender;
+import org.incendo.cloud.Command;
+import org.incendo.cloud.CommandManager;
+import org.incendo.cloud.bukkit.parser.WorldParser;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+public class DebugPerfCommand extends BukkitCommandFeature<CommandSender> {
+
+    public DebugPerfCommand(CustomCropsCommandManager<CommandSender> commandManager) {
+        super(commandManager);
+    }
+
+    @Override
+    public Command.Builder<? extends CommandSender> assembleCommand(CommandManager<CommandSender> manager, Command.Builder<CommandSender> builder) {
+        return builder
+                .required("world", WorldParser.worldParser())
+                .handler(context -> {
+                    World world = context.get("world");
+                    Optional<CustomCropsWorld<?>> optionalWorld = BukkitCustomCropsPlugin.getInstance().getWorldManager().getWorld(world);
+                    if (optionalWorld.isEmpty()) {
+                        handleFeedback(context, MessageConstants.COMMAND_DEBUG_PERF_FAILURE_WORLD, Component.text(world.getName()));
+                        return;
+                    }
+                    WorldMetrics metrics = optionalWorld.get().metrics();
+                    handleFeedback(context, MessageConstants.COMMAND_DEBUG_PERF_WORLD,
+                            Component.text(world.getName()), Component.text(metrics.loadedChunks()), Component.text(metrics.lazyChunks()),
+                            Component.text(metrics.chunksTicked().perSecond()), Component.text(metrics.syncTasks().perSecond())
+                    );
+                    WorldMetrics.Histogram tickTime = metrics.tickTime();
+                    handleFeedback(context, MessageConstants.COMMAND_DEBUG_PERF_TICK,
+                            millis(tickTime.percentileMillis(0.5)), millis(tickTime.percentileMillis(0.95)),
+                            millis(tickTime.percentileMillis(0.99)), millis(tickTime.maxMillis())
+                    );
+                    handleFeedback(context, MessageConstants.COMMAND_DEBUG_PERF_REGION,
+                            millis(metrics.regionLoadTime().percentileMillis(0.5)), millis(metrics.regionLoadTime().percentileMillis(0.99)),
+                            millis(metrics.regionSaveTime().percentileMillis(0.5)), millis(metrics.regionSaveTime().percentileMillis(0.99)),
+                            Component.text(metrics.regionBytesRead().total()), Component.text(metrics.regionBytesWritten().total())
+                    );
+                    WorldMetrics.Histogram offline = metrics.offlineCatchUpTime();
+                    handleFeedback(context, MessageConstants.COMMAND_DEBUG_PERF_OFFLINE,
+                            millis(offline.percentileMillis(0.5)), millis(offline.percentileMillis(0.99)), millis(offline.maxMillis())
+                    );
+                    Map<CustomCropsBlock, WorldMetrics.Counter> scheduledTicks = metrics.scheduledTicks();
+                    Map<CustomCropsBlock, WorldMetrics.Counter> randomTicks = metrics.randomTicks();
+                    Set<CustomCropsBlock> types = new HashSet<>(scheduledTicks.keySet());
+                    types.addAll(randomTicks.keySet());
+                    for (CustomCropsBlock type : types) {
+                        WorldMetrics.Counter scheduled = scheduledTicks.get(type);
+                        WorldMetrics.Counter random = randomTicks.get(type);
+                        handleFeedback(context, MessageConstants.COMMAND_DEBUG_PERF_BLOCK,
+                                Component.text(type.type().asString()),
+                                Component.text(scheduled == null ? 0 : scheduled.perSecond()),
+                                Component.text(random == null ? 0 : random.perSecond())
+                        );
+                    }
+                });
+    }
+
+    private static Component millis(double millis) {
+        return Component.text(String.format("%.2f", millis));
+    }
+
+    @Override
+    public String getFeatureID() {
+        return "debug_perf";
+    }
+}
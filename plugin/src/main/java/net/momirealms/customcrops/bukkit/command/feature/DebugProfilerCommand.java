@@ -0,0 +1,107 @@
+/*
+ *  Copyright (C) <2024> <XiaoMoMi>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.momirealms.customcrops.bukkit.command.feature;
+
+import net.kyori.adventure.text.Component;
+import net.momirealms.customcrops.api.BukkitCustomCropsPlugin;
+import net.momirealms.customcrops.api.misc.profiler.SamplingProfiler;
+import net.momirealms.customcrops.bukkit.command.BukkitCommandFeature;
+import net.momirealms.customcrops.common.command.CustomCropsCommandManager;
+import net.momirealms.customcrops.common.locale.MessageConstants;
+import org.bukkit.command.CommandSender;
+import org.incendo.cloud.Command;
+import org.incendo.cloud.CommandManager;
+import org.incendo.cloud.parser.standard.EnumParser;
+import org.incendo.cloud.parser.standard.IntegerParser;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+public class DebugProfilerCommand extends BukkitCommandFeature<CommandSender> {
+
+    public DebugProfilerCommand(CustomCropsCommandManager<CommandSender> commandManager) {
+        super(commandManager);
+    }
+
+    @Override
+    public Command.Builder<? extends CommandSender> assembleCommand(CommandManager<CommandSender> manager, Command.Builder<CommandSender> builder) {
+        return builder
+                .required("mode", EnumParser.enumParser(Mode.class))
+                // the sample interval for START, the amount of entries for REPORT
+                .optional("value", IntegerParser.integerParser(1))
+                .handler(context -> {
+                    Mode mode = context.get("mode");
+                    switch (mode) {
+                        case START -> {
+                            int interval = context.getOrDefault("value", 16);
+                            SamplingProfiler.start(interval);
+                            handleFeedback(context, MessageConstants.COMMAND_DEBUG_PROFILER_START, Component.text(interval));
+                        }
+                        case STOP -> {
+                            SamplingProfiler.stop();
+                            handleFeedback(context, MessageConstants.COMMAND_DEBUG_PROFILER_STOP);
+                        }
+                        case REPORT -> {
+                            List<SamplingProfiler.Result> results = SamplingProfiler.results();
+                            if (results.isEmpty()) {
+                                handleFeedback(context, MessageConstants.COMMAND_DEBUG_PROFILER_EMPTY);
+                                return;
+                            }
+                            int top = context.getOrDefault("value", 10);
+                            for (SamplingProfiler.Result result : results.subList(0, Math.min(top, results.size()))) {
+                                handleFeedback(context, MessageConstants.COMMAND_DEBUG_PROFILER_ENTRY,
+                                        Component.text(result.category()), Component.text(result.name()),
+                                        Component.text(String.format("%.1f", result.share() * 100)), Component.text(String.format("%.0f", result.callsPerSecond())),
+                                        Component.text(String.format("%.2f", result.averageNanos() / 1000))
+                                );
+                            }
+                        }
+                        case EXPORT -> {
+                            if (SamplingProfiler.results().isEmpty()) {
+                                handleFeedback(context, MessageConstants.COMMAND_DEBUG_PROFILER_EMPTY);
+                                return;
+                            }
+                            BukkitCustomCropsPlugin plugin = BukkitCustomCropsPlugin.getInstance();
+                            plugin.getScheduler().async().execute(() -> {
+                                try {
+                                    Path file = SamplingProfiler.export(plugin.getDataFolder().toPath().resolve("profiler"));
+                                    handleFeedback(context.sender(), MessageConstants.COMMAND_DEBUG_PROFILER_EXPORT, Component.text(file.getFileName().toString()));
+                                } catch (IOException e) {
+                                    plugin.getPluginLogger().warn("Failed to export the profiling results", e);
+                                    handleFeedback(context.sender(), MessageConstants.COMMAND_DEBUG_PROFILER_FAILURE, Component.text(String.valueOf(e.getMessage())));
+                                }
+                            });
+                        }
+                    }
+                });
+    }
+
+    @Override
+    public String getFeatureID() {
+        return "debug_profiler";
+    }
+
+    public enum Mode {
+        START,
+        STOP,
+        REPORT,
+        EXPORT
+    }
+}
@@ -20,6 +20,8 @@ package net.momirealms.customcrops.bukkit.command.feature;
 import net.kyori.adventure.text.Component;
 import net.momirealms.customcrops.api.BukkitCustomCropsPlugin;
 import net.momirealms.customcrops.api.core.world.CustomCropsWorld;
+import net.momirealms.customcrops.api.core.world.WorldSaveStats;
+import net.momirealms.customcrops.api.core.world.WorldTickTimings;
 import net.momirealms.customcrops.bukkit.command.BukkitCommandFeature;
 import net.momirealms.customcrops.common.command.CustomCropsCommandManager;
 import net.momirealms.customcrops.common.locale.MessageConstants;
@@ -50,6 +52,17 @@ public class DebugWorldsCommand extends BukkitCommandFeature<CommandSender> {
                             handleFeedback(context, MessageConstants.COMMAND_DEBUG_WORLDS_SUCCESS,
                                     Component.text(world.getName()), Component.text(w.loadedRegions().length), Component.text(w.loadedChunks().length), Component.text(w.lazyChunks().length)
                             );
+                            WorldTickTimings timings = w.tickTimings();
+                            handleFeedback(context, MessageConstants.COMMAND_DEBUG_WORLDS_TICK,
+                                    Component.text(String.format("%.2f", timings.lastMillis())), Component.text(String.format("%.2f", timings.averageMillis())),
+                                    Component.text(String.format("%.2f", timings.maxMillis())), Component.text(timings.threads()), Component.text(timings.carriedChunks()),
+                                    Component.text(timings.overrunTicks()), Component.text(timings.coalescedTicks()), Component.text(timings.skippedTicks())
+                            );
+                            WorldSaveStats saveStats = w.saveStats();
+                            handleFeedback(context, MessageConstants.COMMAND_DEBUG_WORLDS_SAVE,
+                                    Component.text(String.format("%.2f", saveStats.lastMillis())), Component.text(saveStats.savedChunks()), Component.text(saveStats.skippedChunks()),
+                                    Component.text(saveStats.savedRegions()), Component.text(saveStats.skippedRegions()), Component.text(saveStats.bytesWritten())
+                            );
                         }
                     }
                     if (worldCount == 0) {
@@ -137,6 +137,19 @@ public class BukkitConfigManager extends ConfigManager {
         itemDetectOrder = config.getStringList("other-settings.item-detection-order").toArray(new String[0]);
 
         absoluteWorldPath = config.getString("worlds.absolute-world-folder-path");
+        packedSectionStorage = config.getBoolean("worlds.packed-section-storage", false);
+        tickThreads = Math.max(1, config.getInt("worlds.tick-threads", 1));
+        tickBudget = Math.max(50, config.getInt("worlds.tick-budget", 900));
+        maxCatchUpSeconds = Math.max(1, config.getInt("worlds.max-catch-up-seconds", 10));
+        modelUpdatesPerTick = Math.max(1, config.getInt("worlds.model-updates-per-tick", 1000));
+        nearbyWaterCacheSeconds = Math.max(0, config.getInt("worlds.nearby-water-cache-seconds", 0));
+        nearbyWaterSnapshot = config.getBoolean("worlds.nearby-water-snapshot", false);
+        mappedRegionStorage = config.getBoolean("worlds.mapped-region-storage", false);
+        regionWriteBufferSize = Math.max(1, config.getInt("worlds.region-write-buffer-size", 64)) * 1024L * 1024L;
+        ioQueueSize = Math.max(16, config.getInt("worlds.io-queue-size", 256));
+        regionPrefetchDistance = Math.max(0, Math.min(16, config.getInt("worlds.region-prefetch-distance", 2)));
+        zstdLevel = Math.max(-7, Math.min(22, config.getInt("worlds.zstd-level", 3)));
+        zstdDictionary = config.getBoolean("worlds.zstd-dictionary", false);
 
         defaultQualityRatio = getQualityRatio(config.getString("mechanics.default-quality-ratio", "17/2/1"));
 
@@ -20,15 +20,17 @@ package net.momirealms.customcrops.bukkit.integration.adaptor;
 import com.flowpowered.nbt.CompoundMap;
 import com.flowpowered.nbt.CompoundTag;
 import com.flowpowered.nbt.stream.NBTInputStream;
-import com.flowpowered.nbt.stream.NBTOutputStream;
 import net.momirealms.customcrops.api.BukkitCustomCropsPlugin;
 import net.momirealms.customcrops.api.core.ConfigManager;
 import net.momirealms.customcrops.api.core.InternalRegistries;
 import net.momirealms.customcrops.api.core.block.CustomCropsBlock;
 import net.momirealms.customcrops.api.core.world.*;
 import net.momirealms.customcrops.api.core.world.adaptor.AbstractWorldAdaptor;
+import net.momirealms.customcrops.api.core.world.adaptor.CompactChunkCodec;
+import net.momirealms.customcrops.api.core.world.adaptor.RegionFile;
+import net.momirealms.customcrops.api.core.world.adaptor.ZstdCodec;
+import net.momirealms.customcrops.api.core.world.adaptor.ZstdDictionaries;
 import net.momirealms.customcrops.api.util.StringUtils;
-import net.momirealms.customcrops.api.util.TagUtils;
 import net.momirealms.customcrops.common.helper.GsonHelper;
 import net.momirealms.customcrops.common.helper.VersionHelper;
 import net.momirealms.customcrops.common.util.Key;
@@ -41,9 +43,11 @@ import org.jetbrains.annotations.Nullable;
 import java.io.*;
 import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.PriorityBlockingQueue;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 
@@ -53,6 +57,13 @@ public class BukkitWorldAdaptor extends AbstractWorldAdaptor<World> {
     private static Function<World, File> worldFolderProvider;
     private static final NamespacedKey WORLD_DATA = new NamespacedKey(BukkitCustomCropsPlugin.getInstance().getBootstrap(), "data");
     private static final String DATA_FILE = "customcrops.dat";
+    // region files whose last save failed, they are rewritten as a whole next time since the failed changes were drained
+    private final Set<Path> failedRegionFiles = ConcurrentHashMap.newKeySet();
+    // zstd dictionaries by world name
+    private final ConcurrentHashMap<String, ZstdDictionaries> dictionaries = new ConcurrentHashMap<>();
+    private static final int DICTIONARY_SIZE = 16 * 1024;
+    // far above the data of a chunk filled with blocks, to reject corrupted lengths before allocating
+    private static final int MAX_CHUNK_SIZE = 64 * 1024 * 1024;
 
     public BukkitWorldAdaptor() {
         worldFolderProvider = (world -> {
@@ -134,21 +145,46 @@ public class BukkitWorldAdaptor extends AbstractWorldAdaptor<World> {
         File data = getRegionDataFile(world.world(), pos);
         // if the data file not exists
         if (!data.exists()) {
-            return createIfNotExist ? world.createRegion(pos) : null;
+            if (!createIfNotExist) return null;
+            if (ConfigManager.mappedRegionStorage()) {
+                try {
+                    return world.restoreRegion(pos, data.toPath());
+                } catch (IOException e) {
+                    throw new RuntimeException("[" + world.worldName() + "] Failed to create CustomCrops region " + pos, e);
+                }
+            }
+            return world.createRegion(pos);
         } else {
             // load region from local files
-            try (BufferedInputStream bis = new BufferedInputStream(new FileInputStream(data))) {
-                DataInputStream dataStream = new DataInputStream(bis);
-                CustomCropsRegion region = deserializeRegion(world, dataStream, pos);
-                dataStream.close();
+            try {
+                long time1 = System.nanoTime();
+                CustomCropsRegion region;
+                if (RegionFile.version(data.toPath()) == RegionFile.VERSION) {
+                    if (ConfigManager.mappedRegionStorage()) {
+                        region = world.restoreRegion(pos, data.toPath());
+                    } else {
+                        try (RegionFile regionFile = RegionFile.open(data.toPath())) {
+                            region = world.restoreRegion(pos, new ConcurrentHashMap<>(regionFile.readAll()));
+                        }
+                    }
+                } else {
+                    // legacy format, upgraded on the first save
+                    try (BufferedInputStream bis = new BufferedInputStream(new FileInputStream(data))) {
+                        DataInputStream dataStream = new DataInputStream(bis);
+                        region = deserializeRegion(world, dataStream, pos);
+                        dataStream.close();
+                    }
+                }
+                world.metrics().recordRegionLoad(System.nanoTime() - time1, data.length());
                 return region;
             } catch (Exception e) {
-                BukkitCustomCropsPlugin.getInstance().getPluginLogger().severe("[" + world.worldName() + "] Failed to load CustomCrops region data at " + pos + ". Deleting the corrupted region.", e);
-                boolean success = data.delete();
-                if (success) {
+                File backup = new File(data.getPath() + ".corrupted");
+                BukkitCustomCropsPlugin.getInstance().getPluginLogger().severe("[" + world.worldName() + "] Failed to load CustomCrops region data at " + pos + ". Moving the corrupted region to " + backup.getName(), e);
+                try {
+                    Files.move(data.toPath(), backup.toPath(), StandardCopyOption.REPLACE_EXISTING);
                     return createIfNotExist ? world.createRegion(pos) : null;
-                } else {
-                    throw new RuntimeException("[" + world.worldName() + "] Failed to delete corrupted CustomCrops region data at " + pos);
+                } catch (IOException ex) {
+                    throw new RuntimeException("[" + world.worldName() + "] Failed to move corrupted CustomCrops region data at " + pos, ex);
                 }
             }
         }
@@ -184,24 +220,48 @@ public class BukkitWorldAdaptor extends AbstractWorldAdaptor<World> {
 
     @Override
     public void saveRegion(CustomCropsWorld<World> world, CustomCropsRegion region) {
-        File file = getRegionDataFile(world.world(), region.regionPos());
-        if (region.canPrune()) {
-            if (file.exists()) {
-                file.delete();
+        Path file = getRegionDataFile(world.world(), region.regionPos()).toPath();
+        synchronized (region) {
+            Set<ChunkPos> changed = region.drainChangedChunks();
+            try {
+                if (region instanceof MappedCustomCropsRegion mappedRegion) {
+                    long time1 = System.nanoTime();
+                    long written = mappedRegion.flush();
+                    world.saveStats().recordBytesWritten(written);
+                    world.metrics().recordRegionSave(System.nanoTime() - time1, written);
+                    return;
+                }
+                if (region.canPrune()) {
+                    RegionFile.delete(file);
+                    return;
+                }
+                long time1 = System.nanoTime();
+                long written;
+                if (!failedRegionFiles.contains(file) && RegionFile.version(file) == RegionFile.VERSION) {
+                    // only write the changed chunks
+                    HashMap<ChunkPos, byte[]> changes = new HashMap<>();
+                    for (ChunkPos pos : changed) {
+                        changes.put(pos, region.getCachedChunkBytes(pos));
+                    }
+                    try (RegionFile regionFile = RegionFile.open(file)) {
+                        written = regionFile.commit(changes);
+                    } catch (IOException e) {
+                        BukkitCustomCropsPlugin.getInstance().getPluginLogger().warn("[" + world.worldName() + "] Failed to update CustomCrops region data " + region.regionPos() + ". Rewriting the whole region.", e);
+                        written = RegionFile.write(file, region.regionPos(), region.dataToSave());
+                    }
+                } else {
+                    // new region or legacy format
+                    written = RegionFile.write(file, region.regionPos(), region.dataToSave());
+                }
+                failedRegionFiles.remove(file);
+                world.saveStats().recordBytesWritten(written);
+                long nanos = System.nanoTime() - time1;
+                world.metrics().recordRegionSave(nanos, written);
+                BukkitCustomCropsPlugin.getInstance().debug(() -> "[" + world.worldName() + "] Took " + (nanos / 1_000_000) + "ms to save region " + region.regionPos() + " (" + changed.size() + " changed chunks)");
+            } catch (IOException e) {
+                failedRegionFiles.add(file);
+                BukkitCustomCropsPlugin.getInstance().getPluginLogger().severe("[" + world.worldName() + "] Failed to save CustomCrops region data." + region.regionPos(), e);
             }
-            return;
-        }
-        long time1 = System.currentTimeMillis();
-        File parentDir = file.getParentFile();
-        if (parentDir != null && !parentDir.exists()) {
-            parentDir.mkdirs();
-        }
-        try (FileOutputStream fos = new FileOutputStream(file); BufferedOutputStream bos = new BufferedOutputStream(fos)) {
-            bos.write(serializeRegion(region));
-            long time2 = System.currentTimeMillis();
-            BukkitCustomCropsPlugin.getInstance().debug(() -> "[" + world.worldName() + "] Took " + (time2-time1) + "ms to save region " + region.regionPos());
-        } catch (IOException e) {
-            BukkitCustomCropsPlugin.getInstance().getPluginLogger().severe("[" + world.worldName() + "] Failed to save CustomCrops region data." + region.regionPos(), e);
         }
     }
 
@@ -213,11 +273,11 @@ public class BukkitWorldAdaptor extends AbstractWorldAdaptor<World> {
             BukkitCustomCropsPlugin.getInstance().getPluginLogger().severe("[" + world.worldName() + "] Region " + pos + " unloaded before chunk " + chunk.chunkPos() + " saving.");
         } else {
             CustomCropsRegion cropsRegion = region.get();
-            SerializableChunk serializableChunk = toSerializableChunk(chunk);
-            if (serializableChunk.canPrune()) {
+            List<CustomCropsSection> sections = chunk.sectionsToSave().toList();
+            if (sections.isEmpty()) {
                 cropsRegion.removeCachedChunk(chunk.chunkPos());
             } else {
-                cropsRegion.setCachedChunk(chunk.chunkPos(), serializeChunk(serializableChunk));
+                cropsRegion.setCachedChunk(chunk.chunkPos(), serializeChunk(world.world(), chunk, sections));
             }
         }
     }
@@ -251,44 +311,137 @@ public class BukkitWorldAdaptor extends AbstractWorldAdaptor<World> {
         return world.restoreRegion(pos, map);
     }
 
-    private byte[] serializeRegion(CustomCropsRegion region) {
-        ByteArrayOutputStream outByteStream = new ByteArrayOutputStream();
-        DataOutputStream outStream = new DataOutputStream(outByteStream);
-        try {
-            outStream.writeByte(REGION_VERSION);
-            outStream.writeInt(region.regionPos().x());
-            outStream.writeInt(region.regionPos().z());
-            Map<ChunkPos, byte[]> map = region.dataToSave();
-            outStream.writeInt(map.size());
-            for (Map.Entry<ChunkPos, byte[]> entry : map.entrySet()) {
-                outStream.writeInt(entry.getKey().x());
-                outStream.writeInt(entry.getKey().z());
-                byte[] dataArray = entry.getValue();
-                outStream.writeInt(dataArray.length);
-                outStream.write(dataArray);
-            }
-        } catch (IOException e) {
-            BukkitCustomCropsPlugin.getInstance().getPluginLogger().severe("Failed to serialize CustomCrops region data." + region.regionPos(), e);
-        }
-        return outByteStream.toByteArray();
-    }
-
     private CustomCropsChunk deserializeChunk(CustomCropsWorld<World> world, DataInputStream dataStream) throws IOException {
         int chunkVersion = dataStream.readByte();
-        byte[] blockData = readCompressedBytes(dataStream);
+        byte[] blockData = readCompressedBytes(world.world(), dataStream);
+        if (chunkVersion >= 3) {
+            return CompactChunkCodec.decode(world, blockData);
+        }
         return deserializeChunk(world, blockData, chunkVersion);
     }
 
-    @SuppressWarnings("ResultOfMethodCallIgnored")
-    private byte[] readCompressedBytes(DataInputStream dataStream) throws IOException {
+    private byte[] readCompressedBytes(World world, DataInputStream dataStream) throws IOException {
         int compressedLength = dataStream.readInt();
         int decompressedLength = dataStream.readInt();
+        if (compressedLength < 0 || compressedLength > dataStream.available() || decompressedLength < 0 || decompressedLength > MAX_CHUNK_SIZE) {
+            throw new IOException("Invalid chunk data lengths " + compressedLength + "/" + decompressedLength);
+        }
         byte[] compressedData = new byte[compressedLength];
-        byte[] decompressedData = new byte[decompressedLength];
 
-        dataStream.read(compressedData);
-        zstdDecompress(decompressedData, compressedData);
-        return decompressedData;
+        dataStream.readFully(compressedData);
+        long dictionaryId = zstd.dictionaryId(compressedData);
+        ZstdDictionaries.Dictionary dictionary = null;
+        if (dictionaryId != 0) {
+            dictionary = getDictionaries(world).get(dictionaryId);
+            if (dictionary == null) {
+                throw new IOException("Missing zstd dictionary " + dictionaryId + " of world " + world.getName());
+            }
+        }
+        try {
+            return zstd.decompress(compressedData, decompressedLength, dictionary);
+        } catch (RuntimeException e) {
+            throw new IOException("Failed to decompress chunk data", e);
+        }
+    }
+
+    /**
+     * Gets the zstd dictionaries of a world.
+     *
+     * @param world the world
+     * @return the dictionaries
+     */
+    public ZstdDictionaries getDictionaries(World world) {
+        return this.dictionaries.computeIfAbsent(world.getName(), k -> {
+            File folder = new File(getRegionDataFile(world, RegionPos.of(0, 0)).getParentFile(), "dictionaries");
+            try {
+                return ZstdDictionaries.load(folder.toPath());
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to load zstd dictionaries from " + folder.getAbsolutePath(), e);
+            }
+        });
+    }
+
+    /**
+     * Benchmarks the compression of the saved chunks in a world, with and without its active dictionary.
+     *
+     * @param world the world
+     * @param maxChunks the max amount of chunks to sample
+     * @return the results, the second one is absent if the world has no dictionary
+     */
+    public List<ZstdCodec.Benchmark> benchmarkCompression(World world, int maxChunks) throws IOException {
+        List<byte[]> samples = sampleChunks(world, maxChunks);
+        if (samples.isEmpty()) return List.of();
+        // a separate codec, so the level and the contexts used to save chunks are left alone
+        ZstdCodec codec = createZstdCodec();
+        try {
+            codec.level(ConfigManager.zstdLevel());
+            ArrayList<ZstdCodec.Benchmark> results = new ArrayList<>(2);
+            results.add(codec.benchmark(samples, null));
+            ZstdDictionaries.Dictionary dictionary = getDictionaries(world).active();
+            if (dictionary != null) {
+                results.add(codec.benchmark(samples, dictionary));
+            }
+            return results;
+        } finally {
+            codec.close();
+        }
+    }
+
+    /**
+     * Trains a dictionary from the saved chunks in a world and makes it the active dictionary of the world.
+     *
+     * @param world the world
+     * @param maxChunks the max amount of chunks to sample
+     * @return the dictionary, or null if the world has no saved chunks
+     */
+    @Nullable
+    public ZstdDictionaries.Dictionary trainDictionary(World world, int maxChunks) throws IOException {
+        List<byte[]> samples = sampleChunks(world, maxChunks);
+        if (samples.isEmpty()) return null;
+        ZstdDictionaries.Dictionary dictionary = zstd.train(samples, DICTIONARY_SIZE);
+        getDictionaries(world).activate(dictionary);
+        return dictionary;
+    }
+
+    // reads the decompressed block data of the chunks saved in the region files of a world
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    private List<byte[]> sampleChunks(World world, int maxChunks) throws IOException {
+        File folder = getRegionDataFile(world, RegionPos.of(0, 0)).getParentFile();
+        File[] files = folder.listFiles((dir, name) -> name.endsWith(".mcc"));
+        ArrayList<byte[]> samples = new ArrayList<>();
+        if (files == null) return samples;
+        for (File file : files) {
+            Collection<byte[]> payloads;
+            if (RegionFile.version(file.toPath()) == RegionFile.VERSION) {
+                try (RegionFile regionFile = RegionFile.open(file.toPath())) {
+                    payloads = regionFile.readAll().values();
+                }
+            } else {
+                payloads = new ArrayList<>();
+                try (DataInputStream dataStream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                    dataStream.readByte();
+                    dataStream.readInt();
+                    dataStream.readInt();
+                    int chunkAmount = dataStream.readInt();
+                    for (int i = 0; i < chunkAmount; i++) {
+                        dataStream.readInt();
+                        dataStream.readInt();
+                        byte[] chunkData = new byte[dataStream.readInt()];
+                        dataStream.readFully(chunkData);
+                        payloads.add(chunkData);
+                    }
+                }
+            }
+            for (byte[] payload : payloads) {
+                DataInputStream dataStream = new DataInputStream(new ByteArrayInputStream(payload));
+                dataStream.readByte();
+                samples.add(readCompressedBytes(world, dataStream));
+                if (samples.size() >= maxChunks) {
+                    return samples;
+                }
+            }
+        }
+        return samples;
     }
 
     private File getWorldFolder(World world) {
@@ -303,78 +456,22 @@ public class BukkitWorldAdaptor extends AbstractWorldAdaptor<World> {
         return "r." + regionPos.x() + "." + regionPos.z() + ".mcc";
     }
 
-    private byte[] serializeChunk(SerializableChunk serializableChunk) {
+    private byte[] serializeChunk(World world, CustomCropsChunk chunk, List<CustomCropsSection> sections) {
         ByteArrayOutputStream outByteStream = new ByteArrayOutputStream();
         DataOutputStream outStream = new DataOutputStream(outByteStream);
         try {
             outStream.writeByte(CHUNK_VERSION);
-            byte[] serializedSections = toBytes(serializableChunk);
-            byte[] compressed = zstdCompress(serializedSections);
+            byte[] serializedSections = CompactChunkCodec.encode(chunk, sections);
+            byte[] compressed = zstd.compress(serializedSections, ConfigManager.zstdDictionary() ? getDictionaries(world).active() : null);
             outStream.writeInt(compressed.length);
             outStream.writeInt(serializedSections.length);
             outStream.write(compressed);
         } catch (IOException e) {
-            BukkitCustomCropsPlugin.getInstance().getPluginLogger().severe("Failed to serialize chunk " + ChunkPos.of(serializableChunk.x(), serializableChunk.z()));
+            BukkitCustomCropsPlugin.getInstance().getPluginLogger().severe("Failed to serialize chunk " + chunk.chunkPos());
         }
         return outByteStream.toByteArray();
     }
 
-    private byte[] toBytes(SerializableChunk chunk) throws IOException {
-        ByteArrayOutputStream outByteStream = new ByteArrayOutputStream(16384);
-        DataOutputStream outStream = new DataOutputStream(outByteStream);
-        outStream.writeInt(chunk.x());
-        outStream.writeInt(chunk.z());
-        outStream.writeInt(chunk.loadedSeconds());
-        outStream.writeLong(chunk.lastLoadedTime());
-        // write queue
-        int[] queue = chunk.queuedTasks();
-        outStream.writeInt(queue.length / 2);
-        for (int i : queue) {
-            outStream.writeInt(i);
-        }
-        // write ticked blocks
-        int[] tickedSet = chunk.ticked();
-        outStream.writeInt(tickedSet.length);
-        for (int i : tickedSet) {
-            outStream.writeInt(i);
-        }
-        // write block data
-        List<SerializableSection> sectionsToSave = chunk.sections();
-        outStream.writeInt(sectionsToSave.size());
-        for (SerializableSection section : sectionsToSave) {
-            outStream.writeInt(section.sectionID());
-            byte[] blockData = toBytes(section.blocks());
-            outStream.writeInt(blockData.length);
-            outStream.write(blockData);
-        }
-        return outByteStream.toByteArray();
-    }
-
-    private byte[] toBytes(Collection<CompoundTag> blocks) throws IOException {
-        ByteArrayOutputStream outByteStream = new ByteArrayOutputStream(16384);
-        DataOutputStream outStream = new DataOutputStream(outByteStream);
-        outStream.writeInt(blocks.size());
-        for (CompoundTag block : blocks) {
-            byte[] blockData = toBytes(block);
-            outStream.writeInt(blockData.length);
-            outStream.write(blockData);
-        }
-        return outByteStream.toByteArray();
-    }
-
-    private byte[] toBytes(CompoundTag tag) throws IOException {
-        if (tag == null || tag.getValue().isEmpty())
-            return new byte[0];
-        ByteArrayOutputStream outByteStream = new ByteArrayOutputStream();
-        NBTOutputStream outStream = new NBTOutputStream(
-                outByteStream,
-                NBTInputStream.NO_COMPRESSION,
-                ByteOrder.BIG_ENDIAN
-        );
-        outStream.writeTag(tag);
-        return outByteStream.toByteArray();
-    }
-
     @SuppressWarnings("all")
     private CustomCropsChunk deserializeChunk(CustomCropsWorld world, byte[] bytes, int chunkVersion) throws IOException {
         Function<String, Key> keyFunction = chunkVersion < 2 ?
@@ -393,11 +490,10 @@ public class BukkitWorldAdaptor extends AbstractWorldAdaptor<World> {
         long lastLoadedTime = chunkData.readLong();
         // read task queue
         int tasksSize = chunkData.readInt();
-        PriorityBlockingQueue<DelayedTickTask> queue = new PriorityBlockingQueue<>(Math.max(11, tasksSize));
+        TickTimingWheel wheel = new TickTimingWheel(world.setting().minTickUnit());
         for (int i = 0; i < tasksSize; i++) {
             int time = chunkData.readInt();
-            BlockPos pos = new BlockPos(chunkData.readInt());
-            queue.add(new DelayedTickTask(time, pos));
+            wheel.schedule(time, chunkData.readInt());
         }
         // read ticked blocks
         int tickedSize = chunkData.readInt();
@@ -410,8 +506,8 @@ public class BukkitWorldAdaptor extends AbstractWorldAdaptor<World> {
         int sections = chunkData.readInt();
         // read sections
         for (int i = 0; i < sections; i++) {
-            ConcurrentHashMap<BlockPos, CustomCropsBlockState> blockMap = new ConcurrentHashMap<>();
             int sectionID = chunkData.readInt();
+            CustomCropsSection section = world.createSection(sectionID);
             byte[] sectionBytes = new byte[chunkData.readInt()];
             chunkData.read(sectionBytes);
             DataInputStream sectionData = new DataInputStream(new ByteArrayInputStream(sectionBytes));
@@ -429,14 +525,18 @@ public class BukkitWorldAdaptor extends AbstractWorldAdaptor<World> {
                     BukkitCustomCropsPlugin.getInstance().getInstance().getPluginLogger().warn("[" + world.worldName() + "] Unrecognized custom block " + key + " has been removed from chunk " + ChunkPos.of(x, z));
                     continue;
                 }
+                // blocks in the same group share their data until one of them is modified
+                CustomCropsBlockState prototype = CustomCropsBlockState.create(customBlock, data);
+                boolean first = true;
                 for (int pos : (int[]) block.get("pos").getValue()) {
                     BlockPos blockPos = new BlockPos(pos);
-                    blockMap.put(blockPos, CustomCropsBlockState.create(customBlock, TagUtils.deepClone(data)));
+                    section.addBlockState(blockPos, first ? prototype : prototype.copy());
+                    first = false;
                 }
             }
-            sectionMap.put(sectionID, CustomCropsSection.restore(sectionID, blockMap));
+            sectionMap.put(sectionID, section);
         }
-        return world.restoreChunk(coordinate, loadedSeconds, lastLoadedTime, sectionMap, queue, tickedSet);
+        return world.restoreChunk(coordinate, loadedSeconds, lastLoadedTime, sectionMap, wheel, tickedSet);
     }
 
     private CompoundTag readCompound(byte[] bytes) throws IOException {
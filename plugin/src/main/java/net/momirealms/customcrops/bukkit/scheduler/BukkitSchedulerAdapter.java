@@ -28,6 +28,7 @@ package net.momirealms.customcrops.bukkit.scheduler;
 import net.momirealms.customcrops.api.BukkitCustomCropsPlugin;
 import net.momirealms.customcrops.bukkit.scheduler.impl.BukkitExecutor;
 import net.momirealms.customcrops.bukkit.scheduler.impl.FoliaExecutor;
+import net.momirealms.customcrops.bukkit.scheduler.impl.MeteredExecutor;
 import net.momirealms.customcrops.common.helper.VersionHelper;
 import net.momirealms.customcrops.common.plugin.scheduler.AbstractJavaScheduler;
 import net.momirealms.customcrops.common.plugin.scheduler.RegionExecutor;
@@ -40,9 +41,9 @@ public class BukkitSchedulerAdapter extends AbstractJavaScheduler<Location, Worl
     public BukkitSchedulerAdapter(BukkitCustomCropsPlugin plugin) {
         super(plugin);
         if (VersionHelper.isFolia()) {
-            this.sync = new FoliaExecutor(plugin.getBootstrap());
+            this.sync = new MeteredExecutor(plugin, new FoliaExecutor(plugin.getBootstrap()));
         } else {
-            this.sync = new BukkitExecutor(plugin.getBootstrap());
+            this.sync = new MeteredExecutor(plugin, new BukkitExecutor(plugin.getBootstrap()));
         }
     }
 
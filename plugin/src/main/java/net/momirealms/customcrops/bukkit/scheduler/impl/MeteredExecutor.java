@@ -0,0 +1,70 @@
+/*
+ *  Copyright (C) <2024> <XiaoMoMi>
+ *
+ *  This program is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+
+package net.momirealms.customcrops.bukkit.scheduler.impl;
+
+import net.momirealms.customcrops.api.BukkitCustomCropsPlugin;
+import net.momirealms.customcrops.api.core.world.WorldManager;
+import net.momirealms.customcrops.common.plugin.scheduler.RegionExecutor;
+import net.momirealms.customcrops.common.plugin.scheduler.SchedulerTask;
+import org.bukkit.Location;
+import org.bukkit.World;
+
+/**
+ * Counts the one-shot sync tasks submitted for each world into the world's metrics.
+ * Tasks without a location are not counted.
+ */
+public class MeteredExecutor implements RegionExecutor<Location, World> {
+
+    private final BukkitCustomCropsPlugin plugin;
+    private final RegionExecutor<Location, World> executor;
+
+    public MeteredExecutor(BukkitCustomCropsPlugin plugin, RegionExecutor<Location, World> executor) {
+        this.plugin = plugin;
+        this.executor = executor;
+    }
+
+    @Override
+    public void run(Runnable r, Location l) {
+        if (l != null) count(l.getWorld());
+        executor.run(r, l);
+    }
+
+    @Override
+    public void run(Runnable r, World world, int x, int z) {
+        count(world);
+        executor.run(r, world, x, z);
+    }
+
+    @Override
+    public SchedulerTask runLater(Runnable r, long delayTicks, Location l) {
+        if (l != null) count(l.getWorld());
+        return executor.runLater(r, delayTicks, l);
+    }
+
+    @Override
+    public SchedulerTask runRepeating(Runnable r, long delayTicks, long period, Location l) {
+        return executor.runRepeating(r, delayTicks, period, l);
+    }
+
+    private void count(World world) {
+        WorldManager manager = plugin.getWorldManager();
+        if (world == null || manager == null) return;
+        manager.getWorld(world).ifPresent(w -> w.metrics().syncTasks().increment());
+    }
+}
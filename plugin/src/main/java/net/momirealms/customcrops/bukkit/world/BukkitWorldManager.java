@@ -23,6 +23,7 @@ import net.momirealms.customcrops.api.BukkitCustomCropsPlugin;
 import net.momirealms.customcrops.api.core.ConfigManager;
 import net.momirealms.customcrops.api.core.TickMode;
 import net.momirealms.customcrops.api.core.world.*;
+import net.momirealms.customcrops.api.core.world.adaptor.AbstractWorldAdaptor;
 import net.momirealms.customcrops.api.core.world.adaptor.WorldAdaptor;
 import net.momirealms.customcrops.api.integration.SeasonProvider;
 import net.momirealms.customcrops.bukkit.config.BukkitConfigManager;
@@ -31,10 +32,17 @@ import net.momirealms.customcrops.bukkit.integration.adaptor.asp_r1.SlimeWorldAd
 import org.bukkit.Bukkit;
 import org.bukkit.Chunk;
 import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockState;
+import org.bukkit.block.data.Directional;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.HandlerList;
 import org.bukkit.event.Listener;
+import org.bukkit.event.block.*;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.player.PlayerBucketEmptyEvent;
+import org.bukkit.event.player.PlayerBucketFillEvent;
 import org.bukkit.event.world.*;
 import org.jetbrains.annotations.NotNull;
 
@@ -127,6 +135,12 @@ public class BukkitWorldManager implements WorldManager, Listener {
     @Override
     public void load() {
         this.loadConfig();
+        // the level is read once per reload instead of for every saved chunk
+        for (WorldAdaptor<?> adaptor : this.adaptors) {
+            if (adaptor instanceof AbstractWorldAdaptor<?> abstractAdaptor) {
+                abstractAdaptor.compressionLevel(ConfigManager.zstdLevel());
+            }
+        }
         Bukkit.getPluginManager().registerEvents(this, plugin.getBootstrap());
         // load and unload worlds
         for (World world : Bukkit.getWorlds()) {
@@ -154,6 +168,7 @@ public class BukkitWorldManager implements WorldManager, Listener {
             if (adaptor instanceof Listener listener) {
                 HandlerList.unregisterAll(listener);
             }
+            adaptor.close();
         }
     }
 
@@ -235,6 +250,7 @@ public class BukkitWorldManager implements WorldManager, Listener {
         removedWorld.save(false, disabling);
         removedWorld.scheduler().shutdownScheduler();
         removedWorld.scheduler().shutdownExecutor();
+        removedWorld.scheduler().shutdownIO();
         return true;
     }
 
@@ -262,9 +278,111 @@ public class BukkitWorldManager implements WorldManager, Listener {
     public void onChunkUnload(ChunkUnloadEvent event) {
         final Chunk chunk = event.getChunk();
         final World world = event.getWorld();
-        this.getWorld(world)
-                .flatMap(customWorld -> customWorld.getLoadedChunk(ChunkPos.fromBukkitChunk(chunk)))
-                .ifPresent(customChunk -> customChunk.unload(true));
+        this.getWorld(world).ifPresent(customWorld -> {
+            ChunkPos pos = ChunkPos.fromBukkitChunk(chunk);
+            customWorld.nearbyWaterCache().invalidateChunk(pos);
+            customWorld.getLoadedChunk(pos).ifPresent(customChunk -> customChunk.unload(true));
+        });
+    }
+
+    // keep the nearby water cache up to date
+
+    @EventHandler (priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockFromTo(BlockFromToEvent event) {
+        invalidateWater(event.getToBlock());
+    }
+
+    @EventHandler (priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onFluidLevelChange(FluidLevelChangeEvent event) {
+        invalidateWater(event.getBlock());
+    }
+
+    @EventHandler (priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockPlace(BlockPlaceEvent event) {
+        invalidateWater(event.getBlock());
+    }
+
+    @EventHandler (priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBreak(BlockBreakEvent event) {
+        invalidateWater(event.getBlock());
+    }
+
+    @EventHandler (priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBucketEmpty(PlayerBucketEmptyEvent event) {
+        invalidateWater(event.getBlock());
+        invalidateWater(event.getBlockClicked());
+    }
+
+    @EventHandler (priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBucketFill(PlayerBucketFillEvent event) {
+        invalidateWater(event.getBlock());
+        invalidateWater(event.getBlockClicked());
+    }
+
+    @EventHandler (priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onDispense(BlockDispenseEvent event) {
+        if (event.getBlock().getBlockData() instanceof Directional directional) {
+            invalidateWater(event.getBlock().getRelative(directional.getFacing()));
+        }
+    }
+
+    @EventHandler (priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockForm(BlockFormEvent event) {
+        invalidateWater(event.getBlock());
+    }
+
+    @EventHandler (priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockSpread(BlockSpreadEvent event) {
+        invalidateWater(event.getBlock());
+    }
+
+    @EventHandler (priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockFade(BlockFadeEvent event) {
+        invalidateWater(event.getBlock());
+    }
+
+    @EventHandler (priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onSpongeAbsorb(SpongeAbsorbEvent event) {
+        for (BlockState state : event.getBlocks()) {
+            invalidateWater(state.getBlock());
+        }
+    }
+
+    @EventHandler (priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPistonExtend(BlockPistonExtendEvent event) {
+        for (Block block : event.getBlocks()) {
+            invalidateWater(block);
+            invalidateWater(block.getRelative(event.getDirection()));
+        }
+    }
+
+    @EventHandler (priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPistonRetract(BlockPistonRetractEvent event) {
+        for (Block block : event.getBlocks()) {
+            invalidateWater(block);
+            invalidateWater(block.getRelative(event.getDirection()));
+        }
+    }
+
+    @EventHandler (priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockExplode(BlockExplodeEvent event) {
+        for (Block block : event.blockList()) {
+            invalidateWater(block);
+        }
+    }
+
+    @EventHandler (priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityExplode(EntityExplodeEvent event) {
+        for (Block block : event.blockList()) {
+            invalidateWater(block);
+        }
+    }
+
+    private void invalidateWater(Block block) {
+        CustomCropsWorld<?> world = this.worlds.get(block.getWorld().getName());
+        if (world != null) {
+            world.nearbyWaterCache().invalidate(block.getX(), block.getY(), block.getZ());
+        }
     }
 
     @EventHandler
@@ -273,13 +391,44 @@ public class BukkitWorldManager implements WorldManager, Listener {
         final World world = event.getWorld();
         this.getWorld(world).ifPresent(customWorld -> {
             ChunkPos pos = ChunkPos.fromBukkitChunk(chunk);
-            loadLoadedChunk(customWorld, pos);
-            if (chunk.isEntitiesLoaded() && customWorld.setting().offlineTick()) {
-                notifyOfflineUpdates(customWorld, pos);
+            prefetchNeighbourRegions(customWorld, pos);
+            if (customWorld.isChunkLoaded(pos)) {
+                if (chunk.isEntitiesLoaded() && customWorld.setting().offlineTick()) {
+                    notifyOfflineUpdates(customWorld, pos);
+                }
+                return;
             }
+            // read the chunk on the I/O thread and load it back on the thread owning the bukkit chunk
+            customWorld.getChunkAsync(pos).thenAccept(customChunk -> customChunk.ifPresent(cropsChunk -> plugin.getScheduler().sync().run(() -> {
+                // the bukkit chunk might have been unloaded in the meantime
+                if (!world.isChunkLoaded(pos.x(), pos.z())) return;
+                if (!customWorld.isChunkLoaded(pos)) {
+                    cropsChunk.load(false);
+                }
+                if (world.getChunkAt(pos.x(), pos.z()).isEntitiesLoaded() && customWorld.setting().offlineTick()) {
+                    notifyOfflineUpdates(customWorld, pos);
+                }
+            }, world, pos.x(), pos.z()))).exceptionally(throwable -> {
+                plugin.getPluginLogger().warn("[" + world.getName() + "] Failed to load chunk " + pos, throwable);
+                return null;
+            });
         });
     }
 
+    private void prefetchNeighbourRegions(CustomCropsWorld<?> world, ChunkPos pos) {
+        int distance = ConfigManager.regionPrefetchDistance();
+        RegionPos regionPos = pos.toRegionPos();
+        world.prefetchRegion(regionPos);
+        if (distance <= 0) return;
+        int localX = pos.x() & 31;
+        int localZ = pos.z() & 31;
+        int dx = localX < distance ? -1 : localX >= 32 - distance ? 1 : 0;
+        int dz = localZ < distance ? -1 : localZ >= 32 - distance ? 1 : 0;
+        if (dx != 0) world.prefetchRegion(RegionPos.of(regionPos.x() + dx, regionPos.z()));
+        if (dz != 0) world.prefetchRegion(RegionPos.of(regionPos.x(), regionPos.z() + dz));
+        if (dx != 0 && dz != 0) world.prefetchRegion(RegionPos.of(regionPos.x() + dx, regionPos.z() + dz));
+    }
+
     @EventHandler
     public void onEntitiesLoad(EntitiesLoadEvent event) {
         final Chunk chunk = event.getChunk();
@@ -8,4 +8,5 @@ include(":compatibility-oraxen-r1")
 include(":compatibility-oraxen-r2")
 include(":compatibility-nexo-r1")
 include(":compatibility-itemsadder-r1")
-include(":compatibility-crucible-r1")
\ No newline at end of file
+include(":compatibility-crucible-r1")
+include(":benchmarks")
\ No newline at end of file